@@ -12,6 +12,7 @@ import io.github.cdimascio.dotenv.Dotenv;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Info;
 import io.swagger.v3.oas.annotations.servers.Server;
+import nl.esciencecenter.restape.RunRetention;
 
 /**
  * The main class for the RESTful APE API.
@@ -44,6 +45,8 @@ public class RestapeApplication {
 
 		log.info("Starting RestApe API server...");
 		app.run(args);
+		// remove the synthesis runs that exceed the retention limits, if configured
+		RunRetention.get().start();
 	}
 
 }
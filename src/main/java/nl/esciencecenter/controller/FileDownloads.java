@@ -0,0 +1,373 @@
+package nl.esciencecenter.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONObject;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServletServerHttpRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import nl.esciencecenter.restape.ByteBufferInputStream;
+import nl.esciencecenter.restape.RunPacks;
+import nl.esciencecenter.restape.RunPacks.PackedFile;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
+
+/**
+ * The {@code FileDownloads} class serves the files of the synthesis runs (CWL
+ * files, images, benchmarks) without loading them in memory. The responses
+ * include the content type (based on the file extension), content length,
+ * last modification time and an ETag, and conditional requests
+ * ({@code If-None-Match}, {@code If-Modified-Since}) are answered with 304.<br>
+ * <br>
+ * Larger files are sent by the container using sendfile (zero-copy) when it is
+ * supported, i.e., when Tomcat runs with a connector that supports it.
+ * Otherwise, and for range requests, the files are streamed as resources.<br>
+ * <br>
+ * Text files (CWL, YAML, SVG, JSON) are served gzip compressed to the clients
+ * that accept it. The compressed variant is created once, on the first
+ * request, and stored next to the file (e.g.,
+ * {@code candidate_workflow_1.cwl.gz}), so the files are never compressed per
+ * request. Brotli and zstd variants are not provided, as the JDK has no
+ * encoders for them.<br>
+ * <br>
+ * Small files that are requested repeatedly are served from memory (see
+ * {@link HotArtifactCache}). Files of runs stored in packs (see
+ * {@link RunPacks}) are served from the memory mapped pack, with the same
+ * headers but without compression. Files that are not available locally, e.g.,
+ * of runs executed on another node, are downloaded from the artifact store (see
+ * {@link ArtifactStores}) first.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class FileDownloads {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    /**
+     * Smaller files are copied, as sendfile does not pay off for them (the same
+     * threshold as used by Tomcat).
+     */
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024L;
+
+    /**
+     * Extensions of the files that are served compressed.
+     */
+    private static final Set<String> COMPRESSIBLE = Set.of("cwl", "yml", "svg", "json");
+    /**
+     * Smaller files are served uncompressed, as compression hardly reduces their
+     * size.
+     */
+    private static final long GZIP_MIN_BYTES = 1024;
+    private static final String GZIP_EXTENSION = ".gz";
+    /**
+     * Files are base64 encoded in chunks of this size (a multiple of 3 bytes).
+     */
+    private static final int BASE64_CHUNK_BYTES = 48 * 1024;
+
+    private static final MediaType YAML = MediaType.parseMediaType("application/x-yaml");
+    private static final Map<String, MediaType> MEDIA_TYPES = Map.of(
+            "png", MediaType.IMAGE_PNG,
+            "svg", MediaType.parseMediaType("image/svg+xml"),
+            "cwl", YAML,
+            "yml", YAML,
+            "json", MediaType.APPLICATION_JSON,
+            "zip", MediaType.parseMediaType("application/zip"));
+
+    /**
+     * Get the content type of the file, based on its extension.
+     *
+     * @param path - path to the file
+     * @return Content type of the file.
+     */
+    public static MediaType getMediaType(Path path) {
+        return MEDIA_TYPES.getOrDefault(getExtension(path), MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private static String getExtension(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.substring(fileName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Create the response serving the file.
+     *
+     * @param path    - path to the file
+     * @param request - request of the file
+     * @return Response with the file, or 304 if the client has the current version
+     *         of the file.
+     * @throws NoSuchFileException if the file does not exist
+     * @throws IOException         if the file attributes cannot be read
+     */
+    public static ResponseEntity<?> serve(Path path, HttpServletRequest request) throws IOException {
+        if (!Files.isRegularFile(path) && !ArtifactStores.fetch(path)) {
+            throw new NoSuchFileException(path.getFileName().toString());
+        }
+        if (!Files.isRegularFile(path)) {
+            // the runs might be stored in packs
+            PackedFile packedFile = RunPacks.find(path)
+                    .orElseThrow(() -> new NoSuchFileException(path.getFileName().toString()));
+            return servePacked(packedFile, request);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        HttpHeaders requestHeaders = new ServletServerHttpRequest(request).getHeaders();
+
+        boolean compressible = COMPRESSIBLE.contains(getExtension(path)) && attributes.size() >= GZIP_MIN_BYTES;
+        boolean gzip = compressible && acceptsGzip(requestHeaders);
+        Path servedPath = gzip ? getGzipVariant(path, attributes.lastModifiedTime()) : path;
+        long size = gzip ? Files.size(servedPath) : attributes.size();
+        // the variants are different representations, therefore they have different ETags
+        String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(attributes.size())
+                + (gzip ? "-gzip" : "") + "\"";
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        if (compressible) {
+            responseHeaders.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        }
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(responseHeaders).eTag(eTag)
+                    .lastModified(lastModified).build();
+        }
+        if (gzip) {
+            responseHeaders.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .headers(responseHeaders)
+                .contentType(getMediaType(path))
+                .eTag(eTag)
+                .lastModified(lastModified);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR)) && size >= SENDFILE_MIN_BYTES
+                && requestHeaders.getRange().isEmpty()) {
+            // the container sends the file after the (empty) body is written
+            request.setAttribute(SENDFILE_FILENAME_ATTR, servedPath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, size);
+            return response.contentLength(size).build();
+        }
+        // the files that are not sent by the container are served from memory when they are hot
+        Optional<ByteBuffer> cachedContent = HotArtifactCache.get().getContent(servedPath, size, lastModified);
+        if (cachedContent.isPresent()) {
+            // ranges are handled by Spring for resources with a known length
+            return response.body(new BufferResource(servedPath.getFileName().toString(), cachedContent.get()));
+        }
+        // ranges are handled by Spring for file resources
+        return response.body(new FileSystemResource(servedPath));
+    }
+
+    /**
+     * Write the files as newline-delimited JSON, one line per file in the given
+     * order, with the content encoded in base64. A file that cannot be read is
+     * reported in its line (under 'error'), and the remaining files are still
+     * written. Every line is flushed, so the client can process the files while
+     * the rest is written.
+     *
+     * @param paths - paths to the files
+     * @param out   - stream the lines are written to, e.g., the HTTP response
+     * @throws IOException if the lines cannot be written
+     */
+    public static void writeNdjson(List<Path> paths, OutputStream out) throws IOException {
+        byte[] chunk = new byte[BASE64_CHUNK_BYTES];
+        for (Path path : paths) {
+            String fileName = path.getFileName().toString();
+            Optional<Resource> resource;
+            try {
+                resource = findResource(path);
+            } catch (IOException e) {
+                resource = Optional.empty();
+            }
+            if (resource.isEmpty()) {
+                writeAscii(out, "{\"file_name\":" + JSONObject.quote(fileName)
+                        + ",\"error\":\"The file could not be found.\"}\n");
+                out.flush();
+                continue;
+            }
+            writeAscii(out, "{\"file_name\":" + JSONObject.quote(fileName)
+                    + ",\"content_type\":" + JSONObject.quote(getMediaType(path).toString())
+                    + ",\"size\":" + resource.get().contentLength()
+                    + ",\"content\":\"");
+            try (InputStream in = resource.get().getInputStream()) {
+                int length;
+                // the chunks are a multiple of 3 bytes, so they can be encoded separately
+                while ((length = in.readNBytes(chunk, 0, chunk.length)) > 0) {
+                    out.write(Base64.getEncoder().encode(length == chunk.length ? chunk : Arrays.copyOf(chunk, length)));
+                }
+            }
+            writeAscii(out, "\"}\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Find the content of the file, in the hot artifact cache, on disk or in the
+     * pack of its run.
+     */
+    private static Optional<Resource> findResource(Path path) throws IOException {
+        if (!Files.isRegularFile(path) && !ArtifactStores.fetch(path)) {
+            return Optional.empty();
+        }
+        if (!Files.isRegularFile(path)) {
+            return RunPacks.find(path)
+                    .map(packedFile -> new BufferResource(packedFile.getFileName(), packedFile.getContent()));
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Optional<ByteBuffer> cachedContent = HotArtifactCache.get().getContent(path, attributes.size(),
+                attributes.lastModifiedTime().toMillis());
+        if (cachedContent.isPresent()) {
+            return Optional.of(new BufferResource(path.getFileName().toString(), cachedContent.get()));
+        }
+        return Optional.of(new FileSystemResource(path));
+    }
+
+    private static void writeAscii(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Create the response serving a file from the pack of its run. The response
+     * has the same headers as for the unpacked file, but it is not compressed.
+     */
+    private static ResponseEntity<?> servePacked(PackedFile packedFile, HttpServletRequest request) {
+        HttpHeaders requestHeaders = new ServletServerHttpRequest(request).getHeaders();
+        long lastModified = packedFile.getLastModified();
+        String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(packedFile.getLength()) + "\"";
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).lastModified(lastModified).build();
+        }
+        Resource resource = new BufferResource(packedFile.getFileName(), packedFile.getContent());
+        // ranges are handled by Spring for resources with a known length
+        return ResponseEntity.ok()
+                .contentType(getMediaType(Path.of(packedFile.getFileName())))
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .body(resource);
+    }
+
+    /**
+     * Resource with the content of a file held in memory, i.e., in the hot
+     * artifact cache or in the memory mapped pack of a run.
+     */
+    private static class BufferResource extends AbstractResource {
+
+        private final String fileName;
+        private final ByteBuffer content;
+
+        BufferResource(String fileName, ByteBuffer content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+
+        @Override
+        public String getDescription() {
+            return "file " + fileName + " in memory";
+        }
+
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+
+        @Override
+        public long contentLength() {
+            return content.remaining();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(content);
+        }
+    }
+
+    /**
+     * Get the gzip compressed variant of the file, creating it if it does not
+     * exist or if the file changed since. The variant has the same modification
+     * time as the file it was created from.
+     *
+     * @param path         - path to the file
+     * @param lastModified - modification time of the file
+     * @return Path to the compressed variant.
+     * @throws IOException if the variant cannot be created
+     */
+    static Path getGzipVariant(Path path, FileTime lastModified) throws IOException {
+        Path variant = path.resolveSibling(path.getFileName() + GZIP_EXTENSION);
+        if (Files.isRegularFile(variant) && Files.getLastModifiedTime(variant).equals(lastModified)) {
+            return variant;
+        }
+        Path tmpFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmpFile), 64 * 1024)) {
+                Files.copy(path, out);
+            }
+            Files.setLastModifiedTime(tmpFile, lastModified);
+            Files.move(tmpFile, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        return variant;
+    }
+
+    /**
+     * Check whether the client accepts gzip compressed responses, i.e., whether
+     * gzip (or any encoding) is listed in {@code Accept-Encoding} without
+     * {@code q=0}.
+     */
+    static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        for (String header : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim().toLowerCase(Locale.ROOT);
+                if (!name.equals("gzip") && !name.equals("*")) {
+                    continue;
+                }
+                boolean rejected = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().replace(" ", "");
+                    rejected |= parameter.matches("q=0(\\.0*)?");
+                }
+                return !rejected;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the client already has the current version of the file. The
+     * ETag takes precedence over the modification time.
+     */
+    private static boolean isNotModified(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return ifNoneMatch.contains(eTag) || ifNoneMatch.contains("W/" + eTag) || ifNoneMatch.contains("*");
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        // HTTP dates have a precision of seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+}
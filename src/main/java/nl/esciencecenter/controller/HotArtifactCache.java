@@ -0,0 +1,263 @@
+package nl.esciencecenter.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Metrics;
+import nl.esciencecenter.restape.RestApeSettings;
+
+/**
+ * The {@code HotArtifactCache} class keeps the content of small, frequently
+ * requested run files (e.g., the images and CWL files the UI requests right
+ * after a synthesis) in memory, so that they are not read from disk on every
+ * request. The content is held in direct (off-heap) buffers, so that a large
+ * cache does not add to the garbage collection work.<br>
+ * <br>
+ * The cache is bounded by {@code HOT_ARTIFACT_CACHE_MAX_BYTES} and only holds
+ * files up to {@code HOT_ARTIFACT_MAX_FILE_BYTES}. When it is full, the least
+ * recently used files are evicted, but only in favour of a file that was
+ * requested more often than them (TinyLFU admission), so that a burst of
+ * one-off requests does not flush the hot files. The request frequencies are
+ * estimated with a count-min sketch that is halved periodically.
+ */
+class HotArtifactCache {
+
+    private static final HotArtifactCache instance = new HotArtifactCache(
+            RestApeSettings.getLong("HOT_ARTIFACT_CACHE_MAX_BYTES", 64L * 1024 * 1024),
+            RestApeSettings.getLong("HOT_ARTIFACT_MAX_FILE_BYTES", 256L * 1024));
+
+    private final long maxBytes;
+    private final long maxFileBytes;
+    /**
+     * Cached files, in the order of their last use.
+     */
+    private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    static {
+        Metrics.gauge("restape.artifact.cache.bytes", instance.cachedBytes);
+    }
+
+    HotArtifactCache(long maxBytes, long maxFileBytes) {
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = maxFileBytes;
+        // sized for the number of average (16 KiB) files that fit in the cache
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / (16 * 1024))));
+    }
+
+    /**
+     * Get the cache used for the downloads.
+     *
+     * @return The shared cache.
+     */
+    static HotArtifactCache get() {
+        return instance;
+    }
+
+    /**
+     * Get the content of the file from the cache, loading it if it is worth
+     * caching. The file is identified by its path, modification time and size,
+     * so a changed file is never served from the cache.
+     *
+     * @param path         - path to the file
+     * @param size         - size of the file
+     * @param lastModified - modification time of the file
+     * @return Read-only content of the file, or empty if the file is not cached,
+     *         in which case it should be read from disk.
+     * @throws IOException if the file cannot be read
+     */
+    Optional<ByteBuffer> getContent(Path path, long size, long lastModified) throws IOException {
+        if (maxBytes <= 0 || size > maxFileBytes || size > maxBytes) {
+            return Optional.empty();
+        }
+        synchronized (this) {
+            sketch.increment(path);
+            Entry entry = entries.get(path);
+            if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                record("hit");
+                return Optional.of(entry.content.duplicate());
+            }
+            if (entry != null) {
+                remove(path);
+            }
+            if (!canAdmit(sketch.frequency(path), size)) {
+                record("rejected");
+                return Optional.empty();
+            }
+        }
+        record("miss");
+        ByteBuffer content = load(path, size);
+        synchronized (this) {
+            // the cache might have changed while the file was loaded
+            if (canAdmit(sketch.frequency(path), size)) {
+                evict(size);
+                if (entries.containsKey(path)) {
+                    remove(path);
+                }
+                entries.put(path, new Entry(content, size, lastModified));
+                cachedBytes.addAndGet(size);
+            }
+        }
+        return Optional.of(content.duplicate());
+    }
+
+    /**
+     * Check whether the file fits in the cache, possibly after evicting least
+     * recently used files that are requested less often than the file.
+     */
+    private boolean canAdmit(int frequency, long size) {
+        long freeBytes = maxBytes - cachedBytes.get();
+        Iterator<Map.Entry<Path, Entry>> victims = entries.entrySet().iterator();
+        while (freeBytes < size && victims.hasNext()) {
+            Map.Entry<Path, Entry> victim = victims.next();
+            if (sketch.frequency(victim.getKey()) >= frequency) {
+                return false;
+            }
+            freeBytes += victim.getValue().size;
+        }
+        return freeBytes >= size;
+    }
+
+    private void evict(long size) {
+        Iterator<Map.Entry<Path, Entry>> victims = entries.entrySet().iterator();
+        while (maxBytes - cachedBytes.get() < size && victims.hasNext()) {
+            cachedBytes.addAndGet(-victims.next().getValue().size);
+            victims.remove();
+        }
+    }
+
+    private void remove(Path path) {
+        Entry removed = entries.remove(path);
+        if (removed != null) {
+            cachedBytes.addAndGet(-removed.size);
+        }
+    }
+
+    private static ByteBuffer load(Path path, long size) throws IOException {
+        ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // read until the buffer is full
+            }
+        }
+        if (content.hasRemaining()) {
+            throw new IOException(path.getFileName() + " changed while it was read.");
+        }
+        content.flip();
+        return content.asReadOnlyBuffer();
+    }
+
+    private static void record(String result) {
+        Metrics.counter("restape.artifact.cache", "result", result).increment();
+    }
+
+    /**
+     * Get the number of cached bytes.
+     *
+     * @return Size of the cached files.
+     */
+    long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Check whether the file is cached (in any version).
+     *
+     * @param path - path to the file
+     * @return true if the file is cached, false otherwise.
+     */
+    synchronized boolean contains(Path path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * Cached content of a file.
+     */
+    private static class Entry {
+
+        private final ByteBuffer content;
+        private final long size;
+        private final long lastModified;
+
+        Entry(ByteBuffer content, long size, long lastModified) {
+            this.content = content;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Count-min sketch estimating how often each file was requested recently.
+     * The counters saturate at 15 and are halved after a number of requests
+     * proportional to the size of the sketch, so old popularity fades.
+     */
+    private static class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int resetAfter;
+        private int increments = 0;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries) * 2 - 1);
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.resetAfter = 10 * width;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                }
+            }
+            if (++increments >= resetAfter) {
+                halve();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private void halve() {
+            increments = 0;
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+        }
+
+        private int index(int hash, int row) {
+            int rowHash = hash * (0x9E3779B9 + 2 * row) + row;
+            return (rowHash ^ (rowHash >>> 16)) & mask;
+        }
+
+        private static int spread(int hash) {
+            hash ^= hash >>> 17;
+            hash *= 0xed5ad4bb;
+            hash ^= hash >>> 11;
+            return hash;
+        }
+    }
+}
@@ -1,26 +1,39 @@
 package nl.esciencecenter.controller;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
 import io.swagger.v3.oas.annotations.ExternalDocumentation;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -28,15 +41,33 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.Parameter;
 import nl.esciencecenter.controller.dto.APEConfig;
+import nl.esciencecenter.controller.dto.ArtifactBatch;
 import nl.esciencecenter.controller.dto.CWLFileInfo;
 import nl.esciencecenter.controller.dto.CWLZip;
 import nl.esciencecenter.controller.dto.ConstraintElem;
+import nl.esciencecenter.controller.dto.DomainInfo;
 import nl.esciencecenter.controller.dto.ImgFileInfo;
 import nl.esciencecenter.controller.dto.TaxonomyElem;
+import nl.esciencecenter.externalAPIs.LocalToolIndex;
+import nl.esciencecenter.models.Domain;
+import nl.esciencecenter.models.SynthesisRun;
+import nl.esciencecenter.models.Workflow;
+import nl.esciencecenter.externalAPIs.ToolMetadataSources;
 import nl.esciencecenter.restape.APEWorkflowMetadata;
 import nl.esciencecenter.restape.ApeAPI;
+import nl.esciencecenter.restape.BenchmarkTracker;
 import nl.esciencecenter.restape.IOUtils;
+import nl.esciencecenter.restape.RestApeSettings;
 import nl.esciencecenter.restape.RestApeUtils;
+import nl.esciencecenter.restape.RunBenchmarkIndex;
+import nl.esciencecenter.restape.ToolMetadataPrefetcher;
+import nl.esciencecenter.restape.WorkflowIndex;
+import nl.esciencecenter.restape.ZipCache;
+import nl.esciencecenter.service.DomainNotFoundException;
+import nl.esciencecenter.service.DomainResource;
+import nl.esciencecenter.service.DomainService;
+import nl.esciencecenter.service.DomainSynthesisService;
+import nl.esciencecenter.service.RunCatalogService;
 import nl.uu.cs.ape.configuration.APEConfigException;
 
 /**
@@ -48,6 +79,19 @@ public class RestApeController {
 
         private static final String invalidRunIDMsg = "The run ID is invalid.";
         private static final String invalidFileNameMsg = "The file name format is invalid.";
+        private static final String unknownRunMsg = "The run could not be found.";
+        private static final int maxBatchFiles = RestApeSettings.getInt("ARTIFACT_BATCH_MAX_FILES", 400);
+        private static final int maxRunsPageSize = 100;
+        private static final String domainRegistryReadOnlyMsg = "Changing the registered domains is not enabled.";
+
+        @Autowired
+        private RunCatalogService runCatalog;
+
+        @Autowired
+        private DomainService domainService;
+
+        @Autowired
+        private DomainSynthesisService domainSynthesis;
 
         /**
          * Index of the RESTful APE API. Welcome message.
@@ -64,6 +108,7 @@ public class RestApeController {
          * Retrieve data taxonomy based on the provided domain configuration file.
          * 
          * @param configPath URL to the APE configuration file.
+         * @param domainID   ID of a registered domain, instead of the URL.
          * @return Taxonomy of data terms.
          * @throws IOException
          * @throws OWLOntologyCreationException
@@ -74,8 +119,11 @@ public class RestApeController {
                 tags = {"Domain"},
                 parameters = {
                         @Parameter(name = "config_path", 
-                                description = "URL to the APE configuration file.",
-                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json")
+                                description = "URL to the APE configuration file. Not needed if the domain_id is provided.",
+                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json"),
+                        @Parameter(name = "domain_id", 
+                                description = "ID of a registered domain (see '/domains'), instead of the URL to its configuration file.",
+                                example = "1")
                 },
                 externalDocs = @ExternalDocumentation(description = "More information about the APE configuration file can be found here.",
                                                         url = "https://ape-framework.readthedocs.io/en/latest/docs/specifications/setup.html#configuration-file"),
@@ -88,17 +136,18 @@ public class RestApeController {
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
         public ResponseEntity<String> getData(
-                        @RequestParam("config_path") String configPath)
+                        @RequestParam(value = "config_path", required = false) String configPath,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws OWLOntologyCreationException, IOException, IllegalArgumentException {
-                RestApeUtils.validateURL(configPath);
                 return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.getData(configPath).toString());
+                                .body(domainService.getResource(domainID, configPath, DomainResource.DATA_TAXONOMY));
         }
 
         /**
          * Retrieve tool taxonomy based on the provided domain configuration file.
          * 
          * @param configPath URL to the APE configuration file.
+         * @param domainID   ID of a registered domain, instead of the URL.
          * @return Taxonomy of tool terms.
          * @throws IOException
          * @throws OWLOntologyCreationException
@@ -109,8 +158,11 @@ public class RestApeController {
                 tags = {"Domain"},
                 parameters = {
                         @Parameter(name = "config_path", 
-                                description = "URL to the APE configuration file.",
-                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json")
+                                description = "URL to the APE configuration file. Not needed if the domain_id is provided.",
+                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json"),
+                        @Parameter(name = "domain_id", 
+                                description = "ID of a registered domain (see '/domains'), instead of the URL to its configuration file.",
+                                example = "1")
                 },
                 externalDocs = @ExternalDocumentation(description = "More information about the APE configuration file can be found here.",
                                                         url = "https://ape-framework.readthedocs.io/en/latest/docs/specifications/setup.html#configuration-file"),
@@ -123,11 +175,11 @@ public class RestApeController {
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
         public ResponseEntity<String> getTools(
-                        @RequestParam("config_path") String configPath)
+                        @RequestParam(value = "config_path", required = false) String configPath,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws OWLOntologyCreationException, IOException {
-                RestApeUtils.validateURL(configPath);
                 return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.getTools(configPath).toString());
+                                .body(domainService.getResource(domainID, configPath, DomainResource.TOOLS_TAXONOMY));
         }
 
         /**
@@ -135,6 +187,7 @@ public class RestApeController {
          * file.
          * 
          * @param configPath URL to the APE configuration file.
+         * @param domainID   ID of a registered domain, instead of the URL.
          * @return Constraint templates.
          */
         @GetMapping("/constraint_templates")
@@ -143,8 +196,11 @@ public class RestApeController {
                 tags = {"Domain"},
                 parameters = {
                         @Parameter(name = "config_path", 
-                                description = "URL to the APE configuration file.",
-                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json")
+                                description = "URL to the APE configuration file. Not needed if the domain_id is provided.",
+                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json"),
+                        @Parameter(name = "domain_id", 
+                                description = "ID of a registered domain (see '/domains'), instead of the URL to its configuration file.",
+                                example = "1")
                 },
                 externalDocs = @ExternalDocumentation(description = "More information about the APE configuration file can be found here.",
                                                         url = "https://ape-framework.readthedocs.io/en/latest/docs/specifications/setup.html#configuration-file"),
@@ -156,11 +212,12 @@ public class RestApeController {
                         @ApiResponse(responseCode = "400", description = "Invalid input"),
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
-        public ResponseEntity<String> getConstraints(@RequestParam("config_path") String configPath)
+        public ResponseEntity<String> getConstraints(
+                        @RequestParam(value = "config_path", required = false) String configPath,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws JSONException, OWLOntologyCreationException, IOException {
-
                 return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.getConstraints(configPath).toString());
+                                .body(domainService.getResource(domainID, configPath, DomainResource.CONSTRAINT_TEMPLATES));
         }
 
         /**
@@ -168,6 +225,7 @@ public class RestApeController {
          * file.
          * 
          * @param configPath URL to the APE configuration file.
+         * @param domainID   ID of a registered domain, instead of the URL.
          * @return Domain constraints.
          */
         @GetMapping("/domain_constraints")
@@ -176,8 +234,11 @@ public class RestApeController {
                 tags = {"Domain"},
                 parameters = {
                         @Parameter(name = "config_path", 
-                                description = "URL to the APE configuration file.",
-                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json")
+                                description = "URL to the APE configuration file. Not needed if the domain_id is provided.",
+                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json"),
+                        @Parameter(name = "domain_id", 
+                                description = "ID of a registered domain (see '/domains'), instead of the URL to its configuration file.",
+                                example = "1")
                 },
                 externalDocs = @ExternalDocumentation(description = "More information about the APE configuration file can be found here.",
                                                         url = "https://ape-framework.readthedocs.io/en/latest/docs/specifications/setup.html#configuration-file"),
@@ -189,17 +250,19 @@ public class RestApeController {
                         @ApiResponse(responseCode = "400", description = "Invalid input"),
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
-        public ResponseEntity<String> getDomainConstraints(@RequestParam("config_path") String configPath)
+        public ResponseEntity<String> getDomainConstraints(
+                        @RequestParam(value = "config_path", required = false) String configPath,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws JSONException, OWLOntologyCreationException, IOException {
-
                 return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.getDomainConstraints(configPath).toString());
+                                .body(domainService.getResource(domainID, configPath, DomainResource.DOMAIN_CONSTRAINTS));
         }
 
         /**
          * Retrieve default input and output data terms based on the provided domain configuration file.
          * 
          * @param configPath URL to the APE configuration file.
+         * @param domainID   ID of a registered domain, instead of the URL.
          * @return Taxonomy of data terms.
          * @throws IOException - if the URL is invalid
          * @throws OWLOntologyCreationException - if the ontology cannot be created
@@ -210,8 +273,11 @@ public class RestApeController {
                 tags = {"Domain"},
                 parameters = {
                         @Parameter(name = "config_path", 
-                                description = "URL to the APE configuration file.",
-                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json")
+                                description = "URL to the APE configuration file. Not needed if the domain_id is provided.",
+                                example = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/main/domains/proteomics/config.json"),
+                        @Parameter(name = "domain_id", 
+                                description = "ID of a registered domain (see '/domains'), instead of the URL to its configuration file.",
+                                example = "1")
                 },
                 externalDocs = @ExternalDocumentation(description = "More information about the APE configuration file can be found here.",
                                                         url = "https://ape-framework.readthedocs.io/en/latest/docs/specifications/setup.html#configuration-file"),
@@ -224,17 +290,162 @@ public class RestApeController {
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
         public ResponseEntity<String> getDomainIO(
-                        @RequestParam("config_path") String configPath)
+                        @RequestParam(value = "config_path", required = false) String configPath,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws OWLOntologyCreationException, IOException, IllegalArgumentException {
-                RestApeUtils.validateURL(configPath);
                 return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.getDomainIO(configPath).toString());
+                                .body(domainService.getResource(domainID, configPath, DomainResource.DOMAIN_IO));
+        }
+
+        /**
+         * List the registered domains.
+         * 
+         * @return JSON array of the registered domains.
+         */
+        @GetMapping("/domains")
+        @Operation(summary = "List the registered domains",
+                description = "List the registered domains. A registered domain can be referred to by its 'domain_id' in the domain and synthesis endpoints, instead of the URL to its configuration file.",
+                tags = {"Domain"},
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The registered domains are provided.",
+                                content = @Content(mediaType = "application/json"))
+                })
+        public ResponseEntity<String> getDomains() {
+                JSONArray domains = new JSONArray();
+                domainService.getAllDomain().forEach(domain -> domains.put(domain.toJSONObject()));
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(domains.toString());
+        }
+
+        /**
+         * Retrieve a registered domain.
+         * 
+         * @param domainID ID of the domain.
+         * @return JSON object of the domain.
+         */
+        @GetMapping("/domains/{domain_id}")
+        @Operation(summary = "Retrieve a registered domain",
+                description = "Retrieve the registered domain with the given ID.",
+                tags = {"Domain"},
+                parameters = {
+                        @Parameter(name = "domain_id", description = "ID of the domain.", example = "1")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The domain is provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "404", description = "Not found")
+                })
+        public ResponseEntity<String> getDomain(@PathVariable("domain_id") int domainID) {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                .body(domainService.getDomainById(domainID).toJSONObject().toString());
+        }
+
+        /**
+         * Register a domain.
+         * 
+         * @param domainInfo Name, configuration URL and cache settings of the domain.
+         * @return JSON object of the registered domain, including its ID.
+         */
+        @PostMapping("/domains")
+        @Operation(summary = "Register a domain",
+                description = "Register a domain under a name, with the URL to its configuration file. The responses of the domain endpoints are cached for 'cache_ttl_seconds' (by default DOMAIN_CACHE_TTL_SECONDS, 0 disables the cache), and if 'warm_up' is true, the domain is loaded in the background when it is registered and when the service starts. Registering domains must be enabled with DOMAIN_REGISTRY_WRITE_ENABLED.",
+                tags = {"Domain"},
+                requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                        description = "JSON object containing the following fields: 'domain_name', 'config_path', 'cache_ttl_seconds' (optional) and 'warm_up' (optional).",
+                        required = true,
+                        content = @Content(schema = @Schema(implementation = DomainInfo.class))
+                ),
+                responses = {
+                        @ApiResponse(responseCode = "201", 
+                                description = "Successful operation. The registered domain is provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input"),
+                        @ApiResponse(responseCode = "403", description = "Registering domains is not enabled")
+                })
+        public ResponseEntity<String> postDomain(@RequestBody(required = true) DomainInfo domainInfo) {
+                if (!isDomainRegistryWritable()) {
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(domainRegistryReadOnlyMsg);
+                }
+                Domain domain = domainService.saveOrUpdate(domainInfo.applyTo(new Domain()));
+                return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON)
+                                .body(domain.toJSONObject().toString());
+        }
+
+        /**
+         * Update a registered domain.
+         * 
+         * @param domainID   ID of the domain.
+         * @param domainInfo Name, configuration URL and cache settings of the domain.
+         * @return JSON object of the updated domain.
+         */
+        @PutMapping("/domains/{domain_id}")
+        @Operation(summary = "Update a registered domain",
+                description = "Update the name, the URL to the configuration file or the cache settings of the registered domain. The cached responses of the domain are removed. Updating domains must be enabled with DOMAIN_REGISTRY_WRITE_ENABLED.",
+                tags = {"Domain"},
+                parameters = {
+                        @Parameter(name = "domain_id", description = "ID of the domain.", example = "1")
+                },
+                requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                        description = "JSON object containing the following fields: 'domain_name', 'config_path', 'cache_ttl_seconds' (optional) and 'warm_up' (optional).",
+                        required = true,
+                        content = @Content(schema = @Schema(implementation = DomainInfo.class))
+                ),
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The updated domain is provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input"),
+                        @ApiResponse(responseCode = "403", description = "Updating domains is not enabled"),
+                        @ApiResponse(responseCode = "404", description = "Not found")
+                })
+        public ResponseEntity<String> putDomain(
+                        @PathVariable("domain_id") int domainID,
+                        @RequestBody(required = true) DomainInfo domainInfo) {
+                if (!isDomainRegistryWritable()) {
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(domainRegistryReadOnlyMsg);
+                }
+                Domain domain = domainService.saveOrUpdate(domainInfo.applyTo(domainService.getDomainById(domainID)));
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                .body(domain.toJSONObject().toString());
+        }
+
+        /**
+         * Remove a registered domain.
+         * 
+         * @param domainID ID of the domain.
+         * @return Empty response.
+         */
+        @DeleteMapping("/domains/{domain_id}")
+        @Operation(summary = "Remove a registered domain",
+                description = "Remove the registered domain and its cached responses. Removing domains must be enabled with DOMAIN_REGISTRY_WRITE_ENABLED.",
+                tags = {"Domain"},
+                parameters = {
+                        @Parameter(name = "domain_id", description = "ID of the domain.", example = "1")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "204", description = "Successful operation. The domain is removed."),
+                        @ApiResponse(responseCode = "403", description = "Removing domains is not enabled"),
+                        @ApiResponse(responseCode = "404", description = "Not found")
+                })
+        public ResponseEntity<String> deleteDomain(@PathVariable("domain_id") int domainID) {
+                if (!isDomainRegistryWritable()) {
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(domainRegistryReadOnlyMsg);
+                }
+                domainService.delete(domainService.getDomainById(domainID).getId());
+                return ResponseEntity.noContent().build();
+        }
+
+        private static boolean isDomainRegistryWritable() {
+                return RestApeSettings.getBoolean("DOMAIN_REGISTRY_WRITE_ENABLED", false);
         }
 
         /**
          * Synthesize workflow based on the provided run configuration file.
          * 
          * @param configJson JSON object containing the configuration for the synthesis.
+         * @param domainID   ID of the registered domain whose configuration provides
+         *                   the defaults of the synthesis.
          * @return List of resulting solutions, where each element describes a workflow
          *         (name,length, run_id, etc.)
          * @throws OWLOntologyCreationException
@@ -243,6 +454,11 @@ public class RestApeController {
         @Operation(summary = "Run workflow synthesis",
                 description = "Run workflow synthesis using the APE library. Returns the list of resulting solutions, where each element describes a workflow (name, length, run_id, etc.).",
                 tags = {"APE"},
+                parameters = {
+                        @Parameter(name = "domain_id",
+                                description = "ID of a registered domain (see '/domains'). The fields of its configuration file are used for the fields that are not provided in the request body. If only a fixed 'solution_length' is provided, the precomputed workflows of the domain are returned, if available.",
+                                example = "1")
+                },
                 requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                         description = "JSON object containing the configuration for the synthesis.",
                         required = true,
@@ -261,18 +477,34 @@ public class RestApeController {
                         @ApiResponse(responseCode = "500", description = "Internal server error")
                 })
         public ResponseEntity<List<APEWorkflowMetadata>> runSynthesis(
-                        @RequestBody(required = true) Map<String, Object> configJson)
+                        @RequestBody(required = true) Map<String, Object> configJson,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws APEConfigException, JSONException, OWLOntologyCreationException, IOException {
-                JSONObject config = new JSONObject(configJson);
+                long start = System.nanoTime();
+                DomainSynthesisService.Lookup lookup = domainSynthesis.findPrecomputed(domainID,
+                                new JSONObject(configJson));
+                if (lookup.getWorkflows().isPresent()) {
+                        domainService.recordSynthesis(domainID, System.nanoTime() - start, true);
+                        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                        .body(lookup.getWorkflows().get());
+                }
 
-                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.runSynthesis(config, false));
+                List<APEWorkflowMetadata> workflows = ApeAPI.runSynthesis(lookup.getConfig(), false);
+                domainService.recordSynthesis(domainID, System.nanoTime() - start, false);
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(workflows);
         }
 
         /**
          * Synthesize workflow based on the provided run configuration file.
          * 
-         * @param configJson JSON object containing the configuration for the synthesis.
+         * @param configJson           JSON object containing the configuration for the
+         *                             synthesis.
+         * @param backgroundBenchmarks Whether the results should be returned
+         *                             immediately, while the benchmarks are computed
+         *                             in the background.
+         * @param domainID             ID of the registered domain whose
+         *                             configuration provides the defaults of the
+         *                             synthesis.
          * @return List of resulting solutions, where each element describes a workflow
          *         (name,length, run_id, etc.)
          * @throws IOException
@@ -281,6 +513,14 @@ public class RestApeController {
         @Operation(summary = "Run workflow synthesis and provide design-time benchmarks", 
                 description = "This endpoint triggers the synthesis of workflows using the APE library and evaluates design-time benchmarks for the generated workflows. It returns a list of APEWorkflowMetadata objects, each representing a synthesized workflow solution with detailed metadata.",
                 tags = { "APE" },
+                parameters = {
+                        @Parameter(name = "background_benchmarks",
+                                description = "If true, the synthesis results are returned immediately and the benchmark files are written in the background. Use '/design_time_benchmarks/status' to see which benchmarks are ready.",
+                                example = "false"),
+                        @Parameter(name = "domain_id",
+                                description = "ID of a registered domain (see '/domains'). The fields of its configuration file are used for the fields that are not provided in the request body.",
+                                example = "1")
+                },
                 requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "JSON object containing the configuration for the synthesis.", 
                                                 content = @Content(schema = @Schema(implementation = APEConfig.class))),
                 responses = {
@@ -292,12 +532,16 @@ public class RestApeController {
                 externalDocs = @ExternalDocumentation(description = "More information about the APE configuration file.", 
                                                         url = "https://ape-framework.readthedocs.io/en/latest/docs/specifications/setup.html#configuration-file"))
         public ResponseEntity<List<APEWorkflowMetadata>>  runSynthesisAndBench(
-                        @RequestBody(required = true) Map<String, Object> configJson)
+                        @RequestBody(required = true) Map<String, Object> configJson,
+                        @RequestParam(value = "background_benchmarks", defaultValue = "false") boolean backgroundBenchmarks,
+                        @RequestParam(value = "domain_id", required = false) Integer domainID)
                         throws APEConfigException, JSONException, OWLOntologyCreationException, IOException {
-                JSONObject config = new JSONObject(configJson);
+                JSONObject config = domainService.getRunConfig(domainID, new JSONObject(configJson));
 
-                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                .body(ApeAPI.runSynthesis(config, true));
+                long start = System.nanoTime();
+                List<APEWorkflowMetadata> workflows = ApeAPI.runSynthesis(config, true, backgroundBenchmarks);
+                domainService.recordSynthesis(domainID, System.nanoTime() - start, false);
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(workflows);
         }
 
         /**
@@ -326,12 +570,13 @@ public class RestApeController {
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
         public ResponseEntity<?> postImage(
-                        @RequestBody(required = true) ImgFileInfo imgFileInfo) throws IOException {
-
+                        @RequestBody(required = true) ImgFileInfo imgFileInfo,
+                        HttpServletRequest request) throws IOException {
+                if (!runCatalog.isKnownRun(imgFileInfo.getRunID())) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
+                }
                 Path path = imgFileInfo.calculatePath();
-                return ResponseEntity.ok()
-                                .contentType(MediaType.parseMediaType(Files.probeContentType(path)))
-                                .body(new FileSystemResource(path));
+                return FileDownloads.serve(path, request);
         }
 
         /**
@@ -360,12 +605,56 @@ public class RestApeController {
                         @ApiResponse(responseCode = "400", description = "Invalid input"),
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
-        public ResponseEntity<String> postCwl(
-                        @RequestBody(required = true) CWLFileInfo cwlInfoJson) throws IOException {
-
+        public ResponseEntity<?> postCwl(
+                        @RequestBody(required = true) CWLFileInfo cwlInfoJson,
+                        HttpServletRequest request) throws IOException {
+                if (!runCatalog.isKnownRun(cwlInfoJson.getRunID())) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
+                }
                 Path path = cwlInfoJson.calculatePath();
-                return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-yaml"))
-                                .body(IOUtils.getLocalCwlFile(path));
+                return FileDownloads.serve(path, request);
+        }
+
+        /**
+         * Retrieve several files of a run (e.g., the images of all the workflows shown
+         * in a gallery) in a single response.
+         *
+         * @param artifactBatch JSON object containing the run ID, the workflow names
+         *                      and the formats of the files.
+         * @return Newline-delimited JSON stream with one line per file, in the
+         *         requested order.
+         */
+        @PostMapping("/artifacts")
+        @Operation(summary = "Retrieve several files of a run",
+                description = "Retrieve the files (images, CWL files and design-time benchmarks) of several workflows of a run in a single response. The response is a newline-delimited JSON stream with one line per file, ordered by workflow and, per workflow, by format. Each line contains 'file_name', 'content_type', 'size' and the base64 encoded 'content', or an 'error' if the file could not be found.",
+                tags = {"Download"},
+                requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                        description = "JSON object containing the ID of the synthesis run ('run_id'), the names of the workflows without extension ('workflows', e.g., 'candidate_workflow_1') and the formats to retrieve for each workflow ('formats', any of 'png', 'svg', 'cwl' and 'json').",
+                        required = true,
+                        content = @Content(
+                                mediaType = "application/json",
+                                schema = @Schema(implementation = ArtifactBatch.class))
+                ),
+                responses = {
+                        @ApiResponse(responseCode = "200", description = "Successful operation. The files are streamed.",
+                                content = @Content(mediaType = "application/x-ndjson")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input")
+                })
+        public ResponseEntity<?> postArtifacts(
+                        @RequestBody(required = true) ArtifactBatch artifactBatch) {
+                // the size is checked before the run is looked up and the paths of the files are resolved
+                if (artifactBatch.getFileCount() > maxBatchFiles) {
+                        return ResponseEntity.badRequest()
+                                        .body("At most " + maxBatchFiles + " files can be retrieved at once.");
+                }
+                if (!runCatalog.isKnownRun(artifactBatch.getRunID())) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
+                }
+                List<Path> paths = artifactBatch.getPaths();
+                StreamingResponseBody ndjsonStream = out -> FileDownloads.writeNdjson(paths, out);
+                return ResponseEntity.ok()
+                                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                                .body(ndjsonStream);
         }
 
         /**
@@ -391,15 +680,17 @@ public class RestApeController {
                         @ApiResponse(responseCode = "400", description = "Invalid input"),
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
-        public ResponseEntity<String> getCwlInput(
-                        @RequestParam("run_id") String runID) {
+        public ResponseEntity<?> getCwlInput(
+                        @RequestParam("run_id") String runID,
+                        HttpServletRequest request) {
                 if (!RestApeUtils.isValidRunID(runID)) {
                         return ResponseEntity.badRequest().body(invalidRunIDMsg);
+                } else if (!runCatalog.isKnownRun(runID)) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
                 }
                 try {
                         Path path = RestApeUtils.calculatePath(runID, "CWL", "input.yml");
-                        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-yaml"))
-                                        .body(IOUtils.getLocalCwlFile(path));
+                        return FileDownloads.serve(path, request);
                 } catch (IOException e) {
                         return ResponseEntity.badRequest().body("The CWL input file could not be found.");
                 }
@@ -435,23 +726,265 @@ public class RestApeController {
                         @ApiResponse(responseCode = "400", description = "Invalid input"),
                         @ApiResponse(responseCode = "404", description = "Not found")
                 })
-        public ResponseEntity<String> getBenchmarks(
+        public ResponseEntity<?> getBenchmarks(
                         @RequestParam("file_name") String fileName,
-                        @RequestParam("run_id") String runID) {
+                        @RequestParam("run_id") String runID,
+                        HttpServletRequest request) throws IOException {
                 if (!RestApeUtils.isValidRunID(runID)) {
                         return ResponseEntity.badRequest().body(invalidRunIDMsg);
                 } else if (!RestApeUtils.isValidAPEFileName(fileName, "json")) {
                         return ResponseEntity.badRequest().body(invalidFileNameMsg);
+                } else if (!runCatalog.isKnownRun(runID)) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
                 }
+                Path path = RestApeUtils.calculatePath(runID, "CWL", fileName);
                 try {
-                        Path path = RestApeUtils.calculatePath(runID, "CWL", fileName);
-                        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
-                                        .body(IOUtils.getLocalBenchmarkFile(path));
-                } catch (IOException e) {
+                        // the file is streamed to the client, instead of being loaded in memory
+                        return FileDownloads.serve(path, request);
+                } catch (NoSuchFileException e) {
                         return ResponseEntity.badRequest().body("The CWL file could not be found.");
                 }
         }
 
+        /**
+         * Retrieve the status of the design-time benchmarks computed for the run. The
+         * request is held (long-poll) until more than {@code known} benchmarks are
+         * processed, the benchmarking is finished or the timeout expires.
+         * 
+         * @param runID     ID of the corresponding synthesis run (provided under
+         *                  'run_id' after the synthesis run).
+         * @param known     Number of processed benchmarks the client already knows
+         *                  about.
+         * @param timeoutMs Maximum time to wait for new benchmarks, in milliseconds.
+         * @return JSON object listing the benchmark files that are ready.
+         */
+        @GetMapping("/design_time_benchmarks/status")
+        @Operation(summary = "Retrieve the status of the design-time benchmarks",
+                description = "Retrieve which design-time benchmark files of the run are ready. The request waits until more than 'known' benchmarks are processed, the benchmarking is finished or 'timeout_ms' expires, which allows the benchmarks to be loaded progressively.",
+                tags = {"Download"},
+                parameters = {
+                        @Parameter(name = "run_id", 
+                                description = "ID of the corresponding synthesis run (provided under 'run_id' after the synthesis run).",
+                                example = "04ce2ef00c1685150252568"),
+                        @Parameter(name = "known", 
+                                description = "Number of processed benchmarks the client already knows about. Use 0 to get the status immediately.",
+                                example = "0"),
+                        @Parameter(name = "timeout_ms", 
+                                description = "Maximum time to wait for new benchmarks, in milliseconds (at most 30000).",
+                                example = "10000")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The status of the benchmarks is provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input")
+                })
+        public ResponseEntity<String> getBenchmarkStatus(
+                        @RequestParam("run_id") String runID,
+                        @RequestParam(value = "known", defaultValue = "-1") int known,
+                        @RequestParam(value = "timeout_ms", defaultValue = "0") long timeoutMs)
+                        throws InterruptedException {
+                if (!RestApeUtils.isValidRunID(runID)) {
+                        return ResponseEntity.badRequest().body(invalidRunIDMsg);
+                }
+                return BenchmarkTracker.awaitProgress(runID, known, timeoutMs)
+                                .map(progress -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                                .body(progress.toJSON().toString()))
+                                .orElseGet(() -> ResponseEntity.badRequest()
+                                                .body("No benchmarks are being computed for the run."));
+        }
+
+        /**
+         * Retrieve the metadata of a synthesis run and its workflows from the run
+         * catalog.
+         * 
+         * @param runID ID of the synthesis run.
+         * @return JSON object describing the run, with its workflows under
+         *         'workflows'.
+         */
+        @GetMapping("/runs/{run_id}")
+        @Operation(summary = "Retrieve a synthesis run",
+                description = "Retrieve the metadata of a synthesis run (domain, creation time, hash of the configuration, number of solutions) and of its workflows from the run catalog.",
+                tags = {"Runs"},
+                parameters = {
+                        @Parameter(name = "run_id", 
+                                description = "ID of the synthesis run (provided under 'run_id' after the synthesis run).",
+                                example = "04ce2ef00c1685150252568")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The run and its workflows are provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input"),
+                        @ApiResponse(responseCode = "404", description = "Not found")
+                })
+        public ResponseEntity<String> getRun(@PathVariable("run_id") String runID) {
+                if (!RestApeUtils.isValidRunID(runID)) {
+                        return ResponseEntity.badRequest().body(invalidRunIDMsg);
+                }
+                Optional<SynthesisRun> run = runCatalog.getRun(runID);
+                if (run.isEmpty()) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
+                }
+                JSONArray workflows = new JSONArray();
+                for (Workflow workflow : runCatalog.getWorkflows(runID)) {
+                        workflows.put(workflow.toJSONObject());
+                }
+                JSONObject result = run.get().toJSONObject().put("workflows", workflows);
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result.toString());
+        }
+
+        /**
+         * List the synthesis runs in the run catalog, the most recent first.
+         * 
+         * @param page   Number of the page, starting at 0.
+         * @param size   Number of runs per page.
+         * @param domain Tool annotations of the domain to list the runs of.
+         * @return JSON object with the runs of the page under 'runs'.
+         */
+        @GetMapping("/runs")
+        @Operation(summary = "List the synthesis runs",
+                description = "List the synthesis runs in the run catalog, the most recent first. The runs are paginated, the response contains the runs of the page under 'runs', and the total number of runs and pages.",
+                tags = {"Runs"},
+                parameters = {
+                        @Parameter(name = "page", description = "Number of the page, starting at 0.", example = "0"),
+                        @Parameter(name = "size", description = "Number of runs per page (at most 100).", example = "20"),
+                        @Parameter(name = "domain", 
+                                description = "Only list the runs of the domain with the given tool annotations (as 'tool_annotations_path' in the configuration).")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The runs of the page are provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input")
+                })
+        public ResponseEntity<String> getRuns(
+                        @RequestParam(value = "page", defaultValue = "0") int page,
+                        @RequestParam(value = "size", defaultValue = "20") int size,
+                        @RequestParam(value = "domain", required = false) String domain) {
+                if (page < 0 || size < 1 || size > maxRunsPageSize) {
+                        return ResponseEntity.badRequest()
+                                        .body("The page should be at least 0 and the size between 1 and "
+                                                        + maxRunsPageSize + ".");
+                }
+                Page<SynthesisRun> runs = runCatalog.getRuns(domain, page, size);
+                JSONArray runsJson = new JSONArray();
+                runs.forEach(run -> runsJson.put(run.toJSONObject()));
+                JSONObject result = new JSONObject()
+                                .put("runs", runsJson)
+                                .put("page", page)
+                                .put("size", size)
+                                .put("total_runs", runs.getTotalElements())
+                                .put("total_pages", runs.getTotalPages());
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result.toString());
+        }
+
+        /**
+         * Find the workflows of all the runs that use the given tools and data
+         * types, the most recently synthesized first.
+         * 
+         * @param query Boolean combination of terms, e.g. 'tool:Comet AND NOT
+         *              out:format_3244'.
+         * @param page  Number of the page, starting at 0.
+         * @param size  Number of workflows per page.
+         * @return JSON object with the workflows of the page under 'workflows'.
+         */
+        @GetMapping("/workflows/search")
+        @Operation(summary = "Search the workflows by tool and data type",
+                description = "Find the workflows of all the runs that use the given tools and data types. The query combines terms of the form 'tool:<ID>', 'in:<ID>', 'out:<ID>' (the types consumed or produced by the tools, data types and formats alike) and 'type:<ID>' (either) with AND, OR, NOT and parentheses; adjacent terms are combined with AND. IDs containing spaces are quoted. The workflows are paginated, the most recently synthesized first, and the response contains the 'run_id' and 'workflow_name' of the workflows of the page under 'workflows', and the total number of matching workflows.",
+                tags = {"Runs"},
+                parameters = {
+                        @Parameter(name = "q", description = "Query.", required = true,
+                                example = "tool:Comet AND (out:format_3244 OR NOT in:format_3652)"),
+                        @Parameter(name = "page", description = "Number of the page, starting at 0.", example = "0"),
+                        @Parameter(name = "size", description = "Number of workflows per page (at most 100).", example = "20")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The workflows of the page are provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input")
+                })
+        public ResponseEntity<String> searchWorkflows(
+                        @RequestParam("q") String query,
+                        @RequestParam(value = "page", defaultValue = "0") int page,
+                        @RequestParam(value = "size", defaultValue = "20") int size) {
+                if (page < 0 || size < 1 || size > maxRunsPageSize) {
+                        return ResponseEntity.badRequest()
+                                        .body("The page should be at least 0 and the size between 1 and "
+                                                        + maxRunsPageSize + ".");
+                }
+                try {
+                        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                        .body(WorkflowIndex.get().query(query, page, size).toString());
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.badRequest().body(e.getMessage());
+                }
+        }
+
+        /**
+         * Retrieve the aggregate benchmark values of all the workflows of the run,
+         * in a columnar layout, optionally filtered, sorted and limited to the top
+         * workflows.
+         * 
+         * @param runID   ID of the corresponding synthesis run (provided under
+         *                'run_id' after the synthesis run).
+         * @param sortBy  Benchmark title (or 'score') to sort the workflows by.
+         * @param order   Sorting order, 'asc' or 'desc'.
+         * @param filter  Comma separated conditions on the desirability values.
+         * @param weights Comma separated weights of the benchmarks in the score.
+         * @param topK    Maximum number of workflows to return.
+         * @return Columnar JSON object with the benchmarks of the workflows.
+         */
+        @GetMapping("/run_benchmarks")
+        @Operation(summary = "Retrieve the benchmarks of all the workflows of a run",
+                description = "Retrieve the aggregate value and desirability of each benchmark for all the workflows of the run in a single request. The workflows are listed once under 'workflows', and each benchmark provides its 'values' and 'desirability' in the same order. The workflows can be filtered, sorted and limited by any benchmark or by the weighted desirability 'score'.",
+                tags = {"Download"},
+                parameters = {
+                        @Parameter(name = "run_id", 
+                                description = "ID of the corresponding synthesis run (provided under 'run_id' after the synthesis run).",
+                                example = "04ce2ef00c1685150252568"),
+                        @Parameter(name = "sort_by", 
+                                description = "Title of the benchmark (or 'score') whose desirability is used to sort the workflows. By default the order of the run is kept.",
+                                example = "score"),
+                        @Parameter(name = "order", 
+                                description = "Sorting order, 'asc' or 'desc'.",
+                                example = "desc"),
+                        @Parameter(name = "filter", 
+                                description = "Comma separated conditions on the desirability of the benchmarks (or 'score'), using the operators >=, <=, >, < and =.",
+                                example = "Linux>=1,score>0.5"),
+                        @Parameter(name = "weights", 
+                                description = "Comma separated weights of the benchmarks used to compute the score. By default all benchmarks are weighted equally.",
+                                example = "Linux:2,License:1"),
+                        @Parameter(name = "top_k", 
+                                description = "Maximum number of workflows to return (0 for all).",
+                                example = "10")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The benchmarks of the workflows are provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input")
+                })
+        public ResponseEntity<String> getRunBenchmarks(
+                        @RequestParam("run_id") String runID,
+                        @RequestParam(value = "sort_by", required = false) String sortBy,
+                        @RequestParam(value = "order", defaultValue = "desc") String order,
+                        @RequestParam(value = "filter", required = false) String filter,
+                        @RequestParam(value = "weights", required = false) String weights,
+                        @RequestParam(value = "top_k", defaultValue = "0") int topK) {
+                if (!RestApeUtils.isValidRunID(runID)) {
+                        return ResponseEntity.badRequest().body(invalidRunIDMsg);
+                } else if (!order.equals("asc") && !order.equals("desc")) {
+                        return ResponseEntity.badRequest().body("The order should be 'asc' or 'desc'.");
+                }
+                return RunBenchmarkIndex.query(runID, sortBy, order.equals("asc"), filter, weights, topK)
+                                .map(result -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                                .body(result.toString()))
+                                .orElseGet(() -> ResponseEntity.badRequest()
+                                                .body("No benchmarks are available for the run."));
+        }
+
         /**
          * Retrieve the CWL solution files based on the provided run ID and CWL file
          * names.
@@ -478,19 +1011,88 @@ public class RestApeController {
                         @ApiResponse(responseCode = "500", description = "Internal server error")
                 })
         public ResponseEntity<?> postZipCWLs(
-                        @RequestBody(required = true) CWLZip cwlZipInfo) {
+                        @RequestBody(required = true) CWLZip cwlZipInfo,
+                        @RequestHeader HttpHeaders requestHeaders) {
+                return zipCWLs(cwlZipInfo, requestHeaders);
+        }
+
+        /**
+         * Retrieve the CWL solution files based on the provided run ID and CWL file
+         * names. Equivalent to the POST request, but the response can be cached.
+         * 
+         * @param runID     ID of the synthesis run.
+         * @param workflows CWL file names.
+         * @return Zip of the CWL files representing the workflows.
+         */
+        @GetMapping("/cwl_zip")
+        @Operation(summary = "Retrieve the zip of cwl files.",
+                description = "Retrieve the zip comprising the CWL files of the given run. Equivalent to the POST request, but the zip is specified using query parameters, which allows the response to be cached. The zip is identified by an ETag, and supports conditional (If-None-Match) and partial (Range) requests.",
+                tags = {"Download"},
+                parameters = {
+                        @Parameter(name = "run_id", description = "ID of the synthesis run.", required = true),
+                        @Parameter(name = "workflows", description = "Comma-separated list of CWL file names.", 
+                                example = "candidate_workflow_1.cwl,candidate_workflow_2.cwl", required = true)
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. A zip file comprising specified CWL files is returned.",
+                                content = @Content(mediaType = "application/zip")),
+                        @ApiResponse(responseCode = "206", description = "Part of the zip file is returned."),
+                        @ApiResponse(responseCode = "304", description = "The zip file did not change."),
+                        @ApiResponse(responseCode = "400", description = "Invalid input")
+                })
+        public ResponseEntity<?> getZipCWLs(
+                        @RequestParam("run_id") String runID,
+                        @RequestParam("workflows") List<String> workflows,
+                        @RequestHeader HttpHeaders requestHeaders) {
                 try {
-                        Path zipPath = IOUtils.zipFilesForLocalExecution(cwlZipInfo);
+                        CWLZip cwlZipInfo = new CWLZip();
+                        cwlZipInfo.setRunID(runID);
+                        cwlZipInfo.setWorkflows(workflows);
+                        return zipCWLs(cwlZipInfo, requestHeaders);
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.badRequest().body(e.getMessage());
+                }
+        }
 
-                        Resource zipResource = new UrlResource(zipPath.toUri());
-                        String zipContentType = Files.probeContentType(zipPath);
-                        return ResponseEntity.ok()
-                                        .contentType(MediaType.parseMediaType(
-                                                        zipContentType != null ? zipContentType : "application/zip"))
+        /**
+         * Serve the zip from the {@link ZipCache}, or stream it while it is being
+         * created and added to the cache.
+         */
+        private ResponseEntity<?> zipCWLs(CWLZip cwlZipInfo, HttpHeaders requestHeaders) {
+                if (cwlZipInfo.getRunID() != null && !runCatalog.isKnownRun(cwlZipInfo.getRunID())) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(unknownRunMsg);
+                }
+                try {
+                        List<Path> zipFiles = IOUtils.getZipFiles(cwlZipInfo);
+                        String key = ZipCache.getKey(cwlZipInfo.getRunID(), cwlZipInfo.getWorkflows(),
+                                        IOUtils.getReadme());
+                        String eTag = "\"" + key + "\"";
+                        if (requestHeaders.getIfNoneMatch().contains(eTag)) {
+                                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                        }
+
+                        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                                        .contentType(MediaType.parseMediaType("application/zip"))
+                                        .eTag(eTag)
                                         .header(HttpHeaders.CONTENT_DISPOSITION,
-                                                        "attachment; filename=\"" + zipPath.getFileName().toString()
-                                                                        + "\"")
-                                        .body(zipResource);
+                                                        "attachment; filename=\"workflows.zip\"");
+                        ZipCache.ZipWriter zipWriter = out -> IOUtils.writeZipForLocalExecution(zipFiles, out);
+                        Optional<ZipCache.Lease> cachedZip = ZipCache.get(key);
+                        if (cachedZip.isEmpty() && requestHeaders.getRange().isEmpty()) {
+                                // the zip is written directly to the response, while it is being created
+                                StreamingResponseBody zipStream = out -> ZipCache.writeThrough(key, out, zipWriter);
+                                return response.body(zipStream);
+                        }
+                        ZipCache.Lease lease = cachedZip.isPresent() ? cachedZip.get() : ZipCache.build(key, zipWriter);
+                        // the zip is not evicted until the response was written
+                        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                                        "zipLease-" + key, lease::close, RequestAttributes.SCOPE_REQUEST);
+                        // ranges (and the Accept-Ranges header) are handled by Spring for file resources
+                        return response.body(new FileSystemResource(lease.getPath()));
+                } catch (NoSuchFileException e) {
+                        return ResponseEntity.badRequest()
+                                        .body("The file " + e.getMessage() + " could not be found.");
                 } catch (IOException e) {
                         return ResponseEntity.badRequest()
                                         .body("An error occurred while creating the zip file.");
@@ -501,11 +1103,112 @@ public class RestApeController {
                 }
         }
 
+        /**
+         * Import a bio.tools or OpenEBench bulk dump into the local tool index, which
+         * allows the design-time benchmarks to be computed without network calls.
+         * The import is incremental, i.e., only new and changed entries are written.
+         * The dump is read from the request body while it is imported, so it is
+         * neither buffered in memory nor on disk.
+         * 
+         * @param source  Source of the dump, 'biotools' (array of tool annotations)
+         *                or 'openebench' (array of tool metrics).
+         * @param request Request whose body is the dump.
+         * @return Summary of the import.
+         * @throws IOException if the dump cannot be read or the index cannot be
+         *                     written.
+         */
+        @PostMapping(value = "/tool_index/import", consumes = { MediaType.APPLICATION_JSON_VALUE,
+                        MediaType.APPLICATION_OCTET_STREAM_VALUE })
+        @Operation(summary = "Import a tool metadata dump into the local index",
+                description = "Import a bio.tools JSON dump or an OpenEBench metrics dump, provided as the request body, into the local tool index. Indexed tools are benchmarked without contacting bio.tools or OpenEBench. The import is incremental. The endpoint is only available when TOOL_INDEX_IMPORT_ENABLED is set to true.",
+                tags = {"Tool metadata"},
+                parameters = {
+                        @Parameter(name = "source", 
+                                description = "Source of the dump, 'biotools' or 'openebench'.",
+                                example = "biotools")
+                },
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The number of added, updated and unchanged entries is provided.",
+                                content = @Content(mediaType = "application/json")),
+                        @ApiResponse(responseCode = "400", description = "Invalid input"),
+                        @ApiResponse(responseCode = "403", description = "Importing is not enabled")
+                })
+        public ResponseEntity<String> importToolIndex(
+                        @RequestParam("source") String source,
+                        HttpServletRequest request)
+                        throws IOException {
+                if (!RestApeSettings.getBoolean("TOOL_INDEX_IMPORT_ENABLED", false)) {
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                                        .body("Importing into the local tool index is not enabled.");
+                } else if (!source.equals("biotools") && !source.equals("openebench")) {
+                        return ResponseEntity.badRequest().body("The source should be 'biotools' or 'openebench'.");
+                }
+                LocalToolIndex localIndex = ToolMetadataSources.getLocalIndex();
+                JSONObject result = new JSONObject();
+                try (InputStream dump = request.getInputStream()) {
+                        if (source.equals("biotools")) {
+                                result.put("biotools", localIndex.importBioToolsDump(dump).toJSON());
+                        } else {
+                                result.put("openebench", localIndex.importOpenEBenchDump(dump).toJSON());
+                        }
+                }
+                ToolMetadataSources.invalidateCache();
+                result.put("index", localIndex.getStatus());
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result.toString());
+        }
+
+        /**
+         * Retrieve the number of entries in the local tool index.
+         * 
+         * @return Number of bio.tools and OpenEBench entries in the index.
+         */
+        @GetMapping("/tool_index/status")
+        @Operation(summary = "Retrieve the status of the local tool index",
+                description = "Retrieve the number of bio.tools and OpenEBench entries in the local tool index.",
+                tags = {"Tool metadata"},
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The status of the index is provided.",
+                                content = @Content(mediaType = "application/json"))
+                })
+        public ResponseEntity<String> getToolIndexStatus() {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                                .body(ToolMetadataSources.getLocalIndex().getStatus().toString());
+        }
+
+        /**
+         * Retrieve the progress and coverage of the tool metadata prefetching.
+         * 
+         * @return Progress of the prefetching and the share of tools with cached
+         *         metadata, per domain.
+         */
+        @GetMapping("/tool_metadata/prefetch_status")
+        @Operation(summary = "Retrieve the status of the tool metadata prefetching",
+                description = "Retrieve, for each loaded domain, how many of its tools were prefetched and how many have cached metadata (e.g., \"92% of tools have cached metadata\"). Prefetching is only performed when TOOL_METADATA_PREFETCH is set to true.",
+                tags = {"Tool metadata"},
+                responses = {
+                        @ApiResponse(responseCode = "200", 
+                                description = "Successful operation. The status of the prefetching is provided.",
+                                content = @Content(mediaType = "application/json"))
+                })
+        public ResponseEntity<String> getToolMetadataPrefetchStatus() {
+                JSONObject status = new JSONObject();
+                status.put("enabled", ToolMetadataPrefetcher.isEnabled());
+                status.put("domains", ToolMetadataPrefetcher.getStatus());
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(status.toString());
+        }
+
         @ExceptionHandler(IllegalArgumentException.class)
         public ResponseEntity<String> handleException(IllegalArgumentException e) {
                 return ResponseEntity.badRequest().body(e.getMessage());
         }
 
+        @ExceptionHandler(DomainNotFoundException.class)
+        public ResponseEntity<String> handleException(DomainNotFoundException e) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+
         @ExceptionHandler(OWLOntologyCreationException.class)
         public ResponseEntity<String> handleException(OWLOntologyCreationException e) {
                 return ResponseEntity.badRequest().body(e.getMessage());
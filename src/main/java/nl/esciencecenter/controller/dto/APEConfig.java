@@ -68,6 +68,28 @@ public class APEConfig {
     @JsonProperty("use_all_generated_data")
     private ConfigEnum useAllGeneratedData = ConfigEnum.ONE;
 
+    @JsonProperty("require")
+    private Requirements require;
+
+    /**
+     * Represents hard requirements on the tools used in the workflows. The tools
+     * that do not satisfy them are removed from the domain before the synthesis.
+     */
+    public static class Requirements {
+        /**
+         * Operating system that all the tools should support ("Linux", "Mac" or
+         * "Windows").
+         */
+        @JsonProperty("os")
+        public String os;
+
+        /**
+         * Minimal license of all the tools ("osi", "open" or "known").
+         */
+        @JsonProperty("license")
+        public String license;
+    }
+
     /**
      * Represents the solution length configuration with minimum and maximum values.
      */
@@ -0,0 +1,114 @@
+package nl.esciencecenter.controller.dto;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import nl.esciencecenter.restape.RestApeUtils;
+
+/**
+ * The {@code ArtifactBatch} class represents the structure of the request to
+ * retrieve several files of a run at once. It contains the runID, the names of
+ * the workflows (without extension) and the formats to retrieve for each of
+ * them.
+ */
+@Getter
+@NoArgsConstructor
+public class ArtifactBatch {
+
+    /**
+     * Directory of the run that holds the files of each format.
+     */
+    private static final Map<String, String> FORMAT_DIRS = Map.of(
+            "png", "Figures",
+            "svg", "Figures",
+            "cwl", "CWL",
+            "json", "CWL");
+
+    @JsonProperty("run_id")
+    private String runID;
+    private List<String> workflows;
+    private List<String> formats;
+
+    /**
+     * Set the runID in case it is valid, i.e., corresponds to runID formatting defined within RESTful APE. If the runID is not valid, an exception is thrown.
+     *
+     * @throws IllegalArgumentException If the structure is not valid.
+     */
+    public void setRunID(String runID) throws IllegalArgumentException {
+        if (!RestApeUtils.isValidRunID(runID)) {
+            throw new IllegalArgumentException("The runID format '" + runID + "' is invalid.");
+        }
+        this.runID = runID;
+    }
+
+    /**
+     * Set the workflow names in case they are valid, i.e., correspond to the file name formatting defined within APE, without extension.
+     * If the names are not valid, an exception is thrown.
+     *
+     * @throws IllegalArgumentException If the structure is not valid.
+     */
+    public void setWorkflows(List<String> workflows) throws IllegalArgumentException {
+        if (workflows == null || !workflows.stream().allMatch(RestApeUtils::isValidAPEFileNameNoExtension)) {
+            throw new IllegalArgumentException("The workflow name formats (under workflows) are invalid.");
+        }
+        this.workflows = workflows;
+    }
+
+    /**
+     * Set the formats of the files, i.e., 'png', 'svg' (images), 'cwl' (CWL files) or 'json' (design-time benchmarks).
+     * If a format is not supported, an exception is thrown.
+     *
+     * @throws IllegalArgumentException If a format is not valid.
+     */
+    public void setFormats(List<String> formats) throws IllegalArgumentException {
+        if (formats == null || formats.isEmpty()) {
+            throw new IllegalArgumentException("At least one format (under formats) is required.");
+        }
+        for (String format : formats) {
+            if (!FORMAT_DIRS.containsKey(format)) {
+                throw new IllegalArgumentException("The format '" + format + "' is not valid or supported.");
+            }
+        }
+        this.formats = formats;
+    }
+
+    /**
+     * Get the number of requested files, i.e., the number of workflows times the
+     * number of formats.
+     *
+     * @return Number of requested files.
+     */
+    public long getFileCount() {
+        requireFields();
+        return (long) workflows.size() * formats.size();
+    }
+
+    /**
+     * Get the paths to the requested files, in the order of the workflows and,
+     * per workflow, in the order of the formats.
+     *
+     * @return List of paths to the files.
+     */
+    public List<Path> getPaths() {
+        requireFields();
+        List<Path> paths = new ArrayList<>();
+        for (String workflow : workflows) {
+            for (String format : formats) {
+                paths.add(RestApeUtils.calculatePath(runID, FORMAT_DIRS.get(format), workflow + "." + format));
+            }
+        }
+        return paths;
+    }
+
+    private void requireFields() {
+        if (runID == null || workflows == null || formats == null) {
+            throw new IllegalArgumentException("The fields 'run_id', 'workflows' and 'formats' are required.");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package nl.esciencecenter.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import nl.esciencecenter.models.Domain;
+
+/**
+ * The {@code DomainInfo} class represents the structure of the request to
+ * register or update a domain.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class DomainInfo {
+    @JsonProperty("domain_name")
+    private String domainName;
+    @JsonProperty("config_path")
+    private String configPath;
+    @JsonProperty("cache_ttl_seconds")
+    private Integer cacheTtlSeconds;
+    @JsonProperty("warm_up")
+    private boolean warmUp;
+
+    /**
+     * Copy the information into the domain.
+     *
+     * @param domain - domain to update
+     * @return The updated domain.
+     */
+    public Domain applyTo(Domain domain) {
+        domain.setDomainName(domainName);
+        domain.setDomainConfigURL(configPath);
+        domain.setCacheTtlSeconds(cacheTtlSeconds);
+        domain.setWarmUp(warmUp);
+        return domain;
+    }
+}
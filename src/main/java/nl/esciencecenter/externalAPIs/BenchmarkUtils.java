@@ -33,22 +33,33 @@ public class BenchmarkUtils {
             String fieldName) {
         List<WorkflowStepBenchmark> biotoolsEntries = new ArrayList<>();
 
-        biotoolsAnnotations.stream().forEach(toolAnnot -> {
-            WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
-            biotoolsEntryBenchmark.setDescription(toolAnnot.getString(ToolBenchmarkingAPIs.restAPEtoolID));
-            if (!BenchmarkUtils.fieldInJson(toolAnnot, fieldName)) {
-                biotoolsEntryBenchmark.setDesirabilityValue(0);
-                biotoolsEntryBenchmark.setValue("not available");
-            } else {
-                biotoolsEntryBenchmark.setDesirabilityValue(1);
-                biotoolsEntryBenchmark.setValue("available");
-            }
-            biotoolsEntries.add(biotoolsEntryBenchmark);
-        });
+        biotoolsAnnotations.stream()
+                .forEach(toolAnnot -> biotoolsEntries.add(benchmarkToolFieldAvailability(toolAnnot, fieldName)));
 
         return biotoolsEntries;
     }
 
+    /**
+     * Benchmark whether the tool annotation contains the specified field or not.
+     * 
+     * @param toolAnnot - JSONObject containing the bio.tools annotation of the tool.
+     * @param fieldName - Name of the field to be checked.
+     * @return {@link WorkflowStepBenchmark} object containing the benchmark value
+     *         and desirability value for the tool.
+     */
+    public static WorkflowStepBenchmark benchmarkToolFieldAvailability(JSONObject toolAnnot, String fieldName) {
+        WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
+        biotoolsEntryBenchmark.setDescription(toolAnnot.getString(ToolBenchmarkingAPIs.restAPEtoolID));
+        if (!BenchmarkUtils.fieldInJson(toolAnnot, fieldName)) {
+            biotoolsEntryBenchmark.setDesirabilityValue(0);
+            biotoolsEntryBenchmark.setValue("not available");
+        } else {
+            biotoolsEntryBenchmark.setDesirabilityValue(1);
+            biotoolsEntryBenchmark.setValue("available");
+        }
+        return biotoolsEntryBenchmark;
+    }
+
     /**
      * Benchmark for each JSONObject in the list whether it contains the expected
      * value for specified field or not. In practice it is used to check whether a
@@ -68,22 +79,37 @@ public class BenchmarkUtils {
             String expectedFieldValue) {
         List<WorkflowStepBenchmark> biotoolsEntries = new ArrayList<>();
 
-        biotoolsAnnotations.stream().forEach(toolAnnot -> {
-            WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
-            biotoolsEntryBenchmark.setDescription(toolAnnot.getString(ToolBenchmarkingAPIs.restAPEtoolID));
-            if (!BenchmarkUtils.fieldValueInJson(toolAnnot, fieldName, expectedFieldValue)) {
-                biotoolsEntryBenchmark.setDesirabilityValue(0);
-                biotoolsEntryBenchmark.setValue("not supported");
-            } else {
-                biotoolsEntryBenchmark.setDesirabilityValue(1);
-                biotoolsEntryBenchmark.setValue("supported");
-            }
-            biotoolsEntries.add(biotoolsEntryBenchmark);
-        });
+        biotoolsAnnotations.stream().forEach(
+                toolAnnot -> biotoolsEntries.add(benchmarkToolFieldValue(toolAnnot, fieldName, expectedFieldValue)));
 
         return biotoolsEntries;
     }
 
+    /**
+     * Benchmark whether the tool annotation contains the expected value for the
+     * specified field or not.
+     * 
+     * @param toolAnnot          - JSONObject containing the bio.tools annotation
+     *                           of the tool.
+     * @param fieldName          - Name of the field to be checked.
+     * @param expectedFieldValue - Value of the field that is expected.
+     * @return {@link WorkflowStepBenchmark} object containing the benchmark value
+     *         and desirability value for the tool.
+     */
+    public static WorkflowStepBenchmark benchmarkToolFieldValue(JSONObject toolAnnot, String fieldName,
+            String expectedFieldValue) {
+        WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
+        biotoolsEntryBenchmark.setDescription(toolAnnot.getString(ToolBenchmarkingAPIs.restAPEtoolID));
+        if (!BenchmarkUtils.fieldValueInJson(toolAnnot, fieldName, expectedFieldValue)) {
+            biotoolsEntryBenchmark.setDesirabilityValue(0);
+            biotoolsEntryBenchmark.setValue("not supported");
+        } else {
+            biotoolsEntryBenchmark.setDesirabilityValue(1);
+            biotoolsEntryBenchmark.setValue("supported");
+        }
+        return biotoolsEntryBenchmark;
+    }
+
     /**
      * Check whether the given field is in the given JSON object.
      * 
@@ -116,7 +142,7 @@ public class BenchmarkUtils {
         }
         try {
             JSONArray fieldValues = jsonObject.getJSONArray(fieldName);
-            for (int i = 0; i < jsonObject.length(); i++) {
+            for (int i = 0; i < fieldValues.length(); i++) {
                 if (fieldValues.getString(i).equals(expectedFieldValue)) {
                     return true;
                 }
@@ -159,4 +185,15 @@ public class BenchmarkUtils {
     static String ratioString(int count, int length) {
         return count + "/" + length;
     }
+
+    /**
+     * Count the workflow steps (tools) that satisfy the benchmark, i.e., that have
+     * a positive desirability value.
+     * 
+     * @param steps - benchmarks of the workflow steps
+     * @return Number of steps that satisfy the benchmark.
+     */
+    static int countDesirableSteps(List<WorkflowStepBenchmark> steps) {
+        return (int) steps.stream().filter(tool -> tool.getDesirabilityValue() > 0).count();
+    }
 }
@@ -82,13 +82,46 @@ public class BioToolsBenchmarkProcessor {
      */
     public static Benchmark benchmarkOSSupport(List<JSONObject> biotoolsAnnotations,
             BenchmarkBase benchmarkInfo) {
+        List<WorkflowStepBenchmark> steps = new ArrayList<>();
+        biotoolsAnnotations.forEach(toolAnnotation -> steps.add(benchmarkToolOSSupport(toolAnnotation, benchmarkInfo)));
+
+        return aggregateOSSupport(steps, benchmarkInfo);
+    }
+
+    /**
+     * Benchmark whether a single tool supports the specified OS. The result only
+     * depends on the tool annotation, which allows it to be reused across
+     * workflows.
+     * 
+     * @param toolAnnotation - JSONObject containing the bio.tools annotation of the
+     *                       tool according to biotoolsSchema.
+     * @param benchmarkInfo  - Information about the OS benchmark that is being
+     *                       computed.
+     * @return {@link WorkflowStepBenchmark} object containing the benchmark value
+     *         and desirability value for the tool.
+     */
+    public static WorkflowStepBenchmark benchmarkToolOSSupport(JSONObject toolAnnotation,
+            BenchmarkBase benchmarkInfo) {
+        return BenchmarkUtils.benchmarkToolFieldValue(toolAnnotation, benchmarkInfo.getExpectedField(),
+                benchmarkInfo.getExpectedValue());
+    }
+
+    /**
+     * Aggregate the OS support benchmarks of the workflow steps into the benchmark
+     * of the workflow.
+     * 
+     * @param steps         - OS support benchmarks of each tool in the workflow.
+     * @param benchmarkInfo - Information about the OS benchmark that is being
+     *                      computed.
+     * @return Benchmark object ({@link Benchmark}) containing the benchmark
+     *         value and desirability value.
+     */
+    public static Benchmark aggregateOSSupport(List<WorkflowStepBenchmark> steps, BenchmarkBase benchmarkInfo) {
         Benchmark benchmark = new Benchmark(benchmarkInfo);
-        int workflowLength = biotoolsAnnotations.size();
+        int workflowLength = steps.size();
 
-        benchmark.setWorkflow(BenchmarkUtils.benchmarkFieldValue(biotoolsAnnotations,
-                benchmarkInfo.getExpectedField(),
-                benchmarkInfo.getExpectedValue()));
-        int count = (int) benchmark.getWorkflow().stream().filter(tool -> tool.getDesirabilityValue() > 0).count();
+        benchmark.setWorkflow(steps);
+        int count = BenchmarkUtils.countDesirableSteps(steps);
 
         benchmark.setDesirabilityValue(BenchmarkUtils.normalDesirabilityDistribution(count, workflowLength));
 
@@ -0,0 +1,96 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.esciencecenter.models.benchmarks.WorkflowStepBenchmark;
+import nl.esciencecenter.restape.BenchmarkProvider;
+import nl.esciencecenter.restape.ToolBenchmarkCache;
+import nl.esciencecenter.restape.ToolBenchmarkingAPIs;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+
+/**
+ * Class {@link BioToolsBenchmarkProvider} provides the benchmarks based on the
+ * bio.tools annotations of the tools, i.e., which operating systems are
+ * supported by the tools in the workflow.
+ */
+@Slf4j
+@Component
+@Order(1)
+public class BioToolsBenchmarkProvider implements BenchmarkProvider {
+
+    private static final String unitOS = "supported / not supported";
+    private static final List<BenchmarkBase> osBenchmarks = List.of(
+            new BenchmarkBase("Linux", "OS", "Linux (OS) supported tools", unitOS, "operatingSystem", "Linux"),
+            new BenchmarkBase("Mac OS", "OS", "Mac OS supported tools", unitOS, "operatingSystem", "Mac"),
+            new BenchmarkBase("Windows", "OS", "Windows (OS) supported tools", unitOS, "operatingSystem",
+                    "Windows"));
+
+    @Override
+    public String getName() {
+        return "bio.tools";
+    }
+
+    @Override
+    public List<BenchmarkBase> getBenchmarkInfo() {
+        return osBenchmarks;
+    }
+
+    @Override
+    public List<Benchmark> computeBenchmarks(SolutionWorkflow workflow) {
+        List<ToolBenchmarkCache.ToolBenchmarks> toolBenchmarks = new ArrayList<>();
+        workflow.getModuleNodes().forEach(
+                toolNode -> toolBenchmarks.add(getToolBenchmarks(toolNode.getUsedModule().getPredicateLabel())));
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (BenchmarkBase osBenchmark : osBenchmarks) {
+            benchmarks.add(BioToolsBenchmarkProcessor.aggregateOSSupport(
+                    ToolBenchmarkCache.getSteps(toolBenchmarks, osBenchmark), osBenchmark));
+        }
+        return ToolBenchmarkCache.markStale(benchmarks);
+    }
+
+    /**
+     * Get the benchmarks of the tool, computed only once per version of its
+     * bio.tools annotation. The annotation is only parsed if the benchmarks are
+     * computed.
+     */
+    private ToolBenchmarkCache.ToolBenchmarks getToolBenchmarks(String toolID) {
+        String metadataVersion;
+        try {
+            metadataVersion = ToolMetadataSources.getBioToolsAnnotationVersion(toolID);
+        } catch (IOException e) {
+            metadataVersion = ToolBenchmarkCache.UNAVAILABLE;
+        }
+        return ToolBenchmarkCache.getOrCompute(getName() + ":" + toolID, metadataVersion, () -> {
+            JSONObject biotoolsAnnotation = new JSONObject();
+            try {
+                biotoolsAnnotation = ToolMetadataSources.fetchBioToolsAnnotation(toolID);
+            } catch (JSONException | IOException e) {
+                log.warn(e.getMessage());
+            }
+            biotoolsAnnotation.put(ToolBenchmarkingAPIs.restAPEtoolID, toolID);
+
+            Map<String, WorkflowStepBenchmark> steps = new LinkedHashMap<>();
+            boolean stale = ExternalServiceClient.isStale(biotoolsAnnotation);
+            for (BenchmarkBase osBenchmark : osBenchmarks) {
+                WorkflowStepBenchmark step = BioToolsBenchmarkProcessor.benchmarkToolOSSupport(biotoolsAnnotation,
+                        osBenchmark);
+                step.setStale(stale);
+                steps.put(osBenchmark.getBenchmarkTitle(), step);
+            }
+            return steps;
+        });
+    }
+}
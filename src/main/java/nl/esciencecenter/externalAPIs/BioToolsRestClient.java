@@ -8,8 +8,7 @@ import org.json.JSONObject;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Request;
-import okhttp3.Response;
+import nl.esciencecenter.restape.RestApeSettings;
 
 /**
  * The {@code BioToolsRestClient} class provides methods to retrieve and process tool metrics
@@ -19,12 +18,19 @@ import okhttp3.Response;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class BioToolsRestClient {
 
-    private static final okhttp3.OkHttpClient client = new okhttp3.OkHttpClient();
+    private static final ExternalServiceClient bioTools = new ExternalServiceClient("bio.tools");
+    /**
+     * Default base URL of the bio.tools API, can be changed using the
+     * {@code BIOTOOLS_BASE_URL} setting (e.g., to use a mirror or a stub server).
+     */
+    private static final String DEFAULT_BASE_URL = "https://bio.tools/api";
  
     /**
     * Retrieve a JSON object corresponding to the tool from bio.tools for the given
     * tool ID.
-    * The method uses the bio.tools API to fetch the annotations.
+    * The method uses the bio.tools API to fetch the annotations. In case bio.tools
+    * is not available, the last retrieved annotation is returned, marked as stale
+    * (see {@link ExternalServiceClient#isStale(JSONObject)}).
     * 
     * @param toolID - tool ID, not case sensitive. IDs are transformed into lower
     *               case as used in bio.tools, e.g.,
@@ -35,19 +41,11 @@ public class BioToolsRestClient {
     *                       parsed.
     */
     public static JSONObject fetchToolFromBioTools(String toolID) throws JSONException, IOException {
-       JSONObject bioToolAnnotation;
-       toolID = toolID.toLowerCase();
-       String urlToBioTools = "https://bio.tools/api/" + toolID +
+       String biotoolsID = toolID.toLowerCase();
+       String urlToBioTools = RestApeSettings.get("BIOTOOLS_BASE_URL", DEFAULT_BASE_URL) + "/" + biotoolsID +
              "?format=json";
-       Request request = new Request.Builder().url(urlToBioTools).build();
-       Response response = client.newCall(request).execute();
-
-       if (!response.isSuccessful()) {
-          throw new IOException("Tool " + toolID + " not found in bio.tools.");
-       }
-
-       bioToolAnnotation = new JSONObject(response.body().string());
-       response.close();
+       JSONObject bioToolAnnotation = bioTools.fetchWithFallback(biotoolsID,
+             () -> new JSONObject(bioTools.get(urlToBioTools)));
 
        log.debug("The list of tools successfully fetched from bio.tools.");
        return bioToolAnnotation;
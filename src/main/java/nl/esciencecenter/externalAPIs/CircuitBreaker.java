@@ -0,0 +1,125 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.util.function.LongSupplier;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Class {@link CircuitBreaker} protects the benchmarking from external services
+ * that are slow or unavailable. After {@code failureThreshold} consecutive
+ * failures the circuit is opened and requests are rejected immediately. Once
+ * {@code openDurationMs} has passed, a single trial request is allowed
+ * (half-open state); its outcome decides whether the circuit is closed again.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    /**
+     * State of the circuit.
+     */
+    public enum State {
+        /** Requests are sent to the service. */
+        CLOSED,
+        /** Requests are rejected without contacting the service. */
+        OPEN,
+        /** A single trial request is sent to the service. */
+        HALF_OPEN
+    }
+
+    @Getter
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean trialInProgress = false;
+
+    /**
+     * Create a circuit breaker for the given service.
+     * 
+     * @param name             - name of the protected service
+     * @param failureThreshold - number of consecutive failures that opens the
+     *                         circuit
+     * @param openDurationMs   - time (in milliseconds) the circuit stays open
+     *                         before a trial request is allowed
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+        this(name, failureThreshold, openDurationMs, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openDurationMs, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMs = openDurationMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Check whether a request to the service is allowed.
+     * 
+     * @return true if the request can be sent, false if the circuit is open.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openDurationMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInProgress = true;
+                return true;
+            case HALF_OPEN:
+                if (trialInProgress) {
+                    return false;
+                }
+                trialInProgress = true;
+                return true;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Record that the service responded. Closes the circuit.
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Service {} is available again, closing the circuit.", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    /**
+     * Record that the request failed or timed out. Opens the circuit if the
+     * failure threshold is reached or the trial request failed.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInProgress = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Service {} failed {} time(s) in a row, opening the circuit for {} ms.", name,
+                        consecutiveFailures, openDurationMs);
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Get the current state of the circuit.
+     * 
+     * @return State of the circuit.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+}
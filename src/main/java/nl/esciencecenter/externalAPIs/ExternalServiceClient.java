@@ -0,0 +1,341 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONObject;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.restape.RestApeSettings;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * The {@code ExternalServiceClient} class is used to send requests to an
+ * external metadata service (bio.tools, OpenEBench). Each service has its own
+ * HTTP client with explicit timeouts and its own {@link CircuitBreaker}. The
+ * last retrieved value for each tool is kept, so that it can be used (marked as
+ * stale) when the service is not available. Only a 404 or 410 response means
+ * that the resource does not exist, other client errors (e.g., 429 when the
+ * service throttles the requests, or 401/403) count as failures of the
+ * service.<br>
+ * <br>
+ * The latency of the requests is tracked per host, and requests that take
+ * longer than usual are hedged (see {@link HedgingPolicy}). The latencies are
+ * published as the {@code restape.external.request} timer, and the number of
+ * sent, winning and throttled hedged requests as the
+ * {@code restape.external.hedge} counter.
+ */
+@Slf4j
+public class ExternalServiceClient {
+
+    /**
+     * Field added to the JSON objects that were served from the last known values
+     * instead of the external service.
+     */
+    public static final String STALE_FIELD = "restAPEstale";
+
+    private static final long CONNECT_TIMEOUT_MS = RestApeSettings.getLong("EXTERNAL_CONNECT_TIMEOUT_MS", 2000);
+    private static final long READ_TIMEOUT_MS = RestApeSettings.getLong("EXTERNAL_READ_TIMEOUT_MS", 5000);
+    private static final long CALL_TIMEOUT_MS = RestApeSettings.getLong("EXTERNAL_CALL_TIMEOUT_MS", 8000);
+    private static final int CIRCUIT_FAILURE_THRESHOLD = RestApeSettings.getInt("CIRCUIT_FAILURE_THRESHOLD", 5);
+    private static final long CIRCUIT_OPEN_MS = RestApeSettings.getLong("CIRCUIT_OPEN_MS", 30000);
+    private static final int MAX_PARALLEL_REQUESTS = 64;
+    private static final int LAST_KNOWN_MAX_ENTRIES = RestApeSettings.getInt("EXTERNAL_LAST_KNOWN_MAX_ENTRIES",
+            10000);
+
+    @Getter
+    private final String serviceName;
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+    private final OkHttpClient httpClient;
+    private final HedgingPolicy hedgingPolicy = new HedgingPolicy();
+    /**
+     * Last retrieved value per key, evicted in least recently used order.
+     */
+    private final Map<String, JSONObject> lastKnownValues = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JSONObject> eldest) {
+            return size() > LAST_KNOWN_MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Create a client for the given external service.
+     * 
+     * @param serviceName - name of the service, used in logs and messages
+     */
+    public ExternalServiceClient(String serviceName) {
+        this.serviceName = serviceName;
+        this.circuitBreaker = new CircuitBreaker(serviceName, CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MS);
+        // requests are executed asynchronously, the dispatcher should not limit the parallel benchmarking
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_PARALLEL_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_PARALLEL_REQUESTS);
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .callTimeout(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Send a GET request to the service and return the response body.
+     * 
+     * @param url - URL of the request
+     * @return Body of the response.
+     * @throws ResourceNotFoundException   In case the service responded that the
+     *                                     resource does not exist.
+     * @throws ServiceUnavailableException In case the circuit of the service is
+     *                                     open.
+     * @throws IOException                 In case the request failed or timed
+     *                                     out.
+     */
+    public String get(String url) throws IOException {
+        if (!circuitBreaker.allowRequest()) {
+            throw new ServiceUnavailableException("Service " + serviceName + " is unavailable, request skipped.");
+        }
+        boolean available = false;
+        try {
+            Request request = new Request.Builder().url(url).build();
+            HttpResult response = execute(request);
+            if (response.code == 404 || response.code == 410) {
+                available = true;
+                throw new ResourceNotFoundException(
+                        "Resource " + url + " not found in " + serviceName + " (HTTP " + response.code + ").");
+            }
+            if (response.code < 200 || response.code >= 300 || response.body == null) {
+                throw new IOException("Unexpected response from " + serviceName + " (HTTP " + response.code + ").");
+            }
+            available = true;
+            return response.body;
+        } finally {
+            // every outcome is reported, otherwise a failed trial request keeps the circuit half-open
+            if (available) {
+                circuitBreaker.recordSuccess();
+            } else {
+                circuitBreaker.recordFailure();
+            }
+        }
+    }
+
+    /**
+     * Execute the request. If it takes longer than the 95th percentile of the
+     * recent requests to the same host, a hedged duplicate is sent (see
+     * {@link HedgingPolicy}). The first successful response is used and the other
+     * request is cancelled. A server error is only used if the other request
+     * failed as well.
+     */
+    private HttpResult execute(Request request) throws IOException {
+        String host = request.url().host();
+        long hedgeDelayMs = hedgingPolicy.onRequest(host);
+        CompletableFuture<HttpResult> firstResponse = new CompletableFuture<>();
+        AtomicInteger pendingCalls = new AtomicInteger(1);
+        AtomicReference<HttpResult> serverError = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        Call primary = httpClient.newCall(request);
+        primary.enqueue(new FirstResponseCallback(host, start, false, firstResponse, pendingCalls, serverError));
+        Call hedge = null;
+        try {
+            HttpResult result;
+            if (hedgeDelayMs < 0) {
+                result = firstResponse.get();
+            } else {
+                try {
+                    result = firstResponse.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (hedgingPolicy.tryHedge(host)) {
+                        hedgeCounter(host, "sent").increment();
+                        pendingCalls.incrementAndGet();
+                        hedge = httpClient.newCall(request);
+                        hedge.enqueue(new FirstResponseCallback(host, System.nanoTime(), true, firstResponse,
+                                pendingCalls, serverError));
+                    } else {
+                        hedgeCounter(host, "throttled").increment();
+                    }
+                    result = firstResponse.get();
+                }
+            }
+            if (result.hedged) {
+                hedgeCounter(host, "won").increment();
+            }
+            Timer.builder("restape.external.request").tags("host", host, "hedged", String.valueOf(hedge != null))
+                    .publishPercentiles(0.5, 0.95, 0.99).register(Metrics.globalRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request to " + serviceName + " was interrupted.");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            // the losing request is not needed anymore
+            if (!primary.isCanceled()) {
+                primary.cancel();
+            }
+            if (hedge != null) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    private static Counter hedgeCounter(String host, String result) {
+        return Metrics.counter("restape.external.hedge", "host", host, "result", result);
+    }
+
+    /**
+     * Retrieve the value for the given key using the provided fetcher. The
+     * retrieved value is remembered, and returned (marked with
+     * {@link #STALE_FIELD}) in case the service cannot be reached later on.
+     * 
+     * @param key     - key of the value, e.g., the bio.tools ID of the tool
+     * @param fetcher - retrieves the value from the service
+     * @return The retrieved value, or the last known value in case the service
+     *         is not available.
+     * @throws IOException In case the value could not be retrieved and no value is
+     *                     known.
+     */
+    public JSONObject fetchWithFallback(String key, IOSupplier<JSONObject> fetcher) throws IOException {
+        try {
+            JSONObject value = fetcher.get();
+            synchronized (lastKnownValues) {
+                lastKnownValues.put(key, value);
+            }
+            return value;
+        } catch (ResourceNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            JSONObject lastKnown;
+            synchronized (lastKnownValues) {
+                lastKnown = lastKnownValues.get(key);
+            }
+            if (lastKnown == null) {
+                throw e;
+            }
+            log.warn("{} ({}), using the last known metadata for {}.", e.getMessage(), serviceName, key);
+            JSONObject stale = new JSONObject(lastKnown.toString());
+            stale.put(STALE_FIELD, true);
+            return stale;
+        }
+    }
+
+    /**
+     * Check whether the JSON object was served from the last known values.
+     * 
+     * @param json - JSON object to check
+     * @return true if the JSON object is stale, false otherwise.
+     */
+    public static boolean isStale(JSONObject json) {
+        return json != null && json.optBoolean(STALE_FIELD, false);
+    }
+
+    /**
+     * Status code and body of an HTTP response.
+     */
+    private static class HttpResult {
+        private final int code;
+        private final String body;
+        private final boolean hedged;
+
+        HttpResult(int code, String body, boolean hedged) {
+            this.code = code;
+            this.body = body;
+            this.hedged = hedged;
+        }
+    }
+
+    /**
+     * Callback of a single (original or hedged) request. The first response
+     * completes the future, a failure or server error (5xx) only completes it when
+     * no other request is pending. The latency of each request is recorded for
+     * the hedging decisions.
+     */
+    private class FirstResponseCallback implements Callback {
+
+        private final String host;
+        private final long start;
+        private final boolean hedged;
+        private final CompletableFuture<HttpResult> firstResponse;
+        private final AtomicInteger pendingCalls;
+        private final AtomicReference<HttpResult> serverError;
+
+        FirstResponseCallback(String host, long start, boolean hedged, CompletableFuture<HttpResult> firstResponse,
+                AtomicInteger pendingCalls, AtomicReference<HttpResult> serverError) {
+            this.host = host;
+            this.start = start;
+            this.hedged = hedged;
+            this.firstResponse = firstResponse;
+            this.pendingCalls = pendingCalls;
+            this.serverError = serverError;
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            HttpResult result;
+            try (response) {
+                ResponseBody body = response.body();
+                result = new HttpResult(response.code(), body == null ? null : body.string(), hedged);
+            } catch (IOException e) {
+                onFailure(call, e);
+                return;
+            }
+            recordLatency();
+            if (result.code >= 500) {
+                // the other request might still succeed
+                serverError.set(result);
+                if (pendingCalls.decrementAndGet() == 0) {
+                    firstResponse.complete(result);
+                }
+                return;
+            }
+            firstResponse.complete(result);
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            // cancelled requests lost the race, their latency is at least the time they were running
+            recordLatency();
+            if (pendingCalls.decrementAndGet() == 0) {
+                HttpResult error = serverError.get();
+                if (error != null) {
+                    firstResponse.complete(error);
+                } else {
+                    firstResponse.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void recordLatency() {
+            hedgingPolicy.recordLatency(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Supplier that can throw an {@link IOException}.
+     *
+     * @param <T> - type of the supplied value
+     */
+    @FunctionalInterface
+    public interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+}
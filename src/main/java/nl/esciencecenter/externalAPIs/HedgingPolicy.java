@@ -0,0 +1,111 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.esciencecenter.restape.RestApeSettings;
+
+/**
+ * The {@code HedgingPolicy} class decides when a duplicate (hedged) request is
+ * sent to an external service. For each host, the latencies of the most recent
+ * requests are kept in a sliding window, and a hedged request is sent once the
+ * original request takes longer than the observed 95th percentile.<br>
+ * <br>
+ * To protect the external services, hedging is limited by a budget: every
+ * request adds {@code EXTERNAL_HEDGE_MAX_PERCENT} / 100 to the budget of its
+ * host (up to a small burst), and every hedged request takes 1 from it.
+ * Therefore, at most that share of the requests is hedged in the long run.
+ */
+class HedgingPolicy {
+
+    private static final boolean HEDGING_ENABLED = RestApeSettings.getBoolean("EXTERNAL_HEDGING_ENABLED", true);
+    private static final double MAX_HEDGE_RATIO = RestApeSettings.getInt("EXTERNAL_HEDGE_MAX_PERCENT", 5) / 100.0;
+    private static final long MIN_HEDGE_DELAY_MS = RestApeSettings.getLong("EXTERNAL_HEDGE_MIN_DELAY_MS", 50);
+    private static final int WINDOW_SIZE = 200;
+    /**
+     * Number of latencies required before the percentile is considered reliable.
+     */
+    private static final int MIN_SAMPLES = 20;
+    private static final double MAX_BUDGET = 10;
+
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Register a new request to the host and get the delay after which it should
+     * be hedged.
+     *
+     * @param host - host the request is sent to
+     * @return Delay in milliseconds, or -1 if the request should not be hedged.
+     */
+    long onRequest(String host) {
+        if (!HEDGING_ENABLED) {
+            return -1;
+        }
+        return state(host).onRequest();
+    }
+
+    /**
+     * Try to take a hedged request from the budget of the host.
+     *
+     * @param host - host the request is sent to
+     * @return true if the hedged request can be sent, false if the hedge rate
+     *         limit was reached.
+     */
+    boolean tryHedge(String host) {
+        return state(host).tryHedge();
+    }
+
+    /**
+     * Record the latency of a single request to the host. Requests that were
+     * cancelled before they completed are recorded with the time they were
+     * running, which is a lower bound of their latency.
+     *
+     * @param host      - host the request was sent to
+     * @param latencyMs - latency of the request in milliseconds
+     */
+    void recordLatency(String host, long latencyMs) {
+        state(host).record(latencyMs);
+    }
+
+    private HostState state(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostState());
+    }
+
+    /**
+     * Latency window and hedge budget of a single host.
+     */
+    private static class HostState {
+
+        private final long[] latencies = new long[WINDOW_SIZE];
+        private int count = 0;
+        private int next = 0;
+        private long hedgeDelayMs = -1;
+        private double budget = MAX_BUDGET;
+
+        synchronized long onRequest() {
+            budget = Math.min(MAX_BUDGET, budget + MAX_HEDGE_RATIO);
+            return hedgeDelayMs;
+        }
+
+        synchronized boolean tryHedge() {
+            if (budget < 1) {
+                return false;
+            }
+            budget -= 1;
+            return true;
+        }
+
+        synchronized void record(long latencyMs) {
+            latencies[next] = latencyMs;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+            if (count >= MIN_SAMPLES) {
+                long[] sorted = Arrays.copyOf(latencies, count);
+                Arrays.sort(sorted);
+                long p95 = sorted[(int) Math.ceil(0.95 * count) - 1];
+                hedgeDelayMs = Math.max(MIN_HEDGE_DELAY_MS, p95);
+            }
+        }
+    }
+}
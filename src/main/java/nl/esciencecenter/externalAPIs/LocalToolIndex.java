@@ -0,0 +1,297 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Class {@link LocalToolIndex} is a local store of tool metadata, built from the
+ * bio.tools and OpenEBench bulk dumps. It allows the design-time benchmarks to
+ * be computed without any network calls.<br>
+ * <br>
+ * The entries are keyed by the lower case bio.tools ID and kept in memory, so
+ * that lookups do not touch the file system. Each entry is also persisted as a
+ * separate file ({@code <indexDir>/biotools/<id>.json} and
+ * {@code <indexDir>/openebench/<id>.json}), which allows imports to be
+ * incremental: only new or changed entries are written.
+ */
+@Slf4j
+public class LocalToolIndex implements ToolMetadataSource {
+
+    /**
+     * Pattern of a valid bio.tools ID, which is also used as a file name.
+     */
+    private static final Pattern VALID_ID = Pattern.compile("[a-z0-9_~-][a-z0-9_.~-]*");
+    /**
+     * Pattern used to extract the bio.tools ID from OpenEBench tool URLs, e.g.,
+     * "https://openebench.bsc.es/monitor/tool/biotools:comet:2019.01.5/cmd/...".
+     */
+    private static final Pattern BIOTOOLS_ID_IN_URL = Pattern.compile("biotools:([^:/]+)");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Section bioTools;
+    private final Section openEBench;
+    private volatile boolean loaded = false;
+
+    /**
+     * Create a local index stored in the given directory.
+     *
+     * @param indexDir - directory where the index is persisted
+     */
+    public LocalToolIndex(Path indexDir) {
+        this.bioTools = new Section(indexDir.resolve("biotools"));
+        this.openEBench = new Section(indexDir.resolve("openebench"));
+    }
+
+    @Override
+    public String getName() {
+        return "local index";
+    }
+
+    @Override
+    public JSONObject fetchBioToolsAnnotation(String toolID) throws IOException {
+        ensureLoaded();
+        return bioTools.lookup(toolID);
+    }
+
+    @Override
+    public JSONObject fetchOpenEBenchMetrics(String toolID) throws IOException {
+        ensureLoaded();
+        return openEBench.lookup(toolID);
+    }
+
+    /**
+     * Check whether the index contains any entries.
+     *
+     * @return true if the index is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        ensureLoaded();
+        return bioTools.entries.isEmpty() && openEBench.entries.isEmpty();
+    }
+
+    /**
+     * Generate a JSON object describing the content of the index.
+     *
+     * @return JSON object with the number of bio.tools and OpenEBench entries.
+     */
+    public JSONObject getStatus() {
+        ensureLoaded();
+        JSONObject status = new JSONObject();
+        status.put("biotools_entries", bioTools.entries.size());
+        status.put("openebench_entries", openEBench.entries.size());
+        return status;
+    }
+
+    /**
+     * Import a bio.tools JSON dump into the index. The dump is either a JSON array
+     * of tool annotations or a page of the bio.tools API (an object with the tools
+     * under "list"). The dump is parsed as a stream, so it does not have to fit in
+     * memory.
+     *
+     * @param dump - stream with the content of the dump
+     * @return Summary of the import.
+     * @throws IOException In case the dump cannot be read or the index cannot be
+     *                     written.
+     */
+    public synchronized ImportResult importBioToolsDump(InputStream dump) throws IOException {
+        ensureLoaded();
+        ImportResult result = new ImportResult();
+        forEachEntry(dump, entry -> {
+            String biotoolsID = entry.path("biotoolsID").asText("").toLowerCase();
+            bioTools.upsert(biotoolsID, entry.toString(), result);
+        });
+        log.info("Imported bio.tools dump into the local index: {}", result.toJSON());
+        return result;
+    }
+
+    /**
+     * Import an OpenEBench metrics dump into the index. The dump is a JSON array of
+     * tool metrics, where the bio.tools ID is derived from the "@id" URL of each
+     * entry. Only the first bio.tools version of each tool is kept, the same as
+     * {@link OpenEBenchRestClient#fetchToolMetricsBiotoolsVersion(String)} does.
+     *
+     * @param dump - stream with the content of the dump
+     * @return Summary of the import.
+     * @throws IOException In case the dump cannot be read or the index cannot be
+     *                     written.
+     */
+    public synchronized ImportResult importOpenEBenchDump(InputStream dump) throws IOException {
+        ensureLoaded();
+        ImportResult result = new ImportResult();
+        Set<String> imported = new HashSet<>();
+        forEachEntry(dump, entry -> {
+            Matcher matcher = BIOTOOLS_ID_IN_URL.matcher(entry.path("@id").asText(""));
+            String biotoolsID = matcher.find() ? matcher.group(1).toLowerCase() : "";
+            if (!imported.add(biotoolsID)) {
+                result.skipped++;
+                return;
+            }
+            openEBench.upsert(biotoolsID, entry.toString(), result);
+        });
+        log.info("Imported OpenEBench dump into the local index: {}", result.toJSON());
+        return result;
+    }
+
+    /**
+     * Load the persisted entries into memory, the first time the index is used.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    bioTools.load();
+                    openEBench.load();
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the dump as a stream and pass each of its entries to the consumer.
+     */
+    private void forEachEntry(InputStream dump, EntryConsumer consumer) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(dump)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                readArray(parser, consumer);
+            } else if (token == JsonToken.START_OBJECT) {
+                // bio.tools API page, e.g., {"count": 100, "next": "?page=2", "list": [...]}
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && "list".equals(field)) {
+                        readArray(parser, consumer);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                throw new IOException("The dump should contain a JSON array of entries.");
+            }
+        }
+    }
+
+    private void readArray(JsonParser parser, EntryConsumer consumer) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                consumer.accept(mapper.readTree(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryConsumer {
+        void accept(JsonNode entry) throws IOException;
+    }
+
+    /**
+     * Entries of a single kind (bio.tools or OpenEBench), kept in memory and
+     * persisted in a directory.
+     */
+    private static class Section {
+
+        private final Path dir;
+        private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+        Section(Path dir) {
+            this.dir = dir;
+        }
+
+        JSONObject lookup(String toolID) throws ResourceNotFoundException {
+            String entry = Optional.ofNullable(toolID).map(id -> entries.get(id.toLowerCase())).orElse(null);
+            if (entry == null) {
+                throw new ResourceNotFoundException("Tool " + toolID + " not found in the local index.");
+            }
+            return new JSONObject(entry);
+        }
+
+        void load() {
+            if (!Files.isDirectory(dir)) {
+                return;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    entries.put(fileName.substring(0, fileName.length() - ".json".length()),
+                            Files.readString(file, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                log.error("The local tool index in {} could not be loaded.", dir, e);
+            }
+        }
+
+        void upsert(String biotoolsID, String entry, ImportResult result) throws IOException {
+            if (!VALID_ID.matcher(biotoolsID).matches()) {
+                result.skipped++;
+                return;
+            }
+            String current = entries.get(biotoolsID);
+            if (entry.equals(current)) {
+                result.unchanged++;
+                return;
+            }
+            Files.createDirectories(dir);
+            Path tmpFile = dir.resolve(biotoolsID + ".json.tmp");
+            Files.writeString(tmpFile, entry, StandardCharsets.UTF_8);
+            Files.move(tmpFile, dir.resolve(biotoolsID + ".json"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            entries.put(biotoolsID, entry);
+            if (current == null) {
+                result.added++;
+            } else {
+                result.updated++;
+            }
+        }
+    }
+
+    /**
+     * Summary of an import into the local index.
+     */
+    @Getter
+    public static class ImportResult {
+        private int added = 0;
+        private int updated = 0;
+        private int unchanged = 0;
+        private int skipped = 0;
+
+        /**
+         * Generate a JSON object describing the import.
+         *
+         * @return JSON object with the number of added, updated, unchanged and
+         *         skipped entries.
+         */
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("added", added);
+            json.put("updated", updated);
+            json.put("unchanged", unchanged);
+            json.put("skipped", skipped);
+            return json;
+        }
+    }
+}
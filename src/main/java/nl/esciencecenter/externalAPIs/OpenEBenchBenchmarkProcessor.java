@@ -41,11 +41,25 @@ public class OpenEBenchBenchmarkProcessor {
      */
     public static Benchmark benchmarkLicenses(List<JSONObject> openEBenchBiotoolsMetrics,
             BenchmarkBase benchmarkTitle) {
+        return aggregateLicenses(evaluateLicenseBenchmark(openEBenchBiotoolsMetrics), benchmarkTitle);
+    }
+
+    /**
+     * Aggregate the license benchmarks of the workflow steps into the benchmark of
+     * the workflow.
+     * 
+     * @param steps          - License benchmarks of each tool in the workflow.
+     * @param benchmarkTitle - Information about the benchmark that is being
+     *                       computed.
+     * @return Benchmark object ({@link Benchmark}) containing the benchmark value
+     *         and desirability value.
+     */
+    public static Benchmark aggregateLicenses(List<WorkflowStepBenchmark> steps, BenchmarkBase benchmarkTitle) {
         Benchmark benchmark = new Benchmark(benchmarkTitle);
-        int workflowLength = openEBenchBiotoolsMetrics.size();
+        int workflowLength = steps.size();
 
-        benchmark.setWorkflow(evaluateLicenseBenchmark(openEBenchBiotoolsMetrics));
-        int count = (int) benchmark.getWorkflow().stream().filter(tool -> tool.getDesirabilityValue() > 0).count();
+        benchmark.setWorkflow(steps);
+        int count = BenchmarkUtils.countDesirableSteps(steps);
 
         benchmark.setDesirabilityValue(BenchmarkUtils.strictDesirabilityDistribution(count, workflowLength));
         benchmark.setValue(BenchmarkUtils.ratioString(count, workflowLength));
@@ -54,57 +68,81 @@ public class OpenEBenchBenchmarkProcessor {
     }
 
     /**
-     * Count the number of tools which have the given field name in the bio.tools
-     * annotation JSON.
+     * Evaluate the license type of each tool in the workflow.
      * 
-     * @param biotoolsAnnotations
-     * @param fieldName
-     * @return
+     * @param openEBenchBiotoolsMetrics - List of JSONObjects containing the
+     *                                  OpenEBench metrics for each tool.
+     * @return List of {@link WorkflowStepBenchmark} objects, one per tool.
      */
-    private static List<WorkflowStepBenchmark> evaluateLicenseBenchmark(List<JSONObject> biotoolsAnnotations) {
+    private static List<WorkflowStepBenchmark> evaluateLicenseBenchmark(List<JSONObject> openEBenchBiotoolsMetrics) {
         List<WorkflowStepBenchmark> biotoolsEntries = new ArrayList<>();
 
-        biotoolsAnnotations.stream().forEach(toolAnnot -> {
-            WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
-            LicenseType license = isOSIFromOEBMetrics(toolAnnot);
-            // set case for each license type
-            switch (license) {
-                case Unknown:
-                    biotoolsEntryBenchmark.setDesirabilityValue(0);
-                    biotoolsEntryBenchmark.setValue("unknown");
-                    biotoolsEntryBenchmark.setDescription("Unknown");
-                    break;
-                case Closed:
-                    biotoolsEntryBenchmark.setDesirabilityValue(0.1);
-                    biotoolsEntryBenchmark.setValue("closed");
-                    biotoolsEntryBenchmark.setDescription("Closed");
-                    break;
-                case Open:
-                    biotoolsEntryBenchmark.setDesirabilityValue(0.8);
-                    biotoolsEntryBenchmark.setValue("open");
-                    biotoolsEntryBenchmark.setDescription("Open");
-                    break;
-                case OSI_Approved:
-                    biotoolsEntryBenchmark.setDesirabilityValue(1);
-                    biotoolsEntryBenchmark.setValue("osi");
-                    biotoolsEntryBenchmark.setDescription("OSI approved");
-                    break;
-                default:
-                    throw new IllegalArgumentException();
-            }
-            biotoolsEntries.add(biotoolsEntryBenchmark);
-        });
+        openEBenchBiotoolsMetrics.stream().forEach(toolAnnot -> biotoolsEntries.add(benchmarkToolLicense(toolAnnot)));
 
         return biotoolsEntries;
     }
 
+    /**
+     * Benchmark the license type of a single tool according to the openness of the
+     * license. The result only depends on the OpenEBench metrics of the tool,
+     * which allows it to be reused across workflows.
+     * 
+     * @param toolAnnot - JSONObject containing the OpenEBench metrics of the tool.
+     * @return {@link WorkflowStepBenchmark} object containing the benchmark value
+     *         and desirability value for the tool.
+     */
+    public static WorkflowStepBenchmark benchmarkToolLicense(JSONObject toolAnnot) {
+        WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
+        LicenseType license = isOSIFromOEBMetrics(toolAnnot);
+        // set case for each license type
+        switch (license) {
+            case Unknown:
+                biotoolsEntryBenchmark.setDesirabilityValue(0);
+                biotoolsEntryBenchmark.setValue("unknown");
+                biotoolsEntryBenchmark.setDescription("Unknown");
+                break;
+            case Closed:
+                biotoolsEntryBenchmark.setDesirabilityValue(0.1);
+                biotoolsEntryBenchmark.setValue("closed");
+                biotoolsEntryBenchmark.setDescription("Closed");
+                break;
+            case Open:
+                biotoolsEntryBenchmark.setDesirabilityValue(0.8);
+                biotoolsEntryBenchmark.setValue("open");
+                biotoolsEntryBenchmark.setDescription("Open");
+                break;
+            case OSI_Approved:
+                biotoolsEntryBenchmark.setDesirabilityValue(1);
+                biotoolsEntryBenchmark.setValue("osi");
+                biotoolsEntryBenchmark.setDescription("OSI approved");
+                break;
+            default:
+                throw new IllegalArgumentException();
+        }
+        return biotoolsEntryBenchmark;
+    }
+
     public static Benchmark countCitationsBenchmark(List<JSONObject> openEBenchBiotoolsMetrics,
             BenchmarkBase benchmarkTitle) {
+        return aggregateCitations(countCitationPerTool(openEBenchBiotoolsMetrics), benchmarkTitle);
+    }
+
+    /**
+     * Aggregate the citation counts of the workflow steps into the benchmark of the
+     * workflow, using the median citation count.
+     * 
+     * @param steps          - Citation benchmarks of each tool in the workflow.
+     * @param benchmarkTitle - Information about the benchmark that is being
+     *                       computed.
+     * @return Benchmark object ({@link Benchmark}) containing the benchmark value
+     *         and desirability value.
+     */
+    public static Benchmark aggregateCitations(List<WorkflowStepBenchmark> steps, BenchmarkBase benchmarkTitle) {
         Benchmark benchmark = new Benchmark(benchmarkTitle);
 
-        benchmark.setWorkflow(countCitationPerTool(openEBenchBiotoolsMetrics));
+        benchmark.setWorkflow(steps);
         List<Integer> counts = new ArrayList<>();
-        benchmark.getWorkflow().forEach(tool -> counts.add(Integer.parseInt(tool.getValue())));
+        steps.forEach(tool -> counts.add(Integer.parseInt(tool.getValue())));
         int median = findMedian(counts);
 
         benchmark.setValue(median + "");
@@ -141,33 +179,43 @@ public class OpenEBenchBenchmarkProcessor {
 
     private static List<WorkflowStepBenchmark> countCitationPerTool(List<JSONObject> openEBenchBiotoolsMetrics) {
         List<WorkflowStepBenchmark> biotoolsEntries = new ArrayList<>();
-        openEBenchBiotoolsMetrics.stream().forEach(toolAnnot -> {
-            WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
-            int count = 0;
-            try {
-                JSONArray publications = toolAnnot.getJSONObject("project").getJSONArray("publications");
-                for (int i = 0; i < publications.length(); i++) {
-                    JSONObject publicationData = publications.getJSONObject(i);
-                    count += publicationData.getJSONArray("entries").getJSONObject(0).getInt("cit_count");
-                }
-                // set case for each license type
-                biotoolsEntryBenchmark.setDesirabilityValue(computeCitationDesirability(count));
-                biotoolsEntryBenchmark.setValue(String.valueOf(count));
-                biotoolsEntryBenchmark.setDescription(String.valueOf(count));
-                biotoolsEntries.add(biotoolsEntryBenchmark);
-            } catch (JSONException e) {
-                log.warn("No publication data found for tool: {}", toolAnnot.getString(ToolBenchmarkingAPIs.restAPEtoolID));
-                // set case for each license type
-                biotoolsEntryBenchmark.setDesirabilityValue(0);
-                biotoolsEntryBenchmark.setValue("0");
-                biotoolsEntryBenchmark.setDescription("Unknown");
-                biotoolsEntries.add(biotoolsEntryBenchmark);
-            }
-        });
+        openEBenchBiotoolsMetrics.stream().forEach(toolAnnot -> biotoolsEntries.add(countToolCitations(toolAnnot)));
 
         return biotoolsEntries;
     }
 
+    /**
+     * Count the citations of a single tool. The result only depends on the
+     * OpenEBench metrics of the tool, which allows it to be reused across
+     * workflows.
+     * 
+     * @param toolAnnot - JSONObject containing the OpenEBench metrics of the tool.
+     * @return {@link WorkflowStepBenchmark} object containing the citation count
+     *         and desirability value for the tool.
+     */
+    public static WorkflowStepBenchmark countToolCitations(JSONObject toolAnnot) {
+        WorkflowStepBenchmark biotoolsEntryBenchmark = new WorkflowStepBenchmark();
+        int count = 0;
+        try {
+            JSONArray publications = toolAnnot.getJSONObject("project").getJSONArray("publications");
+            for (int i = 0; i < publications.length(); i++) {
+                JSONObject publicationData = publications.getJSONObject(i);
+                count += publicationData.getJSONArray("entries").getJSONObject(0).getInt("cit_count");
+            }
+            // set case for each license type
+            biotoolsEntryBenchmark.setDesirabilityValue(computeCitationDesirability(count));
+            biotoolsEntryBenchmark.setValue(String.valueOf(count));
+            biotoolsEntryBenchmark.setDescription(String.valueOf(count));
+        } catch (JSONException e) {
+            log.warn("No publication data found for tool: {}", toolAnnot.getString(ToolBenchmarkingAPIs.restAPEtoolID));
+            // set case for each license type
+            biotoolsEntryBenchmark.setDesirabilityValue(0);
+            biotoolsEntryBenchmark.setValue("0");
+            biotoolsEntryBenchmark.setDescription("Unknown");
+        }
+        return biotoolsEntryBenchmark;
+    }
+
     /*
      * Citation desirability is computed according to a predefined set of rules.
      * 
@@ -0,0 +1,98 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.esciencecenter.models.benchmarks.WorkflowStepBenchmark;
+import nl.esciencecenter.restape.BenchmarkProvider;
+import nl.esciencecenter.restape.ToolBenchmarkCache;
+import nl.esciencecenter.restape.ToolBenchmarkingAPIs;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+
+/**
+ * Class {@link OpenEBenchBenchmarkProvider} provides the benchmarks based on
+ * the OpenEBench metrics of the tools, i.e., the license types and the citation
+ * counts of the tools in the workflow.
+ */
+@Slf4j
+@Component
+@Order(2)
+public class OpenEBenchBenchmarkProvider implements BenchmarkProvider {
+
+    private static final BenchmarkBase licenseBenchmark = new BenchmarkBase("License", "License",
+            "License information available", "license type", "license", null);
+    private static final BenchmarkBase citationsBenchmark = new BenchmarkBase("Citations", "Bibliometrics",
+            "Citations annotated per tool", "citation count", "citation", null);
+
+    @Override
+    public String getName() {
+        return "OpenEBench";
+    }
+
+    @Override
+    public List<BenchmarkBase> getBenchmarkInfo() {
+        return List.of(licenseBenchmark, citationsBenchmark);
+    }
+
+    @Override
+    public List<Benchmark> computeBenchmarks(SolutionWorkflow workflow) {
+        List<ToolBenchmarkCache.ToolBenchmarks> toolBenchmarks = new ArrayList<>();
+        workflow.getModuleNodes().forEach(
+                toolNode -> toolBenchmarks.add(getToolBenchmarks(toolNode.getUsedModule().getPredicateLabel())));
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(OpenEBenchBenchmarkProcessor.aggregateLicenses(
+                ToolBenchmarkCache.getSteps(toolBenchmarks, licenseBenchmark), licenseBenchmark));
+        benchmarks.add(OpenEBenchBenchmarkProcessor.aggregateCitations(
+                ToolBenchmarkCache.getSteps(toolBenchmarks, citationsBenchmark), citationsBenchmark));
+        return ToolBenchmarkCache.markStale(benchmarks);
+    }
+
+    /**
+     * Get the benchmarks of the tool, computed only once per version of its
+     * OpenEBench metrics. The metrics are only parsed if the benchmarks are
+     * computed.
+     */
+    private ToolBenchmarkCache.ToolBenchmarks getToolBenchmarks(String toolID) {
+        String metadataVersion;
+        try {
+            metadataVersion = ToolMetadataSources.getOpenEBenchMetricsVersion(toolID);
+        } catch (IOException e) {
+            metadataVersion = ToolBenchmarkCache.UNAVAILABLE;
+        }
+        return ToolBenchmarkCache.getOrCompute(getName() + ":" + toolID, metadataVersion, () -> {
+            JSONObject openEBenchMetrics = new JSONObject();
+            try {
+                openEBenchMetrics = ToolMetadataSources.fetchOpenEBenchMetrics(toolID);
+            } catch (JSONException e) {
+                log.warn("OpenEBench metrics of tool {} could not be parsed.", toolID, e);
+            } catch (IOException e) {
+                log.error("Tool {} not found in OpenEBench. It will not be benchmarked.", toolID);
+            }
+            openEBenchMetrics.put(ToolBenchmarkingAPIs.restAPEtoolID, toolID);
+
+            Map<String, WorkflowStepBenchmark> steps = new LinkedHashMap<>();
+            boolean stale = ExternalServiceClient.isStale(openEBenchMetrics);
+
+            WorkflowStepBenchmark license = OpenEBenchBenchmarkProcessor.benchmarkToolLicense(openEBenchMetrics);
+            license.setStale(stale);
+            steps.put(licenseBenchmark.getBenchmarkTitle(), license);
+
+            WorkflowStepBenchmark citations = OpenEBenchBenchmarkProcessor.countToolCitations(openEBenchMetrics);
+            citations.setStale(stale);
+            steps.put(citationsBenchmark.getBenchmarkTitle(), citations);
+            return steps;
+        });
+    }
+}
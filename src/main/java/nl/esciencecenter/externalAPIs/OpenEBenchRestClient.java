@@ -1,12 +1,9 @@
 package nl.esciencecenter.externalAPIs;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -14,10 +11,7 @@ import org.json.JSONObject;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.uu.cs.ape.utils.APEFiles;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import nl.esciencecenter.restape.RestApeSettings;
 
 /**
  * The {@code ToolBenchmarkingAPIs} class provides methods to retrieve and
@@ -27,7 +21,8 @@ import okhttp3.Response;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class OpenEBenchRestClient {
 
-    private static final OkHttpClient client = new OkHttpClient();
+    private static final ExternalServiceClient openEBench = new ExternalServiceClient("OpenEBench");
+    private static final String DEFAULT_BASE_URL = "https://openebench.bsc.es/monitor";
 
     /**
      * Retrieve a list of JSON objects containing the metrics for each tool version
@@ -61,15 +56,11 @@ public class OpenEBenchRestClient {
         // retrieve the JSON metrics for each tool version
         toolOEBVersionsURLs.forEach(metricOEBenchURL -> {
             try {
-                File file = APEFiles.readPathToFile(metricOEBenchURL);
-                String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-                openEBenchToolVersions.add(new JSONObject(content));
+                openEBenchToolVersions.add(new JSONObject(openEBench.get(rebaseURL(metricOEBenchURL))));
             } catch (JSONException e) {
                 log.error("Tool version metrics JSON provided by OEB could not be parsed.");
-                e.printStackTrace();
             } catch (IOException e) {
-                log.error("Tool version metrics file could not be created.");
-                e.printStackTrace();
+                log.error("Tool version metrics could not be retrieved: {}", e.getMessage());
             }
         });
 
@@ -80,7 +71,9 @@ public class OpenEBenchRestClient {
 
     /**
      * Retrieve a JSON objects containing the metrics for the bio.tools entry for
-     * the given tool ID from OpenEBench API.
+     * the given tool ID from OpenEBench API. In case OpenEBench is not available,
+     * the last retrieved metrics are returned, marked as stale (see
+     * {@link ExternalServiceClient#isStale(JSONObject)}).
      * 
      * @param toolID - tool ID, not case sensitive, (as used in
      *               bio.tools), e.g., "comet", "blast", etc.
@@ -91,40 +84,31 @@ public class OpenEBenchRestClient {
      */
     public static JSONObject fetchToolMetricsBiotoolsVersion(String toolID)
             throws JSONException, IOException {
-        toolID = toolID.toLowerCase();
-        JSONArray openEBenchAggregateAnnotation = fetchToolAggregate(toolID);
+        String biotoolsID = toolID.toLowerCase();
+        return openEBench.fetchWithFallback(biotoolsID, () -> {
+            JSONArray openEBenchAggregateAnnotation = fetchToolAggregate(biotoolsID);
 
-        String biotoolsVersionURL = getToolVersionsURLs(openEBenchAggregateAnnotation).stream()
-                .filter(url -> url.contains("biotools:"))
-                .findFirst().orElse(null);
-
-        if (biotoolsVersionURL == null) {
-            return new JSONObject();
-        }
+            String biotoolsVersionURL = getToolVersionsURLs(openEBenchAggregateAnnotation).stream()
+                    .filter(url -> url.contains("biotools:"))
+                    .findFirst().orElse(null);
 
-        /*
-         * Correct the URL to point to the metrics rather than general tool
-         * information. The OpenEBench API does not provide a more direct way to
-         * retrieve the metrics.
-         */
-        biotoolsVersionURL = replaceTool2MetricInOEBCall(biotoolsVersionURL);
+            if (biotoolsVersionURL == null) {
+                return new JSONObject();
+            }
 
-        // retrieve the JSON metrics for each tool version
-        String metricsJson = "";
-        try {
-            File metricsFile = APEFiles.readPathToFile(biotoolsVersionURL);
-            metricsJson = FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8);
-        } catch (JSONException e) {
-            log.error("Tool version metrics JSON provided by OEB could not be parsed.");
-            e.printStackTrace();
-        } catch (IOException e) {
-            log.error("Tool version metrics file could not be created.");
-            e.printStackTrace();
-        }
+            /*
+             * Correct the URL to point to the metrics rather than general tool
+             * information. The OpenEBench API does not provide a more direct way to
+             * retrieve the metrics.
+             */
+            biotoolsVersionURL = rebaseURL(replaceTool2MetricInOEBCall(biotoolsVersionURL));
 
-        log.debug("The list of tool versions was successfully fetched from OpenEBench.");
-        return new JSONObject(metricsJson);
+            // retrieve the JSON metrics for the bio.tools version
+            JSONObject metricsJson = new JSONObject(openEBench.get(biotoolsVersionURL));
 
+            log.debug("The list of tool versions was successfully fetched from OpenEBench.");
+            return metricsJson;
+        });
     }
 
     /**
@@ -137,17 +121,9 @@ public class OpenEBenchRestClient {
     public static JSONObject getJSONfromURL(String url) {
         JSONObject responseJSON = null;
         try {
-            Request request = new Request.Builder().url(url).build();
-            Response response = client.newCall(request).execute();
-
-            if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code when trying to fetch" + response);
-            }
-
-            responseJSON = new JSONObject(response.body().string());
-            response.close();
+            responseJSON = new JSONObject(openEBench.get(url));
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("Unexpected response when trying to fetch {}: {}", url, e.getMessage());
         }
 
         return responseJSON;
@@ -233,16 +209,41 @@ public class OpenEBenchRestClient {
      * @return
      * @throws JSONException In case the JSON object returned by OpenEBench API
      *                       cannot be parsed.
-     * @throws IOException   In case a local file cannot be created.
+     * @throws IOException   In case OpenEBench cannot be reached.
      */
     static JSONArray fetchToolAggregate(String toolID) throws JSONException, IOException {
         JSONArray openEBenchAnnotation;
-        String urlToAggregateOEB = "https://openebench.bsc.es/monitor/rest/aggregate?id=" + toolID;
+        String urlToAggregateOEB = getBaseURL() + "/rest/aggregate?id=" + toolID;
 
-        File file = APEFiles.readPathToFile(urlToAggregateOEB);
-        openEBenchAnnotation = APEFiles.readFileToJSONArray(file);
+        openEBenchAnnotation = new JSONArray(openEBench.get(urlToAggregateOEB));
 
         log.debug("The list of tool aggregations was successfully fetched from OpenEBench.");
         return openEBenchAnnotation;
     }
+
+    /**
+     * Get the base URL of the OpenEBench API, which can be changed using the
+     * {@code OPENEBENCH_BASE_URL} setting (e.g., to use a stub server).
+     * 
+     * @return Base URL, without a trailing slash.
+     */
+    static String getBaseURL() {
+        return RestApeSettings.get("OPENEBENCH_BASE_URL", DEFAULT_BASE_URL);
+    }
+
+    /**
+     * Point the URL provided by OpenEBench (e.g., under "@id") to the configured
+     * base URL. The URLs in the OpenEBench responses always refer to the public
+     * OpenEBench API.
+     * 
+     * @param url - URL provided by OpenEBench
+     * @return URL with the configured base URL.
+     */
+    static String rebaseURL(String url) {
+        String baseURL = getBaseURL();
+        if (!baseURL.equals(DEFAULT_BASE_URL) && url.startsWith(DEFAULT_BASE_URL)) {
+            return baseURL + url.substring(DEFAULT_BASE_URL.length());
+        }
+        return url;
+    }
 }
@@ -0,0 +1,110 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.esciencecenter.restape.BenchmarkProvider;
+import nl.esciencecenter.restape.RestApeSettings;
+import nl.esciencecenter.restape.RestApeUtils;
+import nl.esciencecenter.restape.ToolBenchmarkingAPIs;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+import nl.uu.cs.ape.solver.solutionStructure.cwl.DefaultCWLCreator;
+
+/**
+ * Class {@link PubmetricBenchmarkProvider} provides the benchmarks computed by
+ * the Pubmetric service, based on the CWL representation of the workflow. The
+ * benchmarks provided by the service are not known in advance, therefore
+ * nothing is reported if the service is not available.<br>
+ * <br>
+ * The CWL representation is needed both for the cache key and for the request.
+ * Both are computed on the same thread, so the CWL generated for the cache key
+ * is kept per thread and reused by the request, until the workflow is released.
+ * The benchmarks are reported as provided by the service (see
+ * {@link Benchmark#fromExternalJSON(JSONObject)}).
+ */
+@Component
+@Order(3)
+public class PubmetricBenchmarkProvider implements BenchmarkProvider {
+
+    private static final long timeoutMs = RestApeSettings.getLong("PUBMETRIC_BENCHMARK_TIMEOUT_MS", 35000);
+    private static final long cacheTtlMs = RestApeSettings.getLong("PUBMETRIC_CACHE_TTL_MS", 3600000);
+
+    private final ThreadLocal<GeneratedCWL> lastGenerated = new ThreadLocal<>();
+
+    @Override
+    public String getName() {
+        return "Pubmetric";
+    }
+
+    @Override
+    public List<BenchmarkBase> getBenchmarkInfo() {
+        return List.of();
+    }
+
+    @Override
+    public List<Benchmark> computeBenchmarks(SolutionWorkflow workflow) throws IOException {
+        JSONObject additionalBenchmarks = ToolBenchmarkingAPIs.getPubmetricBenchmarks(generateCWL(workflow));
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        JSONArray benchmarksJson = additionalBenchmarks.getJSONArray("benchmarks");
+        for (int i = 0; i < benchmarksJson.length(); i++) {
+            benchmarks.add(Benchmark.fromExternalJSON(benchmarksJson.getJSONObject(i)));
+        }
+        return benchmarks;
+    }
+
+    @Override
+    public void release(SolutionWorkflow workflow) {
+        lastGenerated.remove();
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public long getCacheTtlMs() {
+        return cacheTtlMs;
+    }
+
+    /**
+     * The Pubmetric benchmarks are computed from the CWL representation of the
+     * workflow, therefore workflows with the same CWL share their benchmarks.
+     */
+    @Override
+    public String getCacheKey(SolutionWorkflow workflow) {
+        return RestApeUtils.generateStringHash(generateCWL(workflow), 32);
+    }
+
+    /**
+     * Generate the CWL representation of the workflow, unless it was just
+     * generated on this thread.
+     */
+    private String generateCWL(SolutionWorkflow workflow) {
+        GeneratedCWL generated = lastGenerated.get();
+        if (generated == null || generated.workflow != workflow) {
+            generated = new GeneratedCWL(workflow, new DefaultCWLCreator(workflow).generate());
+            lastGenerated.set(generated);
+        }
+        return generated.cwl;
+    }
+
+    private static class GeneratedCWL {
+        private final SolutionWorkflow workflow;
+        private final String cwl;
+
+        GeneratedCWL(SolutionWorkflow workflow, String cwl) {
+            this.workflow = workflow;
+            this.cwl = cwl;
+        }
+    }
+}
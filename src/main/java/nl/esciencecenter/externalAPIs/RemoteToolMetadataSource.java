@@ -0,0 +1,28 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+
+/**
+ * Class {@link RemoteToolMetadataSource} retrieves the tool metadata from the
+ * bio.tools and OpenEBench APIs, using {@link BioToolsRestClient} and
+ * {@link OpenEBenchRestClient}.
+ */
+public class RemoteToolMetadataSource implements ToolMetadataSource {
+
+    @Override
+    public String getName() {
+        return "bio.tools/OpenEBench API";
+    }
+
+    @Override
+    public JSONObject fetchBioToolsAnnotation(String toolID) throws IOException {
+        return BioToolsRestClient.fetchToolFromBioTools(toolID);
+    }
+
+    @Override
+    public JSONObject fetchOpenEBenchMetrics(String toolID) throws IOException {
+        return OpenEBenchRestClient.fetchToolMetricsBiotoolsVersion(toolID);
+    }
+}
@@ -0,0 +1,15 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when an external service responded, but the requested
+ * resource (e.g., a tool) does not exist. Unlike other failures, it does not
+ * indicate that the service is unavailable.
+ */
+public class ResourceNotFoundException extends IOException {
+
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+}
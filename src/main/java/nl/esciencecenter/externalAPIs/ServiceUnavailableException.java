@@ -0,0 +1,14 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when a request is not sent to an external service, because
+ * its circuit is open (see {@link CircuitBreaker}).
+ */
+public class ServiceUnavailableException extends IOException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
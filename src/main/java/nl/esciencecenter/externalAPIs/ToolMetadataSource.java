@@ -0,0 +1,42 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+
+/**
+ * Interface {@link ToolMetadataSource} describes a source of tool metadata used
+ * to compute the design-time benchmarks, e.g., the bio.tools and OpenEBench
+ * APIs or a local index built from their bulk dumps.
+ */
+public interface ToolMetadataSource {
+
+    /**
+     * Get the name of the source, used in logs.
+     * 
+     * @return Name of the source.
+     */
+    String getName();
+
+    /**
+     * Retrieve the bio.tools annotation (according to biotoolsSchema) of the tool.
+     * 
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools), e.g.,
+     *               "comet", "blast", etc.
+     * @return JSONObject containing the bio.tools annotation of the tool.
+     * @throws ResourceNotFoundException In case the source does not know the tool.
+     * @throws IOException               In case the source cannot be reached.
+     */
+    JSONObject fetchBioToolsAnnotation(String toolID) throws IOException;
+
+    /**
+     * Retrieve the OpenEBench metrics of the bio.tools version of the tool.
+     * 
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools), e.g.,
+     *               "comet", "blast", etc.
+     * @return JSONObject containing the OpenEBench metrics of the tool.
+     * @throws ResourceNotFoundException In case the source does not know the tool.
+     * @throws IOException               In case the source cannot be reached.
+     */
+    JSONObject fetchOpenEBenchMetrics(String toolID) throws IOException;
+}
@@ -0,0 +1,232 @@
+package nl.esciencecenter.externalAPIs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONObject;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.restape.RestApeSettings;
+import nl.esciencecenter.restape.RestApeUtils;
+
+/**
+ * The {@code ToolMetadataSources} class provides the tool metadata used to
+ * compute the design-time benchmarks. The registered
+ * {@link ToolMetadataSource}s are queried in order, until one of them knows the
+ * tool. By default the {@link LocalToolIndex} is preferred and the bio.tools and
+ * OpenEBench APIs are used for the tools that are not indexed. If
+ * {@code TOOL_METADATA_OFFLINE} is set to true, only the local index is used.<br>
+ * <br>
+ * Retrieved metadata (including the information that a tool is unknown) is
+ * cached for {@code TOOL_METADATA_TTL_MS} milliseconds, so that tools shared by
+ * many workflows are only retrieved once. The version (hash) of the metadata is
+ * computed once when it is retrieved, so that the benchmarks of a tool can be
+ * looked up without parsing its metadata (see
+ * {@link nl.esciencecenter.restape.ToolBenchmarkCache}).
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ToolMetadataSources {
+
+    @Getter
+    private static final LocalToolIndex localIndex = new LocalToolIndex(getIndexDir());
+    private static final List<ToolMetadataSource> sources = new CopyOnWriteArrayList<>(defaultSources());
+    private static final long metadataTtlMs = RestApeSettings.getLong("TOOL_METADATA_TTL_MS", 3600000);
+    private static final Map<String, CachedMetadata> bioToolsCache = new ConcurrentHashMap<>();
+    private static final Map<String, CachedMetadata> openEBenchCache = new ConcurrentHashMap<>();
+
+    /**
+     * Replace the registered sources.
+     * 
+     * @param newSources - sources in the order in which they should be queried
+     */
+    public static void setSources(List<ToolMetadataSource> newSources) {
+        sources.clear();
+        sources.addAll(newSources);
+        invalidateCache();
+    }
+
+    /**
+     * Remove all the cached tool metadata, e.g., after the local index was
+     * updated.
+     */
+    public static void invalidateCache() {
+        bioToolsCache.clear();
+        openEBenchCache.clear();
+    }
+
+    /**
+     * Get the registered sources.
+     * 
+     * @return Sources in the order in which they are queried.
+     */
+    public static List<ToolMetadataSource> getSources() {
+        return new ArrayList<>(sources);
+    }
+
+    /**
+     * Retrieve the bio.tools annotation of the tool from the first source that
+     * knows the tool.
+     * 
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools)
+     * @return JSONObject containing the bio.tools annotation of the tool.
+     * @throws IOException In case none of the sources provided the annotation.
+     */
+    public static JSONObject fetchBioToolsAnnotation(String toolID) throws IOException {
+        return fetchCached(bioToolsCache, toolID, source -> source.fetchBioToolsAnnotation(toolID));
+    }
+
+    /**
+     * Retrieve the OpenEBench metrics of the tool from the first source that
+     * knows the tool.
+     * 
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools)
+     * @return JSONObject containing the OpenEBench metrics of the tool.
+     * @throws IOException In case none of the sources provided the metrics.
+     */
+    public static JSONObject fetchOpenEBenchMetrics(String toolID) throws IOException {
+        return fetchCached(openEBenchCache, toolID, source -> source.fetchOpenEBenchMetrics(toolID));
+    }
+
+    /**
+     * Get the version of the bio.tools annotation of the tool, retrieving the
+     * annotation if it is not cached.
+     *
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools)
+     * @return Version (hash) of the annotation.
+     * @throws IOException In case none of the sources provided the annotation.
+     */
+    public static String getBioToolsAnnotationVersion(String toolID) throws IOException {
+        return getCached(bioToolsCache, toolID, source -> source.fetchBioToolsAnnotation(toolID)).version;
+    }
+
+    /**
+     * Get the version of the OpenEBench metrics of the tool, retrieving the
+     * metrics if they are not cached.
+     *
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools)
+     * @return Version (hash) of the metrics.
+     * @throws IOException In case none of the sources provided the metrics.
+     */
+    public static String getOpenEBenchMetricsVersion(String toolID) throws IOException {
+        return getCached(openEBenchCache, toolID, source -> source.fetchOpenEBenchMetrics(toolID)).version;
+    }
+
+    /**
+     * Check whether both the bio.tools annotation and the OpenEBench metrics of
+     * the tool are cached (including the information that the tool is unknown)
+     * and have not expired, i.e., whether benchmarking the tool requires no
+     * requests.
+     *
+     * @param toolID - tool ID, not case sensitive (as used in bio.tools)
+     * @return true if the metadata of the tool is cached, false otherwise.
+     */
+    public static boolean isCached(String toolID) {
+        String key = toolID == null ? "" : toolID.toLowerCase();
+        return isFresh(bioToolsCache.get(key)) && isFresh(openEBenchCache.get(key));
+    }
+
+    private static boolean isFresh(CachedMetadata cached) {
+        return cached != null && !cached.isExpired();
+    }
+
+    /**
+     * Retrieve the metadata from the cache if it is fresh, otherwise from the
+     * sources. Stale fallback values (see
+     * {@link ExternalServiceClient#isStale(JSONObject)}) and failed requests are
+     * not cached, so that they are retried. A copy is returned, as the callers
+     * are allowed to modify the metadata.
+     */
+    private static JSONObject fetchCached(Map<String, CachedMetadata> cache, String toolID, SourceCall call)
+            throws IOException {
+        return new JSONObject(getCached(cache, toolID, call).metadata);
+    }
+
+    private static CachedMetadata getCached(Map<String, CachedMetadata> cache, String toolID, SourceCall call)
+            throws IOException {
+        String key = toolID == null ? "" : toolID.toLowerCase();
+        CachedMetadata cached = cache.get(key);
+        if (cached == null || cached.isExpired()) {
+            try {
+                JSONObject metadata = fetch(toolID, call);
+                cached = new CachedMetadata(metadata.toString());
+                if (!ExternalServiceClient.isStale(metadata)) {
+                    cache.put(key, cached);
+                }
+            } catch (ResourceNotFoundException e) {
+                cache.put(key, new CachedMetadata(null));
+                throw e;
+            }
+        }
+        if (cached.metadata == null) {
+            throw new ResourceNotFoundException("Tool " + toolID + " was not found in any of the metadata sources.");
+        }
+        return cached;
+    }
+
+    private static JSONObject fetch(String toolID, SourceCall call) throws IOException {
+        IOException lastException = null;
+        for (ToolMetadataSource source : sources) {
+            try {
+                return call.apply(source);
+            } catch (ResourceNotFoundException e) {
+                log.debug("Tool {} not found in {}.", toolID, source.getName());
+                lastException = lastException == null ? e : lastException;
+            } catch (IOException e) {
+                log.debug("Tool {} could not be retrieved from {}: {}", toolID, source.getName(), e.getMessage());
+                lastException = e;
+            }
+        }
+        throw lastException != null ? lastException
+                : new ResourceNotFoundException("No tool metadata sources are configured.");
+    }
+
+    private static List<ToolMetadataSource> defaultSources() {
+        List<ToolMetadataSource> defaults = new ArrayList<>();
+        defaults.add(localIndex);
+        if (RestApeSettings.getBoolean("TOOL_METADATA_OFFLINE", false)) {
+            log.info("Offline mode: tool metadata is only retrieved from the local index.");
+        } else {
+            defaults.add(new RemoteToolMetadataSource());
+        }
+        return defaults;
+    }
+
+    private static Path getIndexDir() {
+        return Paths.get(RestApeSettings.get("TOOL_INDEX_DIR",
+                Paths.get(System.getProperty("user.dir"), "toolIndex").toString()));
+    }
+
+    /**
+     * Serialized metadata of a tool (or null if the tool is unknown), together with
+     * its version and the time it was retrieved.
+     */
+    private static class CachedMetadata {
+        private final String metadata;
+        private final String version;
+        private final long fetchedAt = System.currentTimeMillis();
+
+        CachedMetadata(String metadata) {
+            this.metadata = metadata;
+            this.version = metadata == null ? null : RestApeUtils.generateStringHash(metadata, 32);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - fetchedAt > metadataTtlMs;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SourceCall {
+        JSONObject apply(ToolMetadataSource source) throws IOException;
+    }
+}
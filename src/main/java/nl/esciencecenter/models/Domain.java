@@ -1,30 +1,74 @@
 package nl.esciencecenter.models;
 
+import org.json.JSONObject;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+/**
+ * Class representing a registered domain, which can be referred to by its ID
+ * instead of the URL of its configuration file.
+ */
 @Entity
-@Table
+@Table(name = "domain", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_domain_name", columnNames = "domain_name"),
+        @UniqueConstraint(name = "uk_domain_config_url", columnNames = "domain_config_url") })
 @Getter
 @Setter
 @NoArgsConstructor
 public class Domain {
     @Id
-    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
     private int id;
 
-    @Column
+    @Column(name = "domain_name", nullable = false)
     private String domainName;
 
-    @Column
+    @Column(name = "domain_config_url", nullable = false, length = 1024)
     private String domainConfigURL;
 
     @Column
     private String cashedFilePath;
 
-}
\ No newline at end of file
+    /**
+     * Time for which the responses of the domain endpoints are cached, in
+     * seconds. If null, {@code DOMAIN_CACHE_TTL_SECONDS} is used, 0 disables the
+     * cache.
+     */
+    @Column(name = "cache_ttl_seconds")
+    private Integer cacheTtlSeconds;
+
+    /**
+     * Whether the domain is loaded in the background when it is registered and
+     * when the service starts, so that the first requests are served from the
+     * cache.
+     */
+    @Column(name = "warm_up", nullable = false)
+    private boolean warmUp;
+
+    /**
+     * Convert the domain into a JSON object, in the format of the
+     * {@code /domains} endpoints.
+     *
+     * @return JSON representation of the domain.
+     */
+    public JSONObject toJSONObject() {
+        JSONObject json = new JSONObject();
+        json.put("domain_id", id);
+        json.put("domain_name", domainName);
+        json.put("config_path", domainConfigURL);
+        json.put("cache_ttl_seconds", cacheTtlSeconds == null ? JSONObject.NULL : cacheTtlSeconds);
+        json.put("warm_up", warmUp);
+        return json;
+    }
+
+}
@@ -2,29 +2,57 @@ package nl.esciencecenter.models;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+/**
+ * Class representing a precomputed synthesis run of a registered domain, using
+ * the default configuration of the domain with a fixed solution length.
+ */
 @Entity
-@Table
+@Table(name = "domain_synthesis_cashe", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_domain_synthesis_length", columnNames = { "domain_id", "solution_length" }) })
 @Getter
 @Setter
 @NoArgsConstructor
 public class DomainSynthesisCashe {
     @Id
-    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
     private int id;
 
-    @Column
+    @Column(name = "domain_id", nullable = false)
     private int domainID;
 
-    @Column
+    @Column(name = "solution_length", nullable = false)
     private int solutionLength;
 
-    @Column
+    /**
+     * Path to the file with the metadata of the synthesized workflows.
+     */
+    @Column(name = "cashed_file_path", length = 1024)
     private String cashedFilePath;
 
-}
\ No newline at end of file
+    @Column(name = "run_id", length = 32)
+    private String runID;
+
+    /**
+     * Hash of the configuration file of the domain and the files it refers to,
+     * at the time of the synthesis.
+     */
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    /**
+     * Time of the synthesis, in milliseconds since the epoch.
+     */
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+}
@@ -0,0 +1,70 @@
+package nl.esciencecenter.models;
+
+import org.json.JSONObject;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Class representing a synthesis run, whose solutions are stored in the
+ * filesystem. The runs are indexed by domain, creation time and the hash of
+ * their configuration.
+ */
+@Entity
+@Table(name = "synthesis_run", indexes = {
+        @Index(name = "idx_synthesis_run_domain", columnList = "domain"),
+        @Index(name = "idx_synthesis_run_created_at", columnList = "created_at"),
+        @Index(name = "idx_synthesis_run_config_hash", columnList = "config_hash") })
+@Getter
+@Setter
+@NoArgsConstructor
+public class SynthesisRun {
+    @Id
+    @Column(name = "run_id", length = 32)
+    private String runID;
+
+    /**
+     * Tool annotations of the domain the run was synthesized in.
+     */
+    @Column(name = "domain", length = 1024)
+    private String domain;
+
+    @Column(name = "config_hash", length = 32)
+    private String configHash;
+
+    /**
+     * Creation time of the run, in milliseconds since the epoch.
+     */
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "solution_count", nullable = false)
+    private int solutionCount;
+
+    @Column(name = "benchmarked", nullable = false)
+    private boolean benchmarked;
+
+    /**
+     * Convert the run into a JSON object, in the format of the {@code /runs}
+     * endpoints.
+     *
+     * @return JSON representation of the run.
+     */
+    public JSONObject toJSONObject() {
+        JSONObject json = new JSONObject();
+        json.put("run_id", runID);
+        json.put("domain", domain == null ? JSONObject.NULL : domain);
+        json.put("config_hash", configHash == null ? JSONObject.NULL : configHash);
+        json.put("created_at", createdAt);
+        json.put("solution_count", solutionCount);
+        json.put("benchmarked", benchmarked);
+        return json;
+    }
+
+}
@@ -1,15 +1,20 @@
 package nl.esciencecenter.models;
 
+import org.json.JSONObject;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table
+@Table(indexes = @Index(name = "idx_workflow_synthesis_run_id", columnList = "synthesis_run_id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,22 +23,65 @@ import lombok.Setter;
  */
 public class Workflow {
     @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column
     private int id;
 
     @Column
-    private String domainName;
+    private String workflowName;
+
+    /**
+     * Number of the workflow within its run, i.e., the number in its name.
+     */
+    @Column
+    private int workflowNumber;
 
     @Column
+    private String descriptiveName;
+
+    @Column(length = 4096)
+    private String description;
+
+    @Column
+    private int workflowLength;
+
+    @Column(length = 1024)
+    private String domainName;
+
+    @Column(name = "synthesis_run_id", length = 32)
     private String synthesisRunID;
 
+    /**
+     * Path to the CWL file, relative to the directory of the run.
+     */
     @Column
     private String cwlFilePath;
 
+    /**
+     * Path to the PNG figure, relative to the directory of the run.
+     */
     @Column
     private String pngFilePath;
 
     @Column
     private String structureJSON;
 
-}
\ No newline at end of file
+    /**
+     * Convert the workflow into a JSON object, with the same fields as the
+     * metadata returned by the synthesis.
+     *
+     * @return JSON representation of the workflow.
+     */
+    public JSONObject toJSONObject() {
+        JSONObject json = new JSONObject();
+        json.put("workflow_name", workflowName);
+        json.put("descriptive_name", descriptiveName == null ? JSONObject.NULL : descriptiveName);
+        json.put("description", description == null ? JSONObject.NULL : description);
+        json.put("workflow_length", workflowLength);
+        json.put("run_id", synthesisRunID);
+        json.put("cwl_name", workflowName + ".cwl");
+        json.put("figure_name", workflowName);
+        return json;
+    }
+
+}
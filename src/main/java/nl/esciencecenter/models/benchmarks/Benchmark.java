@@ -1,10 +1,15 @@
 package nl.esciencecenter.models.benchmarks;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -44,6 +49,21 @@ public class Benchmark {
     @Getter
     @Setter
     private List<WorkflowStepBenchmark> workflow;
+    /**
+     * Whether the benchmark is (partially) based on stale tool metadata, because
+     * an external service was not available.
+     */
+    @Getter
+    @Setter
+    private boolean stale;
+    /**
+     * JSON representation of the benchmark as provided by an external service, or
+     * null. If it is set, it is reported as is, so that the fields unknown to this
+     * class and the types of the values are kept.
+     */
+    @Getter
+    @Setter
+    private JSONObject sourceJson;
 
     /**
      * Generate a JSON object containing the benchmark information. The content can
@@ -52,12 +72,18 @@ public class Benchmark {
      * @return JSON object containing the benchmark information.
      */
     public JSONObject toJSON() {
+        if (sourceJson != null) {
+            return new JSONObject(sourceJson.toString());
+        }
         JSONObject benchmarkJson = this.benchmarkInfo.getTitleJson();
 
         JSONObject aggregateValue = new JSONObject();
         aggregateValue.put("value", value);
         aggregateValue.put("desirability", desirabilityValue);
         benchmarkJson.put("aggregate_value", aggregateValue);
+        if (stale) {
+            benchmarkJson.put("stale", true);
+        }
 
         JSONArray workflowJson = new JSONArray();
         for (WorkflowStepBenchmark step : workflow) {
@@ -66,4 +92,96 @@ public class Benchmark {
         benchmarkJson.put("steps", workflowJson);
         return benchmarkJson;
     }
+
+    /**
+     * Write the benchmark information as a JSON object (in the same format as
+     * {@link #toJSON()}) to the generator, without building the JSON in memory.
+     * 
+     * @param generator - JSON generator to write to
+     * @throws IOException if the JSON cannot be written
+     */
+    public void writeJSON(JsonGenerator generator) throws IOException {
+        if (sourceJson != null) {
+            generator.writeRawValue(sourceJson.toString());
+            return;
+        }
+        generator.writeStartObject();
+        this.benchmarkInfo.writeTitleFields(generator);
+
+        generator.writeObjectFieldStart("aggregate_value");
+        generator.writeStringField("value", value);
+        generator.writeNumberField("desirability", desirabilityValue);
+        generator.writeEndObject();
+        if (stale) {
+            generator.writeBooleanField("stale", true);
+        }
+
+        generator.writeArrayFieldStart("steps");
+        for (WorkflowStepBenchmark step : workflow) {
+            step.writeJSON(generator);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Create a benchmark that could not be computed, e.g., because the service
+     * providing it did not respond in time.
+     * 
+     * @param benchmarkInfo - General information about the benchmark.
+     * @return Benchmark with the value "not available" and desirability 0.
+     */
+    public static Benchmark notAvailable(BenchmarkBase benchmarkInfo) {
+        Benchmark benchmark = new Benchmark(benchmarkInfo);
+        benchmark.setValue("not available");
+        benchmark.setDesirabilityValue(0);
+        benchmark.setWorkflow(new ArrayList<>());
+        return benchmark;
+    }
+
+    /**
+     * Parse a benchmark from its JSON representation (see {@link #toJSON()}), as
+     * provided by external benchmarking services.
+     * 
+     * @param benchmarkJson - JSON object containing the benchmark information.
+     * @return Benchmark object described by the JSON.
+     */
+    public static Benchmark fromJSON(JSONObject benchmarkJson) {
+        Benchmark benchmark = new Benchmark(new BenchmarkBase(benchmarkJson.optString("title"),
+                benchmarkJson.optString("category"), benchmarkJson.optString("description"),
+                benchmarkJson.optString("unit"), null, null));
+        JSONObject aggregateValue = Optional.ofNullable(benchmarkJson.optJSONObject("aggregate_value"))
+                .orElseGet(JSONObject::new);
+        benchmark.setValue(aggregateValue.optString("value"));
+        benchmark.setDesirabilityValue(aggregateValue.optDouble("desirability", 0));
+        benchmark.setStale(benchmarkJson.optBoolean("stale", false));
+
+        List<WorkflowStepBenchmark> steps = new ArrayList<>();
+        JSONArray stepsJson = benchmarkJson.optJSONArray("steps");
+        for (int i = 0; stepsJson != null && i < stepsJson.length(); i++) {
+            JSONObject stepJson = stepsJson.getJSONObject(i);
+            WorkflowStepBenchmark step = new WorkflowStepBenchmark();
+            step.setDescription(stepJson.optString("label"));
+            step.setValue(stepJson.optString("value"));
+            step.setDesirabilityValue(stepJson.optDouble("desirability", 0));
+            step.setStale(stepJson.optBoolean("stale", false));
+            steps.add(step);
+        }
+        benchmark.setWorkflow(steps);
+        return benchmark;
+    }
+
+    /**
+     * Parse a benchmark provided by an external benchmarking service (see
+     * {@link #fromJSON(JSONObject)}), keeping its JSON representation to be
+     * reported as is.
+     * 
+     * @param benchmarkJson - JSON object containing the benchmark information.
+     * @return Benchmark object described by the JSON.
+     */
+    public static Benchmark fromExternalJSON(JSONObject benchmarkJson) {
+        Benchmark benchmark = fromJSON(benchmarkJson);
+        benchmark.setSourceJson(benchmarkJson);
+        return benchmark;
+    }
 }
@@ -1,7 +1,11 @@
 package nl.esciencecenter.models.benchmarks;
 
+import java.io.IOException;
+
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
@@ -32,4 +36,18 @@ public class BenchmarkBase {
         return benchmarkJson;
     }
 
-}
\ No newline at end of file
+    /**
+     * Write the general information about the benchmark (the fields of
+     * {@link #getTitleJson()}) to the generator, as fields of the current object.
+     * 
+     * @param generator - JSON generator to write to
+     * @throws IOException if the JSON cannot be written
+     */
+    public void writeTitleFields(JsonGenerator generator) throws IOException {
+        generator.writeStringField("title", benchmarkTitle);
+        generator.writeStringField("category", benchmarkCategory);
+        generator.writeStringField("description", benchmarkDescription);
+        generator.writeStringField("unit", unit);
+    }
+
+}
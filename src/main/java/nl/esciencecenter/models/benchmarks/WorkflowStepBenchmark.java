@@ -1,8 +1,11 @@
 package nl.esciencecenter.models.benchmarks;
 
+import java.io.IOException;
 
 import org.json.JSONObject;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -29,6 +32,11 @@ public class WorkflowStepBenchmark {
      * (tool).
      */
     private double desirabilityValue;
+    /**
+     * Whether the value is based on stale tool metadata, because an external
+     * service was not available.
+     */
+    private boolean stale;
 
     @Override
     public String toString() {
@@ -47,8 +55,28 @@ public class WorkflowStepBenchmark {
         json.put("label", description);
         json.put("value", value);
         json.put("desirability", desirabilityValue);
+        if (stale) {
+            json.put("stale", true);
+        }
         return json;
     }
 
+    /**
+     * Write the tool benchmark information as a JSON object (in the same format as
+     * {@link #toJSON()}) to the generator.
+     * 
+     * @param generator - JSON generator to write to
+     * @throws IOException if the JSON cannot be written
+     */
+    public void writeJSON(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("label", description);
+        generator.writeStringField("value", value);
+        generator.writeNumberField("desirability", desirabilityValue);
+        if (stale) {
+            generator.writeBooleanField("stale", true);
+        }
+        generator.writeEndObject();
+    }
 
-}
\ No newline at end of file
+}
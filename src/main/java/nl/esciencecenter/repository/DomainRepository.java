@@ -1,9 +1,15 @@
 package nl.esciencecenter.repository;
 
+import java.util.Optional;
+
 import org.springframework.data.repository.CrudRepository;
 
 import nl.esciencecenter.models.Domain;
 
 public interface DomainRepository extends CrudRepository<Domain, Integer> {
 
+    Optional<Domain> findByDomainName(String domainName);
+
+    Optional<Domain> findByDomainConfigURL(String domainConfigURL);
+
 }
@@ -0,0 +1,18 @@
+package nl.esciencecenter.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.repository.CrudRepository;
+
+import nl.esciencecenter.models.DomainSynthesisCashe;
+
+public interface DomainSynthesisCasheRepository extends CrudRepository<DomainSynthesisCashe, Integer> {
+
+    Optional<DomainSynthesisCashe> findByDomainIDAndSolutionLength(int domainID, int solutionLength);
+
+    List<DomainSynthesisCashe> findByDomainID(int domainID);
+
+    List<DomainSynthesisCashe> findByRunID(String runID);
+
+}
@@ -0,0 +1,13 @@
+package nl.esciencecenter.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import nl.esciencecenter.models.SynthesisRun;
+
+public interface SynthesisRunRepository extends JpaRepository<SynthesisRun, String> {
+
+    Page<SynthesisRun> findByDomain(String domain, Pageable pageable);
+
+}
@@ -0,0 +1,15 @@
+package nl.esciencecenter.repository;
+
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+
+import nl.esciencecenter.models.Workflow;
+
+public interface WorkflowRepository extends CrudRepository<Workflow, Integer> {
+
+    List<Workflow> findBySynthesisRunIDOrderByWorkflowNumber(String synthesisRunID);
+
+    void deleteBySynthesisRunID(String synthesisRunID);
+
+}
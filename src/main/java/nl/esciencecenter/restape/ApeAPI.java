@@ -2,11 +2,13 @@ package nl.esciencecenter.restape;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
 import nl.uu.cs.ape.APE;
 import nl.uu.cs.ape.configuration.APECoreConfig;
 import nl.uu.cs.ape.configuration.APERunConfig;
@@ -25,7 +27,6 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 
-import guru.nidi.graphviz.engine.Format;
 import lombok.NoArgsConstructor;
 import lombok.AccessLevel;
 
@@ -43,8 +44,12 @@ public class ApeAPI {
      */
     public static APE setupApe(String configFileURL) throws IOException, OWLOntologyCreationException {
 
-        APECoreConfig apeConfiguration = new APECoreConfig(configFileURL);
-        return new APE(apeConfiguration);
+        JSONObject configJson = APEFiles.readPathToJSONObject(configFileURL);
+        APECoreConfig apeConfiguration = new APECoreConfig(configJson);
+        APE apeFramework = new APE(apeConfiguration);
+        ToolMetadataPrefetcher.prefetchDomain(ToolMetadataPrefetcher.getDomainKey(configJson),
+                apeFramework.getDomainSetup().getAllModules());
+        return apeFramework;
     }
 
     /**
@@ -242,23 +247,55 @@ public class ApeAPI {
      */
     public static List<APEWorkflowMetadata> runSynthesis(JSONObject configJson, boolean benchmark)
             throws OWLOntologyCreationException, IOException {
+        return runSynthesis(configJson, benchmark, false);
+    }
+
+    /**
+     * Execute the synthesis of workflows using the APE framework.
+     * 
+     * @param configJson          - configuration of the synthesis run
+     * @param benchmark           - boolean to indicate if the workflows should be
+     *                            benchmarked
+     * @param backgroundBenchmark - boolean to indicate if the benchmarks should be
+     *                            computed in the background, after the synthesis
+     *                            results are returned (see
+     *                            {@link BenchmarkTracker})
+     * @return - List of {@link APEWorkflowMetadata}s with the metadata results of the synthesis, each element
+     *         describes a workflow solution (name, length, runID, path to a CWL
+     *         file, etc.).
+     * @throws OWLOntologyCreationException
+     * @throws IOException
+     */
+    public static List<APEWorkflowMetadata> runSynthesis(JSONObject configJson, boolean benchmark,
+            boolean backgroundBenchmark) throws OWLOntologyCreationException, IOException {
 
         // Define the synthesis run ID
         String runID = RestApeUtils.generateRunID(configJson.toString());
 
-        SolutionsList candidateSolutions = executeSynthesis(configJson, runID);
+        JSONObject apeConfigJson = new JSONObject(configJson.toString());
+        ToolRequirements requirements = ToolRequirements.extractFromConfig(apeConfigJson);
 
-        // Write solutions (as CWL files and figures) to the file system.
-        APE.writeCWLWorkflows(candidateSolutions);
-        APE.writeTavernaDesignGraphs(candidateSolutions, Format.SVG);
-        APE.writeTavernaDesignGraphs(candidateSolutions, Format.PNG);
+        SolutionsList candidateSolutions = executeSynthesis(apeConfigJson, runID, requirements);
+
+        // Write solutions (as CWL files and figures) to the file system, reusing the files of identical workflows.
+        RunObjects.writeSolutions(candidateSolutions, runID);
+        WorkflowIndex.get().addRun(runID, candidateSolutions);
+        // the benchmarked runs are packed once their benchmark files are written
+        if (!benchmark || candidateSolutions.getNumberOfSolutions() == 0) {
+            RunPacks.packIfEnabled(runID);
+        }
+        ArtifactStores.scheduleUpload(runID);
 
         // benchmark workflows if required
-        if (benchmark) {
+        if (benchmark && backgroundBenchmark) {
+            ToolBenchmarkingAPIs.computeBenchmarksInBackground(candidateSolutions, runID);
+        } else if (benchmark) {
             ToolBenchmarkingAPIs.computeBenchmarks(candidateSolutions, runID);
         }
 
-        return workflowMetadataToJson(candidateSolutions, runID, benchmark);
+        List<APEWorkflowMetadata> workflows = workflowMetadataToJson(candidateSolutions, runID, benchmark);
+        RunListeners.runCompleted(runID, configJson, workflows, benchmark);
+        return workflows;
     }
 
     /**
@@ -267,20 +304,27 @@ public class ApeAPI {
      * 
      * @param configJson - configuration of the synthesis run
      * @runID - ID of the synthesis run
+     * @param requirements - requirements the tools in the workflows should
+     *                     satisfy, non-conforming tools are removed from the
+     *                     domain before the synthesis
      * @return - SolutionsList object, which contains the results of the synthesis
      *         as well as information about the synthesis run.
      * @throws IOException
      * @throws OWLOntologyCreationException
      */
-    private static SolutionsList executeSynthesis(JSONObject configJson, String runID)
-            throws OWLOntologyCreationException, IOException {
+    private static SolutionsList executeSynthesis(JSONObject configJson, String runID,
+            ToolRequirements requirements) throws OWLOntologyCreationException, IOException {
 
         String solutionPath = RestApeUtils.createDirectory(runID);
+        requirements.applyTo(configJson, Paths.get(solutionPath));
+        // the tools of a filtered domain are prefetched under its filtered annotations, not as the whole domain
+        String domain = ToolMetadataPrefetcher.getDomainKey(configJson);
 
         APE apeFramework = null;
 
         // set up the APE framework
         apeFramework = new APE(configJson);
+        ToolMetadataPrefetcher.prefetchDomain(domain, apeFramework.getDomainSetup().getAllModules());
 
         APERunConfig runConfig = new APERunConfig(configJson, apeFramework.getDomainSetup());
 
@@ -0,0 +1,89 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+
+/**
+ * Interface {@link BenchmarkProvider} describes a source of design-time
+ * benchmarks for workflows (e.g., bio.tools or OpenEBench). Implementations
+ * annotated as Spring components are discovered automatically and registered in
+ * {@link BenchmarkProviders}. The providers are executed in parallel for each
+ * workflow, each within its own timeout.
+ */
+public interface BenchmarkProvider {
+
+    /**
+     * Get the name of the provider, used in logs and metrics.
+     *
+     * @return Name of the provider.
+     */
+    String getName();
+
+    /**
+     * Get the information about the benchmarks computed by the provider. It is
+     * used to report the benchmarks as not available, in case the provider fails
+     * or does not respond in time.
+     *
+     * @return Information about each benchmark computed by the provider, or an
+     *         empty list if it is not known in advance.
+     */
+    List<BenchmarkBase> getBenchmarkInfo();
+
+    /**
+     * Compute the benchmarks of the workflow.
+     *
+     * @param workflow - workflow for which the benchmarks should be computed
+     * @return List of computed benchmarks.
+     * @throws IOException In case the benchmarks could not be computed.
+     */
+    List<Benchmark> computeBenchmarks(SolutionWorkflow workflow) throws IOException;
+
+    /**
+     * Release what the provider kept for the workflow while computing its cache
+     * key and benchmarks (e.g., per thread). It is called on the thread that
+     * computed them, once the benchmarks were computed or found in the cache, and
+     * also if that failed.
+     *
+     * @param workflow - workflow for which the benchmarks were computed
+     */
+    default void release(SolutionWorkflow workflow) {
+    }
+
+    /**
+     * Get the maximum time the provider is allowed to spend on a single workflow.
+     *
+     * @return Timeout in milliseconds.
+     */
+    default long getTimeoutMs() {
+        return BenchmarkProviders.DEFAULT_TIMEOUT_MS;
+    }
+
+    /**
+     * Get the time for which the computed benchmarks of a workflow can be reused
+     * by other workflows with the same cache key.
+     *
+     * @return Time to live in milliseconds, 0 if the results should not be cached.
+     */
+    default long getCacheTtlMs() {
+        return 0;
+    }
+
+    /**
+     * Get the key under which the benchmarks of the workflow are cached. Workflows
+     * with the same key are expected to have the same benchmarks. By default the
+     * key is the sequence of tools in the workflow.
+     *
+     * @param workflow - workflow for which the benchmarks are computed
+     * @return Cache key of the workflow.
+     */
+    default String getCacheKey(SolutionWorkflow workflow) {
+        return workflow.getModuleNodes().stream()
+                .map(toolNode -> toolNode.getUsedModule().getPredicateLabel())
+                .collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,18 @@
+package nl.esciencecenter.restape;
+
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Spring component that registers all the discovered {@link BenchmarkProvider}
+ * beans in {@link BenchmarkProviders}. The benchmarks are reported in the order
+ * of the providers (see {@link org.springframework.core.annotation.Order}).
+ */
+@Component
+public class BenchmarkProviderRegistry {
+
+    public BenchmarkProviderRegistry(List<BenchmarkProvider> providers) {
+        BenchmarkProviders.setProviders(providers);
+    }
+}
@@ -0,0 +1,205 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.externalAPIs.BioToolsBenchmarkProvider;
+import nl.esciencecenter.externalAPIs.OpenEBenchBenchmarkProvider;
+import nl.esciencecenter.externalAPIs.PubmetricBenchmarkProvider;
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+
+/**
+ * The {@code BenchmarkProviders} class keeps the registered
+ * {@link BenchmarkProvider}s and executes them for the workflows. The providers
+ * of a workflow are executed in parallel and each of them is given its own
+ * timeout. A provider that fails or does not respond in time does not block the
+ * other ones, its benchmarks are reported as not available instead.<br>
+ * <br>
+ * The latency of each provider is recorded in the
+ * {@code restape.benchmark.provider} timer, tagged with the provider name and
+ * the outcome of the execution.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BenchmarkProviders {
+
+    /**
+     * Default timeout (in milliseconds) of a provider.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = RestApeSettings.getLong("BENCHMARK_TIMEOUT_MS", 10000);
+    private static final int CACHE_MAX_ENTRIES = RestApeSettings.getInt("BENCHMARK_CACHE_MAX_ENTRIES", 10000);
+
+    private static final List<BenchmarkProvider> providers = new CopyOnWriteArrayList<>(defaultProviders());
+    /**
+     * Cached benchmarks per provider and cache key, evicted in least recently
+     * used order.
+     */
+    private static final Map<String, CachedBenchmarks> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedBenchmarks> eldest) {
+            return size() > CACHE_MAX_ENTRIES;
+        }
+    };
+    /**
+     * Executor of the providers. Its size is not bounded, as the number of
+     * concurrent executions is already bounded by the number of workflows
+     * benchmarked in parallel.
+     */
+    private static final ExecutorService providerExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "benchmark-provider");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Replace the registered providers.
+     *
+     * @param newProviders - providers in the order in which their benchmarks
+     *                     should be reported
+     */
+    public static void setProviders(List<BenchmarkProvider> newProviders) {
+        providers.clear();
+        providers.addAll(newProviders);
+        synchronized (cache) {
+            cache.clear();
+        }
+        log.info("Registered benchmark providers: {}", newProviders.stream().map(BenchmarkProvider::getName).toList());
+    }
+
+    /**
+     * Get the registered providers.
+     *
+     * @return Providers in the order in which their benchmarks are reported.
+     */
+    public static List<BenchmarkProvider> getProviders() {
+        return new ArrayList<>(providers);
+    }
+
+    /**
+     * Compute the benchmarks of the workflow, using all the registered providers
+     * in parallel.
+     *
+     * @param workflow - workflow for which the benchmarks should be computed
+     * @return Benchmarks of all the providers, in the order of the providers.
+     */
+    public static List<Benchmark> computeBenchmarks(SolutionWorkflow workflow) {
+        List<BenchmarkProvider> currentProviders = getProviders();
+        List<Future<List<Benchmark>>> results = new ArrayList<>();
+        long submittedAt = System.nanoTime();
+        for (BenchmarkProvider provider : currentProviders) {
+            results.add(providerExecutor.submit(() -> computeCached(provider, workflow)));
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int i = 0; i < currentProviders.size(); i++) {
+            benchmarks.addAll(awaitResult(currentProviders.get(i), results.get(i), workflow, submittedAt));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Compute the benchmarks using the provider, unless they are cached.
+     */
+    static List<Benchmark> computeCached(BenchmarkProvider provider, SolutionWorkflow workflow)
+            throws IOException {
+        try {
+            return lookupOrCompute(provider, workflow);
+        } finally {
+            provider.release(workflow);
+        }
+    }
+
+    private static List<Benchmark> lookupOrCompute(BenchmarkProvider provider, SolutionWorkflow workflow)
+            throws IOException {
+        long ttlMs = provider.getCacheTtlMs();
+        String key = ttlMs > 0 ? provider.getName() + "|" + provider.getCacheKey(workflow) : null;
+        if (key != null) {
+            CachedBenchmarks cached;
+            synchronized (cache) {
+                cached = cache.get(key);
+            }
+            if (cached != null && System.currentTimeMillis() - cached.createdAt <= ttlMs) {
+                Metrics.counter("restape.benchmark.provider.cache.hits", "provider", provider.getName()).increment();
+                return cached.benchmarks;
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Benchmark> benchmarks;
+        try {
+            benchmarks = provider.computeBenchmarks(workflow);
+        } catch (IOException | RuntimeException e) {
+            timer(provider, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        timer(provider, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (key != null && benchmarks.stream().noneMatch(Benchmark::isStale)) {
+            synchronized (cache) {
+                cache.put(key, new CachedBenchmarks(benchmarks));
+            }
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Wait for the result of the provider and fall back to benchmarks that are not
+     * available, if the provider failed or did not respond in time.
+     */
+    private static List<Benchmark> awaitResult(BenchmarkProvider provider, Future<List<Benchmark>> result,
+            SolutionWorkflow workflow, long submittedAt) {
+        long remainingNs = TimeUnit.MILLISECONDS.toNanos(provider.getTimeoutMs()) - (System.nanoTime() - submittedAt);
+        try {
+            return result.get(Math.max(remainingNs, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timer(provider, "timeout").record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            log.warn("Benchmark provider {} timed out for workflow {}.", provider.getName(), workflow.getFileName());
+        } catch (ExecutionException e) {
+            log.warn("Benchmark provider {} failed for workflow {}.", provider.getName(), workflow.getFileName(),
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+        }
+        List<Benchmark> unavailable = new ArrayList<>();
+        for (BenchmarkBase benchmarkInfo : provider.getBenchmarkInfo()) {
+            unavailable.add(Benchmark.notAvailable(benchmarkInfo));
+        }
+        return unavailable;
+    }
+
+    private static Timer timer(BenchmarkProvider provider, String outcome) {
+        return Metrics.timer("restape.benchmark.provider", "provider", provider.getName(), "outcome", outcome);
+    }
+
+    private static List<BenchmarkProvider> defaultProviders() {
+        return List.of(new BioToolsBenchmarkProvider(), new OpenEBenchBenchmarkProvider(),
+                new PubmetricBenchmarkProvider());
+    }
+
+    private static class CachedBenchmarks {
+        private final List<Benchmark> benchmarks;
+        private final long createdAt = System.currentTimeMillis();
+
+        CachedBenchmarks(List<Benchmark> benchmarks) {
+            this.benchmarks = benchmarks;
+        }
+    }
+}
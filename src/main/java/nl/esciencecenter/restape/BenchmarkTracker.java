@@ -0,0 +1,226 @@
+package nl.esciencecenter.restape;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * The {@code BenchmarkTracker} class keeps track of the design-time benchmarks
+ * that are being computed for each synthesis run. It is used to report which
+ * workflow benchmarks are ready, while the benchmarking continues in the
+ * background. The progress of a run is kept for
+ * {@code BENCHMARK_STATUS_TTL_MINUTES} after its benchmarking finished.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BenchmarkTracker {
+
+    /**
+     * Maximum time (in milliseconds) a status request is allowed to wait for new
+     * benchmarks.
+     */
+    public static final long MAX_WAIT_MS = 30000;
+
+    /**
+     * Time (in milliseconds) the progress of a run is kept after its
+     * benchmarking finished.
+     */
+    private static final long finishedTtlMs = TimeUnit.MINUTES
+            .toMillis(RestApeSettings.getLong("BENCHMARK_STATUS_TTL_MINUTES", 60));
+
+    private static final Map<String, RunProgress> runs = new ConcurrentHashMap<>();
+
+    /**
+     * Register a synthesis run whose workflows are going to be benchmarked.
+     *
+     * @param runID         - ID of the synthesis run
+     * @param workflowNames - names of the workflows that will be benchmarked
+     */
+    static void registerRun(String runID, List<String> workflowNames) {
+        evictFinished(System.currentTimeMillis());
+        runs.put(runID, new RunProgress(runID, workflowNames));
+    }
+
+    /**
+     * Mark the benchmark of the given workflow as computed and written to the file
+     * system.
+     *
+     * @param runID        - ID of the synthesis run
+     * @param workflowName - name of the benchmarked workflow
+     * @return true if this was the last workflow of the run to be processed, false
+     *         otherwise.
+     */
+    static boolean markCompleted(String runID, String workflowName) {
+        RunProgress progress = runs.get(runID);
+        return progress != null && progress.update(workflowName, true);
+    }
+
+    /**
+     * Mark the benchmark of the given workflow as failed.
+     *
+     * @param runID        - ID of the synthesis run
+     * @param workflowName - name of the workflow that could not be benchmarked
+     * @return true if this was the last workflow of the run to be processed, false
+     *         otherwise.
+     */
+    static boolean markFailed(String runID, String workflowName) {
+        RunProgress progress = runs.get(runID);
+        return progress != null && progress.update(workflowName, false);
+    }
+
+    /**
+     * Stop tracking the run, e.g., after its files were removed.
+     *
+     * @param runID - ID of the synthesis run
+     */
+    static void remove(String runID) {
+        runs.remove(runID);
+    }
+
+    /**
+     * Stop tracking the runs whose benchmarking finished more than
+     * {@code BENCHMARK_STATUS_TTL_MINUTES} ago.
+     *
+     * @param now - current time, in milliseconds
+     */
+    static void evictFinished(long now) {
+        runs.values().removeIf(progress -> progress.isExpired(now));
+    }
+
+    /**
+     * Get the benchmarking progress of the given run.
+     *
+     * @param runID - ID of the synthesis run
+     * @return Progress of the run, or empty if the run is not tracked.
+     */
+    public static Optional<RunProgress> getProgress(String runID) {
+        return Optional.ofNullable(runs.get(runID)).filter(progress -> !progress.isExpired(System.currentTimeMillis()));
+    }
+
+    /**
+     * Wait until more than {@code knownCount} workflows of the run are processed,
+     * the run is finished or the timeout expires, whichever comes first.
+     *
+     * @param runID      - ID of the synthesis run
+     * @param knownCount - number of processed workflows the client already knows
+     *                   about
+     * @param timeoutMs  - maximum time to wait in milliseconds (capped at
+     *                   {@link #MAX_WAIT_MS})
+     * @return Progress of the run, or empty if the run is not tracked.
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public static Optional<RunProgress> awaitProgress(String runID, int knownCount, long timeoutMs)
+            throws InterruptedException {
+        RunProgress progress = getProgress(runID).orElse(null);
+        if (progress == null) {
+            return Optional.empty();
+        }
+        progress.await(knownCount, Math.min(Math.max(timeoutMs, 0), MAX_WAIT_MS));
+        return Optional.of(progress);
+    }
+
+    /**
+     * Benchmarking progress of a single synthesis run.
+     */
+    public static class RunProgress {
+
+        private final String runID;
+        private final List<String> workflowNames;
+        private final Set<String> completed = new LinkedHashSet<>();
+        private final Set<String> failed = new LinkedHashSet<>();
+        /**
+         * Time at which all the workflows were processed, or 0 if the run is not
+         * finished.
+         */
+        private long finishedAt;
+
+        RunProgress(String runID, List<String> workflowNames) {
+            this.runID = runID;
+            this.workflowNames = new ArrayList<>(workflowNames);
+            if (workflowNames.isEmpty()) {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+
+        private synchronized boolean update(String workflowName, boolean success) {
+            if (success) {
+                completed.add(workflowName);
+            } else {
+                failed.add(workflowName);
+            }
+            notifyAll();
+            if (finishedAt == 0 && isFinished()) {
+                finishedAt = System.currentTimeMillis();
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized void await(int knownCount, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long remaining = timeoutMs;
+            while (processedCount() <= knownCount && !isFinished() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+
+        private synchronized boolean isExpired(long now) {
+            return finishedAt != 0 && now - finishedAt > finishedTtlMs;
+        }
+
+        private int processedCount() {
+            return completed.size() + failed.size();
+        }
+
+        /**
+         * Check whether all the workflows of the run were processed.
+         *
+         * @return true if no more benchmarks are expected, false otherwise.
+         */
+        public synchronized boolean isFinished() {
+            return processedCount() >= workflowNames.size();
+        }
+
+        /**
+         * Get the names of the workflows whose benchmarks are ready.
+         *
+         * @return Names of the benchmarked workflows, in order of completion.
+         */
+        public synchronized List<String> getCompleted() {
+            return new ArrayList<>(completed);
+        }
+
+        /**
+         * Generate a JSON object describing the progress of the run. Ready benchmarks
+         * are listed by their benchmark file names (as provided under
+         * 'benchmark_file' after the synthesis run).
+         *
+         * @return JSON object describing the progress.
+         */
+        public synchronized JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("run_id", runID);
+            json.put("total", workflowNames.size());
+            JSONArray ready = new JSONArray();
+            completed.forEach(workflowName -> ready.put(workflowName + ".json"));
+            json.put("ready", ready);
+            JSONArray failedJson = new JSONArray();
+            failed.forEach(workflowName -> failedJson.put(workflowName + ".json"));
+            json.put("failed", failedJson);
+            json.put("processed", processedCount());
+            json.put("finished", isFinished());
+            return json;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package nl.esciencecenter.restape;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code ByteBufferInputStream} class reads the content of a byte buffer,
+ * e.g., a memory mapped or off-heap buffer, without copying it first. The
+ * stream reads a duplicate of the buffer, so the position of the buffer is not
+ * changed.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Create a stream reading the remaining content of the buffer.
+     *
+     * @param buffer - buffer to read
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -1,35 +1,60 @@
 package nl.esciencecenter.restape;
 
 import java.io.BufferedInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import java.nio.file.NoSuchFileException;
 
-import org.apache.commons.io.FileUtils;
-
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import nl.esciencecenter.controller.dto.CWLZip;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
 
 /**
  * The {@code IOUtils} class provides static methods to read the input files.
  */
+@Slf4j
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class IOUtils {
 
         /**
-         * URL to the README file containing instructions on how to run the workflows.
+         * Default URL to the README file containing instructions on how to run the
+         * workflows, can be changed using the {@code README_URL} setting.
+         */
+        private static final String DEFAULT_README_URL = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/add_instructions/instructions.txt";
+
+        /**
+         * Size of the buffers used to copy the files into the zip.
+         */
+        private static final int BUFFER_SIZE = 64 * 1024;
+        /**
+         * Time after which the download of the README file is retried, in case it
+         * could not be downloaded.
+         */
+        private static final long README_RETRY_MS = 10 * 60 * 1000L;
+        /**
+         * Time for which a downloaded README file is used, before it is downloaded
+         * again to pick up changes of the upstream file.
+         */
+        private static final long README_TTL_MS = RestApeSettings.getLong("README_TTL_MINUTES", 60) * 60 * 1000L;
+        private static byte[] readme = null;
+        /**
+         * Time until which the current README file is used.
          */
-        private static final String README_URL = "https://raw.githubusercontent.com/Workflomics/tools-and-domains/refs/heads/add_instructions/instructions.txt";
+        private static long readmeValidUntil = 0;
 
         /**
          * Get the CWL content of the file at the given path.
@@ -39,7 +64,7 @@ public class IOUtils {
          * @throws IOException - if the file cannot be read
          */
         public static String getLocalCwlFile(Path filePath) throws IOException, NoSuchFileException {
-                return FileUtils.readFileToString(filePath.toFile(), StandardCharsets.UTF_8);
+                return readRunFile(filePath);
         }
 
         /**
@@ -50,51 +75,128 @@ public class IOUtils {
          * @throws IOException - if the file cannot be read
          */
         public static String getLocalBenchmarkFile(Path filePath) throws IOException {
-                return FileUtils.readFileToString(filePath.toFile(), StandardCharsets.UTF_8);
+                return readRunFile(filePath);
+        }
+
+        private static String readRunFile(Path filePath) throws IOException {
+                // the file might be stored in the pack of the run
+                try (InputStream in = RunPacks.newInputStream(filePath)) {
+                        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
         }
 
         /**
-         * Zip the provided CWL files as well as the CWL input file (`inputs.yml`) into
-         * a single zip file. In addition, a `readme.txt` file with instructions on how
-         * to run the workflows is added to the zip.
-         * 
-         * @param cwlZipInfo - the CWL zip information, containing the runID and the list of workflow file names.
+         * Collect the files of the zip with the provided CWL files, i.e., the CWL
+         * files, their SVG figures and the CWL input file (`input.yml`). The files are
+         * checked before the zip is streamed, so that missing files can be reported
+         * to the client.
          * 
-         * @return Path to the created zip file.
-         * @throws IOException Error is thrown if the zip file cannot be created or
-         *                     written to.
+         * @param cwlZipInfo - the CWL zip information, containing the runID and the
+         *                   list of workflow file names.
+         * @return Paths to the files of the zip.
+         * @throws NoSuchFileException - if any of the files does not exist
          */
-        public static Path zipFilesForLocalExecution(CWLZip cwlZipInfo) throws IOException {
-                
+        public static List<Path> getZipFiles(CWLZip cwlZipInfo) throws NoSuchFileException {
                 List<Path> cwlFilePaths = cwlZipInfo.getCWLandSVGPaths();
-                
-                // Add the CWL input file to the zip
-                Path cwlInputPath = RestApeUtils.calculatePath(cwlZipInfo.getRunID(), "CWL", "input.yml");
-                cwlFilePaths.add(cwlInputPath);
-                
-                Path zipPath = cwlInputPath.getParent().resolve("workflows.zip");
-                try (FileOutputStream fos = new FileOutputStream(zipPath.toFile());
-                                ZipOutputStream zipOut = new ZipOutputStream(fos)) {
-                        for (Path file : cwlFilePaths) {
-                                zipOut.putNextEntry(new ZipEntry(file.getFileName().toString()));
-                                Files.copy(file, zipOut);
-                                zipOut.closeEntry();
+                cwlFilePaths.add(RestApeUtils.calculatePath(cwlZipInfo.getRunID(), "CWL", "input.yml"));
+                for (Path file : cwlFilePaths) {
+                        // the files of runs of other nodes are downloaded from the artifact store
+                        if (!ArtifactStores.fetch(file)) {
+                                throw new NoSuchFileException(file.getFileName().toString());
+                        }
+                }
+                return cwlFilePaths;
+        }
+
+        /**
+         * Write a zip with the provided files to the output stream, e.g., directly to
+         * the HTTP response, without creating the zip file. In addition, a
+         * `readme.txt` file with instructions on how to run the workflows is added to
+         * the zip.
+         * 
+         * @param files - files to be zipped, see {@link #getZipFiles(CWLZip)}
+         * @param out   - stream the zip is written to, it is not closed
+         * @throws IOException Error is thrown if the files cannot be read or the zip
+         *                     cannot be written.
+         */
+        public static void writeZipForLocalExecution(List<Path> files, OutputStream out) throws IOException {
+                ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (Path file : files) {
+                        zipOut.putNextEntry(new ZipEntry(file.getFileName().toString()));
+                        try (InputStream in = RunPacks.newInputStream(file)) {
+                                int count;
+                                while ((count = in.read(buffer)) != -1) {
+                                        zipOut.write(buffer, 0, count);
+                                }
                         }
-                        addReadmeToZip(zipOut);
+                        zipOut.closeEntry();
                 }
-                return zipPath;
+                zipOut.putNextEntry(new ZipEntry("readme.txt"));
+                zipOut.write(getReadme());
+                zipOut.closeEntry();
+                // finish the zip and flush the buffer, without closing the stream
+                zipOut.finish();
+                zipOut.flush();
         }
 
         /**
-         * Add the `readme.txt` file to the zip from the given URL. The file contains
-         * instructions on how to run the workflows.
+         * Get the `readme.txt` file with instructions on how to run the workflows. The
+         * file is downloaded and cached locally for {@code README_TTL_MINUTES}, after
+         * which it is downloaded again. In case it cannot be downloaded, the
+         * previously downloaded version (or else the bundled version) is used and the
+         * download is retried later.
          * 
-         * @param zipOut - the zip output stream
-         * @throws IOException - if the README file cannot be read
+         * @return Content of the README file.
+         * @throws IOException - if the cached or bundled README file cannot be read
+         */
+        public static synchronized byte[] getReadme() throws IOException {
+                long now = System.currentTimeMillis();
+                if (readme != null && now < readmeValidUntil) {
+                        return readme;
+                }
+                Path cachedReadme = Paths.get(RestApeUtils.getSolutionPath(), "readme.txt");
+                // the file downloaded before a restart is used until it expires
+                if (Files.isRegularFile(cachedReadme)) {
+                        long downloadedAt = Files.getLastModifiedTime(cachedReadme).toMillis();
+                        if (now - downloadedAt < README_TTL_MS) {
+                                readme = Files.readAllBytes(cachedReadme);
+                                readmeValidUntil = downloadedAt + README_TTL_MS;
+                                return readme;
+                        }
+                }
+                try {
+                        readme = downloadReadme();
+                        Path tmpFile = cachedReadme.resolveSibling("readme.txt.tmp");
+                        Files.write(tmpFile, readme);
+                        Files.move(tmpFile, cachedReadme, StandardCopyOption.REPLACE_EXISTING,
+                                        StandardCopyOption.ATOMIC_MOVE);
+                        readmeValidUntil = now + README_TTL_MS;
+                } catch (IOException e) {
+                        readmeValidUntil = now + README_RETRY_MS;
+                        if (Files.isRegularFile(cachedReadme)) {
+                                log.warn("The README file could not be downloaded, using the previous version: {}",
+                                                e.getMessage());
+                                readme = Files.readAllBytes(cachedReadme);
+                                return readme;
+                        }
+                        log.warn("The README file could not be downloaded, using the bundled version: {}",
+                                        e.getMessage());
+                        try (InputStream in = IOUtils.class.getResourceAsStream("/readme.txt")) {
+                                if (in == null) {
+                                        throw new IOException("The bundled README file is missing.");
+                                }
+                                readme = in.readAllBytes();
+                        }
+                }
+                return readme;
+        }
+
+        /**
+         * Download the `readme.txt` file from the configured URL.
          */
-        private static void addReadmeToZip(ZipOutputStream zipOut) throws IOException {
-                // Download readme.txt and add to the zip
-                URL readmeUrl = new URL(README_URL);
+        private static byte[] downloadReadme() throws IOException {
+                URL readmeUrl = new URL(RestApeSettings.get("README_URL", DEFAULT_README_URL));
                 HttpURLConnection httpURLConnection = (HttpURLConnection) readmeUrl.openConnection();
                 httpURLConnection.setRequestMethod("GET");
                 // Ensure the connection timeout is set to a reasonable value
@@ -102,15 +204,7 @@ public class IOUtils {
                 httpURLConnection.setReadTimeout(5000); // 5 seconds
 
                 try (InputStream in = new BufferedInputStream(httpURLConnection.getInputStream())) {
-                        zipOut.putNextEntry(new ZipEntry("readme.txt"));
-
-                        byte[] buffer = new byte[1024];
-                        int count;
-                        while ((count = in.read(buffer)) != -1) {
-                                zipOut.write(buffer, 0, count);
-                        }
-
-                        zipOut.closeEntry();
+                        return in.readAllBytes();
                 } finally {
                         httpURLConnection.disconnect();
                 }
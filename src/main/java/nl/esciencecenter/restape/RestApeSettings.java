@@ -0,0 +1,90 @@
+package nl.esciencecenter.restape;
+
+import java.util.Optional;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@code RestApeSettings} class provides access to the settings of RESTful
+ * APE. A setting is looked up as a Java system property first, then in the
+ * `.env` file (or the environment variables) and otherwise the provided default
+ * value is used.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RestApeSettings {
+
+    private static Dotenv dotenv;
+
+    static {
+        // Load environment variables from .env file
+        try {
+            dotenv = Dotenv.configure().ignoreIfMalformed().ignoreIfMissing().load();
+        } catch (Exception e) {
+            log.warn("Could not load .env file, using default settings.");
+        }
+    }
+
+    /**
+     * Get the value of the setting.
+     * 
+     * @param name         - name of the setting, e.g., "PUBMETRIC_PORT"
+     * @param defaultValue - value used when the setting is not specified
+     * @return Value of the setting.
+     */
+    public static String get(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null && dotenv != null) {
+            value = dotenv.get(name);
+        }
+        return Optional.ofNullable(value).map(String::trim).filter(v -> !v.isEmpty()).orElse(defaultValue);
+    }
+
+    /**
+     * Get the numeric value of the setting. In case the value cannot be parsed,
+     * the default value is used.
+     * 
+     * @param name         - name of the setting
+     * @param defaultValue - value used when the setting is not specified or invalid
+     * @return Value of the setting.
+     */
+    public static long getLong(String name, long defaultValue) {
+        String value = get(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("Setting {} is not a number ('{}'), using default value {}.", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get the numeric value of the setting. In case the value cannot be parsed,
+     * the default value is used.
+     * 
+     * @param name         - name of the setting
+     * @param defaultValue - value used when the setting is not specified or invalid
+     * @return Value of the setting.
+     */
+    public static int getInt(String name, int defaultValue) {
+        return (int) getLong(name, defaultValue);
+    }
+
+    /**
+     * Get the boolean value of the setting ("true" or "false").
+     * 
+     * @param name         - name of the setting
+     * @param defaultValue - value used when the setting is not specified
+     * @return Value of the setting.
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = get(name, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
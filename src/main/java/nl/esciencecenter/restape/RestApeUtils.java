@@ -12,6 +12,7 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.AccessLevel;
 import lombok.Getter;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
 
 @Slf4j
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -34,11 +35,10 @@ public class RestApeUtils {
         String desiredPath = getSolutionDirectory(dirName);
 
         File dir = new File(desiredPath);
-
-        if (!dir.exists()) {
-            return dir.mkdir() ? desiredPath : "";
-
+        if (!dir.exists() && !dir.mkdir()) {
+            return "";
         }
+        RunRetention.touch(dirName);
         return desiredPath;
     }
 
@@ -82,6 +82,17 @@ public class RestApeUtils {
         return generateStringHash(text, hashLength) + System.currentTimeMillis();
     }
 
+    /**
+     * Get the creation time of the run, which ends with the timestamp of its
+     * creation (see {@link #generateRunID(String)}).
+     * 
+     * @param runID - valid runID
+     * @return Creation time of the run, in milliseconds since the epoch.
+     */
+    public static long getRunCreationTime(String runID) {
+        return Long.parseLong(runID.substring(hashLength));
+    }
+
     /**
      * Check whether the runID is valid, by checking its length and format.
      * 
@@ -173,7 +184,8 @@ public class RestApeUtils {
     /**
      * Calculate the path to the file. The path is calculated based on the runID,
      * subdirectory and file name. If the runID, subdirectory or file name is not
-     * valid, an exception is thrown.
+     * valid, an exception is thrown. The file is not downloaded from the artifact
+     * store, the callers that read it use {@link ArtifactStores#fetch(Path)}.
      * 
      * @param runID      - ID of the synthesis run
      * @param fileSubDir - subdirectory where the file is stored
@@ -184,6 +196,7 @@ public class RestApeUtils {
         if (isValidRunID(runID) &&
                 isValidFileNameWithExtension(fileName) &&
                 isValidAPESubDir(fileSubDir)) {
+            RunRetention.touch(runID);
             return Paths.get(getSolutionPath(), runID, fileSubDir, fileName);
         } else {
             throw new IllegalArgumentException("The provided runID, fileSubDir or fileName is not valid.");
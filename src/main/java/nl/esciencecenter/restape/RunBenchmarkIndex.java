@@ -0,0 +1,407 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
+
+/**
+ * The {@code RunBenchmarkIndex} class keeps the aggregate benchmark values of
+ * all the workflows of a synthesis run in memory. The index is filled while the
+ * workflows are benchmarked, and is rebuilt from the benchmark files for runs
+ * that are not in memory (e.g., after a restart). It is used to compare,
+ * filter and rank the workflows of a run without reading the benchmark file of
+ * each workflow.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RunBenchmarkIndex {
+
+    /**
+     * Name of the weighted desirability score, which can be used for sorting and
+     * filtering in the same way as the benchmark titles.
+     */
+    public static final String SCORE = "score";
+
+    private static final int MAX_RUNS = RestApeSettings.getInt("RUN_INDEX_MAX_RUNS", 100);
+    private static final Pattern FILTER_PATTERN = Pattern.compile("(.+?)(>=|<=|>|<|=)(-?[0-9.]+)");
+    private static final Pattern WORKFLOW_NUMBER = Pattern.compile("(\\d+)$");
+    private static final Pattern BENCHMARK_FILE = Pattern.compile("candidate_workflow_.*\\.json");
+
+    /**
+     * Indexed runs, evicted in least recently used order.
+     */
+    private static final Map<String, RunBenchmarks> runs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RunBenchmarks> eldest) {
+            return size() > MAX_RUNS;
+        }
+    };
+
+    /**
+     * Register a synthesis run whose workflows are going to be benchmarked.
+     *
+     * @param runID         - ID of the synthesis run
+     * @param workflowNames - names of the workflows, in the default order
+     */
+    static void registerRun(String runID, List<String> workflowNames) {
+        synchronized (runs) {
+            runs.put(runID, new RunBenchmarks(workflowNames));
+        }
+    }
+
+    /**
+     * Add the aggregate benchmark values of a workflow to the index.
+     *
+     * @param runID        - ID of the synthesis run
+     * @param workflowName - name of the benchmarked workflow
+     * @param benchmarks   - benchmarks of the workflow
+     */
+    static void record(String runID, String workflowName, List<Benchmark> benchmarks) {
+        RunBenchmarks run;
+        synchronized (runs) {
+            run = runs.get(runID);
+        }
+        if (run == null) {
+            return;
+        }
+        for (Benchmark benchmark : benchmarks) {
+            run.put(workflowName, benchmark.getBenchmarkInfo().getTitleJson(), benchmark.getValue(),
+                    benchmark.getDesirabilityValue());
+        }
+    }
+
+    /**
+     * Remove the run from the index, e.g., after its files were removed.
+     *
+     * @param runID - ID of the synthesis run
+     */
+    static void remove(String runID) {
+        synchronized (runs) {
+            runs.remove(runID);
+        }
+    }
+
+    /**
+     * Query the aggregate benchmark values of the workflows of the run. The
+     * result is in a columnar layout: the workflow names are listed once, and each
+     * benchmark provides its values and desirability values in the same order.
+     *
+     * @param runID     - ID of the synthesis run
+     * @param sortBy    - benchmark title (or {@value #SCORE}) to sort the
+     *                  workflows by desirability, null to keep the order of the
+     *                  run
+     * @param ascending - whether to sort in ascending order
+     * @param filters   - comma separated conditions on the desirability values,
+     *                  e.g., "Linux>=1,score>0.5", or null
+     * @param weights   - comma separated weights of the benchmarks used for the
+     *                  score, e.g., "Linux:2,License:1", or null to weigh all
+     *                  benchmarks equally
+     * @param topK      - maximum number of workflows to return, 0 for all
+     * @return Columnar JSON object, or empty if no benchmarks are available for
+     *         the run.
+     * @throws IllegalArgumentException if the filters or weights are not valid
+     */
+    public static Optional<JSONObject> query(String runID, String sortBy, boolean ascending, String filters,
+            String weights, int topK) {
+        Optional<RunBenchmarks> run = getRun(runID);
+        if (run.isEmpty()) {
+            return Optional.empty();
+        }
+        Table table = run.get().snapshot();
+        Map<String, Double> benchmarkWeights = parseWeights(weights, table.titles);
+        List<Condition> conditions = parseFilters(filters, table.titles);
+        if (sortBy != null && !sortBy.equals(SCORE) && !table.titles.contains(sortBy)) {
+            throw new IllegalArgumentException("Unknown benchmark to sort by: " + sortBy);
+        }
+
+        List<Row> rows = new ArrayList<>();
+        for (Row row : table.rows) {
+            row.score = row.score(benchmarkWeights);
+            if (conditions.stream().allMatch(condition -> condition.test(row))) {
+                rows.add(row);
+            }
+        }
+        if (sortBy != null) {
+            Comparator<Row> comparator = Comparator.comparingDouble(row -> row.desirability(sortBy));
+            rows.sort(ascending ? comparator : comparator.reversed());
+        }
+        if (topK > 0 && rows.size() > topK) {
+            rows = rows.subList(0, topK);
+        }
+        return Optional.of(toColumnarJSON(runID, table, rows));
+    }
+
+    private static JSONObject toColumnarJSON(String runID, Table table, List<Row> rows) {
+        JSONObject result = new JSONObject();
+        result.put("run_id", runID);
+        result.put("finished", BenchmarkTracker.getProgress(runID).map(BenchmarkTracker.RunProgress::isFinished)
+                .orElse(true));
+        result.put("total", table.rows.size());
+
+        JSONArray workflows = new JSONArray();
+        JSONArray scores = new JSONArray();
+        rows.forEach(row -> {
+            workflows.put(row.workflowName);
+            scores.put(row.score);
+        });
+        result.put("workflows", workflows);
+        result.put(SCORE, scores);
+
+        JSONArray benchmarks = new JSONArray();
+        for (String title : table.titles) {
+            JSONObject column = new JSONObject(table.titleJsons.get(title).toString());
+            JSONArray values = new JSONArray();
+            JSONArray desirabilities = new JSONArray();
+            for (Row row : rows) {
+                values.put(Optional.<Object>ofNullable(row.values.get(title)).orElse(JSONObject.NULL));
+                desirabilities.put(Optional.<Object>ofNullable(row.desirabilities.get(title)).orElse(JSONObject.NULL));
+            }
+            column.put("values", values);
+            column.put("desirability", desirabilities);
+            benchmarks.put(column);
+        }
+        result.put("benchmarks", benchmarks);
+        return result;
+    }
+
+    /**
+     * Get the index of the run, rebuilding it from the benchmark files if the run
+     * is not in memory.
+     */
+    private static Optional<RunBenchmarks> getRun(String runID) {
+        synchronized (runs) {
+            RunBenchmarks run = runs.get(runID);
+            if (run != null) {
+                return Optional.of(run);
+            }
+        }
+        Optional<RunBenchmarks> rebuilt = loadFromFiles(runID);
+        rebuilt.ifPresent(run -> {
+            synchronized (runs) {
+                runs.putIfAbsent(runID, run);
+            }
+        });
+        return rebuilt;
+    }
+
+    private static Optional<RunBenchmarks> loadFromFiles(String runID) {
+        Path inputFile = RestApeUtils.calculatePath(runID, "CWL", "input.yml");
+        // the run might have been executed on another node
+        ArtifactStores.fetch(inputFile);
+        Path cwlDir = inputFile.getParent();
+        List<JSONObject> benchmarkFiles = new ArrayList<>();
+        try {
+            // the files might be stored in the pack of the run
+            for (String fileName : RunPacks.list(cwlDir)) {
+                if (BENCHMARK_FILE.matcher(fileName).matches()) {
+                    try (InputStream in = RunPacks.newInputStream(cwlDir.resolve(fileName))) {
+                        benchmarkFiles.add(new JSONObject(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+        } catch (IOException | JSONException e) {
+            log.warn("The benchmark files of run {} could not be indexed.", runID, e);
+            return Optional.empty();
+        }
+        if (benchmarkFiles.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<String> workflowNames = new ArrayList<>();
+        benchmarkFiles.forEach(file -> workflowNames.add(file.getString("workflowName")));
+        workflowNames.sort(Comparator.comparingLong(RunBenchmarkIndex::workflowNumber)
+                .thenComparing(Comparator.naturalOrder()));
+
+        RunBenchmarks run = new RunBenchmarks(workflowNames);
+        for (JSONObject file : benchmarkFiles) {
+            JSONArray benchmarks = file.optJSONArray("benchmarks");
+            for (int i = 0; benchmarks != null && i < benchmarks.length(); i++) {
+                Benchmark benchmark = Benchmark.fromJSON(benchmarks.getJSONObject(i));
+                run.put(file.getString("workflowName"), benchmark.getBenchmarkInfo().getTitleJson(),
+                        benchmark.getValue(), benchmark.getDesirabilityValue());
+            }
+        }
+        return Optional.of(run);
+    }
+
+    private static long workflowNumber(String workflowName) {
+        Matcher matcher = WORKFLOW_NUMBER.matcher(workflowName);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : Long.MAX_VALUE;
+    }
+
+    private static Map<String, Double> parseWeights(String weights, Set<String> titles) {
+        Map<String, Double> benchmarkWeights = new HashMap<>();
+        if (weights == null || weights.isBlank()) {
+            titles.forEach(title -> benchmarkWeights.put(title, 1.0));
+            return benchmarkWeights;
+        }
+        for (String weight : weights.split(",")) {
+            int separator = weight.lastIndexOf(':');
+            String title = separator < 0 ? "" : weight.substring(0, separator).trim();
+            if (!titles.contains(title)) {
+                throw new IllegalArgumentException("Invalid weight '" + weight + "', expected <benchmark>:<weight>.");
+            }
+            try {
+                benchmarkWeights.put(title, Double.parseDouble(weight.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight '" + weight + "', expected <benchmark>:<weight>.");
+            }
+        }
+        return benchmarkWeights;
+    }
+
+    private static List<Condition> parseFilters(String filters, Set<String> titles) {
+        List<Condition> conditions = new ArrayList<>();
+        if (filters == null || filters.isBlank()) {
+            return conditions;
+        }
+        for (String filter : filters.split(",")) {
+            Matcher matcher = FILTER_PATTERN.matcher(filter.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(
+                        "Invalid filter '" + filter + "', expected <benchmark><operator><desirability>.");
+            }
+            String title = matcher.group(1).trim();
+            if (!title.equals(SCORE) && !titles.contains(title)) {
+                throw new IllegalArgumentException("Unknown benchmark to filter by: " + title);
+            }
+            conditions.add(new Condition(title, matcher.group(2), Double.parseDouble(matcher.group(3))));
+        }
+        return conditions;
+    }
+
+    /**
+     * Aggregate benchmark values of the workflows of a single run.
+     */
+    private static class RunBenchmarks {
+
+        private final Map<String, Row> rows = new LinkedHashMap<>();
+        private final Map<String, JSONObject> titleJsons = new LinkedHashMap<>();
+
+        RunBenchmarks(List<String> workflowNames) {
+            workflowNames.forEach(workflowName -> rows.put(workflowName, new Row(workflowName)));
+        }
+
+        synchronized void put(String workflowName, JSONObject titleJson, String value, double desirability) {
+            String title = titleJson.getString("title");
+            titleJsons.putIfAbsent(title, titleJson);
+            Row row = rows.computeIfAbsent(workflowName, Row::new);
+            row.values.put(title, value);
+            row.desirabilities.put(title, desirability);
+            row.benchmarked = true;
+        }
+
+        /**
+         * Copy the benchmarked workflows, so that they can be queried while the
+         * benchmarking continues.
+         */
+        synchronized Table snapshot() {
+            List<Row> benchmarked = new ArrayList<>();
+            rows.values().stream().filter(row -> row.benchmarked).forEach(row -> benchmarked.add(row.copy()));
+            return new Table(new LinkedHashSet<>(titleJsons.keySet()), new LinkedHashMap<>(titleJsons),
+                    benchmarked);
+        }
+    }
+
+    private static class Table {
+        private final Set<String> titles;
+        private final Map<String, JSONObject> titleJsons;
+        private final List<Row> rows;
+
+        Table(Set<String> titles, Map<String, JSONObject> titleJsons, List<Row> rows) {
+            this.titles = titles;
+            this.titleJsons = titleJsons;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Aggregate benchmark values of a single workflow.
+     */
+    private static class Row {
+        private final String workflowName;
+        private final Map<String, String> values = new HashMap<>();
+        private final Map<String, Double> desirabilities = new HashMap<>();
+        private boolean benchmarked = false;
+        private double score;
+
+        Row(String workflowName) {
+            this.workflowName = workflowName;
+        }
+
+        Row copy() {
+            Row copy = new Row(workflowName);
+            copy.values.putAll(values);
+            copy.desirabilities.putAll(desirabilities);
+            copy.benchmarked = benchmarked;
+            return copy;
+        }
+
+        double desirability(String title) {
+            return title.equals(SCORE) ? score : desirabilities.getOrDefault(title, 0.0);
+        }
+
+        /**
+         * Weighted average of the desirability values of the workflow.
+         */
+        double score(Map<String, Double> weights) {
+            double weightedSum = 0;
+            double totalWeight = 0;
+            for (Map.Entry<String, Double> weight : weights.entrySet()) {
+                weightedSum += weight.getValue() * desirabilities.getOrDefault(weight.getKey(), 0.0);
+                totalWeight += weight.getValue();
+            }
+            return totalWeight == 0 ? 0 : weightedSum / totalWeight;
+        }
+    }
+
+    private static class Condition {
+        private final String title;
+        private final String operator;
+        private final double threshold;
+
+        Condition(String title, String operator, double threshold) {
+            this.title = title;
+            this.operator = operator;
+            this.threshold = threshold;
+        }
+
+        boolean test(Row row) {
+            double desirability = row.desirability(title);
+            switch (operator) {
+                case ">=":
+                    return desirability >= threshold;
+                case "<=":
+                    return desirability <= threshold;
+                case ">":
+                    return desirability > threshold;
+                case "<":
+                    return desirability < threshold;
+                default:
+                    return desirability == threshold;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package nl.esciencecenter.restape;
+
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Listener notified when a synthesis run is completed or removed, e.g., to
+ * keep a catalog of the runs. Listeners are registered in
+ * {@link RunListeners}.
+ */
+public interface RunListener {
+
+    /**
+     * Called when the solutions of the run are written.
+     *
+     * @param runID     - ID of the synthesis run
+     * @param config    - configuration of the synthesis run
+     * @param workflows - metadata of the workflows of the run
+     * @param benchmark - whether the workflows are benchmarked
+     */
+    void runCompleted(String runID, JSONObject config, List<APEWorkflowMetadata> workflows, boolean benchmark);
+
+    /**
+     * Called when the run is removed from the file system.
+     *
+     * @param runID - ID of the synthesis run
+     */
+    void runRemoved(String runID);
+}
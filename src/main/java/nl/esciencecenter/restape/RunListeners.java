@@ -0,0 +1,61 @@
+package nl.esciencecenter.restape;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONObject;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@code RunListeners} class keeps the registered {@link RunListener}s and
+ * notifies them. A failing listener is logged and does not affect the run or
+ * the other listeners.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RunListeners {
+
+    private static final List<RunListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Register the listener.
+     *
+     * @param listener - listener to notify
+     */
+    public static void register(RunListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister the listener.
+     *
+     * @param listener - listener that should no longer be notified
+     */
+    public static void unregister(RunListener listener) {
+        listeners.remove(listener);
+    }
+
+    static void runCompleted(String runID, JSONObject config, List<APEWorkflowMetadata> workflows,
+            boolean benchmark) {
+        for (RunListener listener : listeners) {
+            try {
+                listener.runCompleted(runID, config, workflows, benchmark);
+            } catch (RuntimeException e) {
+                log.error("Listener {} failed for completed run {}.", listener, runID, e);
+            }
+        }
+    }
+
+    static void runRemoved(String runID) {
+        for (RunListener listener : listeners) {
+            try {
+                listener.runRemoved(runID);
+            } catch (RuntimeException e) {
+                log.error("Listener {} failed for removed run {}.", listener, runID, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import guru.nidi.graphviz.engine.Format;
+import io.micrometer.core.instrument.Metrics;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.uu.cs.ape.APE;
+import nl.uu.cs.ape.models.Type;
+import nl.uu.cs.ape.solver.solutionStructure.ModuleNode;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionsList;
+import nl.uu.cs.ape.solver.solutionStructure.TypeNode;
+
+/**
+ * The {@code RunObjects} class stores the files of the synthesis runs content
+ * addressed, so that the same workflow, synthesized in several runs, is
+ * rendered and stored once. The files are kept in {@code apeOutputs/.objects},
+ * named after the hash of their content, and the run directories reference
+ * them with hard links (or copies, on file systems without hard links).<br>
+ * <br>
+ * The figures are addressed by the hash of the structure of the workflow (its
+ * tools and the data flowing between them), so they are not rendered at all
+ * if the same workflow was rendered before. The CWL files are addressed by the
+ * hash of their content.<br>
+ * <br>
+ * Objects that are no longer referenced by any run are removed by the
+ * retention sweep (see {@link RunRetention}). Deduplication can be disabled by
+ * setting {@code ARTIFACT_DEDUP} to false.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RunObjects {
+
+    public static final String OBJECTS_DIR = ".objects";
+
+    private static final boolean enabled = RestApeSettings.getBoolean("ARTIFACT_DEDUP", true);
+    private static final List<Format> FIGURE_FORMATS = List.of(Format.SVG, Format.PNG);
+    /**
+     * Version of the structure hash, to be increased when the rendering of the
+     * figures changes, so that the figures are rendered again.
+     */
+    private static final String STRUCTURE_VERSION = "1";
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final String RENDER_PREFIX = "render";
+
+    /**
+     * Write the solutions (as CWL files and figures) to the directory of the run,
+     * reusing the files that were written for the same workflows before.
+     *
+     * @param candidateSolutions - solutions of the synthesis run
+     * @param runID              - ID of the synthesis run
+     */
+    static void writeSolutions(SolutionsList candidateSolutions, String runID) {
+        APE.writeCWLWorkflows(candidateSolutions);
+        if (!enabled) {
+            for (Format format : FIGURE_FORMATS) {
+                APE.writeTavernaDesignGraphs(candidateSolutions, format);
+            }
+            return;
+        }
+        Path root = Paths.get(RestApeUtils.getSolutionPath());
+        Path runDir = root.resolve(runID);
+        candidateSolutions.getParallelStream().forEach(solution -> {
+            Path cwlFile = runDir.resolve("CWL").resolve(solution.getFileName() + ".cwl");
+            try {
+                if (Files.isRegularFile(cwlFile)) {
+                    storeFile(root, cwlFile);
+                }
+                for (Format format : FIGURE_FORMATS) {
+                    writeFigure(root, runDir, solution, format);
+                }
+            } catch (IOException e) {
+                log.error("The files of workflow {} in run {} could not be written.", solution.getFileName(), runID,
+                        e);
+            }
+        });
+    }
+
+    /**
+     * Link the figure of the workflow into the run, rendering it only if no
+     * workflow with the same structure was rendered before.
+     */
+    private static void writeFigure(Path root, Path runDir, SolutionWorkflow solution, Format format)
+            throws IOException {
+        String extension = format.name().toLowerCase(Locale.ROOT);
+        Path object = getObjectPath(root, getStructureHash(solution), extension);
+        Path figure = runDir.resolve("Figures").resolve(solution.getFileName() + "." + extension);
+        // the object may be removed by the sweep before it is linked, then it is rendered again
+        if (Files.isRegularFile(object) && link(object, figure)) {
+            record(extension, "reused");
+            return;
+        }
+        Files.createDirectories(object.getParent());
+        Path renderDir = Files.createTempDirectory(object.getParent(), RENDER_PREFIX);
+        try {
+            Path rendered = renderDir.resolve(object.getFileName());
+            solution.getTavernaStyleGraph().write2File(rendered.toFile(), format, false);
+            moveIfAbsent(rendered, object);
+        } finally {
+            deleteDirectory(renderDir);
+        }
+        record(extension, "stored");
+        if (!link(object, figure)) {
+            throw new NoSuchFileException(object.toString(), null, "The figure was removed before it was linked.");
+        }
+    }
+
+    /**
+     * Store the file content addressed, replacing it by a link to the stored
+     * object.
+     *
+     * @param root - directory of the runs
+     * @param file - file to store
+     * @return Path to the stored object.
+     * @throws IOException if the file cannot be stored
+     */
+    static Path storeFile(Path root, Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+        Path object = getObjectPath(root, sha256(Files.readAllBytes(file)), extension);
+        Files.createDirectories(object.getParent());
+        // the object may be removed by the sweep before it is linked, then the file is stored again
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (Files.isRegularFile(object) && link(object, file)) {
+                record(extension, "reused");
+                return object;
+            }
+            try {
+                // the file becomes the object
+                Files.createLink(object, file);
+                record(extension, "stored");
+                return object;
+            } catch (FileAlreadyExistsException e) {
+                // stored concurrently by another run
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Path tmpFile = Files.createTempFile(object.getParent(), object.getFileName().toString(),
+                        TMP_EXTENSION);
+                Files.copy(file, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+                moveIfAbsent(tmpFile, object);
+                record(extension, "stored");
+                return object;
+            }
+        }
+        throw new NoSuchFileException(object.toString(), null, "The object was removed before it was linked.");
+    }
+
+    /**
+     * Compute the hash of the structure of the workflow, i.e., of its tools, the
+     * types of the data they consume and produce, and which tool consumes the
+     * data produced by which tool. Workflows with the same structure have the same
+     * figures. The descriptive name of the workflow is included, as it is shown in
+     * the figures.
+     *
+     * @param solution - workflow solution
+     * @return Hash of the structure.
+     */
+    static String getStructureHash(SolutionWorkflow solution) {
+        // the data items are numbered in the order in which they appear
+        Map<TypeNode, Integer> dataIDs = new IdentityHashMap<>();
+        StringBuilder structure = new StringBuilder(STRUCTURE_VERSION).append('\n')
+                .append(solution.getDescriptiveName()).append('\n');
+        appendData(structure.append("in:"), solution.getWorkflowInputTypeStates(), dataIDs);
+        for (ModuleNode moduleNode : solution.getModuleNodes()) {
+            structure.append('\n').append(moduleNode.getUsedModule().getPredicateID());
+            appendData(structure.append("|in:"), moduleNode.getInputTypes(), dataIDs);
+            appendData(structure.append("|out:"), moduleNode.getOutputTypes(), dataIDs);
+        }
+        appendData(structure.append("\nout:"), solution.getWorkflowOutputTypeStates(), dataIDs);
+        return sha256(structure.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendData(StringBuilder structure, List<TypeNode> typeNodes,
+            Map<TypeNode, Integer> dataIDs) {
+        for (TypeNode typeNode : typeNodes) {
+            Integer dataID = dataIDs.get(typeNode);
+            if (dataID == null) {
+                dataID = dataIDs.size();
+                dataIDs.put(typeNode, dataID);
+            }
+            TreeSet<String> types = new TreeSet<>();
+            for (Type type : typeNode.getTypes()) {
+                types.add(type.getPredicateID());
+            }
+            structure.append(dataID).append(types).append(';');
+        }
+    }
+
+    /**
+     * Remove the objects that are no longer referenced by any run, i.e., that
+     * have no other hard link, and the temporary files left behind.
+     *
+     * @param root       - directory of the runs
+     * @param olderThan  - only objects modified before this time (in milliseconds)
+     *                   are removed, so that objects that are being linked are
+     *                   kept
+     * @return Number of removed objects.
+     */
+    static int removeUnreferenced(Path root, long olderThan) {
+        Path objectsDir = root.resolve(OBJECTS_DIR);
+        if (!Files.isDirectory(objectsDir)) {
+            return 0;
+        }
+        List<Path> unreferenced = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(objectsDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.equals(objectsDir) && isUnreferenced(file, olderThan)) {
+                    unreferenced.add(file);
+                }
+            }
+        } catch (UnsupportedOperationException e) {
+            // without hard links, the runs hold copies and the objects cannot be checked
+            return 0;
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("The unreferenced objects could not be listed: {}", e.getMessage());
+            return 0;
+        }
+        int removed = 0;
+        for (Path file : unreferenced) {
+            try {
+                // linked since it was listed
+                if (!isUnreferenced(file, olderThan)) {
+                    continue;
+                }
+                if (Files.isDirectory(file)) {
+                    deleteDirectory(file);
+                } else if (Files.deleteIfExists(file)) {
+                    removed++;
+                }
+            } catch (IOException e) {
+                log.warn("The object {} could not be removed: {}", file, e.getMessage());
+            }
+        }
+        return removed;
+    }
+
+    private static boolean isUnreferenced(Path file, long olderThan) throws IOException {
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() >= olderThan) {
+                return false;
+            }
+            String fileName = file.getFileName().toString();
+            if (fileName.endsWith(TMP_EXTENSION) || fileName.startsWith(RENDER_PREFIX)) {
+                return true;
+            }
+            return Files.isRegularFile(file) && (Integer) Files.getAttribute(file, "unix:nlink") <= 1;
+        } catch (NoSuchFileException e) {
+            // removed concurrently
+            return false;
+        }
+    }
+
+    /**
+     * Get the number of hard links of the file, 1 if the file system does not
+     * support hard links.
+     *
+     * @param file - file to check
+     * @return Number of hard links of the file.
+     * @throws IOException if the file cannot be read
+     */
+    static int getLinkCount(Path file) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Measure the objects, which are shared by the runs and therefore not
+     * included in the size of the runs.
+     *
+     * @param root - directory of the runs
+     * @return Number of bytes of the objects.
+     */
+    static long size(Path root) {
+        Path objectsDir = root.resolve(OBJECTS_DIR);
+        if (!Files.isDirectory(objectsDir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(objectsDir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    // removed concurrently
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("The size of the objects could not be measured: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Replace the target by a link to the object, or by a copy if the file system
+     * does not support hard links.
+     *
+     * @return false if the object no longer exists, in which case the target is
+     *         left unchanged.
+     */
+    private static boolean link(Path object, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmpLink = target.resolveSibling(target.getFileName() + ".link" + TMP_EXTENSION);
+        Files.deleteIfExists(tmpLink);
+        try {
+            Files.createLink(tmpLink, object);
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            try {
+                Files.copy(object, tmpLink, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException copyException) {
+                return false;
+            }
+        }
+        Files.move(tmpLink, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Move the file to the object path, unless the object was stored concurrently.
+     */
+    private static void moveIfAbsent(Path file, Path object) throws IOException {
+        try {
+            Files.move(file, object, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static Path getObjectPath(Path root, String hash, String extension) {
+        return root.resolve(OBJECTS_DIR).resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private static void record(String kind, String result) {
+        Metrics.counter("restape.artifact.dedup", "kind", kind, "result", result).increment();
+    }
+}
@@ -0,0 +1,428 @@
+package nl.esciencecenter.restape;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@code RunPacks} class implements the optional packed storage of the
+ * synthesis runs, enabled by setting {@code RUN_STORAGE_MODE} to {@code pack}.
+ * Instead of hundreds of small files (CWL, SVG, PNG and benchmark files), the
+ * files of a run are appended to a single pack file ({@code run.pack}) in the
+ * run directory, and their offsets are kept in an index ({@code run.pack.idx}).
+ * The files are written as usual and packed once the run is complete, i.e.,
+ * after the synthesis or, if the workflows are benchmarked, after the last
+ * benchmark file is written. Files shared with other runs (linked to an object,
+ * see {@link RunObjects}) are not packed, so that they stay deduplicated.<br>
+ * <br>
+ * The packed files are read from a memory mapping of the pack. The download
+ * endpoints read the run files through this class (see
+ * {@link #newInputStream(Path)} and {@link #find(Path)}), so they work for both
+ * storage modes.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RunPacks {
+
+    public static final String PACK_FILE = "run.pack";
+    public static final String INDEX_FILE = "run.pack.idx";
+
+    private static final boolean enabled = RestApeSettings.get("RUN_STORAGE_MODE", "files").equals("pack");
+    private static final int INDEX_MAGIC = 0x52415043;
+    private static final int INDEX_VERSION = 1;
+    private static final int MAX_OPEN_PACKS = 64;
+    private static final int RUN_LOCKS = 64;
+
+    /**
+     * Recently read packs, evicted in least recently used order.
+     */
+    private static final Map<Path, Pack> openPacks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Pack> eldest) {
+            return size() > MAX_OPEN_PACKS;
+        }
+    };
+
+    /**
+     * Locks of the packs, so that a run is packed by a single thread while
+     * different runs are packed concurrently. The runs are spread over a fixed
+     * number of locks.
+     */
+    private static final Object[] packLocks = new Object[RUN_LOCKS];
+
+    static {
+        for (int i = 0; i < RUN_LOCKS; i++) {
+            packLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Check whether the runs are packed.
+     *
+     * @return true if the runs are packed, false if they are stored as files.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append the files of the run that are not packed yet to the pack of the run,
+     * if packing is enabled. The files are removed once the index is updated. The
+     * run should be complete, as the whole index is rewritten on every pack.
+     *
+     * @param runID - ID of the synthesis run
+     */
+    static void packIfEnabled(String runID) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            pack(Path.of(RestApeUtils.getSolutionPath(), runID));
+        } catch (IOException e) {
+            // the files stay in place and are packed with the next files of the run
+            log.error("The files of run {} could not be packed.", runID, e);
+        }
+    }
+
+    /**
+     * Append the files in the subdirectories of the run to the pack.
+     *
+     * @param runDir - directory of the synthesis run
+     * @return Number of packed files.
+     * @throws IOException if the pack or the index cannot be written
+     */
+    static int pack(Path runDir) throws IOException {
+        synchronized (packLocks[Math.floorMod(runDir.hashCode(), RUN_LOCKS)]) {
+            return packFiles(runDir);
+        }
+    }
+
+    private static int packFiles(Path runDir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(runDir)) {
+            files = walk.filter(Files::isRegularFile).filter(file -> isPackable(runDir, file)).sorted().toList();
+        }
+        if (files.isEmpty()) {
+            return 0;
+        }
+        Map<String, Entry> entries = new LinkedHashMap<>(readIndex(runDir.resolve(INDEX_FILE)));
+        Path packFile = runDir.resolve(PACK_FILE);
+        try (FileChannel pack = FileChannel.open(packFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // the data after the last indexed file is left over from an interrupted
+            // pack, and is overwritten
+            long offset = entries.values().stream().mapToLong(entry -> entry.offset + entry.length).max().orElse(0);
+            pack.truncate(offset);
+            pack.position(offset);
+            for (Path file : files) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long length = in.size();
+                    long transferred = 0;
+                    while (transferred < length) {
+                        transferred += in.transferTo(transferred, length - transferred, pack);
+                    }
+                    entries.put(getName(runDir, file),
+                            new Entry(offset, length, attributes.lastModifiedTime().toMillis()));
+                    offset += length;
+                }
+            }
+            pack.force(false);
+        }
+        writeIndex(runDir.resolve(INDEX_FILE), entries);
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        return files.size();
+    }
+
+    /**
+     * Find the packed file.
+     *
+     * @param path - path of the file in the run directory, e.g.,
+     *             {@code <runID>/CWL/candidate_workflow_1.cwl}
+     * @return The packed file, or empty if the file is not packed.
+     * @throws IOException if the pack cannot be read
+     */
+    public static Optional<PackedFile> find(Path path) throws IOException {
+        Path runDir = getRunDir(path);
+        if (runDir == null) {
+            return Optional.empty();
+        }
+        Optional<Pack> pack = getPack(runDir);
+        if (pack.isEmpty()) {
+            return Optional.empty();
+        }
+        String name = getName(runDir, path);
+        Entry entry = pack.get().entries.get(name);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        ByteBuffer content = pack.get().buffer.duplicate();
+        content.position((int) entry.offset).limit((int) (entry.offset + entry.length));
+        return Optional.of(new PackedFile(path.getFileName().toString(), entry.length, entry.lastModified,
+                content.slice().asReadOnlyBuffer()));
+    }
+
+    /**
+     * Check whether the file of a run exists, either as a file or in the pack of
+     * the run.
+     *
+     * @param path - path of the file in the run directory
+     * @return true if the file exists, false otherwise.
+     */
+    public static boolean exists(Path path) {
+        if (Files.isRegularFile(path)) {
+            return true;
+        }
+        try {
+            return find(path).isPresent();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Open the file of a run, either from the file system or from the pack of the
+     * run.
+     *
+     * @param path - path of the file in the run directory
+     * @return Stream with the content of the file.
+     * @throws NoSuchFileException if the file does not exist
+     * @throws IOException         if the file cannot be read
+     */
+    public static InputStream newInputStream(Path path) throws IOException {
+        // look where the file is most likely stored first, failed lookups are costly
+        if (enabled) {
+            Optional<PackedFile> packedFile = find(path);
+            if (packedFile.isPresent()) {
+                return packedFile.get().newInputStream();
+            }
+            return Files.newInputStream(path);
+        }
+        try {
+            return Files.newInputStream(path);
+        } catch (NoSuchFileException e) {
+            return find(path).orElseThrow(() -> e).newInputStream();
+        }
+    }
+
+    /**
+     * List the names of the files in a directory of a run, both the files in the
+     * file system and the packed files.
+     *
+     * @param dir - directory of the run, e.g., {@code <runID>/CWL}
+     * @return Sorted names of the files.
+     * @throws IOException if the directory or the pack cannot be read
+     */
+    public static Set<String> list(Path dir) throws IOException {
+        Set<String> names = new TreeSet<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+                files.forEach(file -> names.add(file.getFileName().toString()));
+            }
+        }
+        Path runDir = dir.getParent();
+        Optional<Pack> pack = runDir == null ? Optional.empty() : getPack(runDir);
+        if (pack.isPresent()) {
+            String prefix = dir.getFileName() + "/";
+            for (String name : pack.get().entries.keySet()) {
+                if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0) {
+                    names.add(name.substring(prefix.length()));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Get the current pack of the run, mapping it again if it was extended since
+     * it was last read.
+     */
+    private static Optional<Pack> getPack(Path runDir) throws IOException {
+        Path indexFile = runDir.resolve(INDEX_FILE);
+        BasicFileAttributes indexAttributes;
+        try {
+            indexAttributes = Files.readAttributes(indexFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        // the index is replaced when files are appended, which changes its file key
+        String version = indexAttributes.fileKey() + "-" + indexAttributes.lastModifiedTime().toMillis() + "-"
+                + indexAttributes.size();
+        synchronized (openPacks) {
+            Pack pack = openPacks.get(runDir);
+            if (pack != null && pack.version.equals(version)) {
+                return Optional.of(pack);
+            }
+        }
+        Map<String, Entry> entries = readIndex(indexFile);
+        long packSize = entries.values().stream().mapToLong(entry -> entry.offset + entry.length).max().orElse(0);
+        if (packSize > Integer.MAX_VALUE) {
+            throw new IOException("The pack of " + runDir.getFileName() + " is too large to be mapped.");
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(runDir.resolve(PACK_FILE), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, packSize);
+        }
+        Pack pack = new Pack(version, entries, buffer);
+        synchronized (openPacks) {
+            openPacks.put(runDir, pack);
+        }
+        return Optional.of(pack);
+    }
+
+    private static Map<String, Entry> readIndex(Path indexFile) throws IOException {
+        if (!Files.isRegularFile(indexFile)) {
+            return Collections.emptyMap();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException(indexFile + " is not a valid pack index.");
+            }
+            int count = in.readInt();
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readUTF(), new Entry(in.readLong(), in.readLong(), in.readLong()));
+            }
+            return entries;
+        }
+    }
+
+    private static void writeIndex(Path indexFile, Map<String, Entry> entries) throws IOException {
+        Path tmpFile = Files.createTempFile(indexFile.getParent(), INDEX_FILE, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().offset);
+                    out.writeLong(entry.getValue().length);
+                    out.writeLong(entry.getValue().lastModified);
+                }
+            }
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Check whether the file should be packed. Only the files in the
+     * subdirectories of the run (CWL and figures) are packed, except for temporary
+     * files (still being written), compressed variants and files linked to an
+     * object shared with other runs.
+     */
+    private static boolean isPackable(Path runDir, Path file) {
+        String fileName = file.getFileName().toString();
+        if (file.getParent().equals(runDir) || fileName.endsWith(".tmp") || fileName.endsWith(".gz")) {
+            return false;
+        }
+        try {
+            return RunObjects.getLinkCount(file) <= 1;
+        } catch (IOException e) {
+            // the file was removed
+            return false;
+        }
+    }
+
+    /**
+     * Get the run directory of a file, i.e., the parent of its subdirectory.
+     */
+    private static Path getRunDir(Path path) {
+        Path subDir = path.getParent();
+        return subDir == null ? null : subDir.getParent();
+    }
+
+    private static String getName(Path runDir, Path file) {
+        return runDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    /**
+     * Position of a file in the pack.
+     */
+    private static class Entry {
+
+        private final long offset;
+        private final long length;
+        private final long lastModified;
+
+        Entry(long offset, long length, long lastModified) {
+            this.offset = offset;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Memory mapping of a pack and its index.
+     */
+    private static class Pack {
+
+        private final String version;
+        private final Map<String, Entry> entries;
+        private final MappedByteBuffer buffer;
+
+        Pack(String version, Map<String, Entry> entries, MappedByteBuffer buffer) {
+            this.version = version;
+            this.entries = entries;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * File read from the pack of a run.
+     */
+    @Getter
+    public static class PackedFile {
+
+        private final String fileName;
+        private final long length;
+        private final long lastModified;
+        private final ByteBuffer content;
+
+        PackedFile(String fileName, long length, long lastModified, ByteBuffer content) {
+            this.fileName = fileName;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+
+        /**
+         * Open the content of the file.
+         *
+         * @return Stream with the content of the file.
+         */
+        public InputStream newInputStream() {
+            return new ByteBufferInputStream(content);
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
+
+/**
+ * The {@code RunRetention} class removes the directories of old synthesis runs
+ * from {@code apeOutputs}, which otherwise grows with every run. A run is
+ * removed when it was not accessed for {@code RUN_RETENTION_MAX_AGE_HOURS}, or
+ * when the runs together exceed {@code RUN_RETENTION_MAX_BYTES} bytes or
+ * {@code RUN_RETENTION_MAX_RUNS} runs, in which case the least recently
+ * accessed runs are removed first. Each limit is disabled when set to 0 (the
+ * default), i.e., runs are kept forever unless a limit is configured.<br>
+ * <br>
+ * The access times are kept in memory and written to
+ * {@code apeOutputs/.runAccess.json} by the background sweep, so that they
+ * survive restarts. The sweep runs every
+ * {@code RUN_RETENTION_INTERVAL_SECONDS} and does a bounded amount of work
+ * (measuring and removing runs) each time. Runs that are in use, i.e., accessed
+ * recently or still being benchmarked, are never removed.
+ */
+@Slf4j
+public class RunRetention {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final String ACCESS_FILE = ".runAccess.json";
+    /**
+     * Maximal number of runs whose size is measured in a single sweep.
+     */
+    private static final int MEASURE_BATCH = 200;
+    /**
+     * Maximal number of runs removed in a single sweep.
+     */
+    private static final int DELETE_BATCH = 100;
+
+    private static final long intervalSeconds = Math.max(1,
+            RestApeSettings.getLong("RUN_RETENTION_INTERVAL_SECONDS", 300));
+    private static final ScheduledExecutorService sweepExecutor = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "run-retention");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static RunRetention instance;
+
+    private final Path root;
+    @Getter
+    private final Limits limits;
+    /**
+     * Last access time of each run (in milliseconds).
+     */
+    private final Map<String, Long> accessTimes = new ConcurrentHashMap<>();
+    /**
+     * Measured size of each run and the time of the measurement.
+     */
+    private final Map<String, RunSize> sizes = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private volatile boolean accessTimesChanged = false;
+    private boolean loaded = false;
+    private volatile boolean started = false;
+
+    RunRetention(Path root, Limits limits) {
+        this.root = root;
+        this.limits = limits;
+    }
+
+    /**
+     * Get the retention manager of the synthesis runs in {@code apeOutputs}.
+     *
+     * @return Retention manager of the runs.
+     */
+    public static synchronized RunRetention get() {
+        if (instance == null) {
+            instance = new RunRetention(Paths.get(RestApeUtils.getSolutionPath()), Limits.fromSettings());
+            Metrics.gauge("restape.retention.runs", instance.accessTimes, Map::size);
+            Metrics.gauge("restape.retention.bytes", instance.totalBytes);
+        }
+        return instance;
+    }
+
+    /**
+     * Record an access of the synthesis run, which postpones its removal. The
+     * accesses are not recorded if no limit is configured, as no run is removed
+     * then.
+     *
+     * @param runID - ID of the synthesis run
+     */
+    public static void touch(String runID) {
+        RunRetention retention = get();
+        if (!retention.limits.isEnabled()) {
+            return;
+        }
+        if (!retention.started) {
+            retention.start();
+        }
+        retention.recordRunAccess(runID, System.currentTimeMillis());
+    }
+
+    /**
+     * Start the background sweep, if any limit is configured.
+     */
+    public synchronized void start() {
+        if (started || !limits.isEnabled()) {
+            return;
+        }
+        started = true;
+        sweepExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                sweep(System.currentTimeMillis());
+            } catch (Exception e) {
+                log.error("The synthesis runs could not be swept.", e);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+        log.info("Retention of synthesis runs started: {}", limits);
+    }
+
+    /**
+     * Record an access of the run if it exists. Accesses of unknown runs (e.g.,
+     * requests for runs that were removed) are ignored, so that only the runs on
+     * disk are tracked.
+     */
+    void recordRunAccess(String runID, long timeMs) {
+        if (Files.isDirectory(root.resolve(runID))) {
+            recordAccess(runID, timeMs);
+        }
+    }
+
+    /**
+     * Get the number of runs whose access time is tracked.
+     *
+     * @return Number of tracked runs.
+     */
+    int getTrackedRuns() {
+        return accessTimes.size();
+    }
+
+    void recordAccess(String runID, long timeMs) {
+        accessTimes.merge(runID, timeMs, Math::max);
+        accessTimesChanged = true;
+    }
+
+    /**
+     * Sweep the runs once: measure the runs that changed and remove the runs that
+     * exceed the limits, least recently accessed first.
+     *
+     * @param now - current time in milliseconds
+     * @return Number of bytes reclaimed.
+     * @throws IOException if the runs cannot be listed
+     */
+    synchronized long sweep(long now) throws IOException {
+        ensureLoaded();
+        Set<String> runIDs = listRuns();
+        // runs removed by other means
+        accessTimes.keySet().retainAll(runIDs);
+        sizes.keySet().retainAll(runIDs);
+        for (String runID : runIDs) {
+            if (!accessTimes.containsKey(runID)) {
+                recordAccess(runID, RestApeUtils.getRunCreationTime(runID));
+            }
+        }
+        measure(runIDs);
+        // the objects shared by the runs are counted once, not in the size of each run
+        totalBytes.set(sizes.values().stream().mapToLong(RunSize::getBytes).sum() + RunObjects.size(root));
+
+        List<String> leastRecentFirst = new ArrayList<>(runIDs);
+        leastRecentFirst.sort(Comparator.comparing(runID -> accessTimes.getOrDefault(runID, 0L)));
+        long reclaimed = 0;
+        int remainingRuns = leastRecentFirst.size();
+        int deleted = 0;
+        for (String runID : leastRecentFirst) {
+            String reason = getRemovalReason(runID, remainingRuns, now);
+            if (reason == null) {
+                continue;
+            }
+            if (deleted >= DELETE_BATCH) {
+                break;
+            }
+            if (isInUse(runID, now)) {
+                continue;
+            }
+            long bytes = delete(runID);
+            if (bytes < 0) {
+                continue;
+            }
+            deleted++;
+            remainingRuns--;
+            reclaimed += bytes;
+            Metrics.counter("restape.retention.runs.removed", "reason", reason).increment();
+            Metrics.counter("restape.retention.reclaimed.bytes", "reason", reason).increment(bytes);
+        }
+        if (deleted > 0) {
+            log.info("Removed {} synthesis runs, reclaimed {} bytes.", deleted, reclaimed);
+        }
+        // the objects shared by the runs are removed once no run references them
+        RunObjects.removeUnreferenced(root, now - limits.minIdleMs);
+        persistAccessTimes();
+        return reclaimed;
+    }
+
+    /**
+     * Get the reason for removing the run, or null if the run is within the
+     * limits.
+     */
+    private String getRemovalReason(String runID, int remainingRuns, long now) {
+        if (limits.getMaxAgeMs() > 0 && now - accessTimes.getOrDefault(runID, now) > limits.getMaxAgeMs()) {
+            return "age";
+        }
+        if (limits.getMaxRuns() > 0 && remainingRuns > limits.getMaxRuns()) {
+            return "count";
+        }
+        if (limits.getMaxBytes() > 0 && totalBytes.get() > limits.getMaxBytes()) {
+            return "size";
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the run is being used, i.e., it was accessed within the idle
+     * time or its workflows are still being benchmarked.
+     */
+    private boolean isInUse(String runID, long now) {
+        if (now - accessTimes.getOrDefault(runID, now) < limits.getMinIdleMs()) {
+            return true;
+        }
+        return BenchmarkTracker.getProgress(runID).map(progress -> !progress.isFinished()).orElse(false);
+    }
+
+    /**
+     * Measure the runs that were not measured since they were last accessed, at
+     * most {@link #MEASURE_BATCH} per sweep.
+     */
+    private void measure(Set<String> runIDs) {
+        int measured = 0;
+        for (String runID : runIDs) {
+            RunSize size = sizes.get(runID);
+            long accessTime = accessTimes.getOrDefault(runID, 0L);
+            if (size != null && size.getMeasuredAt() >= accessTime) {
+                continue;
+            }
+            if (measured++ >= MEASURE_BATCH) {
+                break;
+            }
+            long measuredAt = System.currentTimeMillis();
+            try {
+                sizes.put(runID, new RunSize(directorySize(root.resolve(runID)), measuredAt));
+            } catch (IOException e) {
+                log.debug("The size of run {} could not be measured: {}", runID, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove the directory of the run. The files shared with other runs are not
+     * reclaimed, the objects referenced only by this run are reclaimed once they
+     * are removed at the end of the sweep.
+     *
+     * @return Number of bytes reclaimed, or -1 if the run could not be removed.
+     */
+    private long delete(String runID) {
+        Path runDir = root.resolve(runID);
+        AtomicLong bytes = new AtomicLong();
+        try {
+            Files.walkFileTree(runDir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    // the other link of a file with two links is its object
+                    boolean reclaimed = RunObjects.getLinkCount(file) <= 2;
+                    Files.delete(file);
+                    if (reclaimed) {
+                        bytes.addAndGet(attributes.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // already removed
+        } catch (IOException e) {
+            log.warn("Run {} could not be removed completely: {}", runID, e.getMessage());
+            sizes.remove(runID);
+            return -1;
+        }
+        accessTimes.remove(runID);
+        sizes.remove(runID);
+        totalBytes.addAndGet(-bytes.get());
+        accessTimesChanged = true;
+        RunBenchmarkIndex.remove(runID);
+        BenchmarkTracker.remove(runID);
+        ArtifactStores.forget(runID);
+        WorkflowIndex.get().removeRun(runID);
+        RunListeners.runRemoved(runID);
+        return bytes.get();
+    }
+
+    private Set<String> listRuns() throws IOException {
+        Set<String> runIDs = new HashSet<>();
+        if (!Files.isDirectory(root)) {
+            return runIDs;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                // other directories (e.g., the caches) are not runs
+                if (RestApeUtils.isValidRunID(name)) {
+                    runIDs.add(name);
+                }
+            }
+        }
+        return runIDs;
+    }
+
+    /**
+     * Measure the files of the run that are not linked to an object, the objects
+     * are measured separately.
+     */
+    private static long directorySize(Path dir) throws IOException {
+        AtomicLong bytes = new AtomicLong();
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (RunObjects.getLinkCount(file) <= 1) {
+                    bytes.addAndGet(attributes.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return bytes.get();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path accessFile = root.resolve(ACCESS_FILE);
+        if (!Files.isRegularFile(accessFile)) {
+            return;
+        }
+        try {
+            JSONObject persisted = new JSONObject(Files.readString(accessFile));
+            for (String runID : persisted.keySet()) {
+                recordAccess(runID, persisted.getLong(runID));
+            }
+        } catch (IOException | JSONException e) {
+            log.warn("The access times of the runs could not be loaded from {}: {}", accessFile, e.getMessage());
+        }
+    }
+
+    private void persistAccessTimes() {
+        if (!accessTimesChanged) {
+            return;
+        }
+        accessTimesChanged = false;
+        try {
+            Path tmpFile = Files.createTempFile(root, ACCESS_FILE, ".tmp");
+            try {
+                Files.writeString(tmpFile, new JSONObject(accessTimes).toString(), StandardCharsets.UTF_8);
+                Files.move(tmpFile, root.resolve(ACCESS_FILE), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+        } catch (IOException e) {
+            accessTimesChanged = true;
+            log.warn("The access times of the runs could not be stored: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Measured size of a run.
+     */
+    @Getter
+    private static class RunSize {
+
+        private final long bytes;
+        private final long measuredAt;
+
+        RunSize(long bytes, long measuredAt) {
+            this.bytes = bytes;
+            this.measuredAt = measuredAt;
+        }
+    }
+
+    /**
+     * Limits of the retained runs. A limit of 0 is disabled.
+     */
+    @Getter
+    public static class Limits {
+
+        private final long maxAgeMs;
+        private final long maxBytes;
+        private final int maxRuns;
+        /**
+         * Minimal time since the last access before a run can be removed.
+         */
+        private final long minIdleMs;
+
+        Limits(long maxAgeMs, long maxBytes, int maxRuns, long minIdleMs) {
+            this.maxAgeMs = maxAgeMs;
+            this.maxBytes = maxBytes;
+            this.maxRuns = maxRuns;
+            this.minIdleMs = minIdleMs;
+        }
+
+        static Limits fromSettings() {
+            return new Limits(RestApeSettings.getLong("RUN_RETENTION_MAX_AGE_HOURS", 0) * HOUR_MS,
+                    RestApeSettings.getLong("RUN_RETENTION_MAX_BYTES", 0),
+                    RestApeSettings.getInt("RUN_RETENTION_MAX_RUNS", 0),
+                    RestApeSettings.getLong("RUN_RETENTION_MIN_IDLE_MINUTES", 30) * 60 * 1000L);
+        }
+
+        boolean isEnabled() {
+            return maxAgeMs > 0 || maxBytes > 0 || maxRuns > 0;
+        }
+
+        @Override
+        public String toString() {
+            return "max age " + maxAgeMs / HOUR_MS + " h, max " + maxBytes + " bytes, max " + maxRuns + " runs";
+        }
+    }
+}
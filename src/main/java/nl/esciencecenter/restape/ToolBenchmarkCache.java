@@ -0,0 +1,127 @@
+package nl.esciencecenter.restape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.esciencecenter.models.benchmarks.WorkflowStepBenchmark;
+
+/**
+ * The {@code ToolBenchmarkCache} class memoizes the benchmarks of individual
+ * tools, per benchmark provider. The benchmark of a tool (e.g., its OS support,
+ * license type or citation count) only depends on the metadata of the tool,
+ * therefore it is computed once per tool and metadata version, and reused for
+ * every workflow that contains the tool. Benchmarking the workflows then only requires the
+ * aggregation of the tool benchmarks.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ToolBenchmarkCache {
+
+    /**
+     * Metadata version of the tools whose metadata could not be retrieved.
+     */
+    public static final String UNAVAILABLE = "unavailable";
+
+    private static final Map<String, ToolBenchmarks> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Get the benchmarks of the tool for the given metadata version, computing them
+     * if they are not cached yet or if the metadata of the tool changed.
+     *
+     * @param toolKey         - key of the tool, i.e., the name of the benchmark
+     *                        provider and the ID of the tool
+     * @param metadataVersion - version (e.g., hash) of the metadata the benchmarks
+     *                        are computed from
+     * @param computation     - computation of the benchmarks, used in case they are
+     *                        not cached
+     * @return Benchmarks of the tool.
+     */
+    public static ToolBenchmarks getOrCompute(String toolKey, String metadataVersion,
+            Supplier<Map<String, WorkflowStepBenchmark>> computation) {
+        ToolBenchmarks cached = cache.get(toolKey);
+        if (cached != null && cached.getMetadataVersion().equals(metadataVersion)) {
+            return cached;
+        }
+        ToolBenchmarks computed = new ToolBenchmarks(metadataVersion, computation.get());
+        cache.put(toolKey, computed);
+        return computed;
+    }
+
+    /**
+     * Get the benchmarks of the workflow steps for the given benchmark.
+     * 
+     * @param toolBenchmarks - benchmarks of each tool in the workflow
+     * @param benchmarkInfo  - benchmark whose steps should be returned
+     * @return Benchmarks of the workflow steps, in the order of the workflow.
+     */
+    public static List<WorkflowStepBenchmark> getSteps(List<ToolBenchmarks> toolBenchmarks,
+            BenchmarkBase benchmarkInfo) {
+        List<WorkflowStepBenchmark> steps = new ArrayList<>();
+        toolBenchmarks.forEach(tool -> steps.add(tool.get(benchmarkInfo.getBenchmarkTitle())));
+        return steps;
+    }
+
+    /**
+     * Mark the benchmarks as stale if any of their steps is based on stale tool
+     * metadata.
+     * 
+     * @param benchmarks - benchmarks aggregated from the tool benchmarks
+     * @return The given benchmarks.
+     */
+    public static List<Benchmark> markStale(List<Benchmark> benchmarks) {
+        benchmarks.forEach(benchmark -> benchmark
+                .setStale(benchmark.getWorkflow().stream().anyMatch(WorkflowStepBenchmark::isStale)));
+        return benchmarks;
+    }
+
+    /**
+     * Get the number of tools whose benchmarks are cached.
+     *
+     * @return Number of cached tools.
+     */
+    public static int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all the cached tool benchmarks.
+     */
+    public static void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Benchmarks of a single tool, indexed by the benchmark title. The benchmarks
+     * are shared between workflows and should not be modified.
+     */
+    public static class ToolBenchmarks {
+
+        @Getter
+        private final String metadataVersion;
+        private final Map<String, WorkflowStepBenchmark> benchmarks;
+
+        ToolBenchmarks(String metadataVersion, Map<String, WorkflowStepBenchmark> benchmarks) {
+            this.metadataVersion = metadataVersion;
+            this.benchmarks = Collections.unmodifiableMap(new LinkedHashMap<>(benchmarks));
+        }
+
+        /**
+         * Get the benchmark of the tool with the given title.
+         *
+         * @param benchmarkTitle - title of the benchmark
+         * @return Benchmark of the tool.
+         */
+        public WorkflowStepBenchmark get(String benchmarkTitle) {
+            return benchmarks.get(benchmarkTitle);
+        }
+    }
+}
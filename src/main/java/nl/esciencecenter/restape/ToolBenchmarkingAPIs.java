@@ -1,38 +1,42 @@
 package nl.esciencecenter.restape;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import io.github.cdimascio.dotenv.Dotenv;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
-import nl.esciencecenter.externalAPIs.BioToolsBenchmarkProcessor;
-import nl.esciencecenter.externalAPIs.BioToolsRestClient;
-import nl.esciencecenter.externalAPIs.OpenEBenchBenchmarkProcessor;
-import nl.esciencecenter.externalAPIs.OpenEBenchRestClient;
 import nl.esciencecenter.models.benchmarks.Benchmark;
-import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
 import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
 import nl.uu.cs.ape.solver.solutionStructure.SolutionsList;
 import nl.uu.cs.ape.solver.solutionStructure.cwl.DefaultCWLCreator;
-import nl.uu.cs.ape.utils.APEFiles;
 
 /**
  * The {@code ToolBenchmarkingAPIs} class provides methods to compute the tool
@@ -55,11 +59,27 @@ import nl.uu.cs.ape.utils.APEFiles;
 public class ToolBenchmarkingAPIs {
 
    public static final String restAPEtoolID = "restAPEtoolID";
+
    private static final Logger log = LoggerFactory.getLogger(ToolBenchmarkingAPIs.class);
 
+   /**
+    * Executor used to compute the benchmarks in the background, after the
+    * synthesis results were returned.
+    */
+   private static final ExecutorService backgroundExecutor = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "background-benchmarking");
+            thread.setDaemon(true);
+            return thread;
+         });
+
    
 	private static String pubmetricPort = "8000";
    private static String pubmetricHost = "localhost";
+   private static final int pubmetricConnectTimeoutMs = RestApeSettings.getInt("EXTERNAL_CONNECT_TIMEOUT_MS", 2000);
+   private static final int pubmetricReadTimeoutMs = RestApeSettings.getInt("PUBMETRIC_READ_TIMEOUT_MS", 30000);
+   private static final boolean prettyPrint = RestApeSettings.getBoolean("BENCHMARK_PRETTY_PRINT", false);
+   private static final JsonFactory jsonFactory = new JsonFactory();
  
 	static {
 		// Load environment variables from .env file
@@ -82,212 +102,187 @@ public class ToolBenchmarkingAPIs {
     * @return - boolean to indicate if the benchmarks were computed successfully
     */
    static boolean computeBenchmarks(SolutionsList candidateSolutions, String runID) {
-      candidateSolutions.getParallelStream().forEach(workflow -> {
-         /*
-          * Compute the benchmarks for the workflow and save them in a JSON file.
-          */
-         JSONObject workflowBenchmarks = computeWorkflowSpecificFields(workflow, runID);
-         JSONArray benchmarks = computeWorkflowBenchmarks(workflow);
-         JSONObject additionalBenchmarks = getPubmetricBenchmarks(workflow);
-
-         if (!additionalBenchmarks.isEmpty() && additionalBenchmarks.has("benchmarks")) {
-            additionalBenchmarks.getJSONArray("benchmarks").forEach(benchmark -> benchmarks.put(benchmark));
-         }
-
-         workflowBenchmarks.put("benchmarks", benchmarks);
-
-         String titleBenchmark = workflow.getFileName() + ".json";
-         Path solFolder = candidateSolutions.getRunConfiguration().getSolutionDirPath2CWL();
-         File script = solFolder.resolve(titleBenchmark).toFile();
-         try {
-            APEFiles.write2file(workflowBenchmarks.toString(2), script, false);
-         } catch (JSONException | IOException e) {
-            e.printStackTrace();
-         }
+      Path solFolder = candidateSolutions.getRunConfiguration().getSolutionDirPath2CWL();
+      List<String> workflowNames = getWorkflowNames(candidateSolutions);
+      RunBenchmarkIndex.registerRun(runID, workflowNames);
+      BenchmarkTracker.registerRun(runID, workflowNames);
 
-      });
+      candidateSolutions.getParallelStream().forEach(workflow -> benchmarkWorkflow(workflow, runID, solFolder));
 
       return true;
    }
 
    /**
-    * Get the Pubmetric benchmarks for the workflow.
+    * Compute the benchmarks for the workflows in the background. The method
+    * returns immediately, while each workflow benchmark file is written as soon
+    * as it is computed. The progress can be followed using
+    * {@link BenchmarkTracker}.
     * 
-    * @param workflow the SolutionWorkflow instance
-    * @return JSON response from Pubmetric API
+    * @param candidateSolutions - SolutionsList object, which contains the results
+    *                           of the synthesis as well as information about the
+    *                           synthesis run.
+    * @param runID              - ID of the synthesis run
     */
-   public static JSONObject getPubmetricBenchmarks(SolutionWorkflow workflow) {
-      DefaultCWLCreator cwlCreator = new DefaultCWLCreator(workflow);
-      String cwlFileContent = cwlCreator.generate();
-      byte[] cwlFileBytes = cwlFileContent.getBytes();
-
-      return sendPostToPubmetric(cwlFileBytes);
+   static void computeBenchmarksInBackground(SolutionsList candidateSolutions, String runID) {
+      Path solFolder = candidateSolutions.getRunConfiguration().getSolutionDirPath2CWL();
+      List<String> workflowNames = getWorkflowNames(candidateSolutions);
+      RunBenchmarkIndex.registerRun(runID, workflowNames);
+      BenchmarkTracker.registerRun(runID, workflowNames);
+
+      for (int i = 0; i < candidateSolutions.getNumberOfSolutions(); i++) {
+         SolutionWorkflow workflow = candidateSolutions.get(i);
+         backgroundExecutor.submit(() -> benchmarkWorkflow(workflow, runID, solFolder));
+      }
    }
 
    /**
-    * Send a POST request to the Pubmetric API to get benchmarks.
+    * Compute the benchmarks for a single workflow and save them in a JSON file.
+    * The file is first written under a temporary name and then moved, so that a
+    * partially written benchmark file is never served.
     * 
-    * @param cwlFileBytes byte array of CWL file content
-    * @return JSON response from Pubmetric API
+    * @param workflow  - workflow for which the benchmarks should be computed
+    * @param runID     - ID of the synthesis run
+    * @param solFolder - folder where the benchmark file should be stored
     */
-   public static JSONObject sendPostToPubmetric(byte[] cwlFileBytes) {
-      // Create the HTTP client
-      CloseableHttpClient httpClient = HttpClients.createDefault();
-
-      String url = String.format("http://%s:%s/score_workflow/", pubmetricHost, pubmetricPort);
-      HttpPost uploadFile = new HttpPost(url);
-
-      // Create a multipart entity with the CWL file
-      MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-      builder.addBinaryBody("cwl_file", cwlFileBytes, org.apache.http.entity.ContentType.DEFAULT_BINARY,
-            "workflow.cwl");
-
-      HttpEntity multipart = builder.build();
-      uploadFile.setEntity(multipart);
-
-      // Execute the request
-      CloseableHttpResponse response;
+   private static void benchmarkWorkflow(SolutionWorkflow workflow, String runID, Path solFolder) {
       try {
-         response = httpClient.execute(uploadFile);
-         HttpEntity responseEntity = response.getEntity();
+         List<Benchmark> benchmarks = BenchmarkProviders.computeBenchmarks(workflow);
 
-         // Print the response
-         if (responseEntity != null) {
-            String responseString = EntityUtils.toString(responseEntity);
-            return new JSONObject(responseString);
+         String titleBenchmark = workflow.getFileName() + ".json";
+         Path tmpScript = solFolder.resolve(titleBenchmark + ".tmp");
+         writeBenchmarkFile(tmpScript, workflow, runID, benchmarks);
+         Files.move(tmpScript, solFolder.resolve(titleBenchmark), StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+         RunBenchmarkIndex.record(runID, workflow.getFileName(), benchmarks);
+         boolean runFinished = BenchmarkTracker.markCompleted(runID, workflow.getFileName());
+         if (runFinished) {
+            // the run is packed once, after its last benchmark file is written
+            RunPacks.packIfEnabled(runID);
+         }
+         ArtifactStores.scheduleUpload(runID);
+      } catch (IOException | RuntimeException e) {
+         log.error("Benchmarking of workflow {} in run {} failed.", workflow.getFileName(), runID, e);
+         if (BenchmarkTracker.markFailed(runID, workflow.getFileName())) {
+            RunPacks.packIfEnabled(runID);
+            ArtifactStores.scheduleUpload(runID);
          }
-
-         // Close resources
-         response.close();
-         httpClient.close();
-      } catch (IOException e) {
-         log.error("Error while fetching the Pubmetric benchmarks");
-      } catch (JSONException e) {
-         log.error("Error while parsing the Pubmetric benchmarks");
       }
-
-      return new JSONObject();
    }
 
    /**
-    * Compute the benchmarks (based on bio.tools and OpenEBench APIs) for the
-    * workflows and return it in JSON format.
+    * Write the benchmarks of the workflow to the file. The benchmarks are
+    * streamed to the file, without building the JSON in memory. The output is
+    * compact, unless {@code BENCHMARK_PRETTY_PRINT} is set to true.
     * 
-    * @param workflow - workflow for which the benchmarks should be computed.
-    * @return JSONArray containing the benchmarks for the workflow.
+    * @param file       - file to write the benchmarks to
+    * @param workflow   - benchmarked workflow
+    * @param runID      - ID of the synthesis run
+    * @param benchmarks - benchmarks of the workflow
+    * @throws IOException if the file cannot be written
     */
-   private static JSONArray computeWorkflowBenchmarks(SolutionWorkflow workflow) {
-
-      JSONArray benchmarksJSON = new JSONArray();
-      computeBiotoolsBenchmark(workflow).forEach(benchmark -> benchmarksJSON.put(benchmark.toJSON()));
-      computeOpenEBenchmarks(workflow).forEach(benchmark -> benchmarksJSON.put(benchmark.toJSON()));
-
-      return benchmarksJSON;
+   static void writeBenchmarkFile(Path file, SolutionWorkflow workflow, String runID, List<Benchmark> benchmarks)
+         throws IOException {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+            JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+         if (prettyPrint) {
+            generator.useDefaultPrettyPrinter();
+         }
+         generator.writeStartObject();
+         // Set workflow specific fields
+         generator.writeStringField("runID", runID);
+         generator.writeStringField("domainID", "1");
+         generator.writeStringField("workflowName", workflow.getFileName());
+
+         generator.writeArrayFieldStart("benchmarks");
+         for (Benchmark benchmark : benchmarks) {
+            benchmark.writeJSON(generator);
+         }
+         generator.writeEndArray();
+         generator.writeEndObject();
+      }
    }
 
-   private static JSONObject computeWorkflowSpecificFields(SolutionWorkflow workflow, String runID) {
-      JSONObject benchmarkResult = new JSONObject();
-      // Set workflow specific fields
-      benchmarkResult.put("runID", runID);
-      benchmarkResult.put("domainID", "1");
-      benchmarkResult.put("workflowName", workflow.getFileName());
-
-      return benchmarkResult;
+   /**
+    * Get the names of all the workflows in the solution list.
+    * 
+    * @param candidateSolutions - SolutionsList object
+    * @return List of workflow names.
+    */
+   private static List<String> getWorkflowNames(SolutionsList candidateSolutions) {
+      List<String> workflowNames = new ArrayList<>();
+      for (int i = 0; i < candidateSolutions.getNumberOfSolutions(); i++) {
+         workflowNames.add(candidateSolutions.get(i).getFileName());
+      }
+      return workflowNames;
    }
 
    /**
-    * Compute the bio.tools benchmarks for the workflows by using bio.tools API to
-    * get information about each tool in the workflow. The result (the benchmarks)
-    * is returned in JSON
-    * format.
+    * Get the Pubmetric benchmarks for the workflow.
     * 
-    * @param workflow - workflow for which the benchmarks should be computed.
-    * @return JSONArray containing the benchmarks for the workflow.
+    * @param workflow the SolutionWorkflow instance
+    * @return JSON response from Pubmetric API
+    * @throws IOException if the Pubmetric API could not be reached or did not
+    *                     provide benchmarks
     */
-   private static List<Benchmark> computeBiotoolsBenchmark(SolutionWorkflow workflow) {
-
-      // for each tool in the workflow, get the biotools annotations from bio.tool API
-      List<JSONObject> biotoolsAnnotations = new ArrayList<>();
-
-      workflow.getModuleNodes().forEach(toolNode -> {
-         String toolID = toolNode.getUsedModule().getPredicateLabel();
-         JSONObject biotoolsEntry = new JSONObject();
-         try {
-            biotoolsEntry = BioToolsRestClient.fetchToolFromBioTools(toolID);
-         } catch (JSONException | IOException e) {
-            log.warn(e.getMessage());
-         } finally {
-            biotoolsEntry.put(ToolBenchmarkingAPIs.restAPEtoolID, toolNode.getUsedModule().getPredicateLabel());
-            biotoolsAnnotations.add(biotoolsEntry);
-         }
-      });
-
-      List<Benchmark> benchmarks = new ArrayList<>();
-
-      String unitOS = "supported / not supported";
-      BenchmarkBase linuxBenchmark = new BenchmarkBase("Linux", "OS", "Linux (OS) supported tools",
-            unitOS, "operatingSystem", "Linux");
-      benchmarks.add(BioToolsBenchmarkProcessor.benchmarkOSSupport(biotoolsAnnotations, linuxBenchmark));
-
-      BenchmarkBase macOSBenchmark = new BenchmarkBase("Mac OS", "OS", "Mac OS supported tools",
-            unitOS, "operatingSystem", "Mac");
-      benchmarks.add(BioToolsBenchmarkProcessor.benchmarkOSSupport(biotoolsAnnotations, macOSBenchmark));
-
-      BenchmarkBase windowsBenchmark = new BenchmarkBase("Windows", "OS", "Windows (OS) supported tools",
-            unitOS, "operatingSystem", "Windows");
-      benchmarks.add(BioToolsBenchmarkProcessor.benchmarkOSSupport(biotoolsAnnotations, windowsBenchmark));
-
-      return benchmarks;
-
+   public static JSONObject getPubmetricBenchmarks(SolutionWorkflow workflow) throws IOException {
+      return getPubmetricBenchmarks(new DefaultCWLCreator(workflow).generate());
    }
 
    /**
-    * Compute the OpenEBench benchmarks for the workflows by using OpenEBench API
-    * to get information about each tool in the workflow. The result (the
-    * benchmarks) is returned in JSON
-    * format.
+    * Get the Pubmetric benchmarks for the CWL representation of a workflow.
     * 
-    * @param workflow - workflow for which the benchmarks should be computed.
-    * @return
+    * @param cwlFileContent CWL representation of the workflow
+    * @return JSON response from Pubmetric API
+    * @throws IOException if the Pubmetric API could not be reached or did not
+    *                     provide benchmarks
     */
-   private static List<Benchmark> computeOpenEBenchmarks(SolutionWorkflow workflow) {
-      /*
-       * For each tool in the workflow, get the OpenEBench annotations from OpenEBench
-       * API.
-       */
-      List<JSONObject> openEBenchBiotoolsMetrics = new ArrayList<>();
-
-      /* Check if OpenEBench service is available. */
-      // OpenEBenchRestClient.checkAvailability();
-
-      workflow.getModuleNodes().forEach(toolNode -> {
-         String toolID = toolNode.getUsedModule().getPredicateLabel();
-         JSONObject openEBenchEntry = new JSONObject();
-         try {
-            openEBenchEntry = OpenEBenchRestClient.fetchToolMetricsBiotoolsVersion(toolID);
-         } catch (JSONException e) {
-            e.printStackTrace();
-         } catch (IOException e) {
-            log.error("Tool {} not found in OpenEBench. It will not be benchmarked.", toolID);
-         } finally {
-            openEBenchEntry.put(ToolBenchmarkingAPIs.restAPEtoolID, toolNode.getUsedModule().getPredicateLabel());
-            openEBenchBiotoolsMetrics.add(openEBenchEntry);
-         }
-      });
-
-      List<Benchmark> benchmarks = new ArrayList<>();
+   public static JSONObject getPubmetricBenchmarks(String cwlFileContent) throws IOException {
+      return sendPostToPubmetric(cwlFileContent.getBytes());
+   }
 
-      BenchmarkBase licenseBenchmark = new BenchmarkBase("License", "License", "License information available",
-            "license type", "license", null);
-      benchmarks.add(OpenEBenchBenchmarkProcessor.benchmarkLicenses(openEBenchBiotoolsMetrics, licenseBenchmark));
+   /**
+    * Send a POST request to the Pubmetric API to get benchmarks.
+    * 
+    * @param cwlFileBytes byte array of CWL file content
+    * @return JSON response from Pubmetric API, containing the 'benchmarks'
+    * @throws IOException if the request failed, or the response is not a JSON
+    *                     object with 'benchmarks'
+    */
+   public static JSONObject sendPostToPubmetric(byte[] cwlFileBytes) throws IOException {
+      // system properties take precedence, e.g., to point to a stub server
+      String url = String.format("http://%s:%s/score_workflow/", RestApeSettings.get("PUBMETRIC_HOST", pubmetricHost),
+            RestApeSettings.get("PUBMETRIC_PORT", pubmetricPort));
+      HttpPost uploadFile = new HttpPost(url);
+      uploadFile.setConfig(RequestConfig.custom()
+            .setConnectTimeout(pubmetricConnectTimeoutMs)
+            .setConnectionRequestTimeout(pubmetricConnectTimeoutMs)
+            .setSocketTimeout(pubmetricReadTimeoutMs)
+            .build());
 
-      BenchmarkBase citationsBenchmark = new BenchmarkBase("Citations", "Bibliometrics", "Citations annotated per tool",
-            "citation count", "citation", null);
-      benchmarks
-            .add(OpenEBenchBenchmarkProcessor.countCitationsBenchmark(openEBenchBiotoolsMetrics, citationsBenchmark));
+      // Create a multipart entity with the CWL file
+      MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+      builder.addBinaryBody("cwl_file", cwlFileBytes, org.apache.http.entity.ContentType.DEFAULT_BINARY,
+            "workflow.cwl");
 
-      return benchmarks;
+      HttpEntity multipart = builder.build();
+      uploadFile.setEntity(multipart);
 
+      // Execute the request, failures are reported so that the benchmarks are marked as not available
+      try (CloseableHttpClient httpClient = HttpClients.createDefault();
+            CloseableHttpResponse response = httpClient.execute(uploadFile)) {
+         int status = response.getStatusLine().getStatusCode();
+         HttpEntity responseEntity = response.getEntity();
+         if (status < 200 || status >= 300 || responseEntity == null) {
+            throw new IOException("Unexpected response from Pubmetric (HTTP " + status + ").");
+         }
+         JSONObject result = new JSONObject(EntityUtils.toString(responseEntity));
+         if (result.optJSONArray("benchmarks") == null) {
+            throw new IOException("The Pubmetric response does not contain benchmarks.");
+         }
+         return result;
+      } catch (JSONException e) {
+         throw new IOException("Error while parsing the Pubmetric benchmarks.", e);
+      }
    }
 
 }
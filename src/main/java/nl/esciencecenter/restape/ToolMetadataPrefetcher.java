@@ -0,0 +1,305 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.externalAPIs.ToolMetadataSources;
+import nl.uu.cs.ape.models.AllModules;
+import nl.uu.cs.ape.models.Module;
+import nl.uu.cs.ape.models.logic.constructs.TaxonomyPredicate;
+import nl.uu.cs.ape.utils.APEUtils;
+
+/**
+ * The {@code ToolMetadataPrefetcher} class warms the tool metadata cache (see
+ * {@link ToolMetadataSources}) for all the tools in a domain, as soon as the
+ * domain is loaded. The metadata is otherwise retrieved when the workflows are
+ * benchmarked, i.e., on the critical path of the first
+ * {@code /run_synthesis_and_bench} request.<br>
+ * <br>
+ * Prefetching is enabled by setting {@code TOOL_METADATA_PREFETCH} to true. The
+ * tools are retrieved in the background, one domain at a time and at most
+ * {@code TOOL_METADATA_PREFETCH_RATE} tools per second, so that the external
+ * services are not flooded. The domains are identified by their tool
+ * annotations (see {@link #getDomainKey(JSONObject)}), and only the
+ * {@code TOOL_METADATA_PREFETCH_MAX_DOMAINS} most recently loaded domains are
+ * tracked.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ToolMetadataPrefetcher {
+
+    private static final boolean enabled = RestApeSettings.getBoolean("TOOL_METADATA_PREFETCH", false);
+    private static final int toolsPerSecond = Math.max(1, RestApeSettings.getInt("TOOL_METADATA_PREFETCH_RATE", 5));
+    private static final int maxDomains = Math.max(1,
+            RestApeSettings.getInt("TOOL_METADATA_PREFETCH_MAX_DOMAINS", 100));
+    /**
+     * Time (in milliseconds) for which a finished prefetch is reused without
+     * checking whether the metadata of its tools is still cached.
+     */
+    static final long RECHECK_MS = 60000;
+    /**
+     * Prefetches of the most recently loaded domains, in access order.
+     */
+    private static final Map<String, Prefetch> prefetches = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Prefetch> eldest) {
+            if (size() > maxDomains) {
+                eldest.getValue().cancel();
+                return true;
+            }
+            return false;
+        }
+    };
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tool-metadata-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Prefetch the metadata of all the tools in the loaded domain, if prefetching
+     * is enabled.
+     *
+     * @param domain     - name of the domain, e.g., the path of its configuration
+     *                   file
+     * @param allModules - modules of the loaded domain
+     */
+    public static void prefetchDomain(String domain, AllModules allModules) {
+        if (enabled && !isUpToDate(domain, System.currentTimeMillis())) {
+            prefetch(domain, collectToolIDs(allModules));
+        }
+    }
+
+    /**
+     * Get the key under which the domain is prefetched, i.e., the location of its
+     * tool annotations. The same key is used whether the domain is loaded from its
+     * configuration file or from the configuration of a synthesis run.
+     *
+     * @param config - configuration of the domain or of the synthesis run
+     * @return Key of the domain.
+     */
+    public static String getDomainKey(JSONObject config) {
+        return config.optString("tool_annotations_path");
+    }
+
+    /**
+     * Check whether the domain does not need to be prefetched, because it is being
+     * prefetched or it was prefetched less than {@link #RECHECK_MS} ago. This does
+     * not check whether the metadata is still cached.
+     */
+    private static boolean isUpToDate(String domain, long now) {
+        Prefetch current;
+        synchronized (prefetches) {
+            current = prefetches.get(domain);
+        }
+        return current != null && (!current.isFinished() || now - current.getCheckedAt() < RECHECK_MS);
+    }
+
+    /**
+     * Start prefetching the metadata of the tools in the background, unless the
+     * tools are already being prefetched or their metadata is already cached. A
+     * prefetch of the domain that does not include all the tools is replaced.
+     *
+     * @param domain  - name of the domain
+     * @param toolIDs - IDs of the tools in the domain
+     * @return Prefetch of the domain, which describes its progress.
+     */
+    static Prefetch prefetch(String domain, Collection<String> toolIDs) {
+        synchronized (prefetches) {
+            Prefetch current = prefetches.get(domain);
+            if (current != null && current.includes(toolIDs)) {
+                if (!current.isFinished()) {
+                    return current;
+                } else if (current.getCachedCount() == current.getTotal()) {
+                    current.setCheckedAt(System.currentTimeMillis());
+                    return current;
+                }
+            }
+            if (current != null) {
+                current.cancel();
+            }
+            Prefetch prefetch = new Prefetch(domain, new ArrayList<>(new LinkedHashSet<>(toolIDs)));
+            prefetches.put(domain, prefetch);
+            prefetchExecutor.submit(prefetch::run);
+            return prefetch;
+        }
+    }
+
+    /**
+     * Generate a JSON array describing the progress and coverage of the
+     * prefetched domains.
+     *
+     * @return JSON array with an object per domain.
+     */
+    public static JSONArray getStatus() {
+        List<Prefetch> current;
+        synchronized (prefetches) {
+            current = new ArrayList<>(prefetches.values());
+        }
+        JSONArray status = new JSONArray();
+        current.forEach(prefetch -> status.put(prefetch.toJSON()));
+        return status;
+    }
+
+    /**
+     * Check whether prefetching is enabled.
+     *
+     * @return true if {@code TOOL_METADATA_PREFETCH} is set to true.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Collect the IDs (labels) of the tools in the domain, i.e., of the modules
+     * that are not abstract classes in the tool taxonomy. The labels are used as
+     * tool IDs in the same way as in the design-time benchmarks.
+     */
+    private static Set<String> collectToolIDs(AllModules allModules) {
+        Set<String> toolIDs = new LinkedHashSet<>();
+        collectToolIDs(allModules.getRootModule(), toolIDs);
+        return toolIDs;
+    }
+
+    private static void collectToolIDs(TaxonomyPredicate module, Set<String> toolIDs) {
+        if (module instanceof Module) {
+            toolIDs.add(module.getPredicateLabel());
+        }
+        for (TaxonomyPredicate subModule : APEUtils.safe(module.getSubPredicates())) {
+            collectToolIDs(subModule, toolIDs);
+        }
+    }
+
+    /**
+     * Prefetch of the tools of a single domain.
+     */
+    static class Prefetch {
+
+        @Getter
+        private final String domain;
+        private final List<String> toolIDs;
+        private final AtomicInteger processed = new AtomicInteger();
+        private volatile boolean started = false;
+        @Getter
+        private volatile boolean finished = false;
+        private volatile boolean cancelled = false;
+        /**
+         * Time at which the prefetch finished or the metadata of its tools was
+         * last found to be cached.
+         */
+        @Getter
+        @Setter
+        private volatile long checkedAt;
+
+        Prefetch(String domain, List<String> toolIDs) {
+            this.domain = domain;
+            this.toolIDs = toolIDs;
+        }
+
+        int getTotal() {
+            return toolIDs.size();
+        }
+
+        int getProcessed() {
+            return processed.get();
+        }
+
+        /**
+         * Check whether the prefetch includes all the given tools.
+         */
+        boolean includes(Collection<String> otherToolIDs) {
+            return new HashSet<>(toolIDs).containsAll(otherToolIDs);
+        }
+
+        /**
+         * Count the tools whose metadata is currently cached. The count decreases
+         * again as the cached metadata expires.
+         */
+        int getCachedCount() {
+            return (int) toolIDs.stream().filter(ToolMetadataSources::isCached).count();
+        }
+
+        /**
+         * Stop the prefetch, e.g., because the domain is no longer tracked.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        void run() {
+            started = true;
+            long intervalMs = 1000L / toolsPerSecond;
+            long nextRequestAt = System.currentTimeMillis();
+            try {
+                for (String toolID : toolIDs) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (!ToolMetadataSources.isCached(toolID)) {
+                        // only the tools that require requests count towards the rate limit
+                        long waitMs = nextRequestAt - System.currentTimeMillis();
+                        if (waitMs > 0) {
+                            Thread.sleep(waitMs);
+                        }
+                        nextRequestAt = System.currentTimeMillis() + intervalMs;
+                        fetchMetadata(toolID);
+                    }
+                    processed.incrementAndGet();
+                }
+                log.info("Prefetched the metadata of {} tools in domain {}, {} are cached.", getTotal(), domain,
+                        getCachedCount());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                checkedAt = System.currentTimeMillis();
+                finished = true;
+            }
+        }
+
+        private static void fetchMetadata(String toolID) {
+            try {
+                ToolMetadataSources.fetchBioToolsAnnotation(toolID);
+            } catch (IOException | JSONException e) {
+                log.debug("The bio.tools annotation of {} could not be prefetched: {}", toolID, e.getMessage());
+            }
+            try {
+                ToolMetadataSources.fetchOpenEBenchMetrics(toolID);
+            } catch (IOException | JSONException e) {
+                log.debug("The OpenEBench metrics of {} could not be prefetched: {}", toolID, e.getMessage());
+            }
+        }
+
+        JSONObject toJSON() {
+            int cached = getCachedCount();
+            int coverage = getTotal() == 0 ? 100 : (int) (100L * cached / getTotal());
+            JSONObject json = new JSONObject();
+            json.put("domain", domain);
+            json.put("state", finished ? "finished" : started ? "running" : "queued");
+            json.put("tools", getTotal());
+            json.put("processed", getProcessed());
+            json.put("cached", cached);
+            json.put("coverage", coverage);
+            json.put("summary", coverage + "% of tools have cached metadata");
+            return json;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package nl.esciencecenter.restape;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.externalAPIs.BioToolsBenchmarkProcessor;
+import nl.esciencecenter.externalAPIs.OpenEBenchBenchmarkProcessor;
+import nl.esciencecenter.externalAPIs.ToolMetadataSources;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.uu.cs.ape.utils.APEFiles;
+
+/**
+ * The {@code ToolRequirements} class describes hard benchmark requirements on
+ * the tools used in the synthesized workflows, e.g., that all the tools support
+ * Linux or have an OSI approved license. The requirements are specified in the
+ * run configuration under {@value #CONFIG_KEY}, e.g.,
+ * {@code "require": {"os": "Linux", "license": "osi"}}.<br>
+ * <br>
+ * The tools that do not satisfy the requirements are removed from the tool
+ * annotations before the synthesis, which results in a smaller encoding of the
+ * synthesis problem. The requirements are evaluated in the same way as the
+ * design-time benchmarks, based on the (cached) tool metadata.
+ */
+@Slf4j
+public class ToolRequirements {
+
+    /**
+     * Key of the requirements in the run configuration.
+     */
+    public static final String CONFIG_KEY = "require";
+    private static final String TOOL_ANNOTATIONS_KEY = "tool_annotations_path";
+
+    private final List<String> operatingSystems;
+    private final LicenseType minimalLicense;
+
+    private ToolRequirements(List<String> operatingSystems, LicenseType minimalLicense) {
+        this.operatingSystems = operatingSystems;
+        this.minimalLicense = minimalLicense;
+    }
+
+    /**
+     * Remove the requirements from the run configuration (as they are not part of
+     * the APE configuration) and parse them.
+     *
+     * @param configJson - run configuration, the requirements are removed from it
+     * @return Requirements, which are empty if none were specified.
+     * @throws IllegalArgumentException if the requirements are not valid
+     */
+    public static ToolRequirements extractFromConfig(JSONObject configJson) {
+        Object requirements = configJson.remove(CONFIG_KEY);
+        if (requirements == null) {
+            return new ToolRequirements(List.of(), LicenseType.Unknown);
+        } else if (!(requirements instanceof JSONObject)) {
+            throw new IllegalArgumentException("'" + CONFIG_KEY + "' should be a JSON object, e.g., "
+                    + "{\"os\": \"Linux\", \"license\": \"osi\"}.");
+        }
+        JSONObject requirementsJson = (JSONObject) requirements;
+
+        List<String> operatingSystems = new ArrayList<>();
+        Object os = requirementsJson.opt("os");
+        if (os instanceof JSONArray) {
+            ((JSONArray) os).forEach(osName -> operatingSystems.add(parseOS(osName.toString())));
+        } else if (os != null) {
+            operatingSystems.add(parseOS(os.toString()));
+        }
+
+        LicenseType minimalLicense = LicenseType.Unknown;
+        if (requirementsJson.has("license")) {
+            minimalLicense = parseLicense(requirementsJson.get("license").toString());
+        }
+        return new ToolRequirements(operatingSystems, minimalLicense);
+    }
+
+    /**
+     * Check whether any requirements were specified.
+     *
+     * @return true if there are no requirements, false otherwise.
+     */
+    public boolean isEmpty() {
+        return operatingSystems.isEmpty() && minimalLicense == LicenseType.Unknown;
+    }
+
+    /**
+     * Remove the tools that do not satisfy the requirements from the tool
+     * annotations of the run configuration. The filtered annotations are written
+     * to the run directory, and the configuration is updated to use them.
+     *
+     * @param configJson - run configuration
+     * @param runDir     - directory of the synthesis run
+     * @throws IOException              if the tool annotations cannot be read or
+     *                                  written
+     * @throws IllegalArgumentException if none of the tools satisfies the
+     *                                  requirements
+     */
+    public void applyTo(JSONObject configJson, Path runDir) throws IOException {
+        if (isEmpty()) {
+            return;
+        }
+        JSONObject annotations = APEFiles.readPathToJSONObject(configJson.getString(TOOL_ANNOTATIONS_KEY));
+        JSONArray functions = annotations.getJSONArray("functions");
+
+        // tools are evaluated in parallel, as their metadata might not be cached yet
+        List<Integer> conforming = IntStream.range(0, functions.length()).parallel()
+                .filter(i -> isSatisfiedBy(functions.getJSONObject(i)))
+                .boxed().collect(Collectors.toList());
+        if (conforming.isEmpty()) {
+            throw new IllegalArgumentException("None of the tools in the domain satisfies the requirements.");
+        }
+
+        JSONArray filteredFunctions = new JSONArray();
+        conforming.stream().sorted().forEach(i -> filteredFunctions.put(functions.get(i)));
+        annotations.put("functions", filteredFunctions);
+        log.info("{} out of {} tools satisfy the requirements.", filteredFunctions.length(), functions.length());
+
+        Path filteredAnnotations = runDir.resolve("tool_annotations.json");
+        Files.writeString(filteredAnnotations, annotations.toString(), StandardCharsets.UTF_8);
+        configJson.put(TOOL_ANNOTATIONS_KEY, filteredAnnotations.toAbsolutePath().toString());
+    }
+
+    /**
+     * Check whether the annotated tool satisfies the requirements. The tool is
+     * identified by its label, in the same way as in the design-time benchmarks.
+     */
+    private boolean isSatisfiedBy(JSONObject toolAnnotation) {
+        String toolID = toolAnnotation.optString("label", toolAnnotation.optString("id"));
+
+        if (!operatingSystems.isEmpty()) {
+            JSONObject biotoolsAnnotation = fetchMetadata(toolID, true);
+            for (String os : operatingSystems) {
+                BenchmarkBase osBenchmark = new BenchmarkBase(os, "OS", os + " supported", "supported / not supported",
+                        "operatingSystem", os);
+                if (BioToolsBenchmarkProcessor.benchmarkToolOSSupport(biotoolsAnnotation, osBenchmark)
+                        .getDesirabilityValue() <= 0) {
+                    return false;
+                }
+            }
+        }
+
+        if (minimalLicense != LicenseType.Unknown) {
+            LicenseType license;
+            try {
+                license = OpenEBenchBenchmarkProcessor.isOSIFromOEBMetrics(fetchMetadata(toolID, false));
+            } catch (JSONException e) {
+                license = LicenseType.Unknown;
+            }
+            return license.ordinal() >= minimalLicense.ordinal();
+        }
+        return true;
+    }
+
+    private static JSONObject fetchMetadata(String toolID, boolean bioTools) {
+        JSONObject metadata = new JSONObject();
+        try {
+            metadata = bioTools ? ToolMetadataSources.fetchBioToolsAnnotation(toolID)
+                    : ToolMetadataSources.fetchOpenEBenchMetrics(toolID);
+        } catch (IOException | JSONException e) {
+            log.debug("No metadata available for tool {}: {}", toolID, e.getMessage());
+        }
+        metadata.put(ToolBenchmarkingAPIs.restAPEtoolID, toolID);
+        return metadata;
+    }
+
+    /**
+     * Map the OS name to the value used in bio.tools annotations.
+     */
+    private static String parseOS(String os) {
+        switch (os.toLowerCase(Locale.ROOT).replace(" ", "")) {
+            case "linux":
+                return "Linux";
+            case "mac":
+            case "macos":
+                return "Mac";
+            case "windows":
+                return "Windows";
+            default:
+                throw new IllegalArgumentException("Unknown OS requirement '" + os
+                        + "', expected 'Linux', 'Mac' or 'Windows'.");
+        }
+    }
+
+    /**
+     * Map the license requirement to the least open license type that satisfies
+     * it.
+     */
+    private static LicenseType parseLicense(String license) {
+        switch (license.toLowerCase(Locale.ROOT)) {
+            case "osi":
+                return LicenseType.OSI_Approved;
+            case "open":
+                return LicenseType.Open;
+            case "any":
+            case "known":
+                return LicenseType.Closed;
+            default:
+                throw new IllegalArgumentException("Unknown license requirement '" + license
+                        + "', expected 'osi', 'open' or 'known'.");
+        }
+    }
+}
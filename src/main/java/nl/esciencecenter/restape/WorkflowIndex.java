@@ -0,0 +1,794 @@
+package nl.esciencecenter.restape;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import nl.uu.cs.ape.models.Type;
+import nl.uu.cs.ape.solver.solutionStructure.ModuleNode;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionsList;
+import nl.uu.cs.ape.solver.solutionStructure.TypeNode;
+
+/**
+ * The {@code WorkflowIndex} class is an inverted index from the tools and the
+ * data types used in the synthesized workflows to the workflows, so that the
+ * workflows using a tool or type can be found across all the runs without
+ * reading their CWL files. The index is filled at synthesis time from the
+ * solutions of the run, and runs are removed from it when they are removed
+ * from the file system (see {@link RunRetention}).<br>
+ * <br>
+ * Every workflow gets a number (document ID) in the order in which it is
+ * added, so the postings of each term are sorted arrays of numbers to which
+ * new workflows are appended, and boolean queries are evaluated by merging
+ * them. The index is kept in memory and persisted as an append-only log in
+ * {@code apeOutputs/.index}, which is replayed when the index is opened. The
+ * index and the log are compacted once most of the documents are removed, and
+ * when the index is opened after runs were removed.<br>
+ * <br>
+ * The terms are {@code tool:<tool ID>}, {@code in:<type ID>} and
+ * {@code out:<type ID>} for the types the tools consume and produce (both the
+ * data types and the formats), and {@code type:<type ID>} for either. Terms
+ * are combined with {@code AND}, {@code OR}, {@code NOT} and parentheses, e.g.
+ * {@code tool:Comet AND (out:format_3244 OR NOT in:format_3652)}; adjacent
+ * terms are combined with {@code AND}.
+ */
+@Slf4j
+public class WorkflowIndex {
+
+    public static final String INDEX_DIR = ".index";
+    public static final String TOOL = "tool";
+    public static final String INPUT = "in";
+    public static final String OUTPUT = "out";
+    /**
+     * Field matching both the input and the output types.
+     */
+    public static final String TYPE = "type";
+
+    private static final String LOG_FILE = "workflows.log";
+    private static final String ADD = "+";
+    private static final String REMOVE = "-";
+    private static final String WORKFLOW_PREFIX = "candidate_workflow_";
+    private static final Pattern WORKFLOW_NUMBER = Pattern.compile("(\\d+)$");
+    private static final Set<String> FIELDS = Set.of(TOOL, INPUT, OUTPUT, TYPE);
+
+    private static final WorkflowIndex instance = new WorkflowIndex(
+            Paths.get(RestApeUtils.getSolutionPath(), INDEX_DIR));
+
+    static {
+        Metrics.gauge("restape.workflow.index.workflows", instance, WorkflowIndex::getWorkflowCount);
+    }
+
+    private final Path logFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, IntList> postings = new HashMap<>();
+    /**
+     * Run (as index in {@link #runIDs}) and workflow number of each document.
+     */
+    private IntList documentRuns = new IntList();
+    private IntList documentWorkflows = new IntList();
+    private List<String> runIDs = new ArrayList<>();
+    /**
+     * Documents of each run, which are added consecutively, as [first, end).
+     */
+    private Map<String, int[]> runDocuments = new HashMap<>();
+    /**
+     * Documents of the removed runs, which are dropped when the index is
+     * compacted.
+     */
+    private BitSet removedDocuments = new BitSet();
+    private int removedCount = 0;
+    private BufferedWriter logWriter;
+
+    WorkflowIndex(Path dir) {
+        this.logFile = dir.resolve(LOG_FILE);
+        try {
+            Files.createDirectories(dir);
+            load();
+        } catch (IOException e) {
+            log.error("The workflow index could not be loaded from {}.", logFile, e);
+        }
+    }
+
+    /**
+     * Get the index of the workflows of all the runs.
+     *
+     * @return The shared index.
+     */
+    public static WorkflowIndex get() {
+        return instance;
+    }
+
+    /**
+     * Add the workflows of the synthesis run to the index.
+     *
+     * @param runID              - ID of the synthesis run
+     * @param candidateSolutions - solutions of the synthesis run
+     */
+    void addRun(String runID, SolutionsList candidateSolutions) {
+        SortedMap<Integer, Set<String>> workflows = new TreeMap<>();
+        for (int i = 0; i < candidateSolutions.getNumberOfSolutions(); i++) {
+            SolutionWorkflow solution = candidateSolutions.get(i);
+            Matcher matcher = WORKFLOW_NUMBER.matcher(solution.getFileName());
+            if (!matcher.find()) {
+                continue;
+            }
+            Set<String> terms = new LinkedHashSet<>();
+            for (ModuleNode moduleNode : solution.getModuleNodes()) {
+                terms.add(term(TOOL, moduleNode.getUsedModule().getPredicateID()));
+                addTypeTerms(terms, INPUT, moduleNode.getInputTypes());
+                addTypeTerms(terms, OUTPUT, moduleNode.getOutputTypes());
+            }
+            workflows.put(Integer.parseInt(matcher.group(1)), terms);
+        }
+        addRun(runID, workflows);
+    }
+
+    private static void addTypeTerms(Set<String> terms, String field, List<TypeNode> typeNodes) {
+        for (TypeNode typeNode : typeNodes) {
+            for (Type type : typeNode.getTypes()) {
+                terms.add(term(field, type.getPredicateID()));
+            }
+        }
+    }
+
+    /**
+     * Add the workflows of the synthesis run to the index, replacing the
+     * workflows that were indexed for the run before.
+     *
+     * @param runID     - ID of the synthesis run
+     * @param workflows - terms of each workflow, by workflow number
+     */
+    void addRun(String runID, SortedMap<Integer, Set<String>> workflows) {
+        lock.writeLock().lock();
+        try {
+            if (runDocuments.containsKey(runID)) {
+                removeRun(runID);
+            }
+            for (Map.Entry<Integer, Set<String>> workflow : workflows.entrySet()) {
+                index(runID, workflow.getKey(), workflow.getValue());
+                appendToLog(ADD + "\t" + runID + "\t" + workflow.getKey() + "\t"
+                        + String.join("\t", workflow.getValue()));
+            }
+            flushLog();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the workflows of the synthesis run from the index.
+     *
+     * @param runID - ID of the synthesis run
+     */
+    void removeRun(String runID) {
+        lock.writeLock().lock();
+        try {
+            int[] documents = runDocuments.remove(runID);
+            if (documents == null) {
+                return;
+            }
+            removedDocuments.set(documents[0], documents[1]);
+            removedCount += documents[1] - documents[0];
+            appendToLog(REMOVE + "\t" + runID);
+            flushLog();
+            // the removed documents are skipped by the queries until they are the majority
+            if (removedCount * 2 > documentRuns.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the workflows matching the query, the most recently added first.
+     *
+     * @param query - boolean combination of terms, e.g.
+     *              {@code tool:Comet AND NOT out:format_3244}
+     * @param page  - number of the page, starting at 0
+     * @param size  - number of workflows per page
+     * @return JSON object with the workflows of the page (their 'run_id' and
+     *         'workflow_name') under 'workflows', and the total number of
+     *         matching workflows under 'total_workflows'.
+     * @throws IllegalArgumentException if the query is not valid
+     */
+    public JSONObject query(String query, int page, int size) throws IllegalArgumentException {
+        Node root = new QueryParser(query).parse();
+        long start = System.nanoTime();
+        JSONArray workflows = new JSONArray();
+        int total;
+        lock.readLock().lock();
+        try {
+            IntList documents = root.evaluate(this);
+            total = documents.size();
+            if (removedCount > 0) {
+                for (int i = 0; i < documents.size(); i++) {
+                    if (removedDocuments.get(documents.get(i))) {
+                        total--;
+                    }
+                }
+            }
+            long skip = (long) page * size;
+            for (int i = documents.size() - 1; i >= 0 && workflows.length() < size; i--) {
+                int document = documents.get(i);
+                if (removedDocuments.get(document) || skip-- > 0) {
+                    continue;
+                }
+                workflows.put(new JSONObject()
+                        .put("run_id", runIDs.get(documentRuns.get(document)))
+                        .put("workflow_name", WORKFLOW_PREFIX + documentWorkflows.get(document)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Metrics.timer("restape.workflow.index.query").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new JSONObject()
+                .put("workflows", workflows)
+                .put("page", page)
+                .put("size", size)
+                .put("total_workflows", total);
+    }
+
+    /**
+     * Get the number of indexed workflows.
+     *
+     * @return Number of workflows of the runs in the index.
+     */
+    public int getWorkflowCount() {
+        lock.readLock().lock();
+        try {
+            return documentRuns.size() - removedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(String runID, int workflowNumber, Set<String> terms) {
+        int document = documentRuns.size();
+        int[] documents = runDocuments.get(runID);
+        if (documents == null) {
+            runIDs.add(runID);
+            runDocuments.put(runID, new int[] { document, document + 1 });
+        } else {
+            documents[1] = document + 1;
+        }
+        documentRuns.add(runIDs.size() - 1);
+        documentWorkflows.add(workflowNumber);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new IntList()).add(document);
+        }
+    }
+
+    /**
+     * Drop the removed documents from the index and renumber the others, and
+     * rewrite the log without the removed runs.
+     */
+    private void compact() {
+        int[] renumbered = new int[documentRuns.size()];
+        IntList liveRuns = new IntList();
+        IntList liveWorkflows = new IntList();
+        List<String> liveRunIDs = new ArrayList<>();
+        Map<String, int[]> liveRunDocuments = new HashMap<>();
+        for (int document = 0; document < documentRuns.size(); document++) {
+            if (removedDocuments.get(document)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            String runID = runIDs.get(documentRuns.get(document));
+            int liveDocument = liveRuns.size();
+            int[] documents = liveRunDocuments.get(runID);
+            if (documents == null) {
+                liveRunIDs.add(runID);
+                liveRunDocuments.put(runID, new int[] { liveDocument, liveDocument + 1 });
+            } else {
+                documents[1] = liveDocument + 1;
+            }
+            liveRuns.add(liveRunIDs.size() - 1);
+            liveWorkflows.add(documentWorkflows.get(document));
+            renumbered[document] = liveDocument;
+        }
+        // terms of each document, to rewrite the log
+        List<List<String>> documentTerms = new ArrayList<>(liveRuns.size());
+        for (int document = 0; document < liveRuns.size(); document++) {
+            documentTerms.add(new ArrayList<>());
+        }
+        Map<String, IntList> livePostings = new HashMap<>();
+        for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+            IntList documents = entry.getValue();
+            IntList liveDocuments = new IntList();
+            for (int i = 0; i < documents.size(); i++) {
+                int document = renumbered[documents.get(i)];
+                if (document >= 0) {
+                    liveDocuments.add(document);
+                    documentTerms.get(document).add(entry.getKey());
+                }
+            }
+            if (liveDocuments.size() > 0) {
+                livePostings.put(entry.getKey(), liveDocuments);
+            }
+        }
+        postings = livePostings;
+        documentRuns = liveRuns;
+        documentWorkflows = liveWorkflows;
+        runIDs = liveRunIDs;
+        runDocuments = liveRunDocuments;
+        removedDocuments = new BitSet();
+        removedCount = 0;
+        rewriteLog(documentTerms);
+        log.info("Compacted the workflow index, {} workflows are indexed.", documentRuns.size());
+    }
+
+    private void rewriteLog(List<List<String>> documentTerms) {
+        Path compacted = logFile.resolveSibling(LOG_FILE + ".tmp");
+        try {
+            if (logWriter != null) {
+                logWriter.close();
+                logWriter = null;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (int document = 0; document < documentRuns.size(); document++) {
+                    writer.write(ADD + "\t" + runIDs.get(documentRuns.get(document)) + "\t"
+                            + documentWorkflows.get(document) + "\t" + String.join("\t", documentTerms.get(document)));
+                    writer.newLine();
+                }
+            }
+            Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the log still contains the removals, so it is compacted when it is replayed
+            log.warn("The workflow index log could not be compacted: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replay the log. Runs that were removed are skipped, in which case the log is
+     * rewritten without them.
+     */
+    private void load() throws IOException {
+        // line number of the last removal of each run
+        Map<String, Integer> lastRemoval = new HashMap<>();
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine(), lineNumber++) {
+                if (line.startsWith(REMOVE + "\t")) {
+                    lastRemoval.put(line.substring(2), lineNumber);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        boolean compact = !lastRemoval.isEmpty();
+        Path compacted = logFile.resolveSibling(LOG_FILE + ".tmp");
+        lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8);
+                BufferedWriter writer = compact ? Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)
+                        : null) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine(), lineNumber++) {
+                String[] fields = line.split("\t");
+                if (!fields[0].equals(ADD) || fields.length < 3
+                        || lastRemoval.getOrDefault(fields[1], -1) > lineNumber) {
+                    continue;
+                }
+                index(fields[1], Integer.parseInt(fields[2]),
+                        new LinkedHashSet<>(Arrays.asList(fields).subList(3, fields.length)));
+                if (compact) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Line " + (lineNumber + 1) + " of the log is not valid.", e);
+        }
+        if (compact) {
+            Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Compacted the workflow index, {} workflows are indexed.", documentRuns.size());
+        }
+    }
+
+    private void appendToLog(String line) {
+        try {
+            if (logWriter == null) {
+                logWriter = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            }
+            logWriter.write(line);
+            logWriter.newLine();
+        } catch (IOException e) {
+            log.warn("The workflow index log could not be written: {}", e.getMessage());
+        }
+    }
+
+    private void flushLog() {
+        try {
+            if (logWriter != null) {
+                logWriter.flush();
+            }
+        } catch (IOException e) {
+            log.warn("The workflow index log could not be written: {}", e.getMessage());
+        }
+    }
+
+    private static String term(String field, String id) {
+        // tabs and line breaks separate the entries of the log
+        return field + ":" + id.replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    /**
+     * Get the postings of the term, which are shared and must not be modified.
+     */
+    private IntList getPostings(String term) {
+        IntList documents = postings.get(term);
+        return documents == null ? new IntList() : documents;
+    }
+
+    /**
+     * Get the documents that are not removed and not in the given documents.
+     */
+    private IntList complement(IntList documents) {
+        int[] result = new int[Math.max(0, documentRuns.size() - removedCount - documents.size())];
+        int n = 0;
+        int j = 0;
+        int end = documentRuns.size();
+        for (int document = removedDocuments.nextClearBit(0); document < end;
+                document = removedDocuments.nextClearBit(document + 1)) {
+            while (j < documents.size() && documents.get(j) < document) {
+                j++;
+            }
+            if (j == documents.size() || documents.get(j) != document) {
+                if (n == result.length) {
+                    // the documents included removed ones
+                    result = Arrays.copyOf(result, Math.max(4, n * 2));
+                }
+                result[n++] = document;
+            }
+        }
+        return new IntList(result, n);
+    }
+
+    /**
+     * Growable array of ints.
+     */
+    private static class IntList {
+
+        private int[] values;
+        private int size;
+
+        IntList() {
+            this(new int[4], 0);
+        }
+
+        IntList(int[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /*
+     * Merging of sorted postings, which are read in place and not modified.
+     */
+
+    static int[] intersect(int[] a, int[] b) {
+        return intersect(new IntList(a, a.length), new IntList(b, b.length)).toArray();
+    }
+
+    static int[] union(int[] a, int[] b) {
+        return union(new IntList(a, a.length), new IntList(b, b.length)).toArray();
+    }
+
+    static int[] subtract(int[] a, int[] b) {
+        return subtract(new IntList(a, a.length), new IntList(b, b.length)).toArray();
+    }
+
+    private static IntList intersect(IntList a, IntList b) {
+        int[] result = new int[Math.min(a.size, b.size)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.values[i] < b.values[j]) {
+                i++;
+            } else if (a.values[i] > b.values[j]) {
+                j++;
+            } else {
+                result[n++] = a.values[i];
+                i++;
+                j++;
+            }
+        }
+        return new IntList(result, n);
+    }
+
+    private static IntList union(IntList a, IntList b) {
+        int[] result = new int[a.size + b.size];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.values[i] < b.values[j])) {
+                result[n++] = a.values[i++];
+            } else if (i == a.size || b.values[j] < a.values[i]) {
+                result[n++] = b.values[j++];
+            } else {
+                result[n++] = a.values[i];
+                i++;
+                j++;
+            }
+        }
+        return new IntList(result, n);
+    }
+
+    private static IntList subtract(IntList a, IntList b) {
+        int[] result = new int[a.size];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.values[j] < a.values[i]) {
+                j++;
+            }
+            if (j == b.size || b.values[j] != a.values[i]) {
+                result[n++] = a.values[i];
+            }
+        }
+        return new IntList(result, n);
+    }
+
+    /*
+     * Queries.
+     */
+
+    private interface Node {
+        IntList evaluate(WorkflowIndex index);
+    }
+
+    private static class Term implements Node {
+
+        private final String field;
+        private final String id;
+
+        Term(String field, String id) {
+            this.field = field;
+            this.id = id;
+        }
+
+        @Override
+        public IntList evaluate(WorkflowIndex index) {
+            if (field.equals(TYPE)) {
+                return union(index.getPostings(term(INPUT, id)), index.getPostings(term(OUTPUT, id)));
+            }
+            return index.getPostings(term(field, id));
+        }
+    }
+
+    private static class Not implements Node {
+
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public IntList evaluate(WorkflowIndex index) {
+            return index.complement(operand.evaluate(index));
+        }
+    }
+
+    private static class And implements Node {
+
+        private final List<Node> operands;
+
+        And(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public IntList evaluate(WorkflowIndex index) {
+            // the negated operands are subtracted, instead of intersecting with
+            // their complement
+            List<IntList> included = new ArrayList<>();
+            List<IntList> excluded = new ArrayList<>();
+            for (Node operand : operands) {
+                if (operand instanceof Not not) {
+                    excluded.add(not.operand.evaluate(index));
+                } else {
+                    included.add(operand.evaluate(index));
+                }
+            }
+            // starting with the shortest postings keeps the intermediate results small
+            if (included.isEmpty()) {
+                IntList union = new IntList();
+                for (IntList documents : excluded) {
+                    union = union(union, documents);
+                }
+                return index.complement(union);
+            }
+            included.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            IntList result = included.get(0);
+            for (int i = 1; i < included.size() && result.size() > 0; i++) {
+                result = intersect(result, included.get(i));
+            }
+            for (IntList documents : excluded) {
+                result = subtract(result, documents);
+            }
+            return result;
+        }
+    }
+
+    private static class Or implements Node {
+
+        private final List<Node> operands;
+
+        Or(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public IntList evaluate(WorkflowIndex index) {
+            IntList result = new IntList();
+            for (Node operand : operands) {
+                result = union(result, operand.evaluate(index));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Recursive descent parser of the queries:
+     *
+     * <pre>
+     * or   := and ("OR" and)*
+     * and  := not (["AND"] not)*
+     * not  := "NOT" not | "(" or ")" | field ":" id
+     * </pre>
+     *
+     * IDs containing spaces or parentheses are quoted, e.g.
+     * {@code tool:"Peptide search"}.
+     */
+    private static class QueryParser {
+
+        private static final int MAX_TERMS = 256;
+
+        private final List<String> tokens = new ArrayList<>();
+        private int position;
+
+        QueryParser(String query) {
+            int i = 0;
+            while (i < query.length()) {
+                char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    StringBuilder token = new StringBuilder();
+                    while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                            && query.charAt(i) != '(' && query.charAt(i) != ')') {
+                        if (query.charAt(i) == '"') {
+                            int end = query.indexOf('"', i + 1);
+                            if (end < 0) {
+                                throw new IllegalArgumentException("The query contains an unterminated quote.");
+                            }
+                            token.append(query, i + 1, end);
+                            i = end + 1;
+                        } else {
+                            token.append(query.charAt(i++));
+                        }
+                    }
+                    tokens.add(token.toString());
+                }
+            }
+            if (tokens.size() > MAX_TERMS) {
+                throw new IllegalArgumentException("The query may contain at most " + MAX_TERMS + " terms.");
+            }
+        }
+
+        Node parse() {
+            if (tokens.isEmpty()) {
+                throw new IllegalArgumentException("The query is empty.");
+            }
+            Node node = parseOr();
+            if (position < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected '" + tokens.get(position) + "' in the query.");
+            }
+            return node;
+        }
+
+        private Node parseOr() {
+            List<Node> operands = new ArrayList<>(List.of(parseAnd()));
+            while (accept("OR")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>(List.of(parseNot()));
+            while (position < tokens.size() && !peek("OR") && !peek(")")) {
+                accept("AND");
+                operands.add(parseNot());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        private Node parseNot() {
+            if (position == tokens.size()) {
+                throw new IllegalArgumentException("The query ends unexpectedly.");
+            } else if (accept("NOT")) {
+                return new Not(parseNot());
+            } else if (accept("(")) {
+                Node node = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("The query is missing a ')'.");
+                }
+                return node;
+            }
+            String token = tokens.get(position++);
+            int separator = token.indexOf(':');
+            if (separator < 0 || !FIELDS.contains(token.substring(0, separator))
+                    || separator == token.length() - 1) {
+                throw new IllegalArgumentException("'" + token + "' is not a valid term, the terms should be "
+                        + "of the form tool:<ID>, in:<ID>, out:<ID> or type:<ID>.");
+            }
+            return new Term(token.substring(0, separator), token.substring(separator + 1));
+        }
+
+        private boolean peek(String token) {
+            return position < tokens.size() && tokens.get(position).equals(token);
+        }
+
+        private boolean accept(String token) {
+            if (peek(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
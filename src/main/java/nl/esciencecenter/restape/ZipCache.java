@@ -0,0 +1,313 @@
+package nl.esciencecenter.restape;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@code ZipCache} class caches the zips of the selected workflows (see
+ * {@code /cwl_zip}) on disk, so that repeated downloads of the same selection
+ * do not require the files to be compressed again. The zips are content
+ * addressed, i.e., stored under the hash of the run ID, the (sorted) workflow
+ * names and the readme version, which is also used as their ETag.<br>
+ * <br>
+ * The least recently used zips are removed once the cache exceeds
+ * {@code ZIP_CACHE_MAX_BYTES} bytes. Zips that are being served are leased
+ * (see {@link Lease}) and are not removed until the lease is released.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ZipCache {
+
+    private static final long maxBytes = RestApeSettings.getLong("ZIP_CACHE_MAX_BYTES", 1024L * 1024 * 1024);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String EXTENSION = ".zip";
+
+    /**
+     * Size of the cached zips, in the order of their last use.
+     */
+    private static final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Number of leases of the zips that are being served.
+     */
+    private static final Map<String, Integer> leases = new HashMap<>();
+    private static long totalBytes = 0;
+    private static boolean loaded = false;
+
+    /**
+     * Compute the key of the zip, which identifies its content.
+     *
+     * @param runID     - ID of the synthesis run
+     * @param workflows - names of the zipped workflows, in any order
+     * @param readme    - content of the readme added to the zip
+     * @return Key (hash) of the zip.
+     */
+    public static String getKey(String runID, List<String> workflows, byte[] readme) {
+        List<String> sortedWorkflows = new ArrayList<>(workflows);
+        sortedWorkflows.sort(Comparator.naturalOrder());
+        String readmeVersion = RestApeUtils.generateStringHash(new String(readme, StandardCharsets.UTF_8), 32);
+        return RestApeUtils.generateStringHash(runID + "\n" + String.join(",", sortedWorkflows) + "\n"
+                + readmeVersion, 32);
+    }
+
+    /**
+     * Get the cached zip. The zip is leased, i.e., it is not evicted until the
+     * lease is closed.
+     *
+     * @param key - key of the zip, see {@link #getKey(String, List, byte[])}
+     * @return Lease of the cached zip, or empty if it is not cached.
+     */
+    public static synchronized Optional<Lease> get(String key) {
+        ensureLoaded();
+        Path zip = getPath(key);
+        if (entries.get(key) == null || !Files.isRegularFile(zip)) {
+            Metrics.counter("restape.zip.cache", "result", "miss").increment();
+            return Optional.empty();
+        }
+        try {
+            // the modification time keeps the order of use across restarts
+            Files.setLastModifiedTime(zip, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("The last use of {} could not be recorded: {}", zip, e.getMessage());
+        }
+        Metrics.counter("restape.zip.cache", "result", "hit").increment();
+        return Optional.of(lease(key));
+    }
+
+    /**
+     * Write the zip to the output stream and to the cache at the same time. The
+     * zip is only added to the cache if it was written completely.
+     *
+     * @param key    - key of the zip
+     * @param out    - stream the zip is written to, e.g., the HTTP response
+     * @param writer - writes the zip
+     * @throws IOException In case the zip cannot be written.
+     */
+    public static void writeThrough(String key, OutputStream out, ZipWriter writer) throws IOException {
+        Path tmpFile = createTmpFile(key);
+        try {
+            try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(tmpFile), BUFFER_SIZE)) {
+                TeeOutputStream teeOut = new TeeOutputStream(out, fileOut);
+                writer.write(teeOut);
+                teeOut.flush();
+            }
+            put(key, tmpFile);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Write the zip to the cache, e.g., to serve a part of it. The zip is leased,
+     * i.e., it is not evicted until the lease is closed.
+     *
+     * @param key    - key of the zip
+     * @param writer - writes the zip
+     * @return Lease of the cached zip.
+     * @throws IOException In case the zip cannot be written.
+     */
+    public static Lease build(String key, ZipWriter writer) throws IOException {
+        Path tmpFile = createTmpFile(key);
+        try {
+            try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(tmpFile), BUFFER_SIZE)) {
+                writer.write(fileOut);
+            }
+            synchronized (ZipCache.class) {
+                // leased before the eviction, so that the new zip is not removed right away
+                Lease lease = lease(key);
+                put(key, tmpFile);
+                return lease;
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Remove the least recently used zips until the cache fits the budget. Leased
+     * zips are kept, as they are being served.
+     *
+     * @param budgetBytes - maximal size of the cache
+     */
+    static synchronized void evict(long budgetBytes) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (leases.containsKey(entry.getKey())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(getPath(entry.getKey()));
+            } catch (IOException e) {
+                log.warn("The cached zip {} could not be removed: {}", entry.getKey(), e.getMessage());
+                continue;
+            }
+            totalBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static synchronized Path put(String key, Path tmpFile) throws IOException {
+        ensureLoaded();
+        Path zip = getPath(key);
+        Files.move(tmpFile, zip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Long previousSize = entries.put(key, Files.size(zip));
+        totalBytes += entries.get(key) - (previousSize == null ? 0 : previousSize);
+        evict(maxBytes);
+        return zip;
+    }
+
+    private static synchronized Lease lease(String key) {
+        leases.merge(key, 1, Integer::sum);
+        return new Lease(key);
+    }
+
+    private static synchronized void release(String key) {
+        leases.computeIfPresent(key, (leasedKey, count) -> count > 1 ? count - 1 : null);
+        evict(maxBytes);
+    }
+
+    private static synchronized Path createTmpFile(String key) throws IOException {
+        // loading removes the temporary files left behind, therefore it happens first
+        ensureLoaded();
+        Files.createDirectories(getCacheDir());
+        return Files.createTempFile(getCacheDir(), key, ".tmp");
+    }
+
+    /**
+     * Load the zips cached before the restart, in the order of their last use.
+     */
+    private static void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path cacheDir = getCacheDir();
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        List<Path> zips = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(EXTENSION)) {
+                    zips.add(file);
+                } else {
+                    // incomplete zips of interrupted downloads
+                    Files.deleteIfExists(file);
+                }
+            }
+            zips.sort(Comparator.comparing(zip -> zip.toFile().lastModified()));
+            for (Path zip : zips) {
+                String fileName = zip.getFileName().toString();
+                long size = Files.size(zip);
+                entries.put(fileName.substring(0, fileName.length() - EXTENSION.length()), size);
+                totalBytes += size;
+            }
+        } catch (IOException e) {
+            log.error("The zip cache in {} could not be loaded.", cacheDir, e);
+        }
+        evict(maxBytes);
+    }
+
+    private static Path getCacheDir() {
+        return Paths.get(RestApeUtils.getSolutionPath(), ".zipCache");
+    }
+
+    private static Path getPath(String key) {
+        return getCacheDir().resolve(key + EXTENSION);
+    }
+
+    /**
+     * Lease of a cached zip, which keeps the zip from being evicted while it is
+     * served. The lease should be closed once the zip was served.
+     */
+    public static class Lease implements AutoCloseable {
+
+        private final String key;
+        private boolean released = false;
+
+        private Lease(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Get the path to the leased zip.
+         *
+         * @return Path to the zip.
+         */
+        public Path getPath() {
+            return ZipCache.getPath(key);
+        }
+
+        /**
+         * Release the lease. Releasing it more than once has no effect.
+         */
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                release(key);
+            }
+        }
+    }
+
+    /**
+     * Output stream that writes to two streams.
+     */
+    private static class TeeOutputStream extends OutputStream {
+
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+
+    /**
+     * Writes a zip to the given stream.
+     */
+    @FunctionalInterface
+    public interface ZipWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
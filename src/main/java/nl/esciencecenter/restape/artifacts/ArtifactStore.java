@@ -0,0 +1,52 @@
+package nl.esciencecenter.restape.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Interface {@link ArtifactStore} describes a storage of the files (artifacts)
+ * of the synthesis runs that is shared by all the nodes, e.g., a shared file
+ * system or an S3-compatible object storage. The artifacts are identified by
+ * keys of the form {@code <runID>/<subdirectory>/<file name>}, e.g.,
+ * {@code <runID>/CWL/candidate_workflow_1.cwl}.
+ */
+public interface ArtifactStore {
+
+    /**
+     * Get the name of the store, used in logs.
+     * 
+     * @return Name of the store.
+     */
+    String getName();
+
+    /**
+     * Store the file under the key, replacing the existing artifact.
+     * 
+     * @param key  - key of the artifact
+     * @param file - file to be stored
+     * @throws IOException In case the file cannot be stored.
+     */
+    void put(String key, Path file) throws IOException;
+
+    /**
+     * Open the artifact for reading. The caller has to close the stream.
+     * 
+     * @param key - key of the artifact
+     * @return Stream with the content of the artifact.
+     * @throws NoSuchFileException In case the artifact does not exist.
+     * @throws IOException         In case the store cannot be reached.
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * List the keys of the artifacts that start with the prefix.
+     * 
+     * @param prefix - prefix of the keys, e.g., {@code <runID>/}
+     * @return Keys of the artifacts.
+     * @throws IOException In case the store cannot be reached.
+     */
+    List<String> list(String prefix) throws IOException;
+}
@@ -0,0 +1,370 @@
+package nl.esciencecenter.restape.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.restape.RestApeSettings;
+import nl.esciencecenter.restape.RestApeUtils;
+import nl.esciencecenter.restape.RunPacks;
+
+/**
+ * The {@code ArtifactStores} class shares the files of the synthesis runs
+ * between the nodes of a deployment, using the {@link ArtifactStore} configured
+ * by {@code ARTIFACT_STORE}:
+ * <ul>
+ * <li>{@code local} - a directory ({@code ARTIFACT_STORE_PATH}), e.g., on a
+ * shared file system,</li>
+ * <li>{@code s3} - a bucket of an S3-compatible object storage
+ * ({@code S3_ENDPOINT}, {@code S3_BUCKET}, {@code S3_REGION},
+ * {@code S3_ACCESS_KEY}, {@code S3_SECRET_KEY}),</li>
+ * <li>{@code memory} - in memory, for tests.</li>
+ * </ul>
+ * Without a store, the files are only available on the node that ran the
+ * synthesis.<br>
+ * <br>
+ * The runs are still written to and served from {@code apeOutputs}. The new
+ * files of a run are uploaded in the background, in a single batch per run, and
+ * the files that are missing locally (e.g., runs of other nodes) are downloaded
+ * from the store when they are requested. Concurrent requests for the same
+ * missing run or file wait for a single download, and files that are not in
+ * the store either are not looked up again for {@code ARTIFACT_MISS_TTL_MS}.
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ArtifactStores {
+
+    private static final long uploadDelayMs = RestApeSettings.getLong("ARTIFACT_UPLOAD_DELAY_MS", 500);
+    private static final long missTtlMs = RestApeSettings.getLong("ARTIFACT_MISS_TTL_MS", 10000);
+    private static final int MAX_MISSES = 10000;
+    private static final int MAX_UPLOADED_RUNS = 1000;
+    private static final int RUN_LOCKS = 64;
+    private static final ScheduledExecutorService uploadExecutor = Executors.newScheduledThreadPool(
+            Math.max(1, RestApeSettings.getInt("ARTIFACT_UPLOAD_THREADS", 2)), runnable -> {
+                Thread thread = new Thread(runnable, "artifact-upload");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static volatile ArtifactStore store = createStore();
+    /**
+     * Runs whose upload is scheduled but did not start yet.
+     */
+    private static final Set<String> pendingRuns = ConcurrentHashMap.newKeySet();
+    /**
+     * Modification times of the uploaded files of the most recently uploaded or
+     * downloaded runs, so that only new and modified files are uploaded again. The
+     * files of a run that is no longer tracked are all uploaded again if the run
+     * changes.
+     */
+    private static final Map<String, Map<String, Long>> uploadedRuns = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, Long>> eldest) {
+                    return size() > MAX_UPLOADED_RUNS;
+                }
+            });
+    /**
+     * Locks of the uploads, so that a run is uploaded by a single thread while
+     * different runs are uploaded concurrently. The runs are spread over a fixed
+     * number of locks.
+     */
+    private static final Object[] uploadLocks = new Object[RUN_LOCKS];
+    /**
+     * Downloads in progress, by the key of the downloaded file or the prefix of the
+     * downloaded run.
+     */
+    private static final Map<String, CompletableFuture<Void>> downloads = new ConcurrentHashMap<>();
+    /**
+     * Keys and run prefixes that were not found in the store, with the time until
+     * which they are not looked up again.
+     */
+    private static final Map<String, Long> misses = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_MISSES;
+        }
+    };
+
+    static {
+        for (int i = 0; i < RUN_LOCKS; i++) {
+            uploadLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the configured store.
+     * 
+     * @return The store, or empty if the runs are not shared.
+     */
+    public static Optional<ArtifactStore> getStore() {
+        return Optional.ofNullable(store);
+    }
+
+    /**
+     * Replace the store, e.g., in tests.
+     * 
+     * @param newStore - the new store, or null to stop sharing the runs
+     */
+    public static void setStore(ArtifactStore newStore) {
+        store = newStore;
+        uploadedRuns.clear();
+        synchronized (misses) {
+            misses.clear();
+        }
+    }
+
+    /**
+     * Schedule the upload of the new files of the run. Uploads requested shortly
+     * after each other (e.g., for each benchmarked workflow) are combined.
+     * 
+     * @param runID - ID of the synthesis run
+     */
+    public static void scheduleUpload(String runID) {
+        if (store != null && pendingRuns.add(runID)) {
+            uploadExecutor.schedule(() -> {
+                pendingRuns.remove(runID);
+                try {
+                    uploadRun(runID);
+                } catch (IOException | RuntimeException e) {
+                    log.error("The files of run {} could not be uploaded to {}.", runID, store.getName(), e);
+                }
+            }, uploadDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Upload the files of the run modified since its last upload.
+     * 
+     * @param runID - ID of the synthesis run
+     * @return Number of uploaded files.
+     * @throws IOException In case a file cannot be uploaded.
+     */
+    static int uploadRun(String runID) throws IOException {
+        synchronized (uploadLocks[Math.floorMod(runID.hashCode(), RUN_LOCKS)]) {
+            return uploadFiles(runID);
+        }
+    }
+
+    private static int uploadFiles(String runID) throws IOException {
+        ArtifactStore currentStore = store;
+        Path runDir = getOutputsDir().resolve(runID);
+        if (currentStore == null || !Files.isDirectory(runDir)) {
+            return 0;
+        }
+        Map<String, Long> uploaded = uploadedRuns.computeIfAbsent(runID, id -> new ConcurrentHashMap<>());
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(runDir)) {
+            // the index of a pack is uploaded after the pack, so that it never refers
+            // to missing data
+            files = walk.filter(Files::isRegularFile).filter(ArtifactStores::isShared)
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString().equals(RunPacks.INDEX_FILE)))
+                    .toList();
+        }
+        int count = 0;
+        for (Path file : files) {
+            String key = getKey(file);
+            long lastModified = file.toFile().lastModified();
+            if (!uploaded.getOrDefault(key, -1L).equals(lastModified)) {
+                currentStore.put(key, file);
+                uploaded.put(key, lastModified);
+                count++;
+            }
+        }
+        Metrics.counter("restape.artifacts.uploaded").increment(count);
+        return count;
+    }
+
+    /**
+     * Forget the uploaded files of the run, e.g., after the run was removed
+     * locally.
+     * 
+     * @param runID - ID of the synthesis run
+     */
+    public static void forget(String runID) {
+        uploadedRuns.remove(runID);
+    }
+
+    /**
+     * Make sure that the file of a run is available locally, by downloading it
+     * from the store if it is missing. If the whole run is missing, all its files
+     * are downloaded. Concurrent requests for the same run or file wait for a
+     * single download.
+     * 
+     * @param path - path to the file in {@code apeOutputs}
+     * @return true if the file is available locally, false otherwise.
+     */
+    public static boolean fetch(Path path) {
+        ArtifactStore currentStore = store;
+        if (currentStore == null || RunPacks.exists(path)) {
+            return RunPacks.exists(path);
+        }
+        Path outputsDir = getOutputsDir();
+        Path relativePath = outputsDir.relativize(path.toAbsolutePath().normalize());
+        if (relativePath.getNameCount() < 2 || relativePath.startsWith("..")) {
+            return false;
+        }
+        String runID = relativePath.getName(0).toString();
+        String runPrefix = runID + "/";
+        // a run that is being downloaded might contain the file
+        awaitDownload(runPrefix);
+        if (RunPacks.exists(path)) {
+            return true;
+        }
+        boolean wholeRun = !Files.isDirectory(outputsDir.resolve(runID));
+        String downloadKey = wholeRun ? runPrefix : getKey(path);
+        if (isKnownMissing(downloadKey)) {
+            Metrics.counter("restape.artifacts.fetched", "scope", "missing").increment();
+            return false;
+        }
+        CompletableFuture<Void> download = new CompletableFuture<>();
+        CompletableFuture<Void> running = downloads.putIfAbsent(downloadKey, download);
+        if (running != null) {
+            running.join();
+            return RunPacks.exists(path);
+        }
+        try {
+            if (wholeRun) {
+                downloadRun(currentStore, outputsDir, runID);
+            } else {
+                downloadFile(currentStore, runID, path);
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("{} is not available in {}.", relativePath, currentStore.getName());
+            rememberMissing(downloadKey);
+        } catch (IOException | RuntimeException e) {
+            log.error("{} could not be downloaded from {}.", relativePath, currentStore.getName(), e);
+        } finally {
+            downloads.remove(downloadKey, download);
+            download.complete(null);
+        }
+        return RunPacks.exists(path);
+    }
+
+    private static void downloadRun(ArtifactStore currentStore, Path outputsDir, String runID) throws IOException {
+        List<String> keys = currentStore.list(runID + "/");
+        if (keys.isEmpty()) {
+            throw new NoSuchFileException(runID);
+        }
+        Map<String, Long> uploaded = uploadedRuns.computeIfAbsent(runID, id -> new ConcurrentHashMap<>());
+        for (String key : keys) {
+            Path target = outputsDir.resolve(key).normalize();
+            if (target.startsWith(outputsDir)) {
+                download(currentStore, key, target);
+                // the downloaded files do not have to be uploaded again
+                uploaded.put(key, target.toFile().lastModified());
+            }
+        }
+        Metrics.counter("restape.artifacts.fetched", "scope", "run").increment();
+    }
+
+    private static void downloadFile(ArtifactStore currentStore, String runID, Path path) throws IOException {
+        String key = getKey(path);
+        download(currentStore, key, path);
+        uploadedRuns.computeIfAbsent(runID, id -> new ConcurrentHashMap<>()).put(key, path.toFile().lastModified());
+        Metrics.counter("restape.artifacts.fetched", "scope", "file").increment();
+    }
+
+    private static void awaitDownload(String downloadKey) {
+        CompletableFuture<Void> running = downloads.get(downloadKey);
+        if (running != null) {
+            running.join();
+        }
+    }
+
+    private static boolean isKnownMissing(String downloadKey) {
+        synchronized (misses) {
+            Long until = misses.get(downloadKey);
+            if (until != null && until <= System.currentTimeMillis()) {
+                misses.remove(downloadKey);
+                return false;
+            }
+            return until != null;
+        }
+    }
+
+    private static void rememberMissing(String downloadKey) {
+        if (missTtlMs > 0) {
+            synchronized (misses) {
+                misses.put(downloadKey, System.currentTimeMillis() + missTtlMs);
+            }
+        }
+    }
+
+    private static void download(ArtifactStore currentStore, String key, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmpFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream in = currentStore.get(key)) {
+                Files.copy(in, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmpFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Check whether the file is shared, i.e., it is not a temporary file or a
+     * compressed variant that each node creates on its own.
+     */
+    private static boolean isShared(Path file) {
+        String fileName = file.getFileName().toString();
+        return !fileName.endsWith(".tmp") && !fileName.endsWith(".gz");
+    }
+
+    private static String getKey(Path file) {
+        return getOutputsDir().relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    private static Path getOutputsDir() {
+        return Paths.get(RestApeUtils.getSolutionPath()).toAbsolutePath().normalize();
+    }
+
+    private static ArtifactStore createStore() {
+        String type = RestApeSettings.get("ARTIFACT_STORE", "");
+        ArtifactStore configuredStore;
+        switch (type) {
+            case "":
+                return null;
+            case "local":
+                configuredStore = new LocalArtifactStore(
+                        Paths.get(RestApeSettings.get("ARTIFACT_STORE_PATH", "artifacts")).toAbsolutePath());
+                break;
+            case "memory":
+                configuredStore = new InMemoryArtifactStore();
+                break;
+            case "s3":
+                configuredStore = new S3ArtifactStore(RestApeSettings.get("S3_ENDPOINT", "https://s3.amazonaws.com"),
+                        RestApeSettings.get("S3_BUCKET", "restape"), RestApeSettings.get("S3_REGION", "us-east-1"),
+                        RestApeSettings.get("S3_ACCESS_KEY", ""), RestApeSettings.get("S3_SECRET_KEY", ""));
+                break;
+            default:
+                log.error("Unknown artifact store {}, the runs are not shared.", type);
+                return null;
+        }
+        log.info("The files of the runs are shared using the {} artifact store.", configuredStore.getName());
+        return configuredStore;
+    }
+}
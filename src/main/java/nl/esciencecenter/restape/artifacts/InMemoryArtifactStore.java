@@ -0,0 +1,45 @@
+package nl.esciencecenter.restape.artifacts;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The {@code InMemoryArtifactStore} class keeps the artifacts in memory. It is
+ * meant for tests and single node development setups, as the artifacts are
+ * neither shared nor persisted.
+ */
+public class InMemoryArtifactStore implements ArtifactStore {
+
+    private final Map<String, byte[]> artifacts = new ConcurrentSkipListMap<>();
+
+    @Override
+    public String getName() {
+        return "in-memory";
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        artifacts.put(key, Files.readAllBytes(file));
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        byte[] content = artifacts.get(key);
+        if (content == null) {
+            throw new NoSuchFileException(key);
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public List<String> list(String prefix) {
+        return artifacts.keySet().stream().filter(key -> key.startsWith(prefix)).toList();
+    }
+}
@@ -0,0 +1,78 @@
+package nl.esciencecenter.restape.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The {@code LocalArtifactStore} class stores the artifacts as files in a
+ * directory, e.g., on a file system that is mounted on all the nodes.
+ */
+public class LocalArtifactStore implements ArtifactStore {
+
+    private final Path root;
+
+    /**
+     * Create a store in the directory.
+     * 
+     * @param root - directory where the artifacts are stored
+     */
+    public LocalArtifactStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public String getName() {
+        return "local (" + root + ")";
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        // written under a temporary name, so that a partially written artifact is
+        // never read
+        Path tmpFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(file, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        // the prefix of the keys is the run directory
+        Path dir = resolve(prefix.substring(0, prefix.lastIndexOf('/') + 1));
+        if (!Files.isDirectory(dir)) {
+            return keys;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(Files::isRegularFile)
+                    .map(file -> root.relativize(file).toString().replace('\\', '/'))
+                    .filter(key -> key.startsWith(prefix) && !key.endsWith(".tmp"))
+                    .forEach(keys::add);
+        }
+        return keys;
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("The key " + key + " is not valid.");
+        }
+        return path;
+    }
+}
@@ -0,0 +1,246 @@
+package nl.esciencecenter.restape.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * The {@code S3ArtifactStore} class stores the artifacts in a bucket of an
+ * S3-compatible object storage (e.g., AWS S3 or MinIO). The objects are
+ * addressed path-style ({@code <endpoint>/<bucket>/<key>}) and the requests are
+ * signed with AWS Signature Version 4. The payloads are not signed, so that the
+ * files can be streamed.
+ */
+public class S3ArtifactStore implements ArtifactStore {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String SIGNED_HEADERS = "host;x-amz-content-sha256;x-amz-date";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    // object storages do not support upgrading plain HTTP connections to HTTP/2
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * Create a store in the bucket.
+     * 
+     * @param endpoint  - URL of the object storage, e.g.,
+     *                  "https://s3.eu-west-1.amazonaws.com" or
+     *                  "http://localhost:9000"
+     * @param bucket    - name of the (existing) bucket
+     * @param region    - region of the bucket, e.g., "us-east-1"
+     * @param accessKey - access key ID
+     * @param secretKey - secret access key
+     */
+    public S3ArtifactStore(String endpoint, String bucket, String region, String accessKey, String secretKey) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public String getName() {
+        return "S3 (" + endpoint + "/" + bucket + ")";
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        HttpResponse<String> response = send("PUT", key, Map.of(), HttpRequest.BodyPublishers.ofFile(file),
+                HttpResponse.BodyHandlers.ofString());
+        checkStatus(response.statusCode(), key, response.body());
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        HttpResponse<InputStream> response = send("GET", key, Map.of(), HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            try (InputStream body = response.body()) {
+                checkStatus(response.statusCode(), key, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return response.body();
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            HttpResponse<InputStream> response = send("GET", "", query, HttpRequest.BodyPublishers.noBody(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    checkStatus(response.statusCode(), prefix, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                Document result = parseXML(body);
+                NodeList keyNodes = result.getElementsByTagName("Key");
+                for (int i = 0; i < keyNodes.getLength(); i++) {
+                    keys.add(keyNodes.item(i).getTextContent());
+                }
+                boolean truncated = "true".equals(textOf(result, "IsTruncated"));
+                continuationToken = truncated ? textOf(result, "NextContinuationToken") : null;
+            }
+        } while (continuationToken != null);
+        return keys;
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query,
+            HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler) throws IOException {
+        String canonicalURI = endpoint.getRawPath() + "/" + encode(bucket, false)
+                + (key.isEmpty() ? "" : "/" + encode(key, false));
+        String canonicalQuery = query.entrySet().stream()
+                .map(entry -> encode(entry.getKey(), true) + "=" + encode(entry.getValue(), true))
+                .collect(Collectors.joining("&"));
+        String amzDate = ZonedDateTime.now(ZoneOffset.UTC).format(AMZ_DATE);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint.getScheme() + "://"
+                + endpoint.getRawAuthority() + canonicalURI + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery)))
+                .method(method, body)
+                .timeout(TIMEOUT)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", authorization(method, canonicalURI, canonicalQuery, amzDate))
+                .build();
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The request to " + getName() + " was interrupted.", e);
+        }
+    }
+
+    /**
+     * Compute the {@code Authorization} header of the request, according to AWS
+     * Signature Version 4.
+     */
+    String authorization(String method, String canonicalURI, String canonicalQuery, String amzDate) {
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String canonicalRequest = method + "\n" + canonicalURI + "\n" + canonicalQuery + "\n"
+                + "host:" + endpoint.getRawAuthority() + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n\n"
+                + SIGNED_HEADERS + "\n" + UNSIGNED_PAYLOAD;
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = hex(hmac(signingKey, stringToSign));
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + SIGNED_HEADERS
+                + ", Signature=" + signature;
+    }
+
+    private static void checkStatus(int status, String key, String body) throws IOException {
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        if (status / 100 != 2) {
+            throw new IOException("The object storage responded with status " + status + " for " + key + ": " + body);
+        }
+    }
+
+    /**
+     * URI encode the text as required by the signature: all the characters except
+     * the unreserved ones are encoded, and slashes are only encoded in the query.
+     */
+    static String encode(String text, boolean encodeSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+                    || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                encoded.append(c);
+            } else {
+                encoded.append(String.format("%%%02X", b & 0xff));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static Document parseXML(InputStream in) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(in);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("The response of the object storage could not be parsed.", e);
+        }
+    }
+
+    private static String textOf(Document document, String tagName) {
+        NodeList nodes = document.getElementsByTagName(tagName);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available.", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package nl.esciencecenter.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+/**
+ * Cache of the resources of the registered domains, keyed by the ID of the
+ * domain. Concurrent requests for a resource that is not cached wait for a
+ * single load of the resource, and failed loads are not cached.
+ */
+class DomainCache {
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Loader of a resource.
+     */
+    interface Loader {
+        String load() throws OWLOntologyCreationException, IOException;
+    }
+
+    /**
+     * Get the resource of the domain, loading it if it is not cached or expired.
+     *
+     * @param domainID - ID of the domain
+     * @param resource - resource of the domain
+     * @param ttlMs    - time for which the loaded resource is used, in
+     *                 milliseconds
+     * @param loader   - loader of the resource
+     * @return The resource, and whether it was cached.
+     * @throws OWLOntologyCreationException if the ontology cannot be created
+     * @throws IOException                  if the configuration file cannot be
+     *                                      read
+     */
+    Result get(int domainID, DomainResource resource, long ttlMs, Loader loader)
+            throws OWLOntologyCreationException, IOException {
+        Key key = new Key(domainID, resource);
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null && (!entry.future.isDone() || System.currentTimeMillis() - entry.loadedAt < ttlMs)) {
+                return new Result(await(entry.future), true);
+            }
+            Entry loading = new Entry();
+            boolean owner = entry == null ? entries.putIfAbsent(key, loading) == null
+                    : entries.replace(key, entry, loading);
+            if (!owner) {
+                // loaded concurrently
+                continue;
+            }
+            try {
+                String value = loader.load();
+                loading.loadedAt = System.currentTimeMillis();
+                loading.future.complete(value);
+                return new Result(value, false);
+            } catch (OWLOntologyCreationException | IOException | RuntimeException | Error e) {
+                entries.remove(key, loading);
+                loading.future.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Remove the resources of the domain from the cache.
+     *
+     * @param domainID - ID of the domain
+     */
+    void invalidate(int domainID) {
+        entries.keySet().removeIf(key -> key.domainID == domainID);
+    }
+
+    /**
+     * Get the number of cached resources.
+     *
+     * @return Number of cached (or loading) resources.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private static String await(CompletableFuture<String> future) throws OWLOntologyCreationException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while the domain was loaded.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OWLOntologyCreationException owlException) {
+                throw owlException;
+            } else if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Resource and whether it was served from the cache.
+     */
+    static class Result {
+
+        final String value;
+        final boolean cached;
+
+        Result(String value, boolean cached) {
+            this.value = value;
+            this.cached = cached;
+        }
+    }
+
+    private static class Entry {
+
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        volatile long loadedAt;
+    }
+
+    private static class Key {
+
+        final int domainID;
+        final DomainResource resource;
+
+        Key(int domainID, DomainResource resource) {
+            this.domainID = domainID;
+            this.resource = resource;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && key.domainID == domainID && key.resource == resource;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * domainID + resource.hashCode();
+        }
+    }
+}
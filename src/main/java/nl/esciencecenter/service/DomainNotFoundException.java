@@ -0,0 +1,11 @@
+package nl.esciencecenter.service;
+
+/**
+ * Exception thrown when the requested domain is not registered.
+ */
+public class DomainNotFoundException extends RuntimeException {
+
+    public DomainNotFoundException(int domainID) {
+        super("No domain found with id: " + domainID);
+    }
+}
@@ -0,0 +1,82 @@
+package nl.esciencecenter.service;
+
+import java.io.IOException;
+
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import nl.esciencecenter.restape.ApeAPI;
+import nl.uu.cs.ape.utils.APEFiles;
+
+/**
+ * Information about a domain that is derived from its configuration file, and
+ * that is cached per domain by the {@link DomainService}.
+ */
+public enum DomainResource {
+
+    DATA_TAXONOMY("data_taxonomy") {
+        @Override
+        String load(String configURL) throws OWLOntologyCreationException, IOException {
+            return ApeAPI.getData(configURL).toString();
+        }
+    },
+    TOOLS_TAXONOMY("tools_taxonomy") {
+        @Override
+        String load(String configURL) throws OWLOntologyCreationException, IOException {
+            return ApeAPI.getTools(configURL).toString();
+        }
+    },
+    CONSTRAINT_TEMPLATES("constraint_templates") {
+        @Override
+        String load(String configURL) throws OWLOntologyCreationException, IOException {
+            return ApeAPI.getConstraints(configURL).toString();
+        }
+    },
+    DOMAIN_CONSTRAINTS("domain_constraints") {
+        @Override
+        String load(String configURL) throws OWLOntologyCreationException, IOException {
+            return ApeAPI.getDomainConstraints(configURL).toString();
+        }
+    },
+    DOMAIN_IO("domain_io") {
+        @Override
+        String load(String configURL) throws OWLOntologyCreationException, IOException {
+            return ApeAPI.getDomainIO(configURL).toString();
+        }
+    },
+    /**
+     * The configuration file itself, used as the defaults of the synthesis runs
+     * in the domain.
+     */
+    CONFIG("config") {
+        @Override
+        String load(String configURL) throws IOException {
+            return APEFiles.readPathToJSONObject(configURL).toString();
+        }
+    };
+
+    private final String name;
+
+    DomainResource(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the resource, as used in the metrics.
+     *
+     * @return Name of the resource.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Load the resource from the configuration file of the domain.
+     *
+     * @param configURL - URL of the configuration file
+     * @return JSON representation of the resource.
+     * @throws OWLOntologyCreationException if the ontology cannot be created
+     * @throws IOException                  if the configuration file cannot be
+     *                                      read
+     */
+    abstract String load(String configURL) throws OWLOntologyCreationException, IOException;
+}
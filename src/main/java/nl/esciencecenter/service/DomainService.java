@@ -1,22 +1,75 @@
 package nl.esciencecenter.service;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.json.JSONObject;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import nl.esciencecenter.models.Domain;
 import nl.esciencecenter.repository.DomainRepository;
+import nl.esciencecenter.restape.RestApeSettings;
+import nl.esciencecenter.restape.RestApeUtils;
 
+/**
+ * Registry of the domains. The domains are stored in the database and kept in
+ * memory, so that the domain endpoints can refer to a domain by its ID, and
+ * the resources of the registered domains (taxonomies, constraints, etc.) are
+ * cached under that ID instead of under the URL of the configuration file. The
+ * in-memory registry is refreshed whenever a domain is created, updated or
+ * deleted.<br>
+ * <br>
+ * The latency of the domain requests and synthesis runs is reported per
+ * domain, as the {@code restape.domain.request} and
+ * {@code restape.domain.synthesis} metrics (the latter tagged with whether the
+ * run was precomputed), and the loads of the domains as
+ * {@code restape.domain.load}. Requests for unregistered domains are reported
+ * under the domain {@code unregistered}.
+ */
+@Slf4j
 @Service
 public class DomainService {
 
+    /**
+     * Name under which the requests for unregistered domains are reported.
+     */
+    public static final String UNREGISTERED = "unregistered";
+
+    private static final long defaultCacheTtlMs = TimeUnit.SECONDS
+            .toMillis(RestApeSettings.getLong("DOMAIN_CACHE_TTL_SECONDS", 3600));
+
     @Autowired
     DomainRepository domainRepository;
 
+    private final DomainCache cache = new DomainCache();
+    private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "domain-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Map<Integer, Domain> domainsById = Collections.emptyMap();
+    private volatile Map<String, Domain> domainsByURL = Collections.emptyMap();
+
+    public DomainService() {
+        Metrics.gauge("restape.domain.registered", this, service -> service.domainsById.size());
+    }
+
     // getting all domain records
     public List<Domain> getAllDomain() {
         List<Domain> domains = new ArrayList<>();
@@ -26,22 +79,262 @@ public class DomainService {
 
     /**
      * Get the domain object with the given id.
-     * 
+     *
      * @param id - id of the domain
      * @return - Domain object with the given id
-     * @throws NoSuchElementException - if no domain with the given id exists
+     * @throws DomainNotFoundException - if no domain with the given id exists
      */
     public Domain getDomainById(int id) {
         Optional<Domain> optionalDomain = domainRepository.findById(id);
-        return optionalDomain.orElseThrow(() -> new NoSuchElementException("No domain found with id: " + id));
+        return optionalDomain.orElseThrow(() -> new DomainNotFoundException(id));
     }
 
-    public void saveOrUpdate(Domain domain) {
-        domainRepository.save(domain);
+    /**
+     * Register the domain, or update it if it is already registered. The cached
+     * resources of the domain are removed, and the domain is warmed up if
+     * requested.
+     *
+     * @param domain - domain to register
+     * @return The registered domain, with its ID.
+     * @throws IllegalArgumentException if the name or the configuration URL of
+     *                                  the domain are not valid, or are used by
+     *                                  another domain
+     */
+    public Domain saveOrUpdate(Domain domain) throws IllegalArgumentException {
+        if (domain.getDomainName() == null || domain.getDomainName().isBlank()) {
+            throw new IllegalArgumentException("The domain name should be provided.");
+        } else if (domain.getCacheTtlSeconds() != null && domain.getCacheTtlSeconds() < 0) {
+            throw new IllegalArgumentException("The cache TTL should be at least 0.");
+        }
+        RestApeUtils.validateURL(domain.getDomainConfigURL());
+        domainRepository.findByDomainName(domain.getDomainName())
+                .filter(other -> other.getId() != domain.getId())
+                .ifPresent(other -> {
+                    throw new IllegalArgumentException(
+                            "The domain name '" + domain.getDomainName() + "' is already registered.");
+                });
+        domainRepository.findByDomainConfigURL(domain.getDomainConfigURL())
+                .filter(other -> other.getId() != domain.getId())
+                .ifPresent(other -> {
+                    throw new IllegalArgumentException(
+                            "The domain is already registered as '" + other.getDomainName() + "'.");
+                });
+        Domain saved;
+        try {
+            saved = domainRepository.save(domain);
+        } catch (DataIntegrityViolationException e) {
+            // registered concurrently
+            throw new IllegalArgumentException("The domain name '" + domain.getDomainName()
+                    + "' or its configuration URL is already registered.");
+        }
+        // refreshed first, so that requests in the meantime do not cache the old configuration URL
+        refresh();
+        cache.invalidate(saved.getId());
+        if (saved.isWarmUp()) {
+            warmUp(saved);
+        }
+        return saved;
     }
 
     // deleting a specific record
     public void delete(int id) {
         domainRepository.deleteById(id);
+        cache.invalidate(id);
+        refresh();
+    }
+
+    /**
+     * Remove the cached resources of the domain, e.g., because its configuration
+     * file changed.
+     *
+     * @param domainID - ID of the domain
+     */
+    public void invalidate(int domainID) {
+        cache.invalidate(domainID);
+    }
+
+    /**
+     * Load the registered domains into memory, and warm up the domains for which
+     * it is requested.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refresh();
+        domainsById.values().stream().filter(Domain::isWarmUp).forEach(this::warmUp);
+    }
+
+    @PreDestroy
+    void stop() {
+        warmUpExecutor.shutdownNow();
+    }
+
+    /**
+     * Reload the in-memory registry from the database.
+     */
+    public synchronized void refresh() {
+        Map<Integer, Domain> byID = new HashMap<>();
+        Map<String, Domain> byURL = new HashMap<>();
+        for (Domain domain : domainRepository.findAll()) {
+            byID.put(domain.getId(), domain);
+            byURL.put(domain.getDomainConfigURL(), domain);
+        }
+        domainsById = Collections.unmodifiableMap(byID);
+        domainsByURL = Collections.unmodifiableMap(byURL);
+    }
+
+    /**
+     * Get the registered domain with the given ID, without accessing the
+     * database.
+     *
+     * @param domainID - ID of the domain
+     * @return The domain.
+     * @throws DomainNotFoundException if the domain is not registered
+     */
+    public Domain getRegisteredDomain(int domainID) throws DomainNotFoundException {
+        Domain domain = domainsById.get(domainID);
+        if (domain == null) {
+            throw new DomainNotFoundException(domainID);
+        }
+        return domain;
+    }
+
+    /**
+     * Get the resource of the domain, identified either by its ID or by the URL of
+     * its configuration file. The resources of registered domains are cached.
+     *
+     * @param domainID   - ID of the domain, or null if the configuration URL is
+     *                   provided
+     * @param configPath - URL of the configuration file, used if the domain ID is
+     *                   null
+     * @param resource   - resource to retrieve
+     * @return JSON representation of the resource.
+     * @throws DomainNotFoundException      if the domain is not registered
+     * @throws IllegalArgumentException     if neither a domain ID nor a valid
+     *                                      configuration URL is provided
+     * @throws OWLOntologyCreationException if the ontology cannot be created
+     * @throws IOException                  if the configuration file cannot be
+     *                                      read
+     */
+    public String getResource(Integer domainID, String configPath, DomainResource resource)
+            throws OWLOntologyCreationException, IOException {
+        Optional<Domain> domain = resolve(domainID, configPath);
+        String configURL = domain.map(Domain::getDomainConfigURL).orElse(configPath);
+        String domainName = domain.map(Domain::getDomainName).orElse(UNREGISTERED);
+        long ttlMs = domain.map(this::getCacheTtlMs).orElse(0L);
+        long start = System.nanoTime();
+        boolean cached = false;
+        String value;
+        if (ttlMs > 0) {
+            DomainCache.Result result = cache.get(domain.get().getId(), resource, ttlMs,
+                    () -> load(domainName, configURL, resource));
+            value = result.value;
+            cached = result.cached;
+        } else {
+            value = load(domainName, configURL, resource);
+        }
+        Metrics.timer("restape.domain.request", "domain", domainName, "resource", resource.getName(), "cache",
+                cached ? "hit" : "miss").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return value;
+    }
+
+    /**
+     * Get the configuration of a synthesis run in the domain. The fields of the
+     * configuration file of the domain are used for the fields that are not
+     * provided in the run configuration.
+     *
+     * @param domainID  - ID of the domain, or null to use the run configuration
+     *                  as it is
+     * @param runConfig - configuration of the synthesis run
+     * @return The configuration of the run.
+     * @throws DomainNotFoundException      if the domain is not registered
+     * @throws OWLOntologyCreationException if the ontology cannot be created
+     * @throws IOException                  if the configuration file cannot be
+     *                                      read
+     */
+    public JSONObject getRunConfig(Integer domainID, JSONObject runConfig)
+            throws OWLOntologyCreationException, IOException {
+        if (domainID == null) {
+            return runConfig;
+        }
+        return mergeRunConfig(new JSONObject(getResource(domainID, null, DomainResource.CONFIG)), runConfig);
+    }
+
+    /**
+     * Use the fields of the configuration file of the domain for the fields that
+     * are not provided in the run configuration.
+     *
+     * @param defaults  - configuration file of the domain, which is modified
+     * @param runConfig - configuration of the synthesis run
+     * @return The configuration of the run.
+     */
+    static JSONObject mergeRunConfig(JSONObject defaults, JSONObject runConfig) {
+        for (String key : runConfig.keySet()) {
+            defaults.put(key, runConfig.get(key));
+        }
+        return defaults;
+    }
+
+    /**
+     * Record the duration of a synthesis run in the domain.
+     *
+     * @param domainID    - ID of the domain, or null for an unregistered domain
+     * @param nanos       - duration of the synthesis run, in nanoseconds
+     * @param precomputed - whether the run was answered with precomputed
+     *                    workflows
+     */
+    public void recordSynthesis(Integer domainID, long nanos, boolean precomputed) {
+        Domain domain = domainID == null ? null : domainsById.get(domainID);
+        Metrics.timer("restape.domain.synthesis", "domain", domain == null ? UNREGISTERED : domain.getDomainName(),
+                "precomputed", String.valueOf(precomputed)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Optional<Domain> resolve(Integer domainID, String configPath) {
+        if (domainID != null) {
+            return Optional.of(getRegisteredDomain(domainID));
+        } else if (configPath == null) {
+            throw new IllegalArgumentException("Either the domain_id or the config_path should be provided.");
+        }
+        RestApeUtils.validateURL(configPath);
+        // the same domain is cached once, whether it is referred to by its ID or URL
+        return Optional.ofNullable(domainsByURL.get(configPath));
+    }
+
+    private long getCacheTtlMs(Domain domain) {
+        return domain.getCacheTtlSeconds() == null ? defaultCacheTtlMs
+                : TimeUnit.SECONDS.toMillis(domain.getCacheTtlSeconds());
+    }
+
+    private static String load(String domainName, String configURL, DomainResource resource)
+            throws OWLOntologyCreationException, IOException {
+        long start = System.nanoTime();
+        String result = "failure";
+        try {
+            String value = resource.load(configURL);
+            result = "success";
+            return value;
+        } finally {
+            Metrics.timer("restape.domain.load", "domain", domainName, "resource", resource.getName(), "result",
+                    result).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Load the resources of the domain in the background.
+     */
+    private void warmUp(Domain domain) {
+        warmUpExecutor.execute(() -> {
+            for (DomainResource resource : DomainResource.values()) {
+                try {
+                    getResource(domain.getId(), null, resource);
+                } catch (DomainNotFoundException e) {
+                    // deleted in the meantime
+                    return;
+                } catch (OWLOntologyCreationException | IOException | RuntimeException e) {
+                    log.warn("The {} of domain '{}' could not be loaded: {}", resource.getName(),
+                            domain.getDomainName(), e.getMessage());
+                }
+            }
+            log.info("Warmed up domain '{}'.", domain.getDomainName());
+        });
     }
 }
@@ -0,0 +1,365 @@
+package nl.esciencecenter.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.models.Domain;
+import nl.esciencecenter.models.DomainSynthesisCashe;
+import nl.esciencecenter.repository.DomainSynthesisCasheRepository;
+import nl.esciencecenter.restape.APEWorkflowMetadata;
+import nl.esciencecenter.restape.ApeAPI;
+import nl.esciencecenter.restape.RestApeSettings;
+import nl.esciencecenter.restape.RestApeUtils;
+import nl.esciencecenter.restape.RunListener;
+import nl.esciencecenter.restape.RunListeners;
+import nl.esciencecenter.restape.RunRetention;
+import nl.uu.cs.ape.utils.APEFiles;
+
+/**
+ * Precomputes the synthesis runs of the registered domains with their default
+ * configuration (inputs, outputs and constraints of the configuration file of
+ * the domain), for each solution length in a configured range, so that such
+ * requests are answered without running the synthesis.<br>
+ * <br>
+ * A background job checks the domains every
+ * {@code DOMAIN_SYNTHESIS_CHECK_INTERVAL_SECONDS}. It computes a fingerprint of
+ * the configuration file of each domain and the files it refers to (ontology,
+ * tool annotations, etc.), and runs the synthesis again for the lengths whose
+ * precomputed run is missing or was computed from other files. Precomputed
+ * runs of changed domains are no longer served from the moment the change is
+ * detected. The precomputed runs are stored in {@link DomainSynthesisCashe}.
+ * Precomputing is enabled with {@code DOMAIN_SYNTHESIS_PRECOMPUTE}.
+ */
+@Slf4j
+@Service
+public class DomainSynthesisService implements RunListener {
+
+    static final String SOLUTION_LENGTH = "solution_length";
+    /**
+     * Fields of the configuration file that refer to the source files of the
+     * domain.
+     */
+    private static final List<String> SOURCE_FIELDS = List.of("ontology_path", "tool_annotations_path",
+            "cwl_annotations_path", "constraints_path");
+    private static final String RESULTS_DIR = ".domainSynthesis";
+
+    private static final boolean enabled = RestApeSettings.getBoolean("DOMAIN_SYNTHESIS_PRECOMPUTE", false);
+    private static final int minLength = Math.max(1, RestApeSettings.getInt("DOMAIN_SYNTHESIS_MIN_LENGTH", 1));
+    private static final int maxLength = RestApeSettings.getInt("DOMAIN_SYNTHESIS_MAX_LENGTH", 5);
+    private static final long intervalSeconds = Math.max(1,
+            RestApeSettings.getLong("DOMAIN_SYNTHESIS_CHECK_INTERVAL_SECONDS", 900));
+
+    private final DomainService domainService;
+    private final DomainSynthesisCasheRepository repository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "domain-synthesis");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Current fingerprint of each registered domain. Precomputed runs are only
+     * served if they were computed from the current files.
+     */
+    private final Map<Integer, String> fingerprints = new ConcurrentHashMap<>();
+
+    public DomainSynthesisService(DomainService domainService, DomainSynthesisCasheRepository repository) {
+        this.domainService = domainService;
+        this.repository = repository;
+        RunListeners.register(this);
+    }
+
+    /**
+     * Start the background job, if precomputing is enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || maxLength < minLength) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                refreshAll();
+            } catch (Exception e) {
+                log.error("The synthesis runs of the domains could not be precomputed.", e);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+        log.info("Precomputing the synthesis runs of the domains for lengths {} to {}.", minLength, maxLength);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+        RunListeners.unregister(this);
+    }
+
+    /**
+     * Get the precomputed synthesis run that matches the run configuration, i.e.,
+     * a configuration that only specifies a fixed solution length in addition to
+     * the default configuration of the domain.
+     *
+     * @param domainID  - ID of the registered domain, or null
+     * @param runConfig - configuration of the synthesis run, as provided in the
+     *                  request
+     * @return The configuration of the run, including the defaults of the domain,
+     *         and the workflows of the precomputed run, if the configuration
+     *         matches one.
+     * @throws OWLOntologyCreationException if the ontology cannot be created
+     * @throws IOException                  if the configuration file of the
+     *                                      domain cannot be read
+     */
+    public Lookup findPrecomputed(Integer domainID, JSONObject runConfig)
+            throws OWLOntologyCreationException, IOException {
+        if (!enabled || domainID == null) {
+            return new Lookup(domainService.getRunConfig(domainID, runConfig), Optional.empty());
+        }
+        Domain domain = domainService.getRegisteredDomain(domainID);
+        // the configuration file of the domain is resolved once per request
+        String defaults = domainService.getResource(domainID, null, DomainResource.CONFIG);
+        JSONObject config = DomainService.mergeRunConfig(new JSONObject(defaults), runConfig);
+        Optional<Integer> length = getDefaultRunLength(new JSONObject(defaults), config);
+        if (length.isEmpty()) {
+            return new Lookup(config, Optional.empty());
+        }
+        Optional<DomainSynthesisCashe> entry = repository.findByDomainIDAndSolutionLength(domainID, length.get())
+                .filter(precomputed -> precomputed.getFingerprint().equals(fingerprints.get(domainID)));
+        Optional<List<APEWorkflowMetadata>> workflows = entry.flatMap(this::readWorkflows);
+        if (workflows.isPresent() && entry.get().getRunID() != null) {
+            // the run is used, so it is kept by the retention
+            RunRetention.touch(entry.get().getRunID());
+        }
+        Metrics.counter("restape.domain.synthesis.precomputed", "domain", domain.getDomainName(), "result",
+                workflows.isPresent() ? "hit" : "miss").increment();
+        return new Lookup(config, workflows);
+    }
+
+    /**
+     * Result of looking up a precomputed synthesis run.
+     */
+    @Getter
+    public static class Lookup {
+
+        /**
+         * Configuration of the run, including the defaults of the domain.
+         */
+        private final JSONObject config;
+        private final Optional<List<APEWorkflowMetadata>> workflows;
+
+        Lookup(JSONObject config, Optional<List<APEWorkflowMetadata>> workflows) {
+            this.config = config;
+            this.workflows = workflows;
+        }
+    }
+
+    /**
+     * Get the solution length of the run, if the run uses the default
+     * configuration of the domain with a fixed solution length.
+     *
+     * @param defaults  - configuration file of the domain
+     * @param runConfig - configuration of the run, including the defaults
+     * @return The solution length, or empty if the run does not use the default
+     *         configuration.
+     */
+    static Optional<Integer> getDefaultRunLength(JSONObject defaults, JSONObject runConfig) {
+        JSONObject solutionLength = runConfig.optJSONObject(SOLUTION_LENGTH);
+        if (solutionLength == null) {
+            return Optional.empty();
+        }
+        int min = solutionLength.optInt("min", -1);
+        if (min < minLength || min > maxLength || min != solutionLength.optInt("max", -1)) {
+            return Optional.empty();
+        }
+        JSONObject other = new JSONObject(runConfig.toString());
+        other.remove(SOLUTION_LENGTH);
+        JSONObject otherDefaults = new JSONObject(defaults.toString());
+        otherDefaults.remove(SOLUTION_LENGTH);
+        return other.similar(otherDefaults) ? Optional.of(min) : Optional.empty();
+    }
+
+    /**
+     * Check the fingerprints of all the registered domains, and precompute the
+     * runs that are missing or outdated.
+     */
+    void refreshAll() {
+        List<Domain> domains = domainService.getAllDomain();
+        Set<Integer> domainIDs = new HashSet<>();
+        for (Domain domain : domains) {
+            domainIDs.add(domain.getId());
+            try {
+                checkFingerprint(domain);
+            } catch (IOException | RuntimeException e) {
+                // the runs of the domain are not served until the files can be checked
+                fingerprints.remove(domain.getId());
+                log.warn("The files of domain '{}' could not be read: {}", domain.getDomainName(), e.getMessage());
+            }
+        }
+        fingerprints.keySet().retainAll(domainIDs);
+        for (DomainSynthesisCashe entry : repository.findAll()) {
+            if (!domainIDs.contains(entry.getDomainID())) {
+                remove(entry);
+            }
+        }
+        for (Domain domain : domains) {
+            String fingerprint = fingerprints.get(domain.getId());
+            for (int length = minLength; fingerprint != null && length <= maxLength; length++) {
+                try {
+                    precompute(domain, length, fingerprint);
+                } catch (OWLOntologyCreationException | IOException | RuntimeException e) {
+                    log.warn("The synthesis of length {} in domain '{}' could not be precomputed: {}", length,
+                            domain.getDomainName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the fingerprint of the domain, and remove the precomputed runs (and
+     * cached resources) of the domain if its files changed.
+     */
+    private void checkFingerprint(Domain domain) throws IOException {
+        String fingerprint = computeFingerprint(domain.getDomainConfigURL());
+        String previous = fingerprints.put(domain.getId(), fingerprint);
+        if (previous != null && !previous.equals(fingerprint)) {
+            log.info("The files of domain '{}' changed.", domain.getDomainName());
+            domainService.invalidate(domain.getId());
+        }
+        for (DomainSynthesisCashe entry : repository.findByDomainID(domain.getId())) {
+            if (!fingerprint.equals(entry.getFingerprint())) {
+                remove(entry);
+            }
+        }
+    }
+
+    private void precompute(Domain domain, int length, String fingerprint)
+            throws OWLOntologyCreationException, IOException {
+        Optional<DomainSynthesisCashe> existing = repository.findByDomainIDAndSolutionLength(domain.getId(), length);
+        if (existing.isPresent() && readWorkflows(existing.get()).isPresent()) {
+            return;
+        }
+        JSONObject config = APEFiles.readPathToJSONObject(domain.getDomainConfigURL());
+        config.put(SOLUTION_LENGTH, new JSONObject().put("min", length).put("max", length));
+        long start = System.nanoTime();
+        List<APEWorkflowMetadata> workflows = ApeAPI.runSynthesis(config, false);
+        Metrics.timer("restape.domain.synthesis.precompute", "domain", domain.getDomainName())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!fingerprint.equals(fingerprints.get(domain.getId()))) {
+            // the domain changed during the synthesis
+            return;
+        }
+
+        Path resultFile = Paths.get(RestApeUtils.getSolutionPath(), RESULTS_DIR,
+                String.valueOf(domain.getId()), length + ".json");
+        Files.createDirectories(resultFile.getParent());
+        Path tmpFile = Files.createTempFile(resultFile.getParent(), length + ".", ".tmp");
+        Files.write(tmpFile, objectMapper.writeValueAsBytes(workflows));
+        Files.move(tmpFile, resultFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        DomainSynthesisCashe entry = existing.orElseGet(DomainSynthesisCashe::new);
+        entry.setDomainID(domain.getId());
+        entry.setSolutionLength(length);
+        entry.setCashedFilePath(resultFile.toString());
+        entry.setRunID(workflows.isEmpty() ? null : workflows.get(0).getRunId());
+        entry.setFingerprint(fingerprint);
+        entry.setCreatedAt(System.currentTimeMillis());
+        repository.save(entry);
+        log.info("Precomputed the synthesis of length {} in domain '{}' ({} workflows).", length,
+                domain.getDomainName(), workflows.size());
+    }
+
+    /**
+     * Read the workflows of the precomputed run, provided that the files of the
+     * run still exist.
+     */
+    private Optional<List<APEWorkflowMetadata>> readWorkflows(DomainSynthesisCashe entry) {
+        if (entry.getRunID() != null
+                && !Files.isDirectory(Paths.get(RestApeUtils.getSolutionPath(), entry.getRunID()))) {
+            return Optional.empty();
+        }
+        try {
+            List<APEWorkflowMetadata> workflows = objectMapper.readValue(
+                    Files.readAllBytes(Paths.get(entry.getCashedFilePath())),
+                    new TypeReference<List<APEWorkflowMetadata>>() {
+                    });
+            return Optional.of(workflows);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void remove(DomainSynthesisCashe entry) {
+        repository.delete(entry);
+        try {
+            Files.deleteIfExists(Paths.get(entry.getCashedFilePath()));
+        } catch (IOException e) {
+            log.warn("The precomputed run {} could not be removed: {}", entry.getCashedFilePath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Compute the fingerprint of the domain, i.e., the hash of its configuration
+     * file and the files it refers to.
+     *
+     * @param configURL - URL of the configuration file of the domain
+     * @return Fingerprint of the domain.
+     * @throws IOException if a file cannot be read
+     */
+    static String computeFingerprint(String configURL) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+        byte[] config = Files.readAllBytes(APEFiles.readPathToFile(configURL).toPath());
+        digest.update(config);
+        JSONObject configJson = new JSONObject(new String(config, StandardCharsets.UTF_8));
+        for (String field : SOURCE_FIELDS) {
+            String path = configJson.optString(field, null);
+            if (path != null) {
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(APEFiles.readPathToFile(path).toPath()));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public void runCompleted(String runID, JSONObject config, List<APEWorkflowMetadata> workflows,
+            boolean benchmark) {
+        // the precomputed runs are recorded by the job itself
+    }
+
+    @Override
+    public void runRemoved(String runID) {
+        repository.findByRunID(runID).forEach(this::remove);
+    }
+}
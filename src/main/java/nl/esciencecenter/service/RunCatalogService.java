@@ -0,0 +1,204 @@
+package nl.esciencecenter.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONObject;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.esciencecenter.models.SynthesisRun;
+import nl.esciencecenter.models.Workflow;
+import nl.esciencecenter.repository.SynthesisRunRepository;
+import nl.esciencecenter.repository.WorkflowRepository;
+import nl.esciencecenter.restape.APEWorkflowMetadata;
+import nl.esciencecenter.restape.RestApeUtils;
+import nl.esciencecenter.restape.RunListener;
+import nl.esciencecenter.restape.RunListeners;
+import nl.esciencecenter.restape.RunPacks;
+import nl.esciencecenter.restape.artifacts.ArtifactStores;
+
+/**
+ * Catalog of the synthesis runs and their workflows, kept in the database. The
+ * runs are recorded when they are completed and removed when the run is
+ * removed from the file system (see {@link RunListeners}), so that the runs
+ * can be listed and looked up without probing the file system. Runs that
+ * exist on disk but not in the catalog (e.g., created by an earlier version)
+ * are recorded at startup.
+ */
+@Slf4j
+@Service
+public class RunCatalogService implements RunListener {
+
+    private static final Pattern CWL_FILE = Pattern.compile("candidate_workflow_(\\d+)\\.cwl");
+
+    private final SynthesisRunRepository runRepository;
+    private final WorkflowRepository workflowRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public RunCatalogService(SynthesisRunRepository runRepository, WorkflowRepository workflowRepository,
+            TransactionTemplate transactionTemplate) {
+        this.runRepository = runRepository;
+        this.workflowRepository = workflowRepository;
+        this.transactionTemplate = transactionTemplate;
+        RunListeners.register(this);
+    }
+
+    @PreDestroy
+    void unregister() {
+        RunListeners.unregister(this);
+    }
+
+    @Override
+    public void runCompleted(String runID, JSONObject config, List<APEWorkflowMetadata> workflows,
+            boolean benchmark) {
+        String domain = config.optString("tool_annotations_path", null);
+        SynthesisRun run = new SynthesisRun();
+        run.setRunID(runID);
+        run.setDomain(domain);
+        run.setConfigHash(RestApeUtils.generateStringHash(config.toString(), 32));
+        run.setCreatedAt(RestApeUtils.getRunCreationTime(runID));
+        run.setSolutionCount(workflows.size());
+        run.setBenchmarked(benchmark);
+
+        List<Workflow> workflowEntities = new ArrayList<>();
+        for (APEWorkflowMetadata metadata : workflows) {
+            Workflow workflow = createWorkflow(runID, domain, metadata.getCwlName());
+            workflow.setDescriptiveName(metadata.getDescriptiveName());
+            workflow.setDescription(metadata.getDescription());
+            workflow.setWorkflowLength(metadata.getWorkflowLength());
+            workflowEntities.add(workflow);
+        }
+        save(run, workflowEntities);
+    }
+
+    @Override
+    public void runRemoved(String runID) {
+        transactionTemplate.executeWithoutResult(status -> {
+            workflowRepository.deleteBySynthesisRunID(runID);
+            runRepository.deleteById(runID);
+        });
+    }
+
+    /**
+     * Check whether the run exists. Runs that are not in the catalog might still
+     * be available in the shared artifact store (see {@link ArtifactStores}).
+     *
+     * @param runID - ID of the synthesis run
+     * @return true if the run is in the catalog or could be in the artifact store,
+     *         false otherwise.
+     */
+    public boolean isKnownRun(String runID) {
+        return runRepository.existsById(runID) || ArtifactStores.getStore().isPresent();
+    }
+
+    /**
+     * Get the run.
+     *
+     * @param runID - ID of the synthesis run
+     * @return The run, or empty if it is not in the catalog.
+     */
+    public Optional<SynthesisRun> getRun(String runID) {
+        return runRepository.findById(runID);
+    }
+
+    /**
+     * Get the workflows of the run.
+     *
+     * @param runID - ID of the synthesis run
+     * @return The workflows, in the order of their numbers.
+     */
+    public List<Workflow> getWorkflows(String runID) {
+        return workflowRepository.findBySynthesisRunIDOrderByWorkflowNumber(runID);
+    }
+
+    /**
+     * Get a page of the runs, the most recent first.
+     *
+     * @param domain - tool annotations of the domain, or null for all the domains
+     * @param page   - number of the page, starting at 0
+     * @param size   - number of runs per page
+     * @return Page of the runs.
+     */
+    public Page<SynthesisRun> getRuns(String domain, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        return domain == null ? runRepository.findAll(pageRequest) : runRepository.findByDomain(domain, pageRequest);
+    }
+
+    /**
+     * Record the runs that exist on disk but not in the catalog. Only their names
+     * and workflows are known.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerExistingRuns() {
+        Path root = Paths.get(RestApeUtils.getSolutionPath());
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        int registered = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String runID = dir.getFileName().toString();
+                if (!RestApeUtils.isValidRunID(runID) || runRepository.existsById(runID)) {
+                    continue;
+                }
+                List<Workflow> workflows = new ArrayList<>();
+                for (String fileName : RunPacks.list(dir.resolve("CWL"))) {
+                    if (CWL_FILE.matcher(fileName).matches()) {
+                        workflows.add(createWorkflow(runID, null, fileName));
+                    }
+                }
+                SynthesisRun run = new SynthesisRun();
+                run.setRunID(runID);
+                run.setCreatedAt(RestApeUtils.getRunCreationTime(runID));
+                run.setSolutionCount(workflows.size());
+                save(run, workflows);
+                registered++;
+            }
+        } catch (IOException e) {
+            log.error("The existing runs could not be added to the catalog.", e);
+        }
+        if (registered > 0) {
+            log.info("Added {} existing runs to the catalog.", registered);
+        }
+    }
+
+    private void save(SynthesisRun run, List<Workflow> workflows) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // the run is replaced if it is recorded again
+            workflowRepository.deleteBySynthesisRunID(run.getRunID());
+            runRepository.save(run);
+            workflowRepository.saveAll(workflows);
+        });
+    }
+
+    private static Workflow createWorkflow(String runID, String domain, String cwlName) {
+        String workflowName = cwlName.substring(0, cwlName.length() - ".cwl".length());
+        Workflow workflow = new Workflow();
+        workflow.setWorkflowName(workflowName);
+        Matcher matcher = CWL_FILE.matcher(cwlName);
+        if (matcher.matches()) {
+            workflow.setWorkflowNumber(Integer.parseInt(matcher.group(1)));
+        }
+        workflow.setDomainName(domain);
+        workflow.setSynthesisRunID(runID);
+        workflow.setCwlFilePath("CWL/" + cwlName);
+        workflow.setPngFilePath("Figures/" + workflowName + ".png");
+        return workflow;
+    }
+}
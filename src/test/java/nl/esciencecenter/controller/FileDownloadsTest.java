@@ -0,0 +1,139 @@
+package nl.esciencecenter.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * {@link FileDownloadsTest} tests the responses created by
+ * {@link FileDownloads}.
+ */
+@SpringBootTest
+class FileDownloadsTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Test whether the file is served with its metadata, and whether a request
+     * with the current ETag is answered with 304.
+     */
+    @Test
+    void testConditionalRequest() throws IOException {
+        Path cwl = Files.writeString(dir.resolve("candidate_workflow_1.cwl"), "cwlVersion: v1.2");
+
+        ResponseEntity<?> response = FileDownloads.serve(cwl, new MockHttpServletRequest("POST", "/cwl"));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.parseMediaType("application/x-yaml"), response.getHeaders().getContentType());
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+        assertEquals(Files.getLastModifiedTime(cwl).toMillis() / 1000,
+                response.getHeaders().getLastModified() / 1000);
+
+        MockHttpServletRequest conditionalRequest = new MockHttpServletRequest("POST", "/cwl");
+        conditionalRequest.addHeader("If-None-Match", eTag);
+        assertEquals(HttpStatus.NOT_MODIFIED, FileDownloads.serve(cwl, conditionalRequest).getStatusCode());
+    }
+
+    /**
+     * Test whether large files are left to the container (sendfile) when it is
+     * supported.
+     */
+    @Test
+    void testSendfile() throws IOException {
+        Path image = Files.write(dir.resolve("candidate_workflow_1.png"), new byte[100 * 1024]);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/image");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+
+        ResponseEntity<?> response = FileDownloads.serve(image, request);
+        assertNull(response.getBody());
+        assertEquals(100 * 1024, response.getHeaders().getContentLength());
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+        assertEquals(image.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    /**
+     * Test whether text files are served from their gzip variant to the clients
+     * that accept it, and whether the variant is created only once.
+     */
+    @Test
+    void testGzipVariant() throws IOException {
+        String content = "cwlVersion: v1.2\n".repeat(200);
+        Path cwl = Files.writeString(dir.resolve("candidate_workflow_1.cwl"), content);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/cwl");
+        request.addHeader("Accept-Encoding", "br;q=1.0, gzip;q=0.8");
+        ResponseEntity<?> response = FileDownloads.serve(cwl, request);
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), response.getHeaders().getVary());
+        assertEquals(MediaType.parseMediaType("application/x-yaml"), response.getHeaders().getContentType());
+        try (InputStream in = new GZIPInputStream(((Resource) response.getBody()).getInputStream())) {
+            assertEquals(content, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Path variant = dir.resolve("candidate_workflow_1.cwl.gz");
+        assertTrue(Files.isRegularFile(variant));
+        long created = Files.getLastModifiedTime(variant).toMillis();
+        assertEquals(Files.getLastModifiedTime(cwl).toMillis(), created);
+        FileDownloads.serve(cwl, request);
+        assertEquals(1, Files.list(dir).filter(file -> file.toString().endsWith(".gz")).count());
+
+        MockHttpServletRequest plainRequest = new MockHttpServletRequest("POST", "/cwl");
+        plainRequest.addHeader("Accept-Encoding", "gzip;q=0");
+        ResponseEntity<?> plainResponse = FileDownloads.serve(cwl, plainRequest);
+        assertFalse(plainResponse.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), plainResponse.getHeaders().getVary());
+        assertNotEquals(response.getHeaders().getETag(), plainResponse.getHeaders().getETag());
+    }
+
+    /**
+     * Test whether the files are written as base64 encoded NDJSON lines in the
+     * requested order, and whether a missing file is reported in its line.
+     */
+    @Test
+    void testNdjson() throws IOException {
+        byte[] image = new byte[100 * 1024 + 1];
+        new Random(42).nextBytes(image);
+        Path png = Files.write(dir.resolve("candidate_workflow_1.png"), image);
+        Path cwl = Files.writeString(dir.resolve("candidate_workflow_1.cwl"), "cwlVersion: v1.2");
+        Path missing = dir.resolve("candidate_workflow_2.png");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileDownloads.writeNdjson(List.of(cwl, png, missing), out);
+        String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"file_name\":\"candidate_workflow_1.cwl\",\"content_type\":\"application/x-yaml\","
+                + "\"size\":16,\"content\":\"" + Base64.getEncoder().encodeToString("cwlVersion: v1.2".getBytes())
+                + "\"}", lines[0]);
+        assertTrue(lines[1].startsWith("{\"file_name\":\"candidate_workflow_1.png\",\"content_type\":\"image/png\","
+                + "\"size\":" + image.length + ",\"content\":\""));
+        String content = lines[1].substring(lines[1].lastIndexOf(':') + 2, lines[1].length() - 2);
+        assertArrayEquals(image, Base64.getDecoder().decode(content));
+        assertEquals("{\"file_name\":\"candidate_workflow_2.png\",\"error\":\"The file could not be found.\"}",
+                lines[2]);
+    }
+}
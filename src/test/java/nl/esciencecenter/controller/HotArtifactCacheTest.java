@@ -0,0 +1,88 @@
+package nl.esciencecenter.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link HotArtifactCacheTest} tests the in-memory cache of the small run
+ * files.
+ */
+@SpringBootTest
+class HotArtifactCacheTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Test whether the files are served from memory, and whether a changed file
+     * replaces its cached version.
+     */
+    @Test
+    void testChangedFile() throws IOException {
+        HotArtifactCache cache = new HotArtifactCache(1024, 512);
+        Path cwl = Files.writeString(dir.resolve("candidate_workflow_1.cwl"), "cwlVersion: v1.1");
+
+        assertEquals("cwlVersion: v1.1", read(cache, cwl));
+        assertTrue(cache.contains(cwl));
+        assertEquals(16, cache.getCachedBytes());
+        ByteBuffer content = cache.getContent(cwl, Files.size(cwl), lastModified(cwl)).orElseThrow();
+        assertTrue(content.isDirect());
+
+        Files.writeString(cwl, "cwlVersion: v1.2.1");
+        Files.setLastModifiedTime(cwl, FileTime.fromMillis(lastModified(cwl) + 1000));
+        assertEquals("cwlVersion: v1.2.1", read(cache, cwl));
+        assertEquals(18, cache.getCachedBytes());
+
+        Path image = Files.write(dir.resolve("candidate_workflow_1.png"), new byte[600]);
+        assertEquals(Optional.empty(), cache.getContent(image, 600, lastModified(image)));
+    }
+
+    /**
+     * Test whether the frequently requested files are kept when the cache is full,
+     * and whether they are only evicted for files that are requested more often.
+     */
+    @Test
+    void testFrequentFilesAreKept() throws IOException {
+        HotArtifactCache cache = new HotArtifactCache(1000, 1000);
+        Path hot = Files.write(dir.resolve("hot.svg"), new byte[600]);
+        for (int i = 0; i < 5; i++) {
+            read(cache, hot);
+        }
+        // a single request does not evict the hot file, but it is still served
+        Path cold = Files.write(dir.resolve("cold.svg"), new byte[600]);
+        assertEquals(Optional.empty(), cache.getContent(cold, 600, lastModified(cold)));
+        assertTrue(cache.contains(hot));
+        assertFalse(cache.contains(cold));
+
+        for (int i = 0; i < 10; i++) {
+            cache.getContent(cold, 600, lastModified(cold));
+        }
+        assertTrue(cache.contains(cold));
+        assertFalse(cache.contains(hot));
+        assertEquals(600, cache.getCachedBytes());
+    }
+
+    private static String read(HotArtifactCache cache, Path path) throws IOException {
+        ByteBuffer content = cache.getContent(path, Files.size(path), lastModified(path)).orElseThrow();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long lastModified(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+}
@@ -5,6 +5,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -153,4 +154,26 @@ class RestApeControllerTest {
                             .andExpect(content().contentType("application/zip"));
     }
     
-}
\ No newline at end of file
+
+    /**
+     * Test whether a batch with more files than allowed is rejected before the
+     * files are looked up.
+     * 
+     * @throws Exception
+     */
+    @Test
+    void testPostArtifactsTooMany() throws Exception {
+        List<String> workflows = new ArrayList<>();
+        for (int i = 1; i <= 401; i++) {
+            workflows.add("candidate_workflow_" + i);
+        }
+        JSONObject batch = new JSONObject()
+                .put("run_id", "04ce2ef00c1685150252568")
+                .put("workflows", workflows)
+                .put("formats", List.of("svg"));
+        mvc.perform(MockMvcRequestBuilders.post("/artifacts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(batch.toString()))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,120 @@
+package nl.esciencecenter.externalAPIs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * {@link CircuitBreakerTest} tests the state transitions of
+ * {@link CircuitBreaker}.
+ */
+@SpringBootTest
+class CircuitBreakerTest {
+
+    /**
+     * Test whether the circuit opens after the failure threshold is reached and
+     * rejects requests while it is open.
+     */
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        AtomicLong clock = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 1000, clock::get);
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(), "Requests should be rejected while the circuit is open.");
+    }
+
+    /**
+     * Test whether a single trial request is allowed after the open period, and
+     * whether its success closes the circuit.
+     */
+    @Test
+    void testHalfOpenTrialClosesCircuit() {
+        AtomicLong clock = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 1000, clock::get);
+        breaker.recordFailure();
+
+        clock.set(1000);
+        assertTrue(breaker.allowRequest(), "A trial request should be allowed after the open period.");
+        assertFalse(breaker.allowRequest(), "Only a single trial request should be allowed.");
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    /**
+     * Test whether a failed trial request opens the circuit again.
+     */
+    @Test
+    void testHalfOpenTrialFailureReopensCircuit() {
+        AtomicLong clock = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 1000, clock::get);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        clock.set(1500);
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        clock.set(2000);
+        assertFalse(breaker.allowRequest(), "The open period should restart after a failed trial.");
+    }
+
+    /**
+     * Test whether requests that fail with an unexpected exception are reported
+     * to the circuit breaker, so that a failed trial does not keep the circuit
+     * half-open.
+     */
+    @Test
+    void testUnexpectedExceptionIsReported() {
+        ExternalServiceClient client = new ExternalServiceClient("test");
+        for (int i = 0; i < 100 && client.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED; i++) {
+            assertThrows(IllegalArgumentException.class, () -> client.get("not a URL"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker().getState());
+        assertThrows(ServiceUnavailableException.class, () -> client.get("not a URL"));
+    }
+
+    /**
+     * Test whether only 404 and 410 responses are reported as not found, while
+     * throttled requests (429) count as failures of the service.
+     */
+    @Test
+    void testOnlyMissingResourcesAreNotFound() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(Integer.parseInt(exchange.getRequestURI().getPath().substring(1)), -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String baseURL = "http://localhost:" + server.getAddress().getPort() + "/";
+            ExternalServiceClient client = new ExternalServiceClient("test");
+            assertThrows(ResourceNotFoundException.class, () -> client.get(baseURL + "404"));
+            assertThrows(ResourceNotFoundException.class, () -> client.get(baseURL + "410"));
+
+            IOException throttled = assertThrows(IOException.class, () -> client.get(baseURL + "429"));
+            assertFalse(throttled instanceof ResourceNotFoundException, "Throttling is not a missing resource.");
+            assertThrows(IOException.class, () -> client.get(baseURL + "403"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package nl.esciencecenter.externalAPIs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link HedgingPolicyTest} tests the hedging delay and the hedge rate limit of
+ * {@link HedgingPolicy}.
+ */
+@SpringBootTest
+class HedgingPolicyTest {
+
+    /**
+     * Test whether requests are only hedged once enough latencies are known, and
+     * whether the delay is the 95th percentile of the recent latencies.
+     */
+    @Test
+    void testHedgeDelayIsP95() {
+        HedgingPolicy policy = new HedgingPolicy();
+        assertEquals(-1, policy.onRequest("bio.tools"));
+
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency("bio.tools", i * 10L);
+        }
+        assertEquals(950, policy.onRequest("bio.tools"));
+        assertEquals(-1, policy.onRequest("openebench.bsc.es"), "Latencies should be tracked per host.");
+    }
+
+    /**
+     * Test whether the hedged requests are limited to the configured share of the
+     * requests, after the initial burst is used.
+     */
+    @Test
+    void testHedgeRateIsLimited() {
+        HedgingPolicy policy = new HedgingPolicy();
+        int hedges = 0;
+        for (int i = 0; i < 1000; i++) {
+            policy.onRequest("bio.tools");
+            if (policy.tryHedge("bio.tools")) {
+                hedges++;
+            }
+        }
+        assertTrue(hedges <= 60, "At most 5% of the requests (and the burst) should be hedged, got " + hedges);
+        assertTrue(hedges >= 40, "Hedging should not be blocked permanently, got " + hedges);
+        assertFalse(policy.tryHedge("bio.tools"));
+    }
+}
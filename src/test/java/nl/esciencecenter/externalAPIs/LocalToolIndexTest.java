@@ -0,0 +1,95 @@
+package nl.esciencecenter.externalAPIs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link LocalToolIndexTest} tests the import and lookup of tool metadata in
+ * {@link LocalToolIndex}.
+ */
+@SpringBootTest
+class LocalToolIndexTest {
+
+    private static final String BIOTOOLS_DUMP = """
+            {"count": 2, "list": [
+                {"biotoolsID": "Comet", "operatingSystem": ["Linux", "Windows"]},
+                {"biotoolsID": "blast", "operatingSystem": ["Linux"]}
+            ]}
+            """;
+
+    private static final String OPENEBENCH_DUMP = """
+            [
+                {"@id": "https://openebench.bsc.es/monitor/metrics/biotools:comet:2019.01/cmd/comet",
+                 "project": {"license": {"osi": true}}},
+                {"@id": "https://openebench.bsc.es/monitor/metrics/biotools:comet:2018.01/cmd/comet",
+                 "project": {"license": {"osi": false}}},
+                {"@id": "https://openebench.bsc.es/monitor/metrics/bioconda:comet:1.0/cmd/comet"}
+            ]
+            """;
+
+    @TempDir
+    Path indexDir;
+
+    /**
+     * Test whether imported entries can be looked up by (case insensitive)
+     * bio.tools ID.
+     */
+    @Test
+    void testImportAndLookup() throws IOException {
+        LocalToolIndex index = new LocalToolIndex(indexDir);
+        LocalToolIndex.ImportResult result = index.importBioToolsDump(stream(BIOTOOLS_DUMP));
+        assertEquals(2, result.getAdded());
+
+        assertEquals("Comet", index.fetchBioToolsAnnotation("COMET").getString("biotoolsID"));
+        assertThrows(ResourceNotFoundException.class, () -> index.fetchBioToolsAnnotation("unknown"));
+    }
+
+    /**
+     * Test whether only the first bio.tools version of a tool is kept from the
+     * OpenEBench dump.
+     */
+    @Test
+    void testOpenEBenchImportKeepsFirstBiotoolsVersion() throws IOException {
+        LocalToolIndex index = new LocalToolIndex(indexDir);
+        LocalToolIndex.ImportResult result = index.importOpenEBenchDump(stream(OPENEBENCH_DUMP));
+
+        assertEquals(1, result.getAdded());
+        assertEquals(2, result.getSkipped());
+        assertTrue(index.fetchOpenEBenchMetrics("comet").getJSONObject("project").getJSONObject("license")
+                .getBoolean("osi"));
+    }
+
+    /**
+     * Test whether a repeated import only writes the changed entries and whether
+     * the index is loaded from the file system.
+     */
+    @Test
+    void testIncrementalImport() throws IOException {
+        LocalToolIndex index = new LocalToolIndex(indexDir);
+        index.importBioToolsDump(stream(BIOTOOLS_DUMP));
+
+        LocalToolIndex.ImportResult result = index.importBioToolsDump(
+                stream(BIOTOOLS_DUMP.replace("\"operatingSystem\": [\"Linux\"]", "\"operatingSystem\": []")));
+        assertEquals(0, result.getAdded());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getUnchanged());
+
+        LocalToolIndex reloaded = new LocalToolIndex(indexDir);
+        assertTrue(reloaded.fetchBioToolsAnnotation("blast").getJSONArray("operatingSystem").isEmpty());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
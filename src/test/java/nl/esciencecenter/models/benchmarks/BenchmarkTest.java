@@ -0,0 +1,70 @@
+package nl.esciencecenter.models.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+@SpringBootTest
+class BenchmarkTest {
+
+    /**
+     * Test whether the streamed JSON of a benchmark has the same content as the
+     * JSON object generated by {@link Benchmark#toJSON()}.
+     */
+    @Test
+    void testWriteJSONMatchesToJSON() throws IOException {
+        WorkflowStepBenchmark step = new WorkflowStepBenchmark();
+        step.setDescription("comet");
+        step.setValue("supported");
+        step.setDesirabilityValue(1);
+        step.setStale(true);
+
+        Benchmark benchmark = new Benchmark(new BenchmarkBase("Linux", "OS", "Linux (OS) supported tools",
+                "supported / not supported", "operatingSystem", "Linux"));
+        benchmark.setValue("1/1");
+        benchmark.setDesirabilityValue(1);
+        benchmark.setStale(true);
+        benchmark.setWorkflow(List.of(step));
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            benchmark.writeJSON(generator);
+        }
+
+        assertTrue(benchmark.toJSON().similar(new JSONObject(writer.toString())));
+    }
+
+    /**
+     * Test whether a benchmark of an external service is written as provided,
+     * including unknown fields and numeric values.
+     */
+    @Test
+    void testExternalBenchmarkIsKept() throws IOException {
+        JSONObject benchmarkJson = new JSONObject("{\"title\": \"Tool co-occurrence\", \"unit\": \"score\","
+                + " \"aggregate_value\": {\"value\": 0.75, \"desirability\": 0.5},"
+                + " \"steps\": [{\"label\": \"comet\", \"value\": 3}], \"source\": \"pubmetric\"}");
+        Benchmark benchmark = Benchmark.fromExternalJSON(benchmarkJson);
+        assertEquals("0.75", benchmark.getValue());
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.writeStartArray();
+            benchmark.writeJSON(generator);
+            generator.writeEndArray();
+        }
+        JSONObject written = new JSONObject(writer.toString().substring(1, writer.toString().length() - 1));
+        assertTrue(benchmarkJson.similar(written));
+        assertEquals(0.75, written.getJSONObject("aggregate_value").getDouble("value"));
+        assertEquals("pubmetric", benchmark.toJSON().getString("source"));
+    }
+}
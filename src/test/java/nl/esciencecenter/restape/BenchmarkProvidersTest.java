@@ -0,0 +1,158 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+import nl.uu.cs.ape.solver.solutionStructure.SolutionWorkflow;
+
+@SpringBootTest
+class BenchmarkProvidersTest {
+
+    private List<BenchmarkProvider> registeredProviders;
+
+    @BeforeEach
+    void saveProviders() {
+        registeredProviders = BenchmarkProviders.getProviders();
+    }
+
+    @AfterEach
+    void restoreProviders() {
+        BenchmarkProviders.setProviders(registeredProviders);
+    }
+
+    /**
+     * Test whether a slow and a failing provider are reported as not available,
+     * without delaying the other providers.
+     */
+    @Test
+    void testSlowAndFailingProvidersDegrade() {
+        BenchmarkProviders.setProviders(List.of(
+                new TestProvider("fast", 0, false),
+                new TestProvider("slow", 5000, false),
+                new TestProvider("failing", 0, true)));
+
+        long start = System.currentTimeMillis();
+        List<Benchmark> benchmarks = BenchmarkProviders.computeBenchmarks(mock(SolutionWorkflow.class));
+
+        assertTrue(System.currentTimeMillis() - start < 5000, "The slow provider should time out.");
+        assertEquals(3, benchmarks.size());
+        assertEquals("1/1", benchmarks.get(0).getValue());
+        assertEquals("not available", benchmarks.get(1).getValue());
+        assertEquals("not available", benchmarks.get(2).getValue());
+        assertEquals("failing", benchmarks.get(2).getBenchmarkInfo().getBenchmarkTitle());
+    }
+
+    /**
+     * Test whether an unreachable Pubmetric service is reported as a failure
+     * instead of an empty result, which would be cached as "no benchmarks".
+     */
+    @Test
+    void testUnreachablePubmetricFails() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        System.setProperty("PUBMETRIC_HOST", "localhost");
+        System.setProperty("PUBMETRIC_PORT", String.valueOf(closedPort));
+        try {
+            assertThrows(IOException.class,
+                    () -> ToolBenchmarkingAPIs.sendPostToPubmetric("cwlVersion: v1.2".getBytes()));
+        } finally {
+            System.clearProperty("PUBMETRIC_HOST");
+            System.clearProperty("PUBMETRIC_PORT");
+        }
+    }
+
+    /**
+     * Test whether the provider releases the workflow after each execution,
+     * including cache hits and failures.
+     */
+    @Test
+    void testWorkflowIsReleased() {
+        SolutionWorkflow workflow = mock(SolutionWorkflow.class);
+        TestProvider cached = new TestProvider("cached", 0, false) {
+            @Override
+            public long getCacheTtlMs() {
+                return 60000;
+            }
+
+            @Override
+            public String getCacheKey(SolutionWorkflow workflow) {
+                return "release-test";
+            }
+        };
+        assertDoesNotThrow(() -> BenchmarkProviders.computeCached(cached, workflow));
+        assertDoesNotThrow(() -> BenchmarkProviders.computeCached(cached, workflow));
+        assertEquals(2, cached.releases.get());
+
+        TestProvider failing = new TestProvider("failing", 0, true);
+        assertThrows(IOException.class, () -> BenchmarkProviders.computeCached(failing, workflow));
+        assertEquals(1, failing.releases.get());
+    }
+
+    private static class TestProvider implements BenchmarkProvider {
+
+        private final String name;
+        private final long delayMs;
+        private final boolean failing;
+        private final AtomicInteger releases = new AtomicInteger();
+
+        TestProvider(String name, long delayMs, boolean failing) {
+            this.name = name;
+            this.delayMs = delayMs;
+            this.failing = failing;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<BenchmarkBase> getBenchmarkInfo() {
+            return List.of(new BenchmarkBase(name, "Test", "Test benchmark", "count", null, null));
+        }
+
+        @Override
+        public List<Benchmark> computeBenchmarks(SolutionWorkflow workflow) throws IOException {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new IOException("Service not available.");
+            }
+            Benchmark benchmark = new Benchmark(getBenchmarkInfo().get(0));
+            benchmark.setValue("1/1");
+            benchmark.setWorkflow(new ArrayList<>());
+            return List.of(benchmark);
+        }
+
+        @Override
+        public void release(SolutionWorkflow workflow) {
+            releases.incrementAndGet();
+        }
+
+        @Override
+        public long getTimeoutMs() {
+            return 200;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class BenchmarkTrackerTest {
+
+    private static final String RUN_ID = "0123456789abc1700000000";
+
+    /**
+     * Test whether completed benchmarks are reported and the run is finished once
+     * all workflows are processed.
+     */
+    @Test
+    void testProgressIsReported() throws InterruptedException {
+        BenchmarkTracker.registerRun(RUN_ID, List.of("candidate_workflow_1", "candidate_workflow_2"));
+        assertFalse(BenchmarkTracker.markCompleted(RUN_ID, "candidate_workflow_2"));
+
+        BenchmarkTracker.RunProgress progress = BenchmarkTracker.awaitProgress(RUN_ID, 0, 0).orElseThrow();
+        assertEquals(List.of("candidate_workflow_2"), progress.getCompleted());
+        assertFalse(progress.isFinished(), "One workflow is still being benchmarked.");
+
+        assertTrue(BenchmarkTracker.markFailed(RUN_ID, "candidate_workflow_1"), "The last workflow finishes the run.");
+        JSONObject status = progress.toJSON();
+        assertTrue(status.getBoolean("finished"), "All workflows were processed.");
+        assertEquals("candidate_workflow_2.json", status.getJSONArray("ready").getString(0));
+    }
+
+    /**
+     * Test whether a waiting status request is released as soon as a new benchmark
+     * is ready.
+     */
+    @Test
+    void testAwaitReturnsOnNewBenchmark() throws InterruptedException {
+        String runID = "abcdef01231700000000001";
+        BenchmarkTracker.registerRun(runID, List.of("candidate_workflow_1", "candidate_workflow_2"));
+
+        Thread worker = new Thread(() -> BenchmarkTracker.markCompleted(runID, "candidate_workflow_1"));
+        long start = System.currentTimeMillis();
+        worker.start();
+        BenchmarkTracker.RunProgress progress = BenchmarkTracker.awaitProgress(runID, 0, 10000).orElseThrow();
+
+        assertEquals(1, progress.getCompleted().size());
+        assertTrue(System.currentTimeMillis() - start < 10000, "The request should not wait for the timeout.");
+    }
+
+    /**
+     * Test whether unknown runs are not reported.
+     */
+    @Test
+    void testUnknownRun() throws InterruptedException {
+        assertTrue(BenchmarkTracker.awaitProgress("ffffffffff1700000000000", 0, 0).isEmpty());
+    }
+
+    /**
+     * Test whether finished runs are no longer tracked once their status expired,
+     * while runs that are still benchmarked are kept.
+     */
+    @Test
+    void testFinishedRunsAreEvicted() {
+        String finishedID = "abcdef01231700000000002";
+        String runningID = "abcdef01231700000000003";
+        BenchmarkTracker.registerRun(finishedID, List.of("candidate_workflow_1"));
+        BenchmarkTracker.markCompleted(finishedID, "candidate_workflow_1");
+        BenchmarkTracker.registerRun(runningID, List.of("candidate_workflow_1"));
+
+        BenchmarkTracker.evictFinished(System.currentTimeMillis());
+        assertTrue(BenchmarkTracker.getProgress(finishedID).isPresent(), "The status was just finished.");
+
+        BenchmarkTracker.evictFinished(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+        assertTrue(BenchmarkTracker.getProgress(finishedID).isEmpty(), "The finished run should be evicted.");
+        assertTrue(BenchmarkTracker.getProgress(runningID).isPresent(), "The running run should be kept.");
+        BenchmarkTracker.remove(runningID);
+    }
+}
@@ -1,9 +1,17 @@
 package nl.esciencecenter.restape;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.json.JSONObject;
@@ -33,6 +41,18 @@ class IOUtilsTest {
             cwlZip.setRunID(runID);
             cwlZip.setWorkflows(List.of(cwlFile));
 
-            IOUtils.zipFilesForLocalExecution(cwlZip);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtils.writeZipForLocalExecution(IOUtils.getZipFiles(cwlZip), out);
+
+            Set<String> entries = new HashSet<>();
+            try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                    for (ZipEntry entry; (entry = zipIn.getNextEntry()) != null;) {
+                            entries.add(entry.getName());
+                    }
+            }
+            assertTrue(entries.containsAll(Set.of(cwlFile, "input.yml", "readme.txt")),
+                            "The zip should contain the workflow, its inputs and the readme.");
+            assertFalse(Files.exists(RestApeUtils.calculatePath(runID, "CWL", "workflows.zip")),
+                            "The zip should not be written to the file system.");
     }
 }
@@ -0,0 +1,62 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.models.benchmarks.Benchmark;
+import nl.esciencecenter.models.benchmarks.BenchmarkBase;
+
+@SpringBootTest
+class RunBenchmarkIndexTest {
+
+    private static final String RUN_ID = "0123456789abc1700000002";
+
+    /**
+     * Test whether the workflows are filtered, ranked by the weighted score and
+     * limited to the top workflows.
+     */
+    @Test
+    void testQueryRanksWorkflows() {
+        RunBenchmarkIndex.registerRun(RUN_ID,
+                List.of("candidate_workflow_1", "candidate_workflow_2", "candidate_workflow_3"));
+        RunBenchmarkIndex.record(RUN_ID, "candidate_workflow_1", List.of(benchmark("Linux", 1), benchmark("License", 0)));
+        RunBenchmarkIndex.record(RUN_ID, "candidate_workflow_2", List.of(benchmark("Linux", 1), benchmark("License", 1)));
+        RunBenchmarkIndex.record(RUN_ID, "candidate_workflow_3", List.of(benchmark("Linux", 0), benchmark("License", 1)));
+
+        JSONObject result = RunBenchmarkIndex.query(RUN_ID, "score", false, "Linux>=1", "Linux:1,License:3", 1)
+                .orElseThrow();
+
+        assertEquals(3, result.getInt("total"));
+        assertEquals(1, result.getJSONArray("workflows").length());
+        assertEquals("candidate_workflow_2", result.getJSONArray("workflows").getString(0));
+        assertEquals(1.0, result.getJSONArray("score").getDouble(0));
+        assertEquals("License", result.getJSONArray("benchmarks").getJSONObject(1).getString("title"));
+    }
+
+    /**
+     * Test whether unknown benchmarks are rejected.
+     */
+    @Test
+    void testUnknownBenchmarkIsRejected() {
+        RunBenchmarkIndex.registerRun(RUN_ID, List.of("candidate_workflow_1"));
+        RunBenchmarkIndex.record(RUN_ID, "candidate_workflow_1", List.of(benchmark("Linux", 1)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RunBenchmarkIndex.query(RUN_ID, "Windows", false, null, null, 0));
+    }
+
+    private static Benchmark benchmark(String title, double desirability) {
+        Benchmark benchmark = new Benchmark(new BenchmarkBase(title, "Test", "Test benchmark", "unit", null, null));
+        benchmark.setValue(String.valueOf(desirability));
+        benchmark.setDesirabilityValue(desirability);
+        benchmark.setWorkflow(new ArrayList<>());
+        return benchmark;
+    }
+}
@@ -0,0 +1,68 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link RunObjectsTest} tests the content addressed storage of the files of
+ * the runs.
+ */
+@SpringBootTest
+class RunObjectsTest {
+
+    private static final String RUN_1 = "0123456789" + "1700000000000";
+    private static final String RUN_2 = "0123456789" + "1700000001000";
+
+    @TempDir
+    Path root;
+
+    /**
+     * Test whether identical files of different runs are stored once, and
+     * whether the objects are removed once no run references them.
+     */
+    @Test
+    void testDeduplication() throws IOException {
+        Path cwl1 = writeCwl(RUN_1, "candidate_workflow_1.cwl", "cwlVersion: v1.2\nsteps: {}");
+        Path cwl2 = writeCwl(RUN_2, "candidate_workflow_3.cwl", "cwlVersion: v1.2\nsteps: {}");
+        Path other = writeCwl(RUN_2, "candidate_workflow_4.cwl", "cwlVersion: v1.2\nsteps: {a: b}");
+
+        Path object = RunObjects.storeFile(root, cwl1);
+        assertEquals(object, RunObjects.storeFile(root, cwl2));
+        Path otherObject = RunObjects.storeFile(root, other);
+        assertNotEquals(object, otherObject);
+        assertTrue(Files.isSameFile(cwl1, cwl2));
+        assertEquals("cwlVersion: v1.2\nsteps: {}", Files.readString(cwl2));
+        assertEquals(2, Files.walk(root.resolve(RunObjects.OBJECTS_DIR)).filter(Files::isRegularFile).count());
+
+        // referenced objects are kept
+        long later = System.currentTimeMillis() + 60_000;
+        assertEquals(0, RunObjects.removeUnreferenced(root, later));
+
+        Files.delete(cwl1);
+        Files.delete(other);
+        // recently stored objects are kept, e.g., while they are being linked
+        assertEquals(0, RunObjects.removeUnreferenced(root, 0));
+        assertEquals(1, RunObjects.removeUnreferenced(root, later));
+        assertTrue(Files.isRegularFile(object));
+        assertFalse(Files.exists(otherObject));
+
+        Files.delete(cwl2);
+        assertEquals(1, RunObjects.removeUnreferenced(root, later));
+        assertFalse(Files.exists(object));
+    }
+
+    private Path writeCwl(String runID, String fileName, String content) throws IOException {
+        Path cwlDir = Files.createDirectories(root.resolve(runID).resolve("CWL"));
+        return Files.writeString(cwlDir.resolve(fileName), content);
+    }
+}
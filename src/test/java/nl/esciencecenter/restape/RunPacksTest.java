@@ -0,0 +1,103 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.restape.RunPacks.PackedFile;
+
+@SpringBootTest
+class RunPacksTest {
+
+    @TempDir
+    Path runDir;
+
+    /**
+     * Test whether the packed files can be read and listed, and whether files
+     * written later are appended to the pack.
+     */
+    @Test
+    void testPackAndRead() throws IOException {
+        Path cwlDir = Files.createDirectories(runDir.resolve("CWL"));
+        Path figuresDir = Files.createDirectories(runDir.resolve("Figures"));
+        Path cwl = Files.writeString(cwlDir.resolve("candidate_workflow_1.cwl"), "cwlVersion: v1.2");
+        Files.writeString(cwlDir.resolve("input.yml"), "input: 1");
+        Files.write(figuresDir.resolve("candidate_workflow_1.png"), new byte[] { 1, 2, 3 });
+        Files.writeString(cwlDir.resolve("candidate_workflow_2.json.tmp"), "{");
+        long lastModified = Files.getLastModifiedTime(cwl).toMillis();
+
+        assertEquals(3, RunPacks.pack(runDir));
+        assertFalse(Files.exists(cwl), "The packed files should be removed.");
+        PackedFile packedCWL = RunPacks.find(cwl).orElseThrow();
+        assertEquals(16, packedCWL.getLength());
+        assertEquals(lastModified, packedCWL.getLastModified());
+        assertEquals("cwlVersion: v1.2", read(cwl));
+        assertEquals(Set.of("candidate_workflow_1.cwl", "candidate_workflow_2.json.tmp", "input.yml"),
+                RunPacks.list(cwlDir));
+
+        // the benchmark file is written later
+        Files.move(cwlDir.resolve("candidate_workflow_2.json.tmp"), cwlDir.resolve("candidate_workflow_2.json"));
+        assertEquals(1, RunPacks.pack(runDir));
+        assertEquals("{", read(cwlDir.resolve("candidate_workflow_2.json")));
+        assertEquals("input: 1", read(cwlDir.resolve("input.yml")));
+        try (InputStream in = RunPacks.newInputStream(figuresDir.resolve("candidate_workflow_1.png"))) {
+            assertEquals(3, in.readAllBytes().length);
+        }
+        assertTrue(RunPacks.exists(cwl));
+        assertThrows(NoSuchFileException.class, () -> RunPacks.newInputStream(cwlDir.resolve("missing.cwl")));
+    }
+
+    /**
+     * Test whether data appended by an interrupted pack (not in the index) is
+     * overwritten by the next pack.
+     */
+    @Test
+    void testInterruptedPack() throws IOException {
+        Path cwlDir = Files.createDirectories(runDir.resolve("CWL"));
+        Files.writeString(cwlDir.resolve("candidate_workflow_1.cwl"), "first");
+        RunPacks.pack(runDir);
+        Files.writeString(runDir.resolve(RunPacks.PACK_FILE), "garbage", StandardOpenOption.APPEND);
+
+        Files.writeString(cwlDir.resolve("candidate_workflow_2.cwl"), "second");
+        RunPacks.pack(runDir);
+        assertEquals("second", read(cwlDir.resolve("candidate_workflow_2.cwl")));
+        assertEquals("first".length() + "second".length(), Files.size(runDir.resolve(RunPacks.PACK_FILE)));
+    }
+
+    /**
+     * Test whether the files linked to a shared object are not packed, so that
+     * they stay deduplicated.
+     */
+    @Test
+    void testLinkedFilesAreNotPacked() throws IOException {
+        Path cwlDir = Files.createDirectories(runDir.resolve("CWL"));
+        Path cwl = Files.writeString(cwlDir.resolve("candidate_workflow_1.cwl"), "shared");
+        Files.createLink(runDir.resolve("object.cwl"), cwl);
+        Files.writeString(cwlDir.resolve("candidate_workflow_1.json"), "{}");
+
+        assertEquals(1, RunPacks.pack(runDir));
+        assertTrue(Files.isRegularFile(cwl), "The linked file should stay in place.");
+        assertEquals("shared", read(cwl));
+        assertEquals("{}", read(cwlDir.resolve("candidate_workflow_1.json")));
+    }
+
+    private static String read(Path path) throws IOException {
+        try (InputStream in = RunPacks.newInputStream(path)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
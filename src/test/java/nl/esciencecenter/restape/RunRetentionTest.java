@@ -0,0 +1,124 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class RunRetentionTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    @TempDir
+    Path root;
+
+    /**
+     * Test whether the least recently accessed runs are removed first when the
+     * runs exceed the count and size limits, while recently accessed runs are
+     * kept.
+     */
+    @Test
+    void testRemovesLeastRecentlyAccessedRuns() throws IOException {
+        String oldest = createRun(NOW - 5 * HOUR_MS, 100);
+        String older = createRun(NOW - 4 * HOUR_MS, 100);
+        String accessed = createRun(NOW - 3 * HOUR_MS, 100);
+        String newest = createRun(NOW - 2 * HOUR_MS, 100);
+        String inUse = createRun(NOW - 1000, 100);
+
+        RunRetention retention = new RunRetention(root, new RunRetention.Limits(0, 250, 4, HOUR_MS));
+        retention.recordAccess(accessed, NOW - HOUR_MS - 1);
+        // oldest by count, older and newest by size, the accessed run is newer
+        assertEquals(300, retention.sweep(NOW));
+        assertFalse(Files.exists(root.resolve(oldest)));
+        assertFalse(Files.exists(root.resolve(older)));
+        assertFalse(Files.exists(root.resolve(newest)));
+        assertTrue(Files.exists(root.resolve(accessed)));
+        assertTrue(Files.exists(root.resolve(inUse)), "Recently accessed runs should be kept.");
+
+        JSONObject persisted = new JSONObject(Files.readString(root.resolve(".runAccess.json")));
+        assertEquals(NOW - HOUR_MS - 1, persisted.getLong(accessed));
+        assertFalse(persisted.has(oldest));
+    }
+
+    /**
+     * Test whether the runs are removed after the maximal age, based on the
+     * access times persisted by a previous sweep.
+     */
+    @Test
+    void testRemovesExpiredRuns() throws IOException {
+        String expired = createRun(NOW - 10 * HOUR_MS, 10);
+        String kept = createRun(NOW - 10 * HOUR_MS, 10);
+        Files.createDirectories(root.resolve(".zipCache"));
+
+        RunRetention previous = new RunRetention(root, new RunRetention.Limits(0, 0, 0, 0));
+        previous.recordAccess(kept, NOW - HOUR_MS);
+        previous.sweep(NOW);
+
+        RunRetention retention = new RunRetention(root, new RunRetention.Limits(2 * HOUR_MS, 0, 0, 0));
+        assertEquals(10, retention.sweep(NOW));
+        assertFalse(Files.exists(root.resolve(expired)));
+        assertTrue(Files.exists(root.resolve(kept)));
+        assertTrue(Files.exists(root.resolve(".zipCache")), "Directories other than runs should be kept.");
+    }
+
+    /**
+     * Test whether the files shared by several runs are counted once, and only
+     * reclaimed when the last run that references them is removed.
+     */
+    @Test
+    void testSharedFilesAreCountedOnce() throws IOException {
+        String oldest = createRun(NOW - 5 * HOUR_MS, 100);
+        String older = createRun(NOW - 4 * HOUR_MS, 100);
+        String unique = createRun(NOW - 3 * HOUR_MS, 0);
+        Files.write(root.resolve(unique).resolve("CWL").resolve("candidate_workflow_1.cwl"), new byte[] { 1 });
+        for (String runID : new String[] { oldest, older, unique }) {
+            RunObjects.storeFile(root, root.resolve(runID).resolve("CWL").resolve("candidate_workflow_1.cwl"));
+        }
+
+        // 101 bytes in total, not 201
+        RunRetention retention = new RunRetention(root, new RunRetention.Limits(0, 101, 0, HOUR_MS));
+        assertEquals(0, retention.sweep(NOW));
+
+        // the shared file is reclaimed once both runs that reference it are removed
+        retention = new RunRetention(root, new RunRetention.Limits(0, 50, 0, HOUR_MS));
+        assertEquals(100, retention.sweep(NOW));
+        assertFalse(Files.exists(root.resolve(oldest)));
+        assertFalse(Files.exists(root.resolve(older)));
+        assertTrue(Files.exists(root.resolve(unique)));
+    }
+
+    /**
+     * Test whether only the accesses of the runs on disk are tracked.
+     */
+    @Test
+    void testUnknownRunsAreNotTracked() throws IOException {
+        String run = createRun(NOW - HOUR_MS, 10);
+        RunRetention retention = new RunRetention(root, new RunRetention.Limits(2 * HOUR_MS, 0, 0, 0));
+        retention.recordRunAccess(run, NOW);
+        for (int i = 0; i < 100; i++) {
+            retention.recordRunAccess(RestApeUtils.generateStringHash(String.valueOf(i), 10) + NOW, NOW);
+        }
+        assertEquals(1, retention.getTrackedRuns());
+    }
+
+    /**
+     * Create a run with a single CWL file, named as the runs created at the given
+     * time.
+     */
+    private String createRun(long createdAt, int bytes) throws IOException {
+        String runID = RestApeUtils.generateStringHash(String.valueOf(Math.random()), 10) + createdAt;
+        Path cwlDir = Files.createDirectories(root.resolve(runID).resolve("CWL"));
+        Files.write(cwlDir.resolve("candidate_workflow_1.cwl"), new byte[bytes]);
+        return runID;
+    }
+}
@@ -0,0 +1,44 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.models.benchmarks.WorkflowStepBenchmark;
+
+@SpringBootTest
+class ToolBenchmarkCacheTest {
+
+    /**
+     * Test whether the tool benchmarks are computed once per metadata version.
+     */
+    @Test
+    void testBenchmarksAreComputedOncePerVersion() {
+        AtomicInteger computations = new AtomicInteger();
+        WorkflowStepBenchmark step = new WorkflowStepBenchmark();
+        step.setValue("supported");
+
+        ToolBenchmarkCache.ToolBenchmarks first = ToolBenchmarkCache.getOrCompute("cache_test_tool", "v1", () -> {
+            computations.incrementAndGet();
+            return Map.of("Linux", step);
+        });
+        ToolBenchmarkCache.ToolBenchmarks second = ToolBenchmarkCache.getOrCompute("cache_test_tool", "v1", () -> {
+            computations.incrementAndGet();
+            return Map.of("Linux", step);
+        });
+        assertSame(first, second);
+        assertEquals(1, computations.get());
+
+        ToolBenchmarkCache.getOrCompute("cache_test_tool", "v2", () -> {
+            computations.incrementAndGet();
+            return Map.of("Linux", step);
+        });
+        assertEquals(2, computations.get());
+        assertEquals("supported", first.get("Linux").getValue());
+    }
+}
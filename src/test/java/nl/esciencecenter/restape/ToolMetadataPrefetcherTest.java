@@ -0,0 +1,145 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.externalAPIs.ResourceNotFoundException;
+import nl.esciencecenter.externalAPIs.ToolMetadataSource;
+import nl.esciencecenter.externalAPIs.ToolMetadataSources;
+
+@SpringBootTest
+class ToolMetadataPrefetcherTest {
+
+    private final List<ToolMetadataSource> registeredSources = ToolMetadataSources.getSources();
+
+    @AfterEach
+    void restoreSources() {
+        ToolMetadataSources.setSources(registeredSources);
+    }
+
+    /**
+     * Test whether the metadata of all the tools (including the unknown ones) is
+     * cached after the prefetch, and whether benchmarking the tools afterwards
+     * does not require any further requests.
+     */
+    @Test
+    void testPrefetchCachesAllTools() throws Exception {
+        CountingSource source = new CountingSource();
+        ToolMetadataSources.setSources(List.of(source));
+        List<String> tools = List.of("Comet", "PeptideProphet", "UnknownTool");
+
+        ToolMetadataPrefetcher.Prefetch prefetch = ToolMetadataPrefetcher.prefetch("test-domain", tools);
+        for (int i = 0; i < 100 && !prefetch.isFinished(); i++) {
+            Thread.sleep(50);
+        }
+
+        assertTrue(prefetch.isFinished());
+        assertEquals(3, prefetch.getProcessed());
+        assertEquals(3, prefetch.getCachedCount());
+        JSONObject status = prefetch.toJSON();
+        assertEquals(100, status.getInt("coverage"));
+        assertEquals("100% of tools have cached metadata", status.getString("summary"));
+
+        int requests = source.requests.get();
+        ToolMetadataSources.fetchBioToolsAnnotation("Comet");
+        assertEquals(requests, source.requests.get());
+        // a fully cached domain is not prefetched again
+        assertSame(prefetch, ToolMetadataPrefetcher.prefetch("test-domain", tools));
+    }
+
+    /**
+     * Test whether a domain that was prefetched for some of its tools is
+     * prefetched again when more of its tools are loaded.
+     */
+    @Test
+    void testPrefetchIncludesNewTools() throws Exception {
+        ToolMetadataSources.setSources(List.of(new CountingSource()));
+        ToolMetadataPrefetcher.Prefetch subset = ToolMetadataPrefetcher.prefetch("subset-domain", List.of("Comet"));
+        for (int i = 0; i < 100 && !subset.isFinished(); i++) {
+            Thread.sleep(50);
+        }
+
+        ToolMetadataPrefetcher.Prefetch all = ToolMetadataPrefetcher.prefetch("subset-domain",
+                List.of("Comet", "PeptideProphet"));
+        assertNotSame(subset, all);
+        assertEquals(2, all.getTotal());
+        assertSame(all, ToolMetadataPrefetcher.prefetch("subset-domain", List.of("PeptideProphet")));
+    }
+
+    /**
+     * Test whether the metadata version is computed when the metadata is cached,
+     * so that looking it up does not require any further requests.
+     */
+    @Test
+    void testMetadataVersionIsCached() throws Exception {
+        CountingSource source = new CountingSource();
+        ToolMetadataSources.setSources(List.of(source));
+
+        String version = ToolMetadataSources.getBioToolsAnnotationVersion("Comet");
+        assertEquals(version, ToolMetadataSources.getBioToolsAnnotationVersion("Comet"));
+        assertEquals(1, source.requests.get());
+        assertNotEquals(version, ToolMetadataSources.getBioToolsAnnotationVersion("PeptideProphet"));
+        assertThrows(ResourceNotFoundException.class,
+                () -> ToolMetadataSources.getOpenEBenchMetricsVersion("UnknownTool"));
+    }
+
+    /**
+     * Test whether only a bounded number of domains is tracked, the most recently
+     * prefetched ones.
+     */
+    @Test
+    void testTrackedDomainsAreBounded() {
+        for (int i = 0; i < 150; i++) {
+            ToolMetadataPrefetcher.prefetch("https://example.org/domain" + i + "/tools.json", List.of());
+        }
+        JSONArray status = ToolMetadataPrefetcher.getStatus();
+        assertTrue(status.length() <= 100, "At most 100 domains should be tracked.");
+        assertEquals("https://example.org/domain149/tools.json",
+                status.getJSONObject(status.length() - 1).getString("domain"));
+    }
+
+    /**
+     * Metadata source that counts the requests and does not know "UnknownTool".
+     */
+    private static class CountingSource implements ToolMetadataSource {
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "counting source";
+        }
+
+        @Override
+        public JSONObject fetchBioToolsAnnotation(String toolID) throws IOException {
+            return fetch(toolID);
+        }
+
+        @Override
+        public JSONObject fetchOpenEBenchMetrics(String toolID) throws IOException {
+            return fetch(toolID);
+        }
+
+        private JSONObject fetch(String toolID) throws ResourceNotFoundException {
+            requests.incrementAndGet();
+            if (toolID.equals("UnknownTool")) {
+                throw new ResourceNotFoundException("Tool " + toolID + " is unknown.");
+            }
+            return new JSONObject().put("biotoolsID", toolID.toLowerCase());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.externalAPIs.ResourceNotFoundException;
+import nl.esciencecenter.externalAPIs.ToolMetadataSource;
+import nl.esciencecenter.externalAPIs.ToolMetadataSources;
+import nl.uu.cs.ape.utils.APEFiles;
+
+@SpringBootTest
+class ToolRequirementsTest {
+
+    private final List<ToolMetadataSource> registeredSources = ToolMetadataSources.getSources();
+
+    @TempDir
+    Path runDir;
+
+    @AfterEach
+    void restoreSources() {
+        ToolMetadataSources.setSources(registeredSources);
+    }
+
+    /**
+     * Test whether the requirements are removed from the configuration and
+     * invalid requirements are rejected.
+     */
+    @Test
+    void testExtractFromConfig() {
+        JSONObject config = new JSONObject("{\"require\": {\"os\": \"linux\"}, \"solution_length\": 5}");
+        assertFalse(ToolRequirements.extractFromConfig(config).isEmpty());
+        assertFalse(config.has("require"));
+
+        assertTrue(ToolRequirements.extractFromConfig(new JSONObject()).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> ToolRequirements.extractFromConfig(new JSONObject("{\"require\": {\"os\": \"BeOS\"}}")));
+    }
+
+    /**
+     * Test whether the tools that do not support the required OS are removed from
+     * the tool annotations.
+     */
+    @Test
+    void testNonConformingToolsAreRemoved() throws IOException {
+        ToolMetadataSources.setSources(List.of(new OSOnlySource()));
+        Path annotations = runDir.resolve("annotations.json");
+        Files.writeString(annotations, """
+                {"functions": [
+                    {"label": "Comet", "id": "Comet"},
+                    {"label": "WinTool", "id": "WinTool"}
+                ]}
+                """);
+        JSONObject config = new JSONObject();
+        config.put("tool_annotations_path", annotations.toString());
+        config.put("require", new JSONObject("{\"os\": \"Linux\"}"));
+
+        ToolRequirements.extractFromConfig(config).applyTo(config, runDir);
+
+        JSONArray functions = APEFiles.readPathToJSONObject(config.getString("tool_annotations_path"))
+                .getJSONArray("functions");
+        assertEquals(1, functions.length());
+        assertEquals("Comet", functions.getJSONObject(0).getString("label"));
+    }
+
+    /**
+     * Metadata source in which Comet supports Linux and WinTool only Windows.
+     */
+    private static class OSOnlySource implements ToolMetadataSource {
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public JSONObject fetchBioToolsAnnotation(String toolID) throws IOException {
+            String os = toolID.equals("Comet") ? "Linux" : "Windows";
+            return new JSONObject("{\"biotoolsID\": \"" + toolID + "\", \"operatingSystem\": [\"" + os + "\"]}");
+        }
+
+        @Override
+        public JSONObject fetchOpenEBenchMetrics(String toolID) throws IOException {
+            throw new ResourceNotFoundException("Not available in the test source.");
+        }
+    }
+}
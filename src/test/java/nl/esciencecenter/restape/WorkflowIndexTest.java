@@ -0,0 +1,150 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link WorkflowIndexTest} tests the queries on the index of the workflows and
+ * its persistence.
+ */
+@SpringBootTest
+class WorkflowIndexTest {
+
+    private static final String RUN_1 = "0123456789" + "1700000000000";
+    private static final String RUN_2 = "0123456789" + "1700000001000";
+    private static final String RUN_3 = "0123456789" + "1700000002000";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Test the boolean queries and the order of the results.
+     */
+    @Test
+    void testQuery() {
+        WorkflowIndex index = createIndex();
+
+        assertEquals(List.of(RUN_2 + "/1", RUN_1 + "/2", RUN_1 + "/1"), find(index, "tool:Comet"));
+        assertEquals(List.of(RUN_1 + "/2"), find(index, "tool:Comet AND tool:PeptideProphet"));
+        assertEquals(List.of(RUN_1 + "/2"), find(index, "tool:Comet tool:PeptideProphet"));
+        assertEquals(List.of(RUN_2 + "/1", RUN_1 + "/1"), find(index, "tool:Comet AND NOT tool:PeptideProphet"));
+        assertEquals(List.of(RUN_2 + "/2"), find(index, "NOT tool:Comet"));
+        assertEquals(List.of(RUN_2 + "/2", RUN_2 + "/1", RUN_1 + "/2"),
+                find(index, "out:format_3747 OR (tool:PeptideProphet AND in:format_3655)"));
+        assertEquals(List.of(RUN_2 + "/2", RUN_1 + "/2", RUN_1 + "/1"), find(index, "type:format_3655"));
+        assertEquals(List.of(RUN_2 + "/2"), find(index, "tool:\"Protein Prophet\""));
+        assertEquals(List.of(), find(index, "tool:unknown"));
+
+        JSONObject page = index.query("tool:Comet", 1, 2);
+        assertEquals(3, page.getInt("total_workflows"));
+        assertEquals(RUN_1, page.getJSONArray("workflows").getJSONObject(0).getString("run_id"));
+        assertEquals("candidate_workflow_1",
+                page.getJSONArray("workflows").getJSONObject(0).getString("workflow_name"));
+
+        assertThrows(IllegalArgumentException.class, () -> index.query("tool:Comet AND", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.query("(tool:Comet", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.query("Comet", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.query("tool:\"Comet", 0, 10));
+    }
+
+    /**
+     * Test whether the index is restored from its log, without the removed runs.
+     */
+    @Test
+    void testPersistence() {
+        WorkflowIndex index = createIndex();
+        index.removeRun(RUN_1);
+        assertEquals(List.of(RUN_2 + "/1"), find(index, "tool:Comet"));
+        assertEquals(2, index.getWorkflowCount());
+
+        WorkflowIndex reopened = new WorkflowIndex(dir);
+        assertEquals(2, reopened.getWorkflowCount());
+        assertEquals(List.of(RUN_2 + "/1"), find(reopened, "tool:Comet"));
+        assertEquals(List.of(RUN_2 + "/2", RUN_2 + "/1"), find(reopened, "NOT tool:PeptideProphet"));
+
+        // the run is replaced when it is added again
+        reopened.addRun(RUN_2, workflows(Set.of("tool:Comet")));
+        assertEquals(List.of(RUN_2 + "/1"), find(new WorkflowIndex(dir), "NOT tool:PeptideProphet"));
+    }
+
+    /**
+     * Test whether the index and its log are compacted once most of the indexed
+     * workflows are removed.
+     */
+    @Test
+    void testCompaction() throws IOException {
+        WorkflowIndex index = createIndex();
+        index.removeRun(RUN_1);
+        index.addRun(RUN_3, workflows(Set.of("tool:Comet", "in:format_3652")));
+        index.removeRun(RUN_2);
+
+        assertEquals(1, index.getWorkflowCount());
+        assertEquals(List.of(RUN_3 + "/1"), find(index, "tool:Comet"));
+        assertEquals(List.of(RUN_3 + "/1"), find(index, "NOT tool:PeptideProphet"));
+        assertEquals(List.of(), find(index, "NOT tool:Comet"));
+        assertEquals(1, Files.readAllLines(dir.resolve("workflows.log")).size());
+
+        index.addRun(RUN_1, workflows(Set.of("tool:PeptideProphet")));
+        assertEquals(List.of(RUN_1 + "/1"), find(new WorkflowIndex(dir), "NOT tool:Comet"));
+    }
+
+    /**
+     * Test the merging of the sorted postings.
+     */
+    @Test
+    void testMerge() {
+        int[] a = { 1, 3, 5, 7, 9 };
+        int[] b = { 2, 3, 4, 9, 10 };
+        assertArrayEquals(new int[] { 3, 9 }, WorkflowIndex.intersect(a, b));
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 7, 9, 10 }, WorkflowIndex.union(a, b));
+        assertArrayEquals(new int[] { 1, 5, 7 }, WorkflowIndex.subtract(a, b));
+        assertArrayEquals(new int[0], WorkflowIndex.intersect(a, new int[0]));
+    }
+
+    private WorkflowIndex createIndex() {
+        WorkflowIndex index = new WorkflowIndex(dir);
+        index.addRun(RUN_1, workflows(
+                Set.of("tool:Comet", "in:format_3652", "out:format_3655"),
+                Set.of("tool:Comet", "tool:PeptideProphet", "out:format_3655", "in:format_3655")));
+        index.addRun(RUN_2, workflows(
+                Set.of("tool:Comet", "out:format_3747"),
+                Set.of("tool:Protein Prophet", "in:format_3655", "out:format_3747")));
+        return index;
+    }
+
+    @SafeVarargs
+    private static SortedMap<Integer, Set<String>> workflows(Set<String>... terms) {
+        SortedMap<Integer, Set<String>> workflows = new TreeMap<>();
+        for (int i = 0; i < terms.length; i++) {
+            workflows.put(i + 1, terms[i]);
+        }
+        return workflows;
+    }
+
+    private static List<String> find(WorkflowIndex index, String query) {
+        JSONArray workflows = index.query(query, 0, 100).getJSONArray("workflows");
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < workflows.length(); i++) {
+            JSONObject workflow = workflows.getJSONObject(i);
+            found.add(workflow.getString("run_id") + "/"
+                    + workflow.getString("workflow_name").substring("candidate_workflow_".length()));
+        }
+        return found;
+    }
+}
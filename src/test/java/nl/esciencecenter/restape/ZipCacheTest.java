@@ -0,0 +1,92 @@
+package nl.esciencecenter.restape;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class ZipCacheTest {
+
+    private static final byte[] README = "readme".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Test whether the key only depends on the selected workflows, not on their
+     * order, and changes with the readme.
+     */
+    @Test
+    void testKeyIdentifiesContent() {
+        String key = ZipCache.getKey("run", List.of("candidate_workflow_1.cwl", "candidate_workflow_2.cwl"), README);
+        assertEquals(key,
+                ZipCache.getKey("run", List.of("candidate_workflow_2.cwl", "candidate_workflow_1.cwl"), README));
+        assertNotEquals(key, ZipCache.getKey("run", List.of("candidate_workflow_1.cwl"), README));
+        assertNotEquals(key, ZipCache.getKey("run", List.of("candidate_workflow_1.cwl", "candidate_workflow_2.cwl"),
+                "new readme".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Test whether a streamed zip is cached, and whether the least recently used
+     * zips are evicted.
+     */
+    @Test
+    void testWriteThroughAndEvict() throws IOException {
+        byte[] content = "zip content".getBytes(StandardCharsets.UTF_8);
+        String key = newKey();
+        assertTrue(ZipCache.get(key).isEmpty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipCache.writeThrough(key, out, zipOut -> zipOut.write(content));
+        assertArrayEquals(content, out.toByteArray());
+        Path cached;
+        try (ZipCache.Lease lease = ZipCache.get(key).orElseThrow()) {
+            cached = lease.getPath();
+            assertArrayEquals(content, Files.readAllBytes(cached));
+        }
+
+        String newerKey = newKey();
+        Path newer;
+        try (ZipCache.Lease lease = ZipCache.build(newerKey, zipOut -> zipOut.write(content))) {
+            newer = lease.getPath();
+        }
+        ZipCache.evict(content.length);
+        assertFalse(Files.exists(cached), "The least recently used zip should be evicted.");
+        assertTrue(ZipCache.get(key).isEmpty());
+        try (ZipCache.Lease lease = ZipCache.get(newerKey).orElseThrow()) {
+            assertEquals(newer, lease.getPath());
+        }
+    }
+
+    /**
+     * Test whether a zip that is being served is not evicted until its lease is
+     * released, even if it is the least recently used one.
+     */
+    @Test
+    void testLeasedZipIsNotEvicted() throws IOException {
+        byte[] content = "zip content".getBytes(StandardCharsets.UTF_8);
+        ZipCache.Lease lease = ZipCache.build(newKey(), zipOut -> zipOut.write(content));
+        try (ZipCache.Lease newer = ZipCache.build(newKey(), zipOut -> zipOut.write(content))) {
+            ZipCache.evict(0);
+            assertTrue(Files.exists(lease.getPath()), "The leased zip should not be evicted.");
+            assertTrue(Files.exists(newer.getPath()), "The leased zip should not be evicted.");
+        }
+        lease.close();
+        ZipCache.evict(0);
+        assertFalse(Files.exists(lease.getPath()), "The released zip should be evicted.");
+    }
+
+    private static String newKey() {
+        return ZipCache.getKey(UUID.randomUUID().toString(), List.of("candidate_workflow_1.cwl"), README);
+    }
+}
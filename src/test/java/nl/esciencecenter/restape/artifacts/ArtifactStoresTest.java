@@ -0,0 +1,155 @@
+package nl.esciencecenter.restape.artifacts;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.util.FileSystemUtils;
+
+import nl.esciencecenter.restape.RestApeUtils;
+import nl.esciencecenter.stub.ObjectStorageStub;
+
+@SpringBootTest
+class ArtifactStoresTest {
+
+    private final ArtifactStore configuredStore = ArtifactStores.getStore().orElse(null);
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void restoreStore() {
+        ArtifactStores.setStore(configuredStore);
+    }
+
+    /**
+     * Test whether the S3 store signs its requests correctly, and whether the
+     * objects are stored, read and listed (across pages).
+     */
+    @Test
+    void testS3Store() throws IOException {
+        try (ObjectStorageStub stub = new ObjectStorageStub("restape", "access", "secret")) {
+            stub.setPageSize(2);
+            S3ArtifactStore store = new S3ArtifactStore(stub.getEndpoint(), "restape", "us-east-1", "access",
+                    "secret");
+            Path file = Files.writeString(dir.resolve("candidate_workflow_1.cwl"), "cwlVersion: v1.2");
+            for (String name : List.of("candidate_workflow_1.cwl", "candidate workflow 2.cwl", "input.yml")) {
+                store.put("run/CWL/" + name, file);
+            }
+            store.put("other/CWL/input.yml", file);
+
+            assertArrayEquals(Files.readAllBytes(file), stub.getObject("run/CWL/candidate workflow 2.cwl"));
+            try (InputStream in = store.get("run/CWL/candidate workflow 2.cwl")) {
+                assertEquals("cwlVersion: v1.2", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            assertEquals(List.of("run/CWL/candidate workflow 2.cwl", "run/CWL/candidate_workflow_1.cwl",
+                    "run/CWL/input.yml"), store.list("run/"));
+            assertThrows(NoSuchFileException.class, () -> store.get("run/CWL/missing.cwl"));
+
+            S3ArtifactStore unauthorized = new S3ArtifactStore(stub.getEndpoint(), "restape", "us-east-1", "access",
+                    "wrong secret");
+            assertThrows(IOException.class, () -> unauthorized.put("run/CWL/input.yml", file));
+        }
+    }
+
+    /**
+     * Test whether the files of a run are uploaded once, and whether a node
+     * without the run downloads it from the store when a file is requested.
+     */
+    @Test
+    void testUploadAndFetchRun() throws IOException {
+        InMemoryArtifactStore store = new InMemoryArtifactStore();
+        ArtifactStores.setStore(store);
+        String runID = RestApeUtils.generateStringHash(String.valueOf(System.nanoTime()), 10)
+                + System.currentTimeMillis();
+        Path runDir = Paths.get(RestApeUtils.getSolutionPath(), runID);
+        try {
+            Path cwlDir = Files.createDirectories(runDir.resolve("CWL"));
+            Files.writeString(cwlDir.resolve("candidate_workflow_1.cwl"), "cwlVersion: v1.2");
+            Files.writeString(cwlDir.resolve("candidate_workflow_1.json"), "{}");
+            Files.writeString(cwlDir.resolve("candidate_workflow_1.cwl.gz"), "compressed variant");
+
+            assertEquals(2, ArtifactStores.uploadRun(runID));
+            assertEquals(0, ArtifactStores.uploadRun(runID), "Unchanged files should not be uploaded again.");
+            assertEquals(List.of(runID + "/CWL/candidate_workflow_1.cwl", runID + "/CWL/candidate_workflow_1.json"),
+                    store.list(runID + "/"));
+
+            FileSystemUtils.deleteRecursively(runDir);
+            Path cwl = RestApeUtils.calculatePath(runID, "CWL", "candidate_workflow_1.cwl");
+            assertFalse(Files.exists(cwl), "Calculating the path should not download the file.");
+            assertTrue(ArtifactStores.fetch(cwl));
+            assertEquals("cwlVersion: v1.2", Files.readString(cwl));
+            assertTrue(Files.exists(cwlDir.resolve("candidate_workflow_1.json")), "The whole run should be fetched.");
+            assertFalse(ArtifactStores.fetch(cwlDir.resolve("candidate_workflow_2.cwl")));
+        } finally {
+            FileSystemUtils.deleteRecursively(runDir);
+        }
+    }
+
+    /**
+     * Test whether concurrent requests for a run that is not available locally
+     * are served by a single download, and whether a run that is not in the store
+     * either is not looked up again right away.
+     */
+    @Test
+    void testFetchIsDeduplicatedAndMissesAreCached() throws Exception {
+        CountDownLatch listing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger lists = new AtomicInteger();
+        InMemoryArtifactStore store = new InMemoryArtifactStore() {
+            @Override
+            public List<String> list(String prefix) {
+                lists.incrementAndGet();
+                listing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.list(prefix);
+            }
+        };
+        ArtifactStores.setStore(store);
+        String runID = RestApeUtils.generateStringHash(String.valueOf(System.nanoTime()), 10)
+                + System.currentTimeMillis();
+        Path cwl = Paths.get(RestApeUtils.getSolutionPath(), runID, "CWL", "candidate_workflow_1.cwl");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> ArtifactStores.fetch(cwl));
+            assertTrue(listing.await(10, TimeUnit.SECONDS));
+            Future<Boolean> second = executor.submit(() -> ArtifactStores.fetch(cwl));
+            Thread.sleep(100);
+            release.countDown();
+            assertFalse(first.get(10, TimeUnit.SECONDS));
+            assertFalse(second.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, lists.get(), "Concurrent requests should wait for the running download.");
+
+        assertFalse(ArtifactStores.fetch(cwl));
+        assertEquals(1, lists.get(), "A missing run should not be looked up again right away.");
+    }
+}
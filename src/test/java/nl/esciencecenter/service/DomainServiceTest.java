@@ -0,0 +1,124 @@
+package nl.esciencecenter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.models.Domain;
+
+/**
+ * {@link DomainServiceTest} tests the registry of the domains and the cache of
+ * their resources.
+ */
+@SpringBootTest
+class DomainServiceTest {
+
+    private static final String CONFIG_URL = "https://example.org/registry-test/config.json";
+
+    @Autowired
+    private DomainService domainService;
+
+    /**
+     * Test whether the registered domains are resolved by their ID, and whether
+     * the names and URLs of the domains are unique.
+     */
+    @Test
+    void testRegistry() {
+        Domain domain = new Domain();
+        domain.setDomainName("Registry test");
+        domain.setDomainConfigURL(CONFIG_URL);
+        domain.setCacheTtlSeconds(60);
+        Domain registered = domainService.saveOrUpdate(domain);
+        try {
+            assertEquals(CONFIG_URL, domainService.getRegisteredDomain(registered.getId()).getDomainConfigURL());
+
+            Domain sameURL = new Domain();
+            sameURL.setDomainName("Registry test 2");
+            sameURL.setDomainConfigURL(CONFIG_URL);
+            assertThrows(IllegalArgumentException.class, () -> domainService.saveOrUpdate(sameURL));
+
+            Domain invalidURL = new Domain();
+            invalidURL.setDomainName("Registry test 3");
+            invalidURL.setDomainConfigURL("config.json");
+            assertThrows(IllegalArgumentException.class, () -> domainService.saveOrUpdate(invalidURL));
+
+            registered.setDomainName("Registry test renamed");
+            domainService.saveOrUpdate(registered);
+            assertEquals("Registry test renamed", domainService.getRegisteredDomain(registered.getId()).getDomainName());
+        } finally {
+            domainService.delete(registered.getId());
+        }
+        assertThrows(DomainNotFoundException.class, () -> domainService.getRegisteredDomain(registered.getId()));
+        assertThrows(DomainNotFoundException.class,
+                () -> domainService.getResource(registered.getId(), null, DomainResource.DATA_TAXONOMY));
+        assertThrows(IllegalArgumentException.class,
+                () -> domainService.getResource(null, null, DomainResource.DATA_TAXONOMY));
+        assertThrows(IllegalArgumentException.class,
+                () -> domainService.getResource(null, "config.json", DomainResource.DATA_TAXONOMY));
+    }
+
+    /**
+     * Test whether concurrent requests for a resource load it once, and whether
+     * the resource is loaded again once it expires or is invalidated.
+     */
+    @Test
+    void testCache() throws Exception {
+        DomainCache cache = new DomainCache();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        DomainCache.Loader slowLoader = () -> {
+            loads.incrementAndGet();
+            try {
+                loading.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "taxonomy";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<DomainCache.Result>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> cache.get(1, DomainResource.DATA_TAXONOMY, 60_000, slowLoader)));
+        }
+        Thread.sleep(100);
+        loading.countDown();
+        int cached = 0;
+        for (Future<DomainCache.Result> result : results) {
+            assertEquals("taxonomy", result.get().value);
+            cached += result.get().cached ? 1 : 0;
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(3, cached);
+
+        // expired
+        assertFalse(cache.get(1, DomainResource.DATA_TAXONOMY, 0, slowLoader).cached);
+        assertEquals(2, loads.get());
+        assertTrue(cache.get(1, DomainResource.DATA_TAXONOMY, 60_000, slowLoader).cached);
+
+        // failures are not cached
+        assertThrows(IOException.class, () -> cache.get(1, DomainResource.TOOLS_TAXONOMY, 60_000, () -> {
+            throw new IOException("unavailable");
+        }));
+        assertEquals("tools", cache.get(1, DomainResource.TOOLS_TAXONOMY, 60_000, () -> "tools").value);
+
+        cache.invalidate(1);
+        assertEquals(0, cache.size());
+    }
+}
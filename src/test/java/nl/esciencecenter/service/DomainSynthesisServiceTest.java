@@ -0,0 +1,72 @@
+package nl.esciencecenter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * {@link DomainSynthesisServiceTest} tests the matching of the requests to the
+ * precomputed synthesis runs and the detection of changed domains.
+ */
+@SpringBootTest
+class DomainSynthesisServiceTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Test whether only the default configuration with a fixed solution length
+     * matches a precomputed run.
+     */
+    @Test
+    void testDefaultRunLength() {
+        JSONObject defaults = new JSONObject()
+                .put("tool_annotations_path", "https://example.org/tools.json")
+                .put("solutions", "10")
+                .put("inputs", new JSONArray().put(new JSONObject().put("data_0006", new JSONArray().put("data_9003"))))
+                .put("solution_length", new JSONObject().put("min", 1).put("max", 5));
+
+        assertEquals(Optional.of(3), DomainSynthesisService.getDefaultRunLength(defaults,
+                withLength(defaults, 3, 3)));
+        // a range of lengths
+        assertEquals(Optional.empty(), DomainSynthesisService.getDefaultRunLength(defaults,
+                withLength(defaults, 1, 5)));
+        // outside of the precomputed lengths
+        assertEquals(Optional.empty(), DomainSynthesisService.getDefaultRunLength(defaults,
+                withLength(defaults, 12, 12)));
+        // other inputs
+        JSONObject otherInputs = withLength(defaults, 3, 3).put("inputs", new JSONArray());
+        assertEquals(Optional.empty(), DomainSynthesisService.getDefaultRunLength(defaults, otherInputs));
+    }
+
+    /**
+     * Test whether the fingerprint changes when a file of the domain changes.
+     */
+    @Test
+    void testFingerprint() throws IOException {
+        Path tools = Files.writeString(dir.resolve("tools.json"), "{\"functions\": []}");
+        Path config = Files.writeString(dir.resolve("config.json"),
+                new JSONObject().put("tool_annotations_path", tools.toString()).toString());
+
+        String fingerprint = DomainSynthesisService.computeFingerprint(config.toString());
+        assertEquals(fingerprint, DomainSynthesisService.computeFingerprint(config.toString()));
+
+        Files.writeString(tools, "{\"functions\": [{\"id\": \"Comet\"}]}");
+        assertNotEquals(fingerprint, DomainSynthesisService.computeFingerprint(config.toString()));
+    }
+
+    private static JSONObject withLength(JSONObject defaults, int min, int max) {
+        return new JSONObject(defaults.toString())
+                .put("solution_length", new JSONObject().put("min", min).put("max", max));
+    }
+}
@@ -0,0 +1,81 @@
+package nl.esciencecenter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.esciencecenter.models.SynthesisRun;
+import nl.esciencecenter.models.Workflow;
+import nl.esciencecenter.restape.APEWorkflowMetadata;
+
+/**
+ * {@link RunCatalogServiceTest} tests the recording and the lookups of the runs
+ * in the run catalog.
+ */
+@SpringBootTest
+class RunCatalogServiceTest {
+
+    private static final String DOMAIN = "https://example.org/catalog-test/tools.json";
+
+    @Autowired
+    private RunCatalogService runCatalog;
+
+    /**
+     * Test whether a completed run and its workflows are recorded, listed (most
+     * recent first) and removed.
+     */
+    @Test
+    void testRecordAndRemove() throws Exception {
+        String olderRunID = "c0ffee0000" + "1700000000000";
+        String runID = "c0ffee0001" + "1700000005000";
+        JSONObject config = new JSONObject().put("tool_annotations_path", DOMAIN).put("solutions", "2");
+
+        runCatalog.runCompleted(olderRunID, config, List.of(metadata(olderRunID, 1)), false);
+        runCatalog.runCompleted(runID, config, List.of(metadata(runID, 2), metadata(runID, 10)), true);
+
+        SynthesisRun run = runCatalog.getRun(runID).orElseThrow();
+        assertEquals(DOMAIN, run.getDomain());
+        assertEquals(1700000005000L, run.getCreatedAt());
+        assertEquals(2, run.getSolutionCount());
+        assertTrue(run.isBenchmarked());
+        assertTrue(runCatalog.isKnownRun(runID));
+
+        List<Workflow> workflows = runCatalog.getWorkflows(runID);
+        assertEquals(List.of("candidate_workflow_2", "candidate_workflow_10"),
+                workflows.stream().map(Workflow::getWorkflowName).toList());
+        assertEquals("CWL/candidate_workflow_2.cwl", workflows.get(0).getCwlFilePath());
+
+        Page<SynthesisRun> firstPage = runCatalog.getRuns(DOMAIN, 0, 1);
+        assertEquals(2, firstPage.getTotalElements());
+        assertEquals(runID, firstPage.getContent().get(0).getRunID());
+        assertEquals(olderRunID, runCatalog.getRuns(DOMAIN, 1, 1).getContent().get(0).getRunID());
+
+        runCatalog.runRemoved(runID);
+        runCatalog.runRemoved(olderRunID);
+        assertFalse(runCatalog.getRun(runID).isPresent());
+        assertTrue(runCatalog.getWorkflows(runID).isEmpty());
+        assertEquals(0, runCatalog.getRuns(DOMAIN, 0, 10).getTotalElements());
+    }
+
+    private static APEWorkflowMetadata metadata(String runID, int number) throws Exception {
+        String json = new JSONObject()
+                .put("workflow_name", "candidate_workflow_" + number)
+                .put("descriptive_name", "Candidate workflow " + number)
+                .put("workflow_length", 3)
+                .put("run_id", runID)
+                .put("cwl_name", "candidate_workflow_" + number + ".cwl")
+                .put("figure_name", "candidate_workflow_" + number)
+                .toString();
+        return new ObjectMapper().readValue(json, APEWorkflowMetadata.class);
+    }
+}
@@ -0,0 +1,336 @@
+package nl.esciencecenter.stub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@code ExternalServicesStub} class is an embeddable HTTP server that
+ * stands in for the external services used by RESTful APE, so that the service
+ * can be tested and load tested without internet access. It serves:
+ * <ul>
+ * <li>bio.tools annotations under {@code /biotools/api/<id>}
+ * ({@code BIOTOOLS_BASE_URL=<stub>/biotools/api}),</li>
+ * <li>OpenEBench aggregates and metrics under {@code /openebench/...}
+ * ({@code OPENEBENCH_BASE_URL=<stub>/openebench}),</li>
+ * <li>Pubmetric scores under {@code /score_workflow/} ({@code PUBMETRIC_HOST}
+ * and {@code PUBMETRIC_PORT} of the stub),</li>
+ * <li>the readme under {@code /readme.txt} ({@code README_URL}) and any other
+ * file (e.g., domain configurations and ontologies) under
+ * {@code /files/<path>}.</li>
+ * </ul>
+ * Recorded responses are read from the recordings directory
+ * ({@code biotools/<id>.json}, {@code openebench/<id>.json},
+ * {@code pubmetric.json}, {@code readme.txt} and {@code files/}). Tools without
+ * a recording get a synthetic response, except the tools whose ID starts with
+ * "unknown", which are not found.<br>
+ * <br>
+ * Each service has a {@link Profile} with the latency and error rate of its
+ * responses. The stub can also be started on its own, see
+ * {@link #main(String[])}.
+ */
+@Slf4j
+public class ExternalServicesStub implements AutoCloseable {
+
+    public static final String BIOTOOLS = "biotools";
+    public static final String OPENEBENCH = "openebench";
+    public static final String PUBMETRIC = "pubmetric";
+    public static final String FILES = "files";
+
+    private final HttpServer server;
+    private final Path recordingsDir;
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Create and start the stub.
+     *
+     * @param port          - port of the stub, 0 to use any free port
+     * @param recordingsDir - directory with the recorded responses, or null to
+     *                      only use synthetic responses
+     * @throws IOException In case the server cannot be started.
+     */
+    public ExternalServicesStub(int port, Path recordingsDir) throws IOException {
+        this.recordingsDir = recordingsDir;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/biotools/api/", exchange -> handle(exchange, BIOTOOLS, this::bioTools));
+        server.createContext("/openebench/", exchange -> handle(exchange, OPENEBENCH, this::openEBench));
+        server.createContext("/score_workflow/", exchange -> handle(exchange, PUBMETRIC, this::pubmetric));
+        server.createContext("/readme.txt", exchange -> handle(exchange, FILES, this::readme));
+        server.createContext("/files/", exchange -> handle(exchange, FILES, this::file));
+        // the latency is simulated by sleeping, so every request needs its own thread
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "external-services-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    /**
+     * Get the base URL of the stub.
+     *
+     * @return Base URL, e.g., "http://localhost:8123".
+     */
+    public String getBaseURL() {
+        return "http://localhost:" + getPort();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Point the RESTful APE clients to the stub, using system properties.
+     */
+    public void configureClients() {
+        System.setProperty("BIOTOOLS_BASE_URL", getBaseURL() + "/biotools/api");
+        System.setProperty("OPENEBENCH_BASE_URL", getBaseURL() + "/openebench");
+        System.setProperty("README_URL", getBaseURL() + "/readme.txt");
+        System.setProperty("PUBMETRIC_HOST", "localhost");
+        System.setProperty("PUBMETRIC_PORT", String.valueOf(getPort()));
+    }
+
+    /**
+     * Set the latency and error profile of the service.
+     *
+     * @param service - one of {@link #BIOTOOLS}, {@link #OPENEBENCH},
+     *                {@link #PUBMETRIC} and {@link #FILES}
+     * @param profile - profile of the responses
+     */
+    public void setProfile(String service, Profile profile) {
+        profiles.put(service, profile);
+    }
+
+    /**
+     * Get the number of requests the service received.
+     *
+     * @param service - name of the service
+     * @return Number of requests.
+     */
+    public int getRequestCount(String service) {
+        return requestCounts.getOrDefault(service, new AtomicInteger()).get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange, String service, Responder responder) throws IOException {
+        requestCounts.computeIfAbsent(service, s -> new AtomicInteger()).incrementAndGet();
+        try (exchange; InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+            Profile profile = profiles.getOrDefault(service, Profile.NONE);
+            Thread.sleep(profile.sampleLatencyMs());
+            if (profile.sampleError()) {
+                send(exchange, 503, "text/plain", "Service unavailable (simulated).");
+                return;
+            }
+            Response response = responder.respond(exchange.getRequestURI().getPath(),
+                    exchange.getRequestURI().getQuery());
+            if (response == null) {
+                send(exchange, 404, "text/plain", "Not found.");
+            } else {
+                send(exchange, 200, response.contentType, response.body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        send(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response bioTools(String path, String query) throws IOException {
+        String toolID = lastSegment(path);
+        Response recorded = recording(BIOTOOLS + "/" + toolID + ".json");
+        if (recorded != null || isUnknown(toolID)) {
+            return recorded;
+        }
+        JSONObject annotation = new JSONObject();
+        annotation.put("biotoolsID", toolID);
+        annotation.put("name", toolID);
+        annotation.put("operatingSystem", new JSONArray(List.of("Linux", "Mac")));
+        annotation.put("license", "MIT");
+        return Response.json(annotation.toString());
+    }
+
+    private Response openEBench(String path, String query) throws IOException {
+        if (path.startsWith("/openebench/rest/aggregate")) {
+            String toolID = query == null ? "" : query.replaceFirst("^id=", "");
+            if (isUnknown(toolID)) {
+                return Response.json("[]");
+            }
+            // the tool URLs refer to the public API, the same as in OpenEBench responses
+            JSONObject version = new JSONObject().put("@id",
+                    "https://openebench.bsc.es/monitor/tool/biotools:" + toolID + ":1.0/cmd/" + toolID);
+            JSONObject entity = new JSONObject().put("type", "cmd").put("tools", new JSONArray().put(version));
+            return Response.json(new JSONArray().put(new JSONObject().put("entities",
+                    new JSONArray().put(entity))).toString());
+        } else if (path.startsWith("/openebench/metrics/biotools:")) {
+            String toolID = path.substring("/openebench/metrics/biotools:".length()).split(":")[0];
+            Response recorded = recording(OPENEBENCH + "/" + toolID + ".json");
+            if (recorded != null) {
+                return recorded;
+            }
+            JSONObject license = new JSONObject().put("osi", true).put("open_source", true);
+            JSONObject publication = new JSONObject().put("entries",
+                    new JSONArray().put(new JSONObject().put("cit_count", 42)));
+            JSONObject project = new JSONObject().put("license", license)
+                    .put("publications", new JSONArray().put(publication));
+            return Response.json(new JSONObject().put("project", project).toString());
+        }
+        return null;
+    }
+
+    private Response pubmetric(String path, String query) throws IOException {
+        Response recorded = recording("pubmetric.json");
+        return recorded != null ? recorded : Response.json(new JSONObject().put("benchmarks", new JSONArray())
+                .toString());
+    }
+
+    private Response readme(String path, String query) throws IOException {
+        Response recorded = recording("readme.txt");
+        return recorded != null ? recorded
+                : new Response("text/plain", "Run the workflows using a CWL runner, e.g., cwltool."
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response file(String path, String query) throws IOException {
+        return recording(path.substring(1));
+    }
+
+    /**
+     * Read the recorded response, or return null if there is none. Paths outside
+     * of the recordings directory are not served.
+     */
+    private Response recording(String relativePath) throws IOException {
+        if (recordingsDir == null) {
+            return null;
+        }
+        Path file = recordingsDir.resolve(relativePath).normalize();
+        if (!file.startsWith(recordingsDir.normalize()) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        String contentType = relativePath.endsWith(".json") ? "application/json" : "text/plain";
+        return new Response(contentType, Files.readAllBytes(file));
+    }
+
+    private static String lastSegment(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static boolean isUnknown(String toolID) {
+        return toolID.toLowerCase().startsWith("unknown");
+    }
+
+    /**
+     * Start the stub on its own, e.g., for load testing. Arguments: port (default
+     * 8090) and the recordings directory (optional). Every service gets the given
+     * latency profile, configured using the system properties
+     * {@code stub.latencyMs}, {@code stub.tailProbability},
+     * {@code stub.tailLatencyMs} and {@code stub.errorRate}.
+     *
+     * @param args - port and recordings directory
+     * @throws IOException In case the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8090;
+        Path recordings = args.length > 1 ? Paths.get(args[1]) : null;
+        Profile profile = new Profile(Long.getLong("stub.latencyMs", 150),
+                Double.parseDouble(System.getProperty("stub.tailProbability", "0.03")),
+                Long.getLong("stub.tailLatencyMs", 3000),
+                Double.parseDouble(System.getProperty("stub.errorRate", "0")));
+        ExternalServicesStub stub = new ExternalServicesStub(port, recordings);
+        stub.setProfile(BIOTOOLS, profile);
+        stub.setProfile(OPENEBENCH, profile);
+        stub.setProfile(PUBMETRIC, profile);
+        log.info("External services stub is running at {}, profile {}.", stub.getBaseURL(), profile);
+    }
+
+    /**
+     * Latency and error profile of a service. A response takes the base latency,
+     * or with the given probability the tail latency, and fails (HTTP 503) with
+     * the given error rate.
+     */
+    public static class Profile {
+
+        static final Profile NONE = new Profile(0, 0, 0, 0);
+
+        private final long latencyMs;
+        private final double tailProbability;
+        private final long tailLatencyMs;
+        private final double errorRate;
+
+        public Profile(long latencyMs, double tailProbability, long tailLatencyMs, double errorRate) {
+            this.latencyMs = latencyMs;
+            this.tailProbability = tailProbability;
+            this.tailLatencyMs = tailLatencyMs;
+            this.errorRate = errorRate;
+        }
+
+        long sampleLatencyMs() {
+            return ThreadLocalRandom.current().nextDouble() < tailProbability ? tailLatencyMs : latencyMs;
+        }
+
+        boolean sampleError() {
+            return ThreadLocalRandom.current().nextDouble() < errorRate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("latency %d ms (%.1f%% %d ms), error rate %.1f%%", latencyMs,
+                    tailProbability * 100, tailLatencyMs, errorRate * 100);
+        }
+    }
+
+    private static class Response {
+        private final String contentType;
+        private final byte[] body;
+
+        Response(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response json(String body) {
+            return new Response("application/json", body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Responder {
+        Response respond(String path, String query) throws IOException;
+    }
+}
@@ -0,0 +1,76 @@
+package nl.esciencecenter.stub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.esciencecenter.externalAPIs.BioToolsRestClient;
+import nl.esciencecenter.externalAPIs.ExternalServiceClient;
+import nl.esciencecenter.externalAPIs.OpenEBenchBenchmarkProcessor;
+import nl.esciencecenter.externalAPIs.OpenEBenchRestClient;
+import nl.esciencecenter.externalAPIs.ResourceNotFoundException;
+import nl.esciencecenter.restape.LicenseType;
+
+/**
+ * {@link ExternalServicesStubTest} tests whether the metadata clients can be
+ * used offline, against the {@link ExternalServicesStub}.
+ */
+@SpringBootTest
+class ExternalServicesStubTest {
+
+    private ExternalServicesStub stub;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new ExternalServicesStub(0, null);
+        stub.configureClients();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+        for (String setting : new String[] { "BIOTOOLS_BASE_URL", "OPENEBENCH_BASE_URL", "README_URL",
+                "PUBMETRIC_HOST", "PUBMETRIC_PORT" }) {
+            System.clearProperty(setting);
+        }
+    }
+
+    /**
+     * Test whether the bio.tools annotation and the OpenEBench metrics (including
+     * the metrics URL that refers to the public API) are retrieved from the stub.
+     */
+    @Test
+    void testClientsUseStub() throws IOException {
+        JSONObject annotation = BioToolsRestClient.fetchToolFromBioTools("StubTool");
+        assertEquals("stubtool", annotation.getString("biotoolsID"));
+
+        JSONObject metrics = OpenEBenchRestClient.fetchToolMetricsBiotoolsVersion("StubTool");
+        assertEquals(LicenseType.OSI_Approved, OpenEBenchBenchmarkProcessor.isOSIFromOEBMetrics(metrics));
+        assertEquals(1, stub.getRequestCount(ExternalServicesStub.BIOTOOLS));
+        assertEquals(2, stub.getRequestCount(ExternalServicesStub.OPENEBENCH));
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> BioToolsRestClient.fetchToolFromBioTools("UnknownStubTool"));
+    }
+
+    /**
+     * Test whether the latency and error profile is applied to the responses.
+     */
+    @Test
+    void testProfileIsApplied() {
+        stub.setProfile(ExternalServicesStub.BIOTOOLS, new ExternalServicesStub.Profile(200, 0, 0, 1));
+        ExternalServiceClient client = new ExternalServiceClient("stub");
+
+        long start = System.currentTimeMillis();
+        assertThrows(IOException.class, () -> client.get(stub.getBaseURL() + "/biotools/api/comet"));
+        assertTrue(System.currentTimeMillis() - start >= 200, "The response should be delayed.");
+    }
+}
@@ -0,0 +1,260 @@
+package nl.esciencecenter.stub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The {@code ObjectStorageStub} class is an embeddable stand-in for an
+ * S3-compatible object storage (such as MinIO), used to test the S3 artifact
+ * store without external services. It keeps the objects of a single bucket in
+ * memory and supports path-style {@code PUT} and {@code GET} of objects and
+ * {@code ListObjectsV2} (with pagination). Requests whose AWS Signature Version
+ * 4 does not match the credentials are rejected with 403.
+ */
+public class ObjectStorageStub implements AutoCloseable {
+
+    private static final Pattern AUTHORIZATION = Pattern.compile(
+            "AWS4-HMAC-SHA256 Credential=([^/]+)/(\\d{8})/([^/]+)/s3/aws4_request, "
+                    + "SignedHeaders=([^,]+), Signature=([0-9a-f]{64})");
+
+    private final HttpServer server;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile int pageSize = 1000;
+
+    /**
+     * Create and start the stub.
+     *
+     * @param bucket    - name of the bucket
+     * @param accessKey - access key accepted by the stub
+     * @param secretKey - secret key accepted by the stub
+     * @throws IOException In case the server cannot be started.
+     */
+    public ObjectStorageStub(String bucket, String accessKey, String secretKey) throws IOException {
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/" + bucket, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "object-storage-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    /**
+     * Get the endpoint of the stub.
+     *
+     * @return Endpoint, e.g., "http://localhost:8123".
+     */
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Set the maximal number of keys in a single list response.
+     *
+     * @param pageSize - number of keys per page
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Get the stored object.
+     *
+     * @param key - key of the object
+     * @return Content of the object, or null if it does not exist.
+     */
+    public byte[] getObject(String key) {
+        return objects.get(key);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            if (!isSignatureValid(exchange)) {
+                respond(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String key = path.length() > bucket.length() + 2 ? path.substring(bucket.length() + 2) : "";
+            switch (exchange.getRequestMethod()) {
+                case "PUT":
+                    objects.put(key, exchange.getRequestBody().readAllBytes());
+                    respond(exchange, 200, "");
+                    break;
+                case "GET":
+                    if (key.isEmpty()) {
+                        respond(exchange, 200, listObjects(parseQuery(exchange.getRequestURI().getRawQuery())));
+                    } else if (objects.containsKey(key)) {
+                        byte[] content = objects.get(key);
+                        exchange.sendResponseHeaders(200, content.length == 0 ? -1 : content.length);
+                        exchange.getResponseBody().write(content);
+                    } else {
+                        respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                    }
+                    break;
+                default:
+                    respond(exchange, 405, "");
+            }
+        }
+    }
+
+    private String listObjects(Map<String, String> query) {
+        String prefix = query.getOrDefault("prefix", "");
+        String after = query.getOrDefault("continuation-token", "");
+        List<String> keys = objects.keySet().stream()
+                .filter(key -> key.startsWith(prefix) && key.compareTo(after) > 0)
+                .toList();
+        boolean truncated = keys.size() > pageSize;
+        List<String> page = truncated ? keys.subList(0, pageSize) : keys;
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ListBucketResult>");
+        xml.append("<Name>").append(bucket).append("</Name><Prefix>").append(prefix).append("</Prefix>");
+        xml.append("<KeyCount>").append(page.size()).append("</KeyCount>");
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(page.get(page.size() - 1)).append("</NextContinuationToken>");
+        }
+        for (String key : page) {
+            xml.append("<Contents><Key>").append(key).append("</Key><Size>").append(objects.get(key).length)
+                    .append("</Size></Contents>");
+        }
+        return xml.append("</ListBucketResult>").toString();
+    }
+
+    /**
+     * Recompute the signature of the request, as described in the AWS Signature
+     * Version 4 documentation, and compare it with the provided one.
+     */
+    private boolean isSignatureValid(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) {
+            return false;
+        }
+        Matcher matcher = AUTHORIZATION.matcher(authorization);
+        if (!matcher.matches() || !matcher.group(1).equals(accessKey)) {
+            return false;
+        }
+        String date = matcher.group(2);
+        String region = matcher.group(3);
+        String[] signedHeaders = matcher.group(4).split(";");
+
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (String header : signedHeaders) {
+            String value = exchange.getRequestHeaders().getFirst(header);
+            canonicalHeaders.append(header).append(':').append(value == null ? "" : value.trim()).append('\n');
+        }
+        Map<String, String> query = new TreeMap<>(parseQuery(exchange.getRequestURI().getRawQuery()));
+        StringBuilder canonicalQuery = new StringBuilder();
+        for (Map.Entry<String, String> parameter : query.entrySet()) {
+            canonicalQuery.append(canonicalQuery.length() == 0 ? "" : "&").append(encode(parameter.getKey()))
+                    .append('=').append(encode(parameter.getValue()));
+        }
+        String canonicalRequest = exchange.getRequestMethod() + "\n" + exchange.getRequestURI().getRawPath() + "\n"
+                + canonicalQuery + "\n" + canonicalHeaders + "\n" + matcher.group(4) + "\n"
+                + exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String amzDate = exchange.getRequestHeaders().getFirst("x-amz-date");
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+
+        byte[] key = ("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8);
+        for (String part : List.of(date, region, "s3", "aws4_request", stringToSign)) {
+            key = hmac(key, part);
+        }
+        return hex(key).equals(matcher.group(5));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            String[] parts = parameter.split("=", 2);
+            query.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                    parts.length > 1 ? URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "");
+        }
+        return query;
+    }
+
+    private static String encode(String text) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || "-_.~".indexOf(b) >= 0) {
+                encoded.append((char) b);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}